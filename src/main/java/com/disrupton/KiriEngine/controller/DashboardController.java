@@ -1,19 +1,51 @@
 package com.disrupton.KiriEngine.controller;
 
 import com.disrupton.user.dto.*;
-import com.disrupton.KiriEngine.model.*;
 import com.disrupton.service.DashboardAnalyticsService;
 import com.disrupton.service.AnalyticsCalculationService;
+import com.disrupton.service.DashboardStreamService;
+import com.disrupton.analytics.service.AnalyticsIngestionService;
+import com.disrupton.analytics.service.AnalyticsRecordValidator;
+import com.disrupton.analytics.service.EventDeduplicator;
+import com.disrupton.analytics.service.EventSampler;
+import com.disrupton.analytics.service.HeatmapService;
+import com.disrupton.analytics.service.LeaderboardService;
+import com.disrupton.analytics.service.TrendService;
+import com.disrupton.analytics.model.AnalyticsRecord;
+import com.disrupton.analytics.model.Heatmap;
+import com.disrupton.analytics.model.LeaderboardEntry;
+import com.disrupton.analytics.model.TrackBatchResult;
+import com.disrupton.analytics.model.TrackedEvent;
+import com.disrupton.analytics.model.TrackedEventType;
+import com.disrupton.exception.IngestionRejectedException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.cloud.Timestamp;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.zip.GZIPInputStream;
 
 @RestController
 @RequestMapping("/api/dashboard")
@@ -24,6 +56,18 @@ public class DashboardController {
     
     private final DashboardAnalyticsService dashboardAnalyticsService;
     private final AnalyticsCalculationService analyticsCalculationService;
+    private final AnalyticsIngestionService analyticsIngestionService;
+    private final EventDeduplicator eventDeduplicator;
+    private final EventSampler eventSampler;
+    private final DashboardStreamService dashboardStreamService;
+    private final TrendService trendService;
+    private final LeaderboardService leaderboardService;
+    private final HeatmapService heatmapService;
+    private final AnalyticsRecordValidator recordValidator;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${analytics.ingest.max-batch-events:1000}")
+    private int maxBatchEvents;
     
     /**
      * Get comprehensive dashboard metrics
@@ -35,10 +79,11 @@ public class DashboardController {
         try {
             log.info("Getting dashboard metrics for time range: {}", timeRange);
             
-            DashboardMetricsDto metrics = dashboardAnalyticsService.getDashboardMetrics(timeRange);
+            var metrics = dashboardAnalyticsService.getDashboardMetricsSnapshot(timeRange);
             
-            log.info("Dashboard metrics retrieved successfully");
-            return ResponseEntity.ok(metrics);
+            log.info("Dashboard metrics retrieved successfully (generated at {}, stale: {})",
+                    metrics.getGeneratedAt(), metrics.isStale());
+            return ResponseEntity.ok().headers(metrics.toHeaders()).body(metrics.getValue());
             
         } catch (Exception e) {
             log.error("Error getting dashboard metrics: {}", e.getMessage(), e);
@@ -57,9 +102,9 @@ public class DashboardController {
         try {
             log.info("Getting most viewed objects for time range: {}, limit: {}", timeRange, limit);
             
-            List<CulturalObjectViewMetricDto> objects = dashboardAnalyticsService.getMostViewedObjects(timeRange, limit);
+            var objects = dashboardAnalyticsService.getMostViewedObjectsSnapshot(timeRange, limit);
             
-            return ResponseEntity.ok(objects);
+            return ResponseEntity.ok().headers(objects.toHeaders()).body(objects.getValue());
             
         } catch (Exception e) {
             log.error("Error getting most viewed objects: {}", e.getMessage(), e);
@@ -78,9 +123,9 @@ public class DashboardController {
         try {
             log.info("Getting campus zone activity for time range: {}, limit: {}", timeRange, limit);
             
-            List<CampusZoneActivityDto> activities = dashboardAnalyticsService.getCampusZoneActivity(timeRange, limit);
+            var activities = dashboardAnalyticsService.getCampusZoneActivitySnapshot(timeRange, limit);
             
-            return ResponseEntity.ok(activities);
+            return ResponseEntity.ok().headers(activities.toHeaders()).body(activities.getValue());
             
         } catch (Exception e) {
             log.error("Error getting campus zone activity: {}", e.getMessage(), e);
@@ -99,9 +144,9 @@ public class DashboardController {
         try {
             log.info("Getting theme interactions for time range: {}, limit: {}", timeRange, limit);
             
-            List<ThemeInteractionDto> interactions = dashboardAnalyticsService.getThemeInteractions(timeRange, limit);
+            var interactions = dashboardAnalyticsService.getThemeInteractionsSnapshot(timeRange, limit);
             
-            return ResponseEntity.ok(interactions);
+            return ResponseEntity.ok().headers(interactions.toHeaders()).body(interactions.getValue());
             
         } catch (Exception e) {
             log.error("Error getting theme interactions: {}", e.getMessage(), e);
@@ -119,9 +164,9 @@ public class DashboardController {
         try {
             log.info("Getting overall stats for time range: {}", timeRange);
             
-            OverallStatsDto stats = dashboardAnalyticsService.getOverallStats(timeRange);
+            var stats = dashboardAnalyticsService.getOverallStatsSnapshot(timeRange);
             
-            return ResponseEntity.ok(stats);
+            return ResponseEntity.ok().headers(stats.toHeaders()).body(stats.getValue());
             
         } catch (Exception e) {
             log.error("Error getting overall stats: {}", e.getMessage(), e);
@@ -140,9 +185,9 @@ public class DashboardController {
         try {
             log.info("Getting user activity for time range: {}, limit: {}", timeRange, limit);
             
-            List<UserActivityDto> activities = dashboardAnalyticsService.getUserActivity(timeRange, limit);
+            var activities = dashboardAnalyticsService.getUserActivitySnapshot(timeRange, limit);
             
-            return ResponseEntity.ok(activities);
+            return ResponseEntity.ok().headers(activities.toHeaders()).body(activities.getValue());
             
         } catch (Exception e) {
             log.error("Error getting user activity: {}", e.getMessage(), e);
@@ -181,10 +226,10 @@ public class DashboardController {
         try {
             log.info("Generating content recommendations for time range: {}", timeRange);
             
-            DashboardMetricsDto metrics = dashboardAnalyticsService.getDashboardMetrics(timeRange);
-            List<String> recommendations = analyticsCalculationService.generateContentRecommendations(metrics);
+            var metrics = dashboardAnalyticsService.getDashboardMetricsSnapshot(timeRange);
+            List<String> recommendations = analyticsCalculationService.generateContentRecommendations(metrics.getValue());
             
-            return ResponseEntity.ok(recommendations);
+            return ResponseEntity.ok().headers(metrics.toHeaders()).body(recommendations);
             
         } catch (Exception e) {
             log.error("Error generating content recommendations: {}", e.getMessage(), e);
@@ -202,10 +247,10 @@ public class DashboardController {
         try {
             log.info("Generating analytics insights for time range: {}", timeRange);
             
-            DashboardMetricsDto metrics = dashboardAnalyticsService.getDashboardMetrics(timeRange);
-            List<String> insights = analyticsCalculationService.generateInsights(metrics);
+            var metrics = dashboardAnalyticsService.getDashboardMetricsSnapshot(timeRange);
+            List<String> insights = analyticsCalculationService.generateInsights(metrics.getValue());
             
-            return ResponseEntity.ok(insights);
+            return ResponseEntity.ok().headers(metrics.toHeaders()).body(insights);
             
         } catch (Exception e) {
             log.error("Error generating analytics insights: {}", e.getMessage(), e);
@@ -215,16 +260,16 @@ public class DashboardController {
     
     /**
      * Get trend predictions
+     * Reads the precomputed Holt/EWMA forecasts (updated once per closed hour); timeRange is kept for compatibility
      */
     @GetMapping("/predictions")
     public ResponseEntity<Map<String, Double>> getTrendPredictions(
             @RequestParam(value = "timeRange", defaultValue = "weekly") String timeRange) {
         
         try {
-            log.info("Generating trend predictions for time range: {}", timeRange);
+            log.info("Getting trend predictions for time range: {}", timeRange);
             
-            DashboardMetricsDto metrics = dashboardAnalyticsService.getDashboardMetrics(timeRange);
-            Map<String, Double> predictions = analyticsCalculationService.generateTrendPredictions(metrics);
+            Map<String, Double> predictions = trendService.predictions();
             
             return ResponseEntity.ok(predictions);
             
@@ -234,8 +279,99 @@ public class DashboardController {
         }
     }
     
+    /**
+     * Get the engagement leaderboard
+     * Ranks are maintained incrementally as events arrive, so any page costs O(log n + limit)
+     */
+    @GetMapping("/leaderboard")
+    public ResponseEntity<List<LeaderboardEntry>> getLeaderboard(
+            @RequestParam(value = "offset", defaultValue = "0") int offset,
+            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        
+        if (offset < 0 || limit < 1 || limit > 500) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(leaderboardService.top(offset, limit));
+    }
+    
+    /**
+     * Get a user's position in the engagement leaderboard
+     */
+    @GetMapping("/leaderboard/{userId}")
+    public ResponseEntity<LeaderboardEntry> getLeaderboardRank(@PathVariable String userId) {
+        LeaderboardEntry entry = leaderboardService.rankOf(userId);
+        return entry != null ? ResponseEntity.ok(entry) : ResponseEntity.notFound().build();
+    }
+    
+    /**
+     * Get a geo heat map of event activity
+     * bbox is "west,south,east,north" in degrees; only the daily tile blocks intersecting it are read
+     */
+    @GetMapping("/heatmap")
+    public ResponseEntity<?> getHeatmap(
+            @RequestParam("bbox") String bbox,
+            @RequestParam(value = "zoom", defaultValue = "16") int zoom,
+            @RequestParam(value = "range", defaultValue = "week") String range,
+            @RequestParam(value = "metric", defaultValue = "analytics_events") String metric) {
+        
+        try {
+            log.info("Getting heat map - metric: {}, bbox: {}, zoom: {}, range: {}", metric, bbox, zoom, range);
+            
+            String[] parts = bbox.split(",");
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("bbox must be west,south,east,north");
+            }
+            Heatmap heatmap = heatmapService.heatmap(metric, Double.parseDouble(parts[0].trim()),
+                    Double.parseDouble(parts[1].trim()), Double.parseDouble(parts[2].trim()),
+                    Double.parseDouble(parts[3].trim()), zoom, range);
+            
+            return ResponseEntity.ok(heatmap);
+            
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException included: malformed bbox coordinates
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", "Invalid heat map request: " + e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (Exception e) {
+            log.error("Error getting heat map: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    /**
+     * Live dashboard metrics over Server-Sent Events
+     * First event is "snapshot" with every metric; then "delta" events carry only what changed
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamDashboard() {
+        try {
+            SseEmitter emitter = dashboardStreamService.subscribe();
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                    .header("X-Accel-Buffering", "no") // keep reverse proxies from buffering the stream
+                    .body(emitter);
+        } catch (IllegalStateException e) {
+            log.warn("Dashboard stream subscription rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+    
     // ============ EVENT TRACKING ENDPOINTS ============
     
+    /**
+     * Get ingestion pipeline metrics (queue depth, batch size, flush latency)
+     */
+    @GetMapping("/ingestion/stats")
+    public ResponseEntity<Map<String, Object>> getIngestionStats() {
+        Map<String, Object> stats = new HashMap<>(analyticsIngestionService.getStats());
+        stats.put("dedup", eventDeduplicator.getStats());
+        stats.put("stream", dashboardStreamService.getStats());
+        stats.put("sampling", eventSampler.getStats());
+        return ResponseEntity.ok(stats);
+    }
+    
     /**
      * Track cultural object interaction
      */
@@ -244,26 +380,21 @@ public class DashboardController {
         try {
             log.info("Tracking interaction: {} for object: {}", request.getInteractionType(), request.getObjectId());
             
-            CulturalObjectInteraction interaction = new CulturalObjectInteraction();
-            interaction.setInteractionId(UUID.randomUUID().toString());
-            interaction.setObjectId(request.getObjectId());
-            interaction.setObjectName(request.getObjectName());
-            interaction.setUserId(request.getUserId());
-            interaction.setInteractionType(request.getInteractionType());
-            interaction.setTimestamp(LocalDateTime.now());
-            interaction.setDuration(request.getDuration());
-            interaction.setZoneId(request.getZoneId());
-            interaction.setCulturalType(request.getCulturalType());
-            interaction.setTheme(request.getTheme());
-            interaction.setCulture(request.getCulture());
-            interaction.setPeriod(request.getPeriod());
-            interaction.setRegion(request.getRegion());
-            interaction.setAdditionalData(request.getAdditionalData());
-            
-            dashboardAnalyticsService.trackInteractionEvent(interaction);
+            boolean stored = dashboardAnalyticsService.trackEvent(
+                    new TrackedEvent(toInteraction(request), request.getEventId()));
+            if (!stored) {
+                return ResponseEntity.ok().body("{\"status\":\"duplicate\",\"message\":\"Interaction already tracked\"}");
+            }
             
             return ResponseEntity.ok().body("{\"status\":\"success\",\"message\":\"Interaction tracked successfully\"}");
             
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid interaction request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("status", "error", "message", e.getMessage()));
+        } catch (IngestionRejectedException e) {
+            log.warn("Analytics buffer full, rejecting interaction: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body("{\"status\":\"error\",\"message\":\"Analytics buffer is full, retry later\"}");
         } catch (Exception e) {
             log.error("Error tracking interaction: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError()
@@ -279,23 +410,21 @@ public class DashboardController {
         try {
             log.info("Tracking session: {} for user: {}", request.getSessionId(), request.getUserId());
             
-            UserSession session = new UserSession();
-            session.setSessionId(request.getSessionId() != null ? request.getSessionId() : UUID.randomUUID().toString());
-            session.setUserId(request.getUserId());
-            session.setStartTime(request.getStartTime() != null ? request.getStartTime() : LocalDateTime.now());
-            session.setEndTime(request.getEndTime());
-            session.setDuration(request.getDuration());
-            session.setZoneId(request.getZoneId());
-            session.setZoneName(request.getZoneName());
-            session.setLatitude(request.getLatitude());
-            session.setLongitude(request.getLongitude());
-            session.setDeviceType(request.getDeviceType());
-            session.setSessionType(request.getSessionType());
-            
-            dashboardAnalyticsService.trackUserSession(session);
+            boolean stored = dashboardAnalyticsService.trackEvent(
+                    new TrackedEvent(toSession(request), request.getEventId()));
+            if (!stored) {
+                return ResponseEntity.ok().body("{\"status\":\"duplicate\",\"message\":\"Session already tracked\"}");
+            }
             
             return ResponseEntity.ok().body("{\"status\":\"success\",\"message\":\"Session tracked successfully\"}");
             
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid session request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("status", "error", "message", e.getMessage()));
+        } catch (IngestionRejectedException e) {
+            log.warn("Analytics buffer full, rejecting session: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body("{\"status\":\"error\",\"message\":\"Analytics buffer is full, retry later\"}");
         } catch (Exception e) {
             log.error("Error tracking session: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError()
@@ -311,22 +440,21 @@ public class DashboardController {
         try {
             log.info("Tracking social interaction: {} by user: {}", request.getInteractionType(), request.getUserId());
             
-            SocialInteraction interaction = new SocialInteraction();
-            interaction.setInteractionId(UUID.randomUUID().toString());
-            interaction.setUserId(request.getUserId());
-            interaction.setTargetId(request.getTargetId());
-            interaction.setTargetType(request.getTargetType());
-            interaction.setInteractionType(request.getInteractionType());
-            interaction.setContent(request.getContent());
-            interaction.setTimestamp(LocalDateTime.now());
-            interaction.setZoneId(request.getZoneId());
-            interaction.setCulturalTheme(request.getCulturalTheme());
-            interaction.setMetadata(request.getMetadata());
-            
-            dashboardAnalyticsService.trackSocialInteraction(interaction);
+            boolean stored = dashboardAnalyticsService.trackEvent(
+                    new TrackedEvent(toSocialInteraction(request), request.getEventId()));
+            if (!stored) {
+                return ResponseEntity.ok().body("{\"status\":\"duplicate\",\"message\":\"Social interaction already tracked\"}");
+            }
             
             return ResponseEntity.ok().body("{\"status\":\"success\",\"message\":\"Social interaction tracked successfully\"}");
             
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid social interaction request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("status", "error", "message", e.getMessage()));
+        } catch (IngestionRejectedException e) {
+            log.warn("Analytics buffer full, rejecting social interaction: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body("{\"status\":\"error\",\"message\":\"Analytics buffer is full, retry later\"}");
         } catch (Exception e) {
             log.error("Error tracking social interaction: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError()
@@ -342,24 +470,21 @@ public class DashboardController {
         try {
             log.info("Tracking analytics event: {} for user: {}", request.getEventType(), request.getUserId());
             
-            AnalyticsEvent event = new AnalyticsEvent();
-            event.setEventId(UUID.randomUUID().toString());
-            event.setUserId(request.getUserId());
-            event.setSessionId(request.getSessionId());
-            event.setEventType(request.getEventType());
-            event.setObjectId(request.getObjectId());
-            event.setZoneId(request.getZoneId());
-            event.setTimestamp(LocalDateTime.now());
-            event.setDuration(request.getDuration());
-            event.setEventData(request.getEventData());
-            event.setDeviceInfo(request.getDeviceInfo());
-            event.setLatitude(request.getLatitude());
-            event.setLongitude(request.getLongitude());
-            
-            dashboardAnalyticsService.trackAnalyticsEvent(event);
+            boolean stored = dashboardAnalyticsService.trackEvent(
+                    new TrackedEvent(toAnalyticsEvent(request), request.getEventId()));
+            if (!stored) {
+                return ResponseEntity.ok().body("{\"status\":\"duplicate\",\"message\":\"Event already tracked\"}");
+            }
             
             return ResponseEntity.ok().body("{\"status\":\"success\",\"message\":\"Event tracked successfully\"}");
             
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid event request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("status", "error", "message", e.getMessage()));
+        } catch (IngestionRejectedException e) {
+            log.warn("Analytics buffer full, rejecting event: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body("{\"status\":\"error\",\"message\":\"Analytics buffer is full, retry later\"}");
         } catch (Exception e) {
             log.error("Error tracking event: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError()
@@ -367,9 +492,242 @@ public class DashboardController {
         }
     }
     
+    /**
+     * Track a batch of heterogeneous events in one request
+     * Body is a JSON array or NDJSON (one object per line), optionally gzip-encoded;
+     * each element carries a "type" field: interaction, session, social or event
+     */
+    @PostMapping(value = "/track/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<Map<String, Object>> trackBatch(
+            HttpServletRequest httpRequest,
+            @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding) {
+        
+        List<TrackedEvent> events = new ArrayList<>();
+        List<Map<String, Object>> errors = new ArrayList<>();
+        int received = 0;
+        
+        try (InputStream body = "gzip".equalsIgnoreCase(contentEncoding)
+                ? new GZIPInputStream(httpRequest.getInputStream())
+                : httpRequest.getInputStream();
+             MappingIterator<JsonNode> nodes = objectMapper.readerFor(JsonNode.class).readValues(body)) {
+            
+            while (nodes.hasNextValue()) {
+                JsonNode node = nodes.nextValue();
+                if (++received > maxBatchEvents) {
+                    return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(Map.of(
+                            "success", false,
+                            "message", "Batch exceeds the limit of " + maxBatchEvents + " events"));
+                }
+                int index = received - 1;
+                String type = node.path("type").asText(null);
+                try {
+                    events.add(toTrackedEvent(node, type));
+                } catch (IllegalArgumentException | JsonProcessingException e) {
+                    errors.add(batchError(index, type, e.getMessage()));
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Malformed batch body after {} events: {}", received, e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", "Malformed batch body: " + e.getMessage()));
+        }
+        
+        try {
+            TrackBatchResult result = events.isEmpty()
+                    ? new TrackBatchResult(0, 0, 0, 0)
+                    : dashboardAnalyticsService.trackBatch(events);
+            int accepted = result.getAccepted();
+            int overflow = result.getOverflow();
+            if (overflow > 0) {
+                log.warn("Analytics buffer full, {} of {} batch events rejected", overflow, events.size());
+            }
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", accepted > 0 || overflow == 0);
+            response.put("received", received);
+            response.put("accepted", accepted);
+            response.put("duplicates", result.getDuplicates());
+            response.put("rejected", errors.size() + overflow);
+            response.put("overflow", overflow);
+            response.put("errors", errors);
+            
+            if (accepted == 0 && overflow > 0) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(response);
+            }
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            log.error("Error tracking batch: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(Map.of(
+                    "success", false,
+                    "message", "Failed to track batch"));
+        }
+    }
+    
+    // ============ REQUEST MAPPING ============
+    
+    // Requests map straight to the common analytics record; the ingestion pipeline validates
+    // and normalizes it (IDs, required fields, units) before anything is stored
+    
+    private static AnalyticsRecord toInteraction(CulturalObjectInteractionRequest request) {
+        AnalyticsRecord record = AnalyticsRecord.builder()
+                .type(TrackedEventType.INTERACTION)
+                .id(request.getEventId())
+                .name(request.getInteractionType())
+                .userId(request.getUserId())
+                .objectId(request.getObjectId())
+                .zoneId(request.getZoneId())
+                .theme(request.getTheme())
+                .durationSeconds(request.getDuration())
+                .build();
+        Map<String, Object> attributes = record.getAttributes();
+        attributes.put("objectName", request.getObjectName());
+        attributes.put("culturalType", request.getCulturalType());
+        attributes.put("culture", request.getCulture());
+        attributes.put("period", request.getPeriod());
+        attributes.put("region", request.getRegion());
+        attributes.put("additionalData", request.getAdditionalData());
+        return record;
+    }
+    
+    private static AnalyticsRecord toSession(UserSessionRequest request) {
+        AnalyticsRecord record = AnalyticsRecord.builder()
+                .type(TrackedEventType.SESSION)
+                .id(request.getSessionId() != null ? request.getSessionId() : request.getEventId())
+                .name(request.getSessionType())
+                .userId(request.getUserId())
+                .zoneId(request.getZoneId())
+                .latitude(request.getLatitude())
+                .longitude(request.getLongitude())
+                // Sessions report their duration in minutes
+                .durationSeconds(request.getDuration() != null ? request.getDuration() * 60 : null)
+                .occurredAt(toInstant(request.getStartTime()))
+                .build();
+        Map<String, Object> attributes = record.getAttributes();
+        attributes.put("startTime", toTimestamp(request.getStartTime() != null ? request.getStartTime() : LocalDateTime.now()));
+        attributes.put("endTime", toTimestamp(request.getEndTime()));
+        attributes.put("zoneName", request.getZoneName());
+        attributes.put("deviceType", request.getDeviceType());
+        return record;
+    }
+    
+    private static AnalyticsRecord toSocialInteraction(SocialInteractionRequest request) {
+        AnalyticsRecord record = AnalyticsRecord.builder()
+                .type(TrackedEventType.SOCIAL)
+                .id(request.getEventId())
+                .name(request.getInteractionType())
+                .userId(request.getUserId())
+                .targetId(request.getTargetId())
+                .targetType(request.getTargetType())
+                .zoneId(request.getZoneId())
+                .theme(request.getCulturalTheme())
+                .build();
+        record.getAttributes().put("content", request.getContent());
+        record.getAttributes().put("metadata", request.getMetadata());
+        return record;
+    }
+    
+    private AnalyticsRecord toAnalyticsEvent(AnalyticsEventRequest request) {
+        AnalyticsRecord record = AnalyticsRecord.builder()
+                .type(TrackedEventType.EVENT)
+                .id(request.getEventId())
+                .name(request.getEventType())
+                .userId(request.getUserId())
+                .sessionId(request.getSessionId())
+                .objectId(request.getObjectId())
+                .zoneId(request.getZoneId())
+                .latitude(request.getLatitude())
+                .longitude(request.getLongitude())
+                .durationSeconds(request.getDuration())
+                .build();
+        record.getAttributes().put("eventData", eventDataOf(request.getEventData()));
+        record.getAttributes().put("deviceInfo", request.getDeviceInfo());
+        return record;
+    }
+    
+    /**
+     * Map and validate one batch element; batch events skip validation in the pipeline
+     */
+    private TrackedEvent toTrackedEvent(JsonNode node, String typeName) throws JsonProcessingException {
+        if (!node.isObject()) {
+            throw new IllegalArgumentException("Element must be a JSON object");
+        }
+        TrackedEventType type = TrackedEventType.fromName(typeName);
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown event type: " + typeName);
+        }
+        ObjectNode fields = ((ObjectNode) node).deepCopy();
+        fields.remove("type");
+        
+        TrackedEvent event;
+        switch (type) {
+            case INTERACTION: {
+                CulturalObjectInteractionRequest request = objectMapper.treeToValue(fields, CulturalObjectInteractionRequest.class);
+                event = new TrackedEvent(toInteraction(request), request.getEventId());
+                break;
+            }
+            case SESSION: {
+                UserSessionRequest request = objectMapper.treeToValue(fields, UserSessionRequest.class);
+                event = new TrackedEvent(toSession(request), request.getEventId());
+                break;
+            }
+            case SOCIAL: {
+                SocialInteractionRequest request = objectMapper.treeToValue(fields, SocialInteractionRequest.class);
+                event = new TrackedEvent(toSocialInteraction(request), request.getEventId());
+                break;
+            }
+            case EVENT:
+            default: {
+                AnalyticsEventRequest request = objectMapper.treeToValue(fields, AnalyticsEventRequest.class);
+                event = new TrackedEvent(toAnalyticsEvent(request), request.getEventId());
+                break;
+            }
+        }
+        recordValidator.validate(event.getRecord());
+        return event;
+    }
+    
+    /**
+     * Stored events keep eventData as a map: a JSON object is stored as is, any other text under "value"
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> eventDataOf(String eventData) {
+        if (eventData == null || eventData.isBlank()) {
+            return null;
+        }
+        try {
+            JsonNode node = objectMapper.readTree(eventData);
+            if (node.isObject()) {
+                return objectMapper.convertValue(node, Map.class);
+            }
+        } catch (JsonProcessingException e) {
+            // Plain text, not JSON
+        }
+        return Map.of("value", eventData);
+    }
+    
+    private static Instant toInstant(LocalDateTime time) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant() : null;
+    }
+    
+    private static Timestamp toTimestamp(LocalDateTime time) {
+        Instant instant = toInstant(time);
+        return instant != null ? Timestamp.ofTimeSecondsAndNanos(instant.getEpochSecond(), instant.getNano()) : null;
+    }
+    
+    private static Map<String, Object> batchError(int index, String type, String error) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("index", index);
+        entry.put("type", type);
+        entry.put("error", error);
+        return entry;
+    }
+    
     // ============ REQUEST DTOs ============
     
     public static class CulturalObjectInteractionRequest {
+        private String eventId;
         private String objectId;
         private String objectName;
         private String userId;
@@ -384,6 +742,8 @@ public class DashboardController {
         private String additionalData;
         
         // Getters and setters
+        public String getEventId() { return eventId; }
+        public void setEventId(String eventId) { this.eventId = eventId; }
         public String getObjectId() { return objectId; }
         public void setObjectId(String objectId) { this.objectId = objectId; }
         public String getObjectName() { return objectName; }
@@ -411,6 +771,7 @@ public class DashboardController {
     }
     
     public static class UserSessionRequest {
+        private String eventId;
         private String sessionId;
         private String userId;
         private LocalDateTime startTime;
@@ -424,6 +785,8 @@ public class DashboardController {
         private String sessionType;
         
         // Getters and setters
+        public String getEventId() { return eventId; }
+        public void setEventId(String eventId) { this.eventId = eventId; }
         public String getSessionId() { return sessionId; }
         public void setSessionId(String sessionId) { this.sessionId = sessionId; }
         public String getUserId() { return userId; }
@@ -449,6 +812,7 @@ public class DashboardController {
     }
     
     public static class SocialInteractionRequest {
+        private String eventId;
         private String userId;
         private String targetId;
         private String targetType;
@@ -459,6 +823,8 @@ public class DashboardController {
         private String metadata;
         
         // Getters and setters
+        public String getEventId() { return eventId; }
+        public void setEventId(String eventId) { this.eventId = eventId; }
         public String getUserId() { return userId; }
         public void setUserId(String userId) { this.userId = userId; }
         public String getTargetId() { return targetId; }
@@ -478,6 +844,7 @@ public class DashboardController {
     }
     
     public static class AnalyticsEventRequest {
+        private String eventId;
         private String userId;
         private String sessionId;
         private String eventType;
@@ -490,6 +857,8 @@ public class DashboardController {
         private Double longitude;
         
         // Getters and setters
+        public String getEventId() { return eventId; }
+        public void setEventId(String eventId) { this.eventId = eventId; }
         public String getUserId() { return userId; }
         public void setUserId(String userId) { this.userId = userId; }
         public String getSessionId() { return sessionId; }
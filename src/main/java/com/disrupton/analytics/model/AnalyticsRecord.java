@@ -0,0 +1,42 @@
+package com.disrupton.analytics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Esquema único de los eventos de analytics
+ *
+ * Todas las entradas (tracking del dashboard, vistas y sesiones AR, y los servicios de eventos,
+ * interacciones y sesiones) se convierten a este registro antes de la ingesta. Los campos comunes
+ * son planos y tipados, con unidades fijas; lo propio de cada entrada (contenido, rating, estado
+ * de la sesión...) va en attributes y se guarda tal cual junto a ellos, en un solo documento plano
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalyticsRecord {
+    private TrackedEventType type;
+    private String id; // id del documento; la clave de idempotencia si el cliente la envió
+    private String name; // tipo de evento, interacción o sesión, en mayúsculas
+    private String userId;
+    private String sessionId;
+    private String objectId;
+    private String zoneId;
+    private String targetId;
+    private String targetType;
+    private String theme;
+    private Double latitude;
+    private Double longitude;
+    private Double durationSeconds;
+    private Instant occurredAt;
+    private long samplingWeight; // eventos que representa; lo asigna la ingesta
+    @Builder.Default
+    private Map<String, Object> attributes = new HashMap<>();
+}
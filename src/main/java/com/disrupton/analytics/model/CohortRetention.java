@@ -0,0 +1,25 @@
+package com.disrupton.analytics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Retención de la cohorte de usuarios vistos por primera vez en un día
+ * Las claves son "D1", "D7"...; un offset cuyo día todavía no llegó no aparece
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CohortRetention {
+    private LocalDate day;
+    private long size; // usuarios nuevos del día
+    private Map<String, Long> retained; // activos exactamente el día N
+    private Map<String, Double> retentionRate; // porcentaje activo el día N
+    private Map<String, Double> rollingRetentionRate; // porcentaje activo algún día entre 1 y N
+}
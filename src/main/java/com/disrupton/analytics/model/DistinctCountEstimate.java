@@ -0,0 +1,29 @@
+package com.disrupton.analytics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Conteo aproximado de elementos distintos (HyperLogLog) en un rango de días
+ * El valor real cae en [lowerBound, upperBound] con ~95% de probabilidad (±2 errores estándar)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DistinctCountEstimate {
+    private String metric;
+    private String dimension;
+    private String dimensionValue;
+    private LocalDate startDay;
+    private LocalDate endDay; // inclusivo
+    private long estimate;
+    private double relativeStandardError;
+    private long lowerBound;
+    private long upperBound;
+    private int sketchesRead; // costo de la consulta en documentos
+}
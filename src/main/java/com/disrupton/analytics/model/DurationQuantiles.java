@@ -0,0 +1,31 @@
+package com.disrupton.analytics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Distribución de duraciones de sesión (en segundos) en un rango de días
+ * La media y el conteo son exactos; los percentiles salen de un t-digest
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DurationQuantiles {
+    private String dimension;
+    private String dimensionValue;
+    private LocalDate startDay;
+    private LocalDate endDay; // inclusivo
+    private long count;
+    private Double mean;
+    private Double min;
+    private Double max;
+    private Double p50;
+    private Double p90;
+    private Double p99;
+    private int digestsRead; // costo de la consulta en documentos
+}
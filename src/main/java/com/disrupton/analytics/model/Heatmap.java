@@ -0,0 +1,33 @@
+package com.disrupton.analytics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Mapa de calor de una métrica: teselas con eventos dentro del bbox en los días pedidos
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class Heatmap {
+    private String metric;
+    private int zoom; // zoom de las teselas devueltas
+    private int requestedZoom;
+    private int sourceZoom; // zoom guardado del que se agregaron
+    private double west;
+    private double south;
+    private double east;
+    private double north;
+    private LocalDate startDay;
+    private LocalDate endDay;
+    private int documentsRead;
+    private long totalCount;
+    private long maxCount;
+    private List<HeatmapTile> tiles;
+}
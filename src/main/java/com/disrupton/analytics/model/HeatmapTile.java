@@ -0,0 +1,24 @@
+package com.disrupton.analytics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Conteo de eventos de una tesela z/x/y y sus bordes en grados
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HeatmapTile {
+    private int zoom;
+    private int x;
+    private int y;
+    private long count;
+    private double west;
+    private double south;
+    private double east;
+    private double north;
+}
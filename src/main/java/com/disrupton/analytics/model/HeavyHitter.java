@@ -0,0 +1,18 @@
+package com.disrupton.analytics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Elemento frecuente de un stream con su conteo aproximado
+ * La frecuencia real está en [guaranteedCount, count]
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HeavyHitter {
+    private String item;
+    private long count;
+    private long guaranteedCount;
+}
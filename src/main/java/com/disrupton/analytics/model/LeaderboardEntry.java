@@ -0,0 +1,27 @@
+package com.disrupton.analytics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Posición de un usuario en el ranking de engagement
+ * El puntaje es la suma ponderada de sus contadores con los pesos de usuario de analytics.scoring
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardEntry {
+    private String userId;
+    private int rank; // 1 = mayor puntaje
+    private double score;
+    private long totalSessions;
+    private double totalExplorationTime; // minutos
+    private long totalInteractions;
+    private long commentsCount;
+    private long reactionsCount;
+    private long sharesCount;
+    private long photosCount;
+}
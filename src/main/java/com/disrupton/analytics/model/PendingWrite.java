@@ -0,0 +1,18 @@
+package com.disrupton.analytics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * Documento de analytics en espera de ser escrito en Firestore
+ */
+@Data
+@AllArgsConstructor
+public class PendingWrite {
+    private String collection;
+    private String documentId;
+    private Map<String, Object> data;
+    private long enqueuedAtNanos;
+}
@@ -0,0 +1,27 @@
+package com.disrupton.analytics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matriz de retención por cohortes diarias, calculada con bitmaps de usuarios activos
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RetentionMatrix {
+    private LocalDate startDay;
+    private LocalDate endDay; // inclusivo
+    private List<Integer> offsets;
+    private List<CohortRetention> cohorts;
+    private Map<String, Double> averageRetentionRate; // ponderada por tamaño de cohorte
+    private int bitmapsRead; // costo de la consulta en documentos
+    private long computeMillis;
+}
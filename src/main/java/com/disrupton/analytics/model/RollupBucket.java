@@ -0,0 +1,32 @@
+package com.disrupton.analytics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Bucket pre-agregado de una métrica para un valor de dimensión y un intervalo
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RollupBucket {
+    private String metric;
+    private String dimension; // "all" para el total de la métrica
+    private String dimensionValue;
+    private RollupGranularity granularity;
+    private LocalDateTime bucketStart;
+    private long count; // eventos en el bucket
+    private long valueCount; // eventos que traían valor numérico
+    private double sum;
+    private Double min;
+    private Double max;
+
+    public Double getAverage() {
+        return valueCount > 0 ? sum / valueCount : null;
+    }
+}
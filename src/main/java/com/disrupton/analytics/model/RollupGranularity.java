@@ -0,0 +1,40 @@
+package com.disrupton.analytics.model;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Tamaño de los buckets de rollup
+ */
+public enum RollupGranularity {
+
+    HOUR(ChronoUnit.HOURS, DateTimeFormatter.ofPattern("yyyyMMddHH")),
+    DAY(ChronoUnit.DAYS, DateTimeFormatter.ofPattern("yyyyMMdd"));
+
+    private final ChronoUnit unit;
+    private final DateTimeFormatter keyFormat;
+
+    RollupGranularity(ChronoUnit unit, DateTimeFormatter keyFormat) {
+        this.unit = unit;
+        this.keyFormat = keyFormat;
+    }
+
+    /**
+     * Inicio del bucket que contiene el instante dado
+     */
+    public ZonedDateTime truncate(ZonedDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    public ZonedDateTime next(ZonedDateTime bucketStart) {
+        return bucketStart.plus(1, unit);
+    }
+
+    /**
+     * Clave legible del bucket (p. ej. 2025101914 para las 14h)
+     */
+    public String key(ZonedDateTime bucketStart) {
+        return keyFormat.format(bucketStart);
+    }
+}
@@ -0,0 +1,34 @@
+package com.disrupton.analytics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Resultado de combinar los buckets que cubren un rango de tiempo
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RollupSummary {
+    private String metric;
+    private String dimension;
+    private String dimensionValue;
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private long count;
+    private long valueCount;
+    private double sum;
+    private Double min;
+    private Double max;
+    private int bucketsRead; // costo de la consulta en documentos
+    private int indexedDays; // días cerrados resueltos con sumas de prefijo en memoria
+
+    public Double getAverage() {
+        return valueCount > 0 ? sum / valueCount : null;
+    }
+}
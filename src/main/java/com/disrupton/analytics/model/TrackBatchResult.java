@@ -0,0 +1,20 @@
+package com.disrupton.analytics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Resultado de la ingesta de un lote de eventos de tracking
+ */
+@Data
+@AllArgsConstructor
+public class TrackBatchResult {
+    /** Eventos encolados para escribir */
+    private int accepted;
+    /** Reintentos descartados por el filtro de duplicados */
+    private int duplicates;
+    /** Eventos rechazados porque la cola estaba llena */
+    private int overflow;
+    /** Aceptados pero no guardados por la política de muestreo (incluidos en accepted) */
+    private int sampledOut;
+}
@@ -0,0 +1,24 @@
+package com.disrupton.analytics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Evento de tracking listo para ingesta
+ * idempotencyKey es el ID que envía el cliente para descartar reintentos (el id del documento
+ * lo fija el registro); null si el cliente no lo envió
+ */
+@Data
+@AllArgsConstructor
+public class TrackedEvent {
+    private AnalyticsRecord record;
+    private String idempotencyKey;
+
+    public TrackedEvent(AnalyticsRecord record) {
+        this(record, null);
+    }
+
+    public TrackedEventType getType() {
+        return record.getType();
+    }
+}
@@ -0,0 +1,72 @@
+package com.disrupton.analytics.model;
+
+/**
+ * Tipos de evento que acepta la ingesta de analytics
+ * typeName es el valor del campo "type" en las peticiones por lote. Cada tipo define dónde y cómo
+ * se guardan sus eventos: colección, campo del id y campo del subtipo (name de AnalyticsRecord),
+ * además de la métrica de rollup que alimentan
+ */
+public enum TrackedEventType {
+    INTERACTION("interaction", "Interaction event", "cultural_object_interactions", "interaction_events",
+            "interactionId", "interactionType"),
+    SESSION("session", "User session", "user_sessions", "user_sessions", "sessionId", "sessionType"),
+    SOCIAL("social", "Social interaction", "social_interactions", "social_interactions",
+            "interactionId", "interactionType"),
+    EVENT("event", "Analytics event", "analytics_events", "analytics_events", "eventId", "eventType");
+
+    private final String typeName;
+    private final String label;
+    private final String collection;
+    private final String metric;
+    private final String idField;
+    private final String nameField;
+
+    TrackedEventType(String typeName, String label, String collection, String metric, String idField,
+                     String nameField) {
+        this.typeName = typeName;
+        this.label = label;
+        this.collection = collection;
+        this.metric = metric;
+        this.idField = idField;
+        this.nameField = nameField;
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    public String getMetric() {
+        return metric;
+    }
+
+    public String getIdField() {
+        return idField;
+    }
+
+    public String getNameField() {
+        return nameField;
+    }
+
+    /**
+     * Busca el tipo por su nombre en la petición; null si no existe
+     */
+    public static TrackedEventType fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (TrackedEventType type : values()) {
+            if (type.typeName.equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
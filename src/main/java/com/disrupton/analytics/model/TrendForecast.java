@@ -0,0 +1,30 @@
+package com.disrupton.analytics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Pronóstico precalculado de una serie horaria (Holt lineal + EWMA)
+ * Los valores son eventos por hora; los totales no bajan de 0
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrendForecast {
+    private String metric;
+    private String dimension; // "all" para el total de la métrica
+    private String dimensionValue;
+    private LocalDateTime lastBucket; // última hora incorporada
+    private long samples; // horas incorporadas
+    private double level; // eventos por hora suavizados
+    private double trendPerHour; // cambio del nivel por hora
+    private double ewma;
+    private double nextHour;
+    private double next24Hours;
+    private double next7Days;
+}
@@ -0,0 +1,352 @@
+package com.disrupton.analytics.service;
+
+import com.disrupton.analytics.model.AnalyticsRecord;
+import com.disrupton.analytics.model.PendingWrite;
+import com.disrupton.analytics.model.TrackBatchResult;
+import com.disrupton.analytics.model.TrackedEvent;
+import com.disrupton.analytics.model.TrackedEventType;
+import com.disrupton.exception.IngestionRejectedException;
+import com.disrupton.exception.PartialWriteException;
+import com.disrupton.service.DashboardStreamService;
+import com.disrupton.service.FirebaseAnalyticsService;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.Firestore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Única vía de ingesta de eventos de analytics
+ *
+ * Todas las entradas construyen un {@link AnalyticsRecord} y lo pasan por aquí: se valida con
+ * las reglas de su tipo, se descartan los reintentos, se registran los usuarios distintos, se
+ * aplica el muestreo, se escribe una sola vez como documento plano en la colección del tipo y
+ * alimenta rollups, sketches, tendencias, ranking, mapa de calor y el stream en vivo.
+ * Visitantes distintos y retención se registran antes del muestreo: un usuario no se puede
+ * extrapolar con el peso, así que los eventos descartados también cuentan ahí. El peso de
+ * muestreo solo se aplica a los agregados aditivos (conteos, sumas, ranking, mapa de calor).
+ * Ningún otro servicio escribe eventos ni alimenta esas estructuras, así cada evento aceptado
+ * cuenta una sola vez
+ *
+ * ingest() encola la escritura en AnalyticsIngestionService (tracking) y agrega al encolar, no al
+ * confirmarse la escritura: lo que la cola pierde después (DROP_OLDEST, documento inválido, lote
+ * fallido sin journal) queda contado en los agregados. Esa deriva se expone como
+ * aggregatedNotWritten en las stats de ingesta. ingestAndWait() escribe en el momento y agrega
+ * solo si la escritura se confirmó, para las APIs que devuelven la entidad creada
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AnalyticsEventPipeline {
+
+    /** Subtipo de los eventos de vista de objeto cultural (también su clave de muestreo) */
+    public static final String CULTURAL_OBJECT_VIEW = "CULTURAL_OBJECT_VIEW";
+
+    /** Campo con los eventos reales que representa cada documento (1 salvo eventos muestreados) */
+    public static final String SAMPLING_WEIGHT_FIELD = "samplingWeight";
+
+    private static final int SCHEMA_VERSION = 2;
+
+    private final Firestore firestore;
+    private final AnalyticsRecordValidator validator;
+    private final AnalyticsIngestionService ingestionService;
+    private final EventDeduplicator deduplicator;
+    private final EventSampler eventSampler;
+    private final RollupService rollupService;
+    private final DistinctCountService distinctCountService;
+    private final HeavyHittersService heavyHittersService;
+    private final SessionDurationService sessionDurationService;
+    private final RetentionService retentionService;
+    private final TrendService trendService;
+    private final LeaderboardService leaderboardService;
+    private final HeatmapService heatmapService;
+    private final DashboardStreamService dashboardStreamService;
+
+    /**
+     * Valida y encola un evento; devuelve true si se aceptó (o lo descartó el muestreo)
+     * y false si es un reintento ya recibido
+     *
+     * @throws IllegalArgumentException   si el registro no cumple el esquema de su tipo
+     * @throws IngestionRejectedException si la cola de escritura está llena
+     * @throws IllegalStateException      si no se pudo escribir ni encolar; el cliente puede reintentarlo
+     */
+    public boolean ingest(TrackedEvent event) {
+        validator.validate(event.getRecord());
+        String key = dedupKey(event);
+        if (!deduplicator.firstSeen(key)) {
+            log.info("Duplicate {} ignored: {}", event.getType().getLabel(), event.getIdempotencyKey());
+            return false;
+        }
+        AnalyticsRecord record = event.getRecord();
+        observeUsers(record);
+        if (sample(record) == 0) {
+            log.debug("{} sampled out: {}", event.getType().getLabel(), record.getName());
+            return true;
+        }
+        try {
+            ingestionService.submit(record.getType().getCollection(), record.getId(), toDocument(record));
+            aggregate(record);
+            log.info("{} saved: {}", event.getType().getLabel(), record.getId());
+        } catch (IngestionRejectedException e) {
+            deduplicator.forget(key);
+            throw e;
+        } catch (Exception e) {
+            deduplicator.forget(key);
+            log.error("Error saving {}: {}", event.getType().getLabel(), e.getMessage(), e);
+            throw e instanceof IllegalStateException
+                    ? (IllegalStateException) e
+                    : new IllegalStateException("Error saving " + event.getType().getLabel(), e);
+        }
+        return true;
+    }
+
+    /**
+     * Encola un lote de eventos ya validados con {@link AnalyticsRecordValidator}
+     * Los reintentos (misma clave de idempotencia) se descartan antes de encolar;
+     * si la cola se llena, los restantes (al final de la lista) se rechazan
+     *
+     * @throws IllegalStateException si no se pudo escribir el lote; las claves de lo no escrito se liberan
+     *                               para que el cliente pueda reintentarlo
+     */
+    public TrackBatchResult ingestAll(List<TrackedEvent> events) {
+        List<TrackedEvent> fresh = new ArrayList<>(events.size());
+        List<PendingWrite> writes = new ArrayList<>(events.size());
+        int duplicates = 0;
+        int sampledOut = 0;
+        int accepted;
+        try {
+            for (TrackedEvent event : events) {
+                if (!deduplicator.firstSeen(dedupKey(event))) {
+                    duplicates++;
+                    continue;
+                }
+                AnalyticsRecord record = event.getRecord();
+                observeUsers(record);
+                if (sample(record) == 0) {
+                    // Descartado por muestreo: cuenta como aceptado, su peso lo lleva otra muestra
+                    sampledOut++;
+                    continue;
+                }
+                // Se agrega antes de armar el documento: si toDocument falla, su clave también se libera
+                fresh.add(event);
+                writes.add(new PendingWrite(record.getType().getCollection(), record.getId(), toDocument(record),
+                        System.nanoTime()));
+            }
+            accepted = ingestionService.submitAll(writes);
+        } catch (RuntimeException e) {
+            // Lo escrito antes del error se agrega; el resto debe poder reintentarse
+            int written = e instanceof PartialWriteException ? ((PartialWriteException) e).getWritten() : 0;
+            settle(fresh, written);
+            log.error("Error saving analytics batch ({} of {} events written): {}", written, fresh.size(),
+                    e.getMessage(), e);
+            if (e instanceof IllegalStateException || e instanceof IngestionRejectedException) {
+                throw e;
+            }
+            throw new IllegalStateException("Error saving analytics batch", e);
+        }
+        settle(fresh, accepted);
+
+        TrackBatchResult result = new TrackBatchResult(accepted + sampledOut, duplicates, fresh.size() - accepted,
+                sampledOut);
+        log.info("Analytics batch saved: {} of {} events accepted ({} sampled out), {} duplicates",
+                result.getAccepted(), events.size(), sampledOut, duplicates);
+        return result;
+    }
+
+    /**
+     * Valida y escribe el registro antes de volver (sin cola ni filtro de reintentos)
+     * Si el muestreo lo descarta no se escribe y queda con samplingWeight 0
+     *
+     * @throws IllegalArgumentException si el registro no cumple el esquema de su tipo
+     */
+    public void ingestAndWait(AnalyticsRecord record) throws ExecutionException, InterruptedException {
+        validator.validate(record);
+        observeUsers(record);
+        if (sample(record) == 0) {
+            log.debug("{} sampled out: {}", record.getType().getLabel(), record.getName());
+            return;
+        }
+        firestore.collection(record.getType().getCollection()).document(record.getId()).set(toDocument(record)).get();
+        aggregate(record);
+    }
+
+    /**
+     * Agregados del cierre de una sesión ya contada al iniciarse: percentiles de duración y minutos
+     * de exploración del ranking. El documento de la sesión lo actualiza quien la cierra
+     */
+    public void recordSessionEnd(AnalyticsRecord session) {
+        if (session.getDurationSeconds() == null || session.getUserId() == null) {
+            return;
+        }
+        Instant endedAt = session.getOccurredAt() != null ? session.getOccurredAt() : Instant.now();
+        sessionDurationService.record(sessionDimensions(session), session.getDurationSeconds(), endedAt);
+        leaderboardService.recordExplorationTime(session.getUserId(), session.getDurationSeconds() / 60.0);
+    }
+
+    // Métodos privados de utilidad
+
+    /**
+     * Agrega los primeros written eventos del lote (ya escritos o encolados) y libera la clave
+     * de idempotencia del resto, que no se escribió y el cliente puede reintentar
+     */
+    private void settle(List<TrackedEvent> fresh, int written) {
+        for (int i = 0; i < written; i++) {
+            aggregate(fresh.get(i).getRecord());
+        }
+        for (int i = written; i < fresh.size(); i++) {
+            deduplicator.forget(dedupKey(fresh.get(i)));
+        }
+    }
+
+    /**
+     * Visitantes distintos (HLL) y usuarios activos de retención, antes del muestreo
+     * Ambos son conjuntos: si el evento luego no se escribe y el cliente lo reintenta, no cuenta dos veces
+     */
+    private void observeUsers(AnalyticsRecord record) {
+        if (record.getUserId() == null) {
+            return;
+        }
+        try {
+            Instant at = record.getOccurredAt();
+            Map<String, String> visited = new HashMap<>();
+            putIfPresent(visited, "zoneId", record.getZoneId());
+            putIfPresent(visited, "objectId", record.getObjectId());
+            distinctCountService.offer(DistinctCountService.VISITORS_METRIC, visited, record.getUserId(), at);
+            if (record.getType() == TrackedEventType.SESSION) {
+                retentionService.recordActive(record.getUserId(), at);
+            }
+        } catch (Exception e) {
+            log.error("Error recording users of {}: {}", record.getType().getLabel(), e.getMessage());
+        }
+    }
+
+    /**
+     * Asigna y devuelve el peso de muestreo (0 = descartado)
+     * Solo se muestrean los eventos genéricos; interacciones, sesiones y social se guardan siempre
+     */
+    private long sample(AnalyticsRecord record) {
+        long weight = record.getType() == TrackedEventType.EVENT
+                ? eventSampler.sample(record.getName(), record.getUserId())
+                : 1;
+        record.setSamplingWeight(weight);
+        return weight;
+    }
+
+    /**
+     * Documento plano del registro: atributos, campos comunes no nulos y el id y subtipo con los
+     * nombres de campo del tipo (eventId/eventType, interactionId/interactionType...)
+     */
+    private static Map<String, Object> toDocument(AnalyticsRecord record) {
+        TrackedEventType type = record.getType();
+        Map<String, Object> data = new HashMap<>(record.getAttributes());
+        data.put(type.getIdField(), record.getId());
+        data.put("type", type.getTypeName());
+        putIfPresent(data, type.getNameField(), record.getName());
+        putIfPresent(data, "userId", record.getUserId());
+        putIfPresent(data, "sessionId", record.getSessionId());
+        putIfPresent(data, "objectId", record.getObjectId());
+        putIfPresent(data, "zoneId", record.getZoneId());
+        putIfPresent(data, "targetId", record.getTargetId());
+        putIfPresent(data, "targetType", record.getTargetType());
+        putIfPresent(data, "theme", record.getTheme());
+        putIfPresent(data, "latitude", record.getLatitude());
+        putIfPresent(data, "longitude", record.getLongitude());
+        putIfPresent(data, "durationSeconds", record.getDurationSeconds());
+        Instant at = record.getOccurredAt();
+        data.put("createdAt", Timestamp.ofTimeSecondsAndNanos(at.getEpochSecond(), at.getNano()));
+        data.put(SAMPLING_WEIGHT_FIELD, record.getSamplingWeight());
+        data.put("schemaVersion", SCHEMA_VERSION);
+        return data;
+    }
+
+    /**
+     * Alimenta los agregados aditivos con un evento ya escrito, ponderados por su peso de muestreo
+     */
+    private void aggregate(AnalyticsRecord record) {
+        try {
+            TrackedEventType type = record.getType();
+            Instant at = record.getOccurredAt();
+            long weight = record.getSamplingWeight();
+
+            Map<String, String> dimensions = new HashMap<>();
+            putIfPresent(dimensions, type.getNameField(), record.getName());
+            putIfPresent(dimensions, "objectId", record.getObjectId());
+            putIfPresent(dimensions, "zoneId", record.getZoneId());
+            putIfPresent(dimensions, "theme", record.getTheme());
+            putIfPresent(dimensions, "targetType", record.getTargetType());
+            feed(type.getMetric(), dimensions, record);
+
+            switch (type) {
+                case SESSION:
+                    leaderboardService.recordSession(record.getUserId(),
+                            record.getDurationSeconds() != null ? record.getDurationSeconds() / 60.0 : null, weight);
+                    if (record.getDurationSeconds() != null) {
+                        sessionDurationService.record(sessionDimensions(record), record.getDurationSeconds(), at);
+                    }
+                    break;
+                case INTERACTION:
+                    if (record.getTheme() != null) {
+                        // Conteo, tipo y tiempo de interacción por tema para la sección de temas del dashboard
+                        Map<String, String> themeDimensions = new HashMap<>();
+                        themeDimensions.put("theme", record.getTheme());
+                        putIfPresent(themeDimensions, FirebaseAnalyticsService.THEME_INTERACTION_TYPE_DIMENSION,
+                                record.getName() != null ? record.getTheme() + "|" + record.getName() : null);
+                        rollupService.record(FirebaseAnalyticsService.THEME_INTERACTIONS_METRIC, themeDimensions,
+                                record.getDurationSeconds(), at, weight);
+                    }
+                    leaderboardService.recordInteraction(record.getUserId(), record.getName(), weight);
+                    break;
+                case SOCIAL:
+                    leaderboardService.recordInteraction(record.getUserId(), record.getName(), weight);
+                    break;
+                case EVENT:
+                default:
+                    if (CULTURAL_OBJECT_VIEW.equals(record.getName()) && record.getObjectId() != null) {
+                        Map<String, String> objectDimension = new HashMap<>();
+                        objectDimension.put("objectId", record.getObjectId());
+                        feed(FirebaseAnalyticsService.CULTURAL_OBJECT_VIEWS_METRIC, objectDimension, record);
+                        heavyHittersService.offer(FirebaseAnalyticsService.CULTURAL_OBJECT_VIEWS_METRIC,
+                                record.getObjectId(), at, weight);
+                    }
+                    break;
+            }
+        } catch (Exception e) {
+            log.error("Error aggregating {}: {}", record.getType().getLabel(), e.getMessage());
+        }
+    }
+
+    /**
+     * Rollups, tendencia, stream y mapa de calor de una métrica
+     */
+    private void feed(String metric, Map<String, String> dimensions, AnalyticsRecord record) {
+        Instant at = record.getOccurredAt();
+        long weight = record.getSamplingWeight();
+        rollupService.record(metric, dimensions, record.getDurationSeconds(), at, weight);
+        trendService.observe(metric, dimensions);
+        dashboardStreamService.recordEvent(metric, weight);
+        heatmapService.record(metric, record.getLatitude(), record.getLongitude(), at, weight);
+    }
+
+    private static Map<String, String> sessionDimensions(AnalyticsRecord session) {
+        Map<String, String> dimensions = new HashMap<>();
+        putIfPresent(dimensions, "zoneId", session.getZoneId());
+        putIfPresent(dimensions, "sessionType", session.getName());
+        return dimensions;
+    }
+
+    private static <T> void putIfPresent(Map<String, ? super T> map, String key, T value) {
+        if (value != null) {
+            map.put(key, value);
+        }
+    }
+
+    private static String dedupKey(TrackedEvent event) {
+        return event.getIdempotencyKey() != null
+                ? event.getType().getTypeName() + ":" + event.getIdempotencyKey()
+                : null;
+    }
+}
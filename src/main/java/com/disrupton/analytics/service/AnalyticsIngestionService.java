@@ -0,0 +1,460 @@
+package com.disrupton.analytics.service;
+
+import com.disrupton.analytics.model.PendingWrite;
+import com.disrupton.analytics.util.MpscRingBuffer;
+import com.disrupton.exception.IngestionRejectedException;
+import com.disrupton.exception.PartialWriteException;
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.BulkWriter;
+import com.google.cloud.firestore.BulkWriterException;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteBatch;
+import com.google.cloud.firestore.WriteResult;
+import io.grpc.Status;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ingesta de analytics con buffer y escritura por lotes
+ *
+ * Las peticiones de tracking encolan el documento y responden de inmediato. Con el journal
+ * habilitado el evento se agrega primero al EventJournal (durable ante reinicios) y el journal
+ * hace de cola; si no, se usa un ring buffer acotado en memoria.
+ * Un único hilo vacía la cola con BulkWriter en lotes de hasta batch-size escrituras,
+ * cuando se llena un lote o vence flush-interval-ms (lo que ocurra primero).
+ * Si la cola está llena se descarta lo más antiguo (DROP_OLDEST) o se rechaza
+ * la petición con 429 (REJECT). Al detener la aplicación se vacía lo pendiente
+ */
+@Service
+@Slf4j
+public class AnalyticsIngestionService {
+
+    public enum OverflowPolicy { DROP_OLDEST, REJECT }
+
+    private final Firestore firestore;
+    private final EventJournal journal;
+    private final MpscRingBuffer<PendingWrite> buffer;
+    private final boolean buffered;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final long shutdownTimeoutMs;
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    // Métricas
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong requeued = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicLong lostInBuffer = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private volatile int lastBatchSize;
+    private volatile long lastFlushNanos;
+    private volatile long maxFlushNanos;
+    private volatile long lastEnqueueToWriteNanos;
+
+    public AnalyticsIngestionService(
+            Firestore firestore,
+            EventJournal journal,
+            @Value("${analytics.ingest.buffered:true}") boolean buffered,
+            @Value("${analytics.ingest.capacity:65536}") int capacity,
+            @Value("${analytics.ingest.batch-size:500}") int batchSize,
+            @Value("${analytics.ingest.flush-interval-ms:1000}") long flushIntervalMs,
+            @Value("${analytics.ingest.overflow-policy:DROP_OLDEST}") OverflowPolicy overflowPolicy,
+            @Value("${analytics.ingest.shutdown-timeout-ms:10000}") long shutdownTimeoutMs) {
+        this.firestore = firestore;
+        this.journal = journal;
+        // El journal ya es una cola durable: habilitarlo implica ingesta asíncrona
+        this.buffered = buffered || journal.isEnabled();
+        this.buffer = new MpscRingBuffer<>(capacity);
+        // Firestore no admite más de 500 escrituras por lote
+        this.batchSize = Math.max(1, Math.min(batchSize, 500));
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.overflowPolicy = overflowPolicy;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!buffered) {
+            log.info("📥 Ingesta de analytics sin buffer (escritura síncrona)");
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::runFlusher, "analytics-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("📥 Ingesta de analytics con {}: lotes de {}, cada {} ms, política {}",
+                journal.isEnabled() ? "journal local" : "buffer de " + buffer.capacity() + " eventos",
+                batchSize, TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos), overflowPolicy);
+    }
+
+    /**
+     * Encola un documento para escribirlo en Firestore
+     *
+     * @throws IngestionRejectedException si el buffer está lleno y la política es REJECT
+     */
+    public void submit(String collection, String documentId, Map<String, Object> data) {
+        if (!buffered || !running) {
+            writeNow(collection, documentId, data);
+            return;
+        }
+
+        PendingWrite write = new PendingWrite(collection, documentId, data, System.nanoTime());
+        if (journal.isEnabled()) {
+            try {
+                journal.append(write);
+            } catch (IngestionRejectedException e) {
+                rejected.incrementAndGet();
+                throw e;
+            }
+            if (enqueued.incrementAndGet() % batchSize == 0) {
+                LockSupport.unpark(flusher);
+            }
+            return;
+        }
+
+        if (!offer(write)) {
+            rejected.incrementAndGet();
+            throw new IngestionRejectedException("El buffer de analytics está lleno, reintenta más tarde");
+        }
+        enqueued.incrementAndGet();
+
+        if (buffer.size() >= batchSize) {
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    /**
+     * Encola un lote de documentos de una vez (un solo lock del journal, un solo aviso al flusher)
+     * Devuelve cuántos se aceptaron; con política REJECT y la cola llena, los restantes se rechazan
+     *
+     * @throws PartialWriteException si sin buffer falla la escritura directa (indica cuántos se escribieron)
+     */
+    public int submitAll(List<PendingWrite> writes) {
+        if (writes.isEmpty()) {
+            return 0;
+        }
+        if (!buffered || !running) {
+            writeAllNow(writes);
+            return writes.size();
+        }
+
+        int accepted;
+        if (journal.isEnabled()) {
+            accepted = journal.appendAll(writes);
+        } else {
+            accepted = 0;
+            for (PendingWrite write : writes) {
+                if (!offer(write)) {
+                    break;
+                }
+                accepted++;
+            }
+        }
+
+        enqueued.addAndGet(accepted);
+        rejected.addAndGet(writes.size() - accepted);
+        LockSupport.unpark(flusher);
+        return accepted;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher == null) {
+            return;
+        }
+        log.info("📥 Deteniendo ingesta de analytics, {} eventos pendientes", pendingCount());
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (journal.isEnabled() && journal.hasPending()) {
+            log.info("📒 Los eventos no enviados quedan en el journal y se reenviarán al arrancar");
+        } else if (!buffer.isEmpty()) {
+            log.warn("⚠️ Quedaron {} eventos de analytics sin escribir al detener la aplicación", buffer.size());
+        }
+    }
+
+    /**
+     * Métricas de la ingesta: profundidad de la cola, tamaño de lote y latencia de flush
+     */
+    public Map<String, Object> getStats() {
+        long batchCount = batches.get();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("buffered", buffered);
+        stats.put("overflowPolicy", overflowPolicy.name());
+        stats.put("queueDepth", pendingCount());
+        stats.put("capacity", buffer.capacity());
+        stats.put("enqueued", enqueued.get());
+        stats.put("dropped", dropped.get());
+        stats.put("rejected", rejected.get());
+        stats.put("written", written.get());
+        stats.put("failed", failed.get());
+        stats.put("requeued", requeued.get());
+        stats.put("discarded", discarded.get());
+        stats.put("aggregatedNotWritten", getAggregatedNotWritten());
+        stats.put("batches", batchCount);
+        stats.put("lastBatchSize", lastBatchSize);
+        stats.put("averageBatchSize", batchCount > 0 ? (double) (written.get() + failed.get()) / batchCount : 0.0);
+        stats.put("lastFlushMs", toMillis(lastFlushNanos));
+        stats.put("maxFlushMs", toMillis(maxFlushNanos));
+        stats.put("averageFlushMs", batchCount > 0 ? toMillis(totalFlushNanos.get()) / batchCount : 0.0);
+        stats.put("lastEnqueueToWriteMs", toMillis(lastEnqueueToWriteNanos));
+        stats.put("journal", journal.getStats());
+        return stats;
+    }
+
+    /**
+     * Eventos aceptados (y por tanto ya sumados a los agregados) que nunca llegaron a Firestore:
+     * descartados por DROP_OLDEST, rechazados por inválidos o perdidos en un lote fallido sin journal.
+     * Es la deriva entre rollups/ranking/mapa de calor y los documentos guardados
+     */
+    public long getAggregatedNotWritten() {
+        return dropped.get() + discarded.get() + lostInBuffer.get() + journal.getDroppedRecords();
+    }
+
+    // Métodos privados de utilidad
+
+    private void runFlusher() {
+        long nextFlush = System.nanoTime() + flushIntervalNanos;
+        boolean backlog = false;
+        while (running) {
+            long now = System.nanoTime();
+            if (backlog || pendingCount() >= batchSize || now >= nextFlush) {
+                boolean progressed = flushOnce();
+                // Lote lleno: probablemente queda backlog (p. ej. segmentos recuperados), seguir sin esperar.
+                // Si el lote falló se espera el intervalo completo antes de reintentar
+                backlog = progressed && lastBatchSize >= batchSize;
+                nextFlush = System.nanoTime() + flushIntervalNanos;
+                if (!progressed && pendingCount() >= batchSize) {
+                    LockSupport.parkNanos(this, flushIntervalNanos);
+                }
+            } else {
+                LockSupport.parkNanos(this, nextFlush - now);
+            }
+        }
+
+        // Vaciado final al apagar; con journal lo que no alcance a enviarse sigue en disco
+        while (journal.isEnabled() ? journal.hasPending() : !buffer.isEmpty()) {
+            if (!flushOnce()) {
+                break;
+            }
+        }
+        log.info("📥 Ingesta de analytics detenida, {} escrituras en total", written.get());
+    }
+
+    /**
+     * Escribe un lote; devuelve true si hubo progreso (false si no había nada o el lote falló)
+     */
+    private boolean flushOnce() {
+        if (journal.isEnabled()) {
+            EventJournal.Batch batch = journal.read(batchSize);
+            if (batch.isEmpty()) {
+                // Puede haber avanzado sobre segmentos sellados ya leídos
+                journal.commit(batch);
+                return false;
+            }
+            List<PendingWrite> failedWrites = writeBatch(batch.getWrites());
+            if (failedWrites.size() == batch.getWrites().size() && !failedWrites.isEmpty()) {
+                // Nada llegó a Firestore: el checkpoint no se mueve y el lote se reintenta
+                return false;
+            }
+            // El checkpoint solo pasa por encima de lo escrito: lo fallido se vuelve a agregar al final
+            // del journal antes de confirmar. Si no cabe, se reintenta el lote entero (los ids son estables)
+            if (!failedWrites.isEmpty() && !requeue(failedWrites)) {
+                return false;
+            }
+            journal.commit(batch);
+            return true;
+        }
+
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        buffer.drain(batch::add, batchSize);
+        if (batch.isEmpty()) {
+            return false;
+        }
+        // Sin journal no hay dónde reintentar: lo fallido se pierde
+        lostInBuffer.addAndGet(writeBatch(batch).size());
+        return true;
+    }
+
+    /**
+     * Escribe el lote con BulkWriter y devuelve las escrituras que no llegaron a Firestore
+     * (todas si falló el lote entero). Los documentos que Firestore rechaza por inválidos
+     * no se devuelven: reintentarlos no cambia el resultado, se descartan y se cuentan
+     */
+    private List<PendingWrite> writeBatch(List<PendingWrite> batch) {
+        if (batch.isEmpty()) {
+            return List.of();
+        }
+
+        long start = System.nanoTime();
+        List<PendingWrite> failedWrites = new ArrayList<>();
+        try {
+            List<ApiFuture<WriteResult>> results = new ArrayList<>(batch.size());
+            BulkWriter writer = firestore.bulkWriter();
+            for (PendingWrite write : batch) {
+                results.add(writer.set(
+                        firestore.collection(write.getCollection()).document(write.getDocumentId()),
+                        write.getData()));
+            }
+            // close() espera a que terminen todas las escrituras (con los reintentos de BulkWriter)
+            writer.close();
+
+            int discardedNow = 0;
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    results.get(i).get();
+                } catch (ExecutionException e) {
+                    if (isInvalidDocument(e.getCause())) {
+                        discardedNow++;
+                        log.error("❌ Documento de analytics rechazado por Firestore, se descarta: {}/{}: {}",
+                                batch.get(i).getCollection(), batch.get(i).getDocumentId(), e.getCause().getMessage());
+                    } else {
+                        failedWrites.add(batch.get(i));
+                    }
+                }
+            }
+            written.addAndGet(batch.size() - failedWrites.size() - discardedNow);
+            failed.addAndGet(failedWrites.size() + discardedNow);
+            discarded.addAndGet(discardedNow);
+            if (!failedWrites.isEmpty()) {
+                log.warn("⚠️ {} de {} escrituras de analytics fallaron", failedWrites.size(), batch.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed.addAndGet(batch.size());
+            failedWrites = batch;
+        } catch (Exception e) {
+            failed.addAndGet(batch.size());
+            failedWrites = batch;
+            log.error("❌ Error escribiendo lote de analytics ({} documentos): {}", batch.size(), e.getMessage(), e);
+        }
+
+        long end = System.nanoTime();
+        long elapsed = end - start;
+        batches.incrementAndGet();
+        totalFlushNanos.addAndGet(elapsed);
+        lastBatchSize = batch.size();
+        lastFlushNanos = elapsed;
+        maxFlushNanos = Math.max(maxFlushNanos, elapsed);
+        lastEnqueueToWriteNanos = end - batch.get(0).getEnqueuedAtNanos();
+        log.debug("📥 Lote de analytics escrito: {} documentos en {} ms", batch.size(), toMillis(elapsed));
+        return failedWrites;
+    }
+
+    /**
+     * Vuelve a agregar al journal las escrituras fallidas; false si no cupieron todas
+     */
+    private boolean requeue(List<PendingWrite> failedWrites) {
+        int appended;
+        try {
+            appended = journal.appendAll(failedWrites);
+        } catch (RuntimeException e) {
+            log.error("❌ No se pudieron reencolar {} escrituras fallidas: {}", failedWrites.size(), e.getMessage());
+            return false;
+        }
+        if (appended < failedWrites.size()) {
+            // Las que sí se agregaron se escribirán dos veces: mismo documento, mismo contenido
+            log.warn("⚠️ Journal lleno, se reintenta el lote completo");
+            return false;
+        }
+        requeued.addAndGet(appended);
+        return true;
+    }
+
+    /**
+     * Error permanente del documento (p. ej. campos o tamaño inválidos), no del envío
+     */
+    private static boolean isInvalidDocument(Throwable cause) {
+        return cause instanceof BulkWriterException
+                && ((BulkWriterException) cause).getStatus().getCode() == Status.Code.INVALID_ARGUMENT;
+    }
+
+    /**
+     * Agrega al ring buffer aplicando la política de desborde; false si se rechaza (REJECT)
+     */
+    private boolean offer(PendingWrite write) {
+        while (!buffer.offer(write)) {
+            if (overflowPolicy == OverflowPolicy.REJECT) {
+                return false;
+            }
+            if (buffer.poll() != null) {
+                dropped.incrementAndGet();
+            }
+        }
+        return true;
+    }
+
+    private long pendingCount() {
+        return journal.isEnabled() ? journal.pendingRecords() : buffer.size();
+    }
+
+    private void writeNow(String collection, String documentId, Map<String, Object> data) {
+        try {
+            firestore.collection(collection).document(documentId).set(data).get();
+            written.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed.incrementAndGet();
+            throw new IllegalStateException("Escritura de analytics interrumpida", e);
+        } catch (ExecutionException e) {
+            failed.incrementAndGet();
+            throw new IllegalStateException("Error escribiendo analytics en " + collection, e.getCause());
+        }
+    }
+
+    /**
+     * Escribe el lote en tramos de 500; si un tramo falla, la excepción indica cuántos quedaron escritos
+     *
+     * @throws PartialWriteException con los documentos confirmados antes del tramo que falló
+     */
+    private void writeAllNow(List<PendingWrite> writes) {
+        // Un WriteBatch admite como máximo 500 escrituras
+        for (int from = 0; from < writes.size(); from += 500) {
+            WriteBatch batch = firestore.batch();
+            List<PendingWrite> chunk = writes.subList(from, Math.min(from + 500, writes.size()));
+            for (PendingWrite write : chunk) {
+                batch.set(firestore.collection(write.getCollection()).document(write.getDocumentId()), write.getData());
+            }
+            try {
+                batch.commit().get();
+                written.addAndGet(chunk.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.addAndGet(chunk.size());
+                throw new PartialWriteException("Escritura de analytics interrumpida", from, e);
+            } catch (ExecutionException e) {
+                failed.addAndGet(chunk.size());
+                throw new PartialWriteException("Error escribiendo lote de analytics", from, e.getCause());
+            }
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,166 @@
+package com.disrupton.analytics.service;
+
+import com.disrupton.analytics.model.AnalyticsRecord;
+import com.disrupton.analytics.model.TrackedEventType;
+import com.google.cloud.Timestamp;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Validación y normalización de los registros de analytics antes de la ingesta
+ *
+ * Reglas comunes: id válido como clave de documento (se genera si falta), subtipo en mayúsculas,
+ * textos vacíos como null, coordenadas completas y en rango, duración finita y no negativa, fecha
+ * no posterior a ahora (con margen) y atributos con tipos que Firestore guarda sin conversión.
+ * Además cada tipo exige sus campos; los mensajes de error llegan tal cual al cliente
+ */
+@Component
+public class AnalyticsRecordValidator {
+
+    private static final Pattern ID_PATTERN = Pattern.compile("[A-Za-z0-9._-]{1,128}");
+    private static final Duration MAX_CLOCK_SKEW = Duration.ofMinutes(5);
+
+    // Campos del esquema común: un atributo no puede pisarlos
+    private static final Set<String> RESERVED_FIELDS = Set.of(
+            "type", "userId", "sessionId", "objectId", "zoneId", "targetId", "targetType", "theme",
+            "latitude", "longitude", "durationSeconds", "createdAt", "samplingWeight", "schemaVersion");
+
+    /**
+     * Normaliza el registro en el lugar
+     *
+     * @throws IllegalArgumentException si no cumple el esquema de su tipo
+     */
+    public void validate(AnalyticsRecord record) {
+        if (record == null || record.getType() == null) {
+            throw new IllegalArgumentException("Missing event type");
+        }
+        TrackedEventType type = record.getType();
+
+        String id = trimToNull(record.getId());
+        if (id != null && !ID_PATTERN.matcher(id).matches()) {
+            throw new IllegalArgumentException("Invalid eventId: use 1-128 letters, digits, '-', '_' or '.'");
+        }
+        record.setId(id != null ? id : UUID.randomUUID().toString());
+
+        String name = trimToNull(record.getName());
+        record.setName(name != null ? name.toUpperCase(Locale.ROOT) : null);
+        record.setUserId(trimToNull(record.getUserId()));
+        record.setSessionId(trimToNull(record.getSessionId()));
+        record.setObjectId(trimToNull(record.getObjectId()));
+        record.setZoneId(trimToNull(record.getZoneId()));
+        record.setTargetId(trimToNull(record.getTargetId()));
+        record.setTargetType(trimToNull(record.getTargetType()));
+        record.setTheme(trimToNull(record.getTheme()));
+
+        validateLocation(record);
+        validateDuration(record);
+        validateTime(record);
+        validateAttributes(record);
+
+        switch (type) {
+            case INTERACTION:
+                requireField(record.getObjectId(), "objectId");
+                requireField(record.getName(), "interactionType");
+                break;
+            case SESSION:
+                requireField(record.getUserId(), "userId");
+                // El documento de una sesión es la sesión: su id es el sessionId
+                record.setSessionId(record.getId());
+                break;
+            case SOCIAL:
+                requireField(record.getUserId(), "userId");
+                requireField(record.getName(), "interactionType");
+                break;
+            case EVENT:
+            default:
+                requireField(record.getName(), "eventType");
+                break;
+        }
+    }
+
+    // Métodos privados de utilidad
+
+    private static void validateLocation(AnalyticsRecord record) {
+        Double latitude = record.getLatitude();
+        Double longitude = record.getLongitude();
+        if (latitude == null && longitude == null) {
+            return;
+        }
+        if (latitude == null || longitude == null) {
+            throw new IllegalArgumentException("latitude and longitude must be sent together");
+        }
+        if (!(latitude >= -90.0 && latitude <= 90.0) || !(longitude >= -180.0 && longitude <= 180.0)) {
+            throw new IllegalArgumentException("Invalid coordinates: " + latitude + ", " + longitude);
+        }
+    }
+
+    private static void validateDuration(AnalyticsRecord record) {
+        Double duration = record.getDurationSeconds();
+        if (duration != null && (!Double.isFinite(duration) || duration < 0)) {
+            throw new IllegalArgumentException("Invalid duration: " + duration);
+        }
+    }
+
+    private static void validateTime(AnalyticsRecord record) {
+        Instant now = Instant.now();
+        if (record.getOccurredAt() == null) {
+            record.setOccurredAt(now);
+        } else if (record.getOccurredAt().isAfter(now.plus(MAX_CLOCK_SKEW))) {
+            throw new IllegalArgumentException("Event time is in the future: " + record.getOccurredAt());
+        }
+    }
+
+    private static void validateAttributes(AnalyticsRecord record) {
+        Map<String, Object> attributes = new HashMap<>();
+        if (record.getAttributes() != null) {
+            TrackedEventType type = record.getType();
+            record.getAttributes().forEach((field, value) -> {
+                if (RESERVED_FIELDS.contains(field) || field.equals(type.getIdField()) || field.equals(type.getNameField())) {
+                    throw new IllegalArgumentException("Attribute overrides a schema field: " + field);
+                }
+                if (value != null && !isStorable(value)) {
+                    throw new IllegalArgumentException("Unsupported value for " + field + ": " + value.getClass().getSimpleName());
+                }
+                if (value != null) {
+                    attributes.put(field, value);
+                }
+            });
+        }
+        record.setAttributes(attributes);
+    }
+
+    /**
+     * Tipos que Firestore guarda (y el journal reenvía) sin conversión
+     */
+    private static boolean isStorable(Object value) {
+        if (value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Timestamp) {
+            return true;
+        }
+        if (value instanceof Map<?, ?> map) {
+            return map.keySet().stream().allMatch(key -> key instanceof String)
+                    && map.values().stream().allMatch(v -> v == null || isStorable(v));
+        }
+        if (value instanceof List<?> list) {
+            return list.stream().allMatch(v -> v == null || isStorable(v));
+        }
+        return false;
+    }
+
+    private static void requireField(String value, String field) {
+        if (value == null) {
+            throw new IllegalArgumentException("Missing required field: " + field);
+        }
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+}
@@ -0,0 +1,367 @@
+package com.disrupton.analytics.service;
+
+import com.disrupton.analytics.model.DistinctCountEstimate;
+import com.disrupton.analytics.model.RollupGranularity;
+import com.disrupton.analytics.util.HyperLogLog;
+import com.google.api.core.ApiFuture;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Conteos aproximados de distintos (usuarios activos, visitantes únicos por zona u objeto)
+ *
+ * Cada día y dimensión tiene un sketch HyperLogLog guardado como Blob en Firestore.
+ * En la ingesta los elementos se agregan a sketches en memoria y se vuelcan cada
+ * flush-interval-ms uniendo (máximo por registro) con lo guardado, en una transacción.
+ * La unión es idempotente, así que varias instancias pueden volcar al mismo documento.
+ * Un rango de semanas o meses se responde uniendo los sketches diarios: el costo es un
+ * documento de ~4 KB por día, sin importar cuántos usuarios haya
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DistinctCountService {
+
+    /** Visitantes distintos (userId); con dimensión "all" son los usuarios activos */
+    public static final String VISITORS_METRIC = "visitors";
+
+    private final Firestore firestore;
+
+    @Qualifier("analyticsScheduler")
+    private final ScheduledExecutorService analyticsScheduler;
+
+    @Value("${analytics.hll.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analytics.hll.collection:analytics_sketches}")
+    private String collectionName;
+
+    @Value("${analytics.hll.precision:12}")
+    private int precision;
+
+    @Value("${analytics.hll.flush-interval-ms:60000}")
+    private long flushIntervalMs;
+
+    @Value("${analytics.hll.max-pending-sketches:5000}")
+    private int maxPendingSketches;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // Sketches con elementos aún no volcados, por id de documento
+    private final Map<String, PendingSketch> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("🔢 Conteo de distintos (HyperLogLog) deshabilitado");
+            return;
+        }
+        analyticsScheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs,
+                TimeUnit.MILLISECONDS);
+        log.info("🔢 Conteo de distintos con HyperLogLog: precisión {} (error estándar {}%), volcado cada {} ms",
+                precision, String.format("%.2f", HyperLogLog.relativeStandardError(precision) * 100), flushIntervalMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (enabled) {
+            flushQuietly();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Registra un elemento (p. ej. un userId) en el sketch del día para cada dimensión
+     *
+     * @param dimensions valores de dimensión del evento; los nulos se ignoran. Siempre se
+     *                   registra también en el total "all" de la métrica
+     */
+    public void offer(String metric, Map<String, String> dimensions, String item, Instant at) {
+        if (!enabled || item == null || item.isBlank()) {
+            return;
+        }
+
+        ZonedDateTime day = RollupGranularity.DAY.truncate(at.atZone(zone));
+        offer(metric, RollupService.ALL_DIMENSION, RollupService.ALL_DIMENSION, day, item);
+        if (dimensions != null) {
+            dimensions.forEach((dimension, value) -> {
+                if (value != null && !value.isBlank()) {
+                    offer(metric, dimension, value, day, item);
+                }
+            });
+        }
+
+        if (pending.size() >= maxPendingSketches && flushRequested.compareAndSet(false, true)) {
+            analyticsScheduler.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Distintos estimados en los días que tocan [start, end)
+     */
+    public DistinctCountEstimate estimate(String metric, String dimension, String dimensionValue,
+                                          Instant start, Instant end) throws ExecutionException, InterruptedException {
+        List<ZonedDateTime> days = days(start, end);
+        HyperLogLog merged = new HyperLogLog(precision);
+        int read = 0;
+
+        if (!days.isEmpty()) {
+            List<String> docIds = new ArrayList<>(days.size());
+            for (ZonedDateTime day : days) {
+                docIds.add(docId(metric, dimension, dimensionValue, day));
+            }
+            read = mergeInto(merged, docIds);
+        }
+        return toEstimate(metric, dimension, dimensionValue, days, merged, read);
+    }
+
+    /**
+     * Distintos estimados para varios valores de una dimensión, con una sola lectura
+     */
+    public Map<String, DistinctCountEstimate> estimateMany(String metric, String dimension,
+                                                           Collection<String> dimensionValues,
+                                                           Instant start, Instant end)
+            throws ExecutionException, InterruptedException {
+        List<ZonedDateTime> days = days(start, end);
+        List<String> values = new ArrayList<>(new LinkedHashSet<>(dimensionValues));
+        if (days.isEmpty() || values.isEmpty()) {
+            Map<String, DistinctCountEstimate> empty = new HashMap<>();
+            for (String value : values) {
+                empty.put(value, toEstimate(metric, dimension, value, days, new HyperLogLog(precision), 0));
+            }
+            return empty;
+        }
+
+        DocumentReference[] refs = new DocumentReference[values.size() * days.size()];
+        int i = 0;
+        for (String value : values) {
+            for (ZonedDateTime day : days) {
+                refs[i++] = firestore.collection(collectionName).document(docId(metric, dimension, value, day));
+            }
+        }
+        List<DocumentSnapshot> documents = firestore.getAll(refs).get();
+
+        Map<String, DistinctCountEstimate> estimates = new HashMap<>();
+        for (int v = 0; v < values.size(); v++) {
+            HyperLogLog merged = new HyperLogLog(precision);
+            int read = 0;
+            for (int d = 0; d < days.size(); d++) {
+                DocumentSnapshot document = documents.get(v * days.size() + d);
+                if (mergeDocument(merged, document)) {
+                    read++;
+                }
+                mergePending(merged, document.getId());
+            }
+            estimates.put(values.get(v), toEstimate(metric, dimension, values.get(v), days, merged, read));
+        }
+        return estimates;
+    }
+
+    /**
+     * Vuelca los sketches pendientes a Firestore
+     */
+    public void flush() {
+        flushRequested.set(false);
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<ApiFuture<Void>> futures = new ArrayList<>();
+        List<PendingSketch> flushing = new ArrayList<>();
+        for (String docId : new ArrayList<>(pending.keySet())) {
+            // Al quitarlo del mapa nadie más lo modifica; lo que llegue después crea otro sketch
+            PendingSketch sketch = pending.remove(docId);
+            if (sketch != null) {
+                flushing.add(sketch);
+                futures.add(write(sketch));
+            }
+        }
+
+        int failures = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                restore(flushing.get(i));
+                failures++;
+            } catch (ExecutionException e) {
+                restore(flushing.get(i));
+                failures++;
+                log.error("❌ Error volcando sketch {}: {}", flushing.get(i).docId, e.getCause().getMessage());
+            }
+        }
+        log.debug("🔢 Sketches volcados: {} ({} con error)", flushing.size() - failures, failures);
+    }
+
+    // Métodos privados de utilidad
+
+    private void offer(String metric, String dimension, String dimensionValue, ZonedDateTime day, String item) {
+        String docId = docId(metric, dimension, dimensionValue, day);
+        // compute bloquea la entrada: no se pierde el elemento si flush() la está quitando
+        pending.compute(docId, (key, sketch) -> {
+            if (sketch == null) {
+                sketch = new PendingSketch(key, metric, dimension, dimensionValue, day, new HyperLogLog(precision));
+            }
+            sketch.sketch.offer(item);
+            return sketch;
+        });
+    }
+
+    private ApiFuture<Void> write(PendingSketch pendingSketch) {
+        DocumentReference ref = firestore.collection(collectionName).document(pendingSketch.docId);
+        return firestore.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(ref).get();
+            HyperLogLog merged = pendingSketch.sketch.copy();
+            mergeDocument(merged, snapshot);
+
+            Map<String, Object> data = new HashMap<>();
+            data.put("metric", pendingSketch.metric);
+            data.put("dimension", pendingSketch.dimension);
+            data.put("dimensionValue", pendingSketch.dimensionValue);
+            data.put("day", Timestamp.ofTimeSecondsAndNanos(pendingSketch.day.toEpochSecond(), 0));
+            data.put("precision", precision);
+            data.put("registers", Blob.fromBytes(merged.toBytes()));
+            data.put("estimate", merged.estimate());
+            data.put("updatedAt", FieldValue.serverTimestamp());
+            transaction.set(ref, data);
+            return null;
+        });
+    }
+
+    private void restore(PendingSketch sketch) {
+        pending.merge(sketch.docId, sketch, (current, failed) -> {
+            current.sketch.merge(failed.sketch);
+            return current;
+        });
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("❌ Error volcando sketches HyperLogLog: {}", e.getMessage(), e);
+        }
+    }
+
+    private int mergeInto(HyperLogLog merged, List<String> docIds) throws ExecutionException, InterruptedException {
+        DocumentReference[] refs = docIds.stream()
+                .map(docId -> firestore.collection(collectionName).document(docId))
+                .toArray(DocumentReference[]::new);
+
+        int read = 0;
+        for (DocumentSnapshot document : firestore.getAll(refs).get()) {
+            if (mergeDocument(merged, document)) {
+                read++;
+            }
+            mergePending(merged, document.getId());
+        }
+        return read;
+    }
+
+    /**
+     * Une el sketch guardado en el documento; false si no existe o no es compatible
+     */
+    private boolean mergeDocument(HyperLogLog merged, DocumentSnapshot document) {
+        if (!document.exists()) {
+            return false;
+        }
+        Long storedPrecision = document.getLong("precision");
+        Blob registers = document.getBlob("registers");
+        if (storedPrecision == null || registers == null || storedPrecision.intValue() != precision) {
+            log.warn("⚠️ Sketch {} ignorado: precisión {} distinta de la configurada ({})",
+                    document.getId(), storedPrecision, precision);
+            return false;
+        }
+        merged.merge(HyperLogLog.fromBytes(precision, registers.toBytes()));
+        return true;
+    }
+
+    /**
+     * Incluye lo que aún no se volcó, para que la estimación no vaya un intervalo atrasada
+     */
+    private void mergePending(HyperLogLog merged, String docId) {
+        pending.computeIfPresent(docId, (key, sketch) -> {
+            merged.merge(sketch.sketch);
+            return sketch;
+        });
+    }
+
+    private DistinctCountEstimate toEstimate(String metric, String dimension, String dimensionValue,
+                                             List<ZonedDateTime> days, HyperLogLog sketch, int read) {
+        long estimate = sketch.estimate();
+        double error = sketch.relativeStandardError();
+        long margin = Math.round(estimate * 2 * error);
+        return DistinctCountEstimate.builder()
+                .metric(metric)
+                .dimension(dimension)
+                .dimensionValue(dimensionValue)
+                .startDay(days.isEmpty() ? null : days.get(0).toLocalDate())
+                .endDay(days.isEmpty() ? null : days.get(days.size() - 1).toLocalDate())
+                .estimate(estimate)
+                .relativeStandardError(error)
+                .lowerBound(Math.max(0, estimate - margin))
+                .upperBound(estimate + margin)
+                .sketchesRead(read)
+                .build();
+    }
+
+    /**
+     * Días (en la zona del servidor) que tocan [start, end)
+     */
+    private List<ZonedDateTime> days(Instant start, Instant end) {
+        List<ZonedDateTime> days = new ArrayList<>();
+        ZonedDateTime limit = end.atZone(zone);
+        for (ZonedDateTime day = RollupGranularity.DAY.truncate(start.atZone(zone)); day.isBefore(limit);
+             day = RollupGranularity.DAY.next(day)) {
+            days.add(day);
+        }
+        return days;
+    }
+
+    private static String docId(String metric, String dimension, String dimensionValue, ZonedDateTime day) {
+        // "/" no es válido en ids de documento
+        return String.join("|", metric, dimension, dimensionValue, RollupGranularity.DAY.name(),
+                RollupGranularity.DAY.key(day)).replace('/', '_');
+    }
+
+    private static final class PendingSketch {
+        final String docId;
+        final String metric;
+        final String dimension;
+        final String dimensionValue;
+        final ZonedDateTime day;
+        final HyperLogLog sketch;
+
+        PendingSketch(String docId, String metric, String dimension, String dimensionValue,
+                      ZonedDateTime day, HyperLogLog sketch) {
+            this.docId = docId;
+            this.metric = metric;
+            this.dimension = dimension;
+            this.dimensionValue = dimensionValue;
+            this.day = day;
+            this.sketch = sketch;
+        }
+    }
+}
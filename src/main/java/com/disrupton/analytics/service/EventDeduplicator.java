@@ -0,0 +1,147 @@
+package com.disrupton.analytics.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Filtro de duplicados por ventana de tiempo para eventos con clave de idempotencia
+ *
+ * Las claves se guardan en un conjunto por minuto; se conservan window-minutes buckets
+ * y los más antiguos se reemplazan al rotar, así la memoria queda acotada a
+ * window-minutes × max-keys-per-bucket claves. Es exacto (sin falsos positivos):
+ * un evento nuevo nunca se descarta por error. Si un bucket se llena, las claves nuevas
+ * de ese minuto se aceptan sin registrarlas (se pierde deduplicación, no eventos)
+ */
+@Component
+@Slf4j
+public class EventDeduplicator {
+
+    private static final long BUCKET_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final boolean enabled;
+    private final int windowMinutes;
+    private final int maxKeysPerBucket;
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    private final AtomicLong checked = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong untracked = new AtomicLong();
+
+    public EventDeduplicator(
+            @Value("${analytics.dedup.enabled:true}") boolean enabled,
+            @Value("${analytics.dedup.window-minutes:10}") int windowMinutes,
+            @Value("${analytics.dedup.max-keys-per-bucket:100000}") int maxKeysPerBucket) {
+        this.enabled = enabled;
+        this.windowMinutes = Math.max(1, windowMinutes);
+        this.maxKeysPerBucket = maxKeysPerBucket;
+        this.buckets = new AtomicReferenceArray<>(this.windowMinutes);
+    }
+
+    /**
+     * Registra la clave; devuelve false si ya se vio dentro de la ventana (duplicado)
+     */
+    public boolean firstSeen(String key) {
+        if (!enabled || key == null) {
+            return true;
+        }
+        checked.incrementAndGet();
+        long minute = System.currentTimeMillis() / BUCKET_MILLIS;
+
+        for (int i = 1; i < windowMinutes; i++) {
+            Bucket previous = buckets.get(index(minute - i));
+            if (previous != null && previous.minute == minute - i && previous.keys.contains(key)) {
+                duplicates.incrementAndGet();
+                return false;
+            }
+        }
+
+        Bucket current = current(minute);
+        if (current.keys.contains(key)) {
+            duplicates.incrementAndGet();
+            return false;
+        }
+        if (current.keys.size() >= maxKeysPerBucket) {
+            if (untracked.getAndIncrement() == 0) {
+                log.warn("⚠️ Filtro de duplicados lleno ({} claves por minuto), algunas claves no se registran",
+                        maxKeysPerBucket);
+            }
+            return true;
+        }
+        // add es atómico: de dos reintentos simultáneos solo uno gana
+        if (!current.keys.add(key)) {
+            duplicates.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Olvida una clave registrada, p. ej. cuando el evento se rechazó y el cliente debe poder reintentarlo
+     */
+    public void forget(String key) {
+        if (!enabled || key == null) {
+            return;
+        }
+        for (int i = 0; i < windowMinutes; i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null) {
+                bucket.keys.remove(key);
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long keys = 0;
+        for (int i = 0; i < windowMinutes; i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null) {
+                keys += bucket.keys.size();
+            }
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("windowMinutes", windowMinutes);
+        stats.put("trackedKeys", keys);
+        stats.put("checked", checked.get());
+        stats.put("duplicates", duplicates.get());
+        stats.put("untracked", untracked.get());
+        return stats;
+    }
+
+    private Bucket current(long minute) {
+        int index = index(minute);
+        while (true) {
+            Bucket bucket = buckets.get(index);
+            if (bucket != null && bucket.minute == minute) {
+                return bucket;
+            }
+            // El bucket de hace windowMinutes minutos (o vacío) se reemplaza por el del minuto actual
+            Bucket fresh = new Bucket(minute);
+            if (buckets.compareAndSet(index, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private int index(long minute) {
+        return (int) Math.floorMod(minute, (long) windowMinutes);
+    }
+
+    private static final class Bucket {
+        private final long minute;
+        private final Set<String> keys = ConcurrentHashMap.newKeySet();
+
+        private Bucket(long minute) {
+            this.minute = minute;
+        }
+    }
+}
@@ -0,0 +1,561 @@
+package com.disrupton.analytics.service;
+
+import com.disrupton.analytics.model.PendingWrite;
+import com.disrupton.analytics.util.JournalSegment;
+import com.disrupton.exception.IngestionRejectedException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.Timestamp;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Journal local (write-ahead log) de eventos de analytics
+ *
+ * Cada evento se agrega a un segmento mapeado en memoria antes de confirmar la petición,
+ * así un reinicio del pod no pierde lo que aún no llegó a Firestore. El hilo de ingesta
+ * lee los registros en orden, los envía por lotes y confirma un checkpoint; los segmentos
+ * ya enviados se eliminan (o se archivan para poder reconstruir rollups).
+ * Al arrancar se retoma desde el checkpoint y se reenvían los segmentos pendientes
+ */
+@Component
+@Slf4j
+public class EventJournal {
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String ARCHIVE_DIR = "archive";
+    private static final String TIMESTAMP_KEY = "$timestamp";
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final boolean syncEveryAppend;
+    private final boolean archiveShipped;
+    private final AnalyticsIngestionService.OverflowPolicy overflowPolicy;
+
+    // Segmentos en orden; el último es el activo. Protegidos por this
+    private final Deque<JournalSegment> segments = new ArrayDeque<>();
+    private Position cursor;
+    private long appended;
+    private long shipped;
+    private long droppedSegments;
+    private long droppedRecords;
+    // Fin del último lote leído y aún sin commit; DROP_OLDEST no cuenta esos registros como perdidos
+    private Position inFlight;
+    // Registros en vuelo de segmentos ya descartados: se pierden si su lote no llega al commit
+    private long droppedInFlight;
+
+    public EventJournal(
+            ObjectMapper objectMapper,
+            @Value("${analytics.journal.enabled:true}") boolean enabled,
+            @Value("${analytics.journal.dir:./analytics-journal}") String directory,
+            @Value("${analytics.journal.segment-bytes:16777216}") int segmentBytes,
+            @Value("${analytics.journal.max-segments:64}") int maxSegments,
+            @Value("${analytics.journal.sync-every-append:false}") boolean syncEveryAppend,
+            @Value("${analytics.journal.archive-shipped:false}") boolean archiveShipped,
+            @Value("${analytics.ingest.overflow-policy:DROP_OLDEST}") AnalyticsIngestionService.OverflowPolicy overflowPolicy) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = Math.max(2, maxSegments);
+        this.syncEveryAppend = syncEveryAppend;
+        this.archiveShipped = archiveShipped;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Recupera los segmentos existentes y abre un segmento nuevo para escribir
+     */
+    @PostConstruct
+    public synchronized void recover() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(JournalSegment::isSegmentFile)
+                    .sorted(Comparator.comparingLong(JournalSegment::parseId))
+                    .toList();
+        }
+
+        Position checkpoint = readCheckpoint();
+        for (Path file : files) {
+            long id = JournalSegment.parseId(file);
+            if (checkpoint != null && id < checkpoint.segmentId) {
+                // Enviado por completo antes del reinicio
+                retire(file);
+                continue;
+            }
+            segments.addLast(JournalSegment.open(file));
+        }
+
+        if (checkpoint != null && !segments.isEmpty() && segments.peekFirst().getId() == checkpoint.segmentId) {
+            cursor = checkpoint;
+        } else {
+            cursor = segments.isEmpty() ? null : new Position(segments.peekFirst().getId(), 0);
+        }
+
+        long nextId = segments.isEmpty()
+                ? (checkpoint != null ? checkpoint.segmentId + 1 : 1)
+                : segments.peekLast().getId() + 1;
+        segments.addLast(JournalSegment.create(directory, nextId, segmentBytes));
+        if (cursor == null) {
+            cursor = new Position(nextId, 0);
+        }
+
+        int pendingSegments = segments.size() - 1;
+        if (pendingSegments > 0) {
+            log.info("📒 Journal de analytics: {} segmentos pendientes de envío, se reanuda desde {}",
+                    pendingSegments, cursor);
+        } else {
+            log.info("📒 Journal de analytics inicializado en: {}", directory);
+        }
+    }
+
+    /**
+     * Agrega un evento al journal; al volver, el evento sobrevive a un reinicio del proceso
+     *
+     * @throws IngestionRejectedException si se alcanzó max-segments y la política es REJECT
+     */
+    public void append(PendingWrite write) {
+        byte[] payload = encode(write);
+        if (payload.length + JournalSegment.RECORD_HEADER > segmentBytes) {
+            throw new IllegalArgumentException("Evento de analytics demasiado grande para el journal: "
+                    + payload.length + " bytes");
+        }
+
+        synchronized (this) {
+            JournalSegment active = segments.peekLast();
+            if (!active.append(payload)) {
+                active = roll();
+                active.append(payload);
+            }
+            if (syncEveryAppend) {
+                active.force();
+            }
+            appended++;
+        }
+    }
+
+    /**
+     * Agrega varios eventos bajo un único lock y un único force al final
+     * Devuelve cuántos se agregaron: si el journal se llena con política REJECT se detiene ahí
+     */
+    public int appendAll(List<PendingWrite> writes) {
+        List<byte[]> payloads = new ArrayList<>(writes.size());
+        for (PendingWrite write : writes) {
+            byte[] payload = encode(write);
+            if (payload.length + JournalSegment.RECORD_HEADER > segmentBytes) {
+                throw new IllegalArgumentException("Evento de analytics demasiado grande para el journal: "
+                        + payload.length + " bytes");
+            }
+            payloads.add(payload);
+        }
+
+        int count = 0;
+        synchronized (this) {
+            JournalSegment active = segments.peekLast();
+            try {
+                for (byte[] payload : payloads) {
+                    if (!active.append(payload)) {
+                        active = roll();
+                        active.append(payload);
+                    }
+                    count++;
+                    appended++;
+                }
+            } catch (IngestionRejectedException e) {
+                log.warn("⚠️ Journal de analytics lleno, se aceptaron {} de {} eventos del lote", count, payloads.size());
+            }
+            if (syncEveryAppend && count > 0) {
+                segments.peekLast().force();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Lee hasta max registros desde el checkpoint, sin avanzarlo
+     */
+    public Batch read(int max) {
+        List<byte[]> payloads = new ArrayList<>(max);
+        Position position;
+
+        synchronized (this) {
+            if (droppedInFlight > 0) {
+                // El lote anterior no se confirmó y su segmento ya no existe
+                droppedRecords += droppedInFlight;
+                droppedInFlight = 0;
+            }
+            position = cursor;
+            Iterator<JournalSegment> it = segments.iterator();
+            JournalSegment segment = null;
+            while (it.hasNext()) {
+                segment = it.next();
+                if (segment.getId() >= position.segmentId) {
+                    break;
+                }
+            }
+            if (segment != null && segment.getId() != position.segmentId) {
+                position = new Position(segment.getId(), 0);
+            }
+
+            while (segment != null && payloads.size() < max) {
+                byte[] payload = segment.read(position.offset);
+                if (payload != null) {
+                    payloads.add(payload);
+                    position = new Position(segment.getId(), position.offset + JournalSegment.RECORD_HEADER + payload.length);
+                } else if (it.hasNext()) {
+                    // Segmento sellado y leído por completo: pasar al siguiente
+                    segment = it.next();
+                    position = new Position(segment.getId(), 0);
+                } else {
+                    segment = null;
+                }
+            }
+            inFlight = payloads.isEmpty() ? null : position;
+        }
+
+        List<PendingWrite> writes = new ArrayList<>(payloads.size());
+        for (byte[] payload : payloads) {
+            PendingWrite write = decode(payload);
+            if (write != null) {
+                writes.add(write);
+            }
+        }
+        return new Batch(writes, payloads.size(), position);
+    }
+
+    /**
+     * Confirma que todo lo anterior a la posición ya está en Firestore
+     * Persiste el checkpoint y elimina (o archiva) los segmentos completamente enviados
+     * Si DROP_OLDEST movió el checkpoint más allá del lote mientras se enviaba, no retrocede
+     */
+    public synchronized void commit(Batch batch) {
+        shipped += batch.records;
+        inFlight = null;
+        droppedInFlight = 0;
+        if (compare(batch.next, cursor) <= 0) {
+            // Sin avance (flush en vacío o lote de un segmento ya descartado): no se reescribe el checkpoint
+            return;
+        }
+        cursor = batch.next;
+        writeCheckpoint(cursor);
+
+        while (segments.size() > 1 && segments.peekFirst().getId() < cursor.segmentId) {
+            closeAndRetire(segments.pollFirst());
+        }
+    }
+
+    /**
+     * Recorre los segmentos archivados (eventos ya enviados) en orden, p. ej. para reconstruir rollups
+     */
+    public void replayArchived(Consumer<PendingWrite> consumer) throws IOException {
+        Path archive = directory.resolve(ARCHIVE_DIR);
+        if (!Files.isDirectory(archive)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(archive)) {
+            files = listing.filter(JournalSegment::isSegmentFile)
+                    .sorted(Comparator.comparingLong(JournalSegment::parseId))
+                    .toList();
+        }
+        for (Path file : files) {
+            try (JournalSegment segment = JournalSegment.open(file)) {
+                int position = 0;
+                byte[] payload;
+                while ((payload = segment.read(position)) != null) {
+                    PendingWrite write = decode(payload);
+                    if (write != null) {
+                        consumer.accept(write);
+                    }
+                    position += JournalSegment.RECORD_HEADER + payload.length;
+                }
+            }
+        }
+    }
+
+    public synchronized boolean hasPending() {
+        if (!enabled || cursor == null) {
+            return false;
+        }
+        JournalSegment active = segments.peekLast();
+        return cursor.segmentId < active.getId() || cursor.offset < active.getWritePosition();
+    }
+
+    /**
+     * Registros descartados por DROP_OLDEST sin llegar a Firestore
+     */
+    public synchronized long getDroppedRecords() {
+        return droppedRecords;
+    }
+
+    /**
+     * Registros agregados en esta ejecución y aún no enviados (aproximado tras una recuperación)
+     */
+    public synchronized long pendingRecords() {
+        return Math.max(0, appended - shipped);
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("directory", directory.toString());
+        stats.put("segments", segments.size());
+        stats.put("maxSegments", maxSegments);
+        stats.put("appended", appended);
+        stats.put("shipped", shipped);
+        stats.put("droppedSegments", droppedSegments);
+        stats.put("droppedRecords", droppedRecords);
+        stats.put("cursor", cursor != null ? cursor.toString() : null);
+        return stats;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        for (JournalSegment segment : segments) {
+            try {
+                segment.force();
+                segment.close();
+            } catch (IOException e) {
+                log.warn("⚠️ Error cerrando segmento del journal {}: {}", segment.getFile(), e.getMessage());
+            }
+        }
+    }
+
+    // Métodos privados de utilidad
+
+    /**
+     * Sella el segmento activo y abre el siguiente; aplica la política de desborde
+     */
+    private JournalSegment roll() {
+        JournalSegment current = segments.peekLast();
+        current.force();
+
+        if (segments.size() >= maxSegments) {
+            if (overflowPolicy == AnalyticsIngestionService.OverflowPolicy.REJECT) {
+                throw new IngestionRejectedException("El journal de analytics está lleno, reintenta más tarde");
+            }
+            // DROP_OLDEST: se descarta el segmento pendiente más antiguo
+            JournalSegment oldest = segments.pollFirst();
+            droppedSegments++;
+            long unshipped = countRecords(oldest, cursor.segmentId == oldest.getId() ? cursor.offset : 0);
+            long lost = unshipped;
+            if (inFlight != null && inFlight.segmentId >= oldest.getId()) {
+                // Lo leído por el lote en curso se está enviando: solo se pierde lo posterior
+                lost = inFlight.segmentId == oldest.getId() ? countRecords(oldest, inFlight.offset) : 0;
+                droppedInFlight += unshipped - lost;
+            }
+            droppedRecords += lost;
+            log.warn("⚠️ Journal de analytics lleno, se descarta el segmento {}", oldest.getFile().getFileName());
+            if (cursor.segmentId <= oldest.getId()) {
+                cursor = new Position(segments.peekFirst().getId(), 0);
+                writeCheckpoint(cursor);
+            }
+            closeAndDelete(oldest);
+        }
+
+        try {
+            JournalSegment next = JournalSegment.create(directory, current.getId() + 1, segmentBytes);
+            segments.addLast(next);
+            return next;
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo crear un nuevo segmento del journal", e);
+        }
+    }
+
+    private static int compare(Position a, Position b) {
+        return a.segmentId != b.segmentId ? Long.compare(a.segmentId, b.segmentId) : Integer.compare(a.offset, b.offset);
+    }
+
+    /**
+     * Registros del segmento a partir de la posición dada (los aún no enviados)
+     */
+    private static long countRecords(JournalSegment segment, int from) {
+        long count = 0;
+        int position = from;
+        byte[] payload;
+        while ((payload = segment.read(position)) != null) {
+            position += JournalSegment.RECORD_HEADER + payload.length;
+            count++;
+        }
+        return count;
+    }
+
+    private void closeAndRetire(JournalSegment segment) {
+        try {
+            segment.close();
+            retire(segment.getFile());
+        } catch (IOException e) {
+            log.warn("⚠️ Error retirando segmento del journal {}: {}", segment.getFile(), e.getMessage());
+        }
+    }
+
+    private void closeAndDelete(JournalSegment segment) {
+        try {
+            segment.close();
+            Files.deleteIfExists(segment.getFile());
+        } catch (IOException e) {
+            log.warn("⚠️ Error eliminando segmento del journal {}: {}", segment.getFile(), e.getMessage());
+        }
+    }
+
+    private void retire(Path file) throws IOException {
+        if (archiveShipped) {
+            Path archive = Files.createDirectories(directory.resolve(ARCHIVE_DIR));
+            Files.move(file, archive.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private Position readCheckpoint() {
+        Path file = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            String[] parts = Files.readString(file, StandardCharsets.UTF_8).trim().split(":");
+            return new Position(Long.parseLong(parts[0]), Integer.parseInt(parts[1]));
+        } catch (Exception e) {
+            log.warn("⚠️ Checkpoint del journal ilegible, se reenvían todos los segmentos: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeCheckpoint(Position position) {
+        try {
+            Path tmp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+            Files.writeString(tmp, position.segmentId + ":" + position.offset, StandardCharsets.UTF_8);
+            Files.move(tmp, directory.resolve(CHECKPOINT_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // En el peor caso se reenvía un lote ya escrito (los ids de documento son estables)
+            log.error("❌ Error guardando checkpoint del journal: {}", e.getMessage());
+        }
+    }
+
+    private byte[] encode(PendingWrite write) {
+        Map<String, Object> envelope = new HashMap<>();
+        envelope.put("collection", write.getCollection());
+        envelope.put("documentId", write.getDocumentId());
+        envelope.put("data", encodeValue(write.getData()));
+        try {
+            return objectMapper.writeValueAsBytes(envelope);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("No se pudo serializar el evento de analytics", e);
+        }
+    }
+
+    private PendingWrite decode(byte[] payload) {
+        try {
+            Map<String, Object> envelope = objectMapper.readValue(payload, MAP_TYPE);
+            @SuppressWarnings("unchecked")
+            Map<String, Object> data = (Map<String, Object>) decodeValue(envelope.get("data"));
+            return new PendingWrite((String) envelope.get("collection"), (String) envelope.get("documentId"),
+                    data, System.nanoTime());
+        } catch (IOException e) {
+            log.error("❌ Registro del journal ilegible, se omite: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Los Timestamp de Firestore se guardan como {"$timestamp": ISO-8601} para recuperar el tipo al reenviar
+     */
+    private Object encodeValue(Object value) {
+        if (value instanceof Timestamp) {
+            return Map.of(TIMESTAMP_KEY, value.toString());
+        }
+        if (value instanceof Map<?, ?> map) {
+            Map<String, Object> encoded = new LinkedHashMap<>();
+            map.forEach((k, v) -> encoded.put(String.valueOf(k), encodeValue(v)));
+            return encoded;
+        }
+        if (value instanceof Collection<?> collection) {
+            List<Object> encoded = new ArrayList<>(collection.size());
+            collection.forEach(v -> encoded.add(encodeValue(v)));
+            return encoded;
+        }
+        return value;
+    }
+
+    private Object decodeValue(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            if (map.size() == 1 && map.get(TIMESTAMP_KEY) instanceof String text) {
+                return Timestamp.parseTimestamp(text);
+            }
+            Map<String, Object> decoded = new LinkedHashMap<>();
+            map.forEach((k, v) -> decoded.put(String.valueOf(k), decodeValue(v)));
+            return decoded;
+        }
+        if (value instanceof List<?> list) {
+            List<Object> decoded = new ArrayList<>(list.size());
+            list.forEach(v -> decoded.add(decodeValue(v)));
+            return decoded;
+        }
+        return value;
+    }
+
+    /**
+     * Posición en el journal: segmento y offset dentro del segmento
+     */
+    public static final class Position {
+        final long segmentId;
+        final int offset;
+
+        Position(long segmentId, int offset) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+        }
+
+        @Override
+        public String toString() {
+            return segmentId + ":" + offset;
+        }
+    }
+
+    /**
+     * Lote leído del journal y la posición a confirmar una vez escrito
+     */
+    public static final class Batch {
+        private final List<PendingWrite> writes;
+        private final int records;
+        private final Position next;
+
+        Batch(List<PendingWrite> writes, int records, Position next) {
+            this.writes = writes;
+            this.records = records;
+            this.next = next;
+        }
+
+        public List<PendingWrite> getWrites() {
+            return writes;
+        }
+
+        public boolean isEmpty() {
+            return records == 0;
+        }
+    }
+}
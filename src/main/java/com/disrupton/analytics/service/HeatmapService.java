@@ -0,0 +1,407 @@
+package com.disrupton.analytics.service;
+
+import com.disrupton.analytics.model.Heatmap;
+import com.disrupton.analytics.model.HeatmapTile;
+import com.disrupton.analytics.model.RollupGranularity;
+import com.disrupton.analytics.util.SlippyTiles;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Mapas de calor: conteos diarios por tesela z/x/y de los eventos con coordenadas
+ *
+ * Cada evento se cuantiza a una tesela en cada zoom guardado (analytics.heatmap.zooms). Las
+ * teselas se agrupan en bloques de 2^group-bits x 2^group-bits: un documento por métrica, zoom,
+ * bloque y día con el mapa tesela → conteo. Los conteos se acumulan en memoria y se vuelcan cada
+ * flush-interval-ms con FieldValue.increment (conmutativo: varias instancias pueden volcar al
+ * mismo documento sin transacción).
+ *
+ * Una consulta lee solo los bloques que tocan el bbox en cada día del rango, por id, y agrega las
+ * teselas al zoom pedido: un campus son unos pocos bloques por día en vez de escanear los eventos
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HeatmapService {
+
+    // Límite de escrituras por batch de Firestore (500) con margen
+    private static final int BATCH_SIZE = 400;
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final Firestore firestore;
+
+    @Qualifier("analyticsScheduler")
+    private final ScheduledExecutorService analyticsScheduler;
+
+    @Value("${analytics.heatmap.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analytics.heatmap.collection:analytics_heatmap}")
+    private String collectionName;
+
+    @Value("${analytics.heatmap.metrics:analytics_events,cultural_object_views,user_sessions}")
+    private List<String> metrics;
+
+    @Value("${analytics.heatmap.zooms:12,15,18}")
+    private int[] zooms;
+
+    @Value("${analytics.heatmap.group-bits:3}")
+    private int groupBits;
+
+    @Value("${analytics.heatmap.flush-interval-ms:30000}")
+    private long flushIntervalMs;
+
+    @Value("${analytics.heatmap.max-pending-documents:5000}")
+    private int maxPendingDocuments;
+
+    @Value("${analytics.heatmap.max-documents-per-query:3000}")
+    private int maxDocumentsPerQuery;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // Conteos aún no volcados, por id de documento
+    private final Map<String, PendingBlock> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    @PostConstruct
+    public void start() {
+        zooms = Arrays.stream(zooms)
+                .filter(zoom -> zoom >= 0 && zoom <= SlippyTiles.MAX_ZOOM)
+                .sorted()
+                .distinct()
+                .toArray();
+        if (!enabled || zooms.length == 0) {
+            enabled = false;
+            log.info("🗺️ Mapas de calor deshabilitados");
+            return;
+        }
+        analyticsScheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs,
+                TimeUnit.MILLISECONDS);
+        log.info("🗺️ Mapas de calor de {}: zooms {}, bloques de {}x{} teselas, volcado cada {} ms",
+                metrics, Arrays.toString(zooms), 1 << groupBits, 1 << groupBits, flushIntervalMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (enabled) {
+            flushQuietly();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public List<String> getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Suma weight eventos en la tesela de cada zoom guardado
+     * Se ignoran las métricas sin mapa de calor y las coordenadas nulas o fuera de rango
+     */
+    public void record(String metric, Double latitude, Double longitude, Instant at, long weight) {
+        if (!enabled || weight <= 0 || latitude == null || longitude == null || !metrics.contains(metric)
+                || !SlippyTiles.isValid(latitude, longitude)) {
+            return;
+        }
+
+        LocalDate day = RollupGranularity.DAY.truncate(at.atZone(zone)).toLocalDate();
+        for (int zoom : zooms) {
+            int x = SlippyTiles.tileX(longitude, zoom);
+            int y = SlippyTiles.tileY(latitude, zoom);
+            int blockX = x >> groupBits;
+            int blockY = y >> groupBits;
+            String docId = docId(metric, zoom, blockX, blockY, day);
+            // compute bloquea la entrada: no se pierde el conteo si flush() la está quitando
+            pending.compute(docId, (key, block) -> {
+                if (block == null) {
+                    block = new PendingBlock(key, metric, zoom, blockX, blockY, day);
+                }
+                block.counts.merge(tileKey(x, y), weight, Long::sum);
+                return block;
+            });
+        }
+
+        if (pending.size() >= maxPendingDocuments && flushRequested.compareAndSet(false, true)) {
+            analyticsScheduler.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Teselas con eventos que tocan el bbox, agregadas al zoom pedido
+     *
+     * @param range today, week, month o year (por defecto week), en días completos hasta hoy
+     * @throws IllegalStateException    si los mapas de calor están deshabilitados
+     * @throws IllegalArgumentException si el bbox o el zoom no son válidos o la consulta leería
+     *                                  más de max-documents-per-query documentos
+     */
+    public Heatmap heatmap(String metric, double west, double south, double east, double north,
+                           int zoom, String range) throws ExecutionException, InterruptedException {
+        if (!enabled) {
+            throw new IllegalStateException("Mapas de calor deshabilitados");
+        }
+        if (!metrics.contains(metric)) {
+            throw new IllegalArgumentException("Métrica sin mapa de calor: " + metric + " (disponibles: " + metrics + ")");
+        }
+        if (!SlippyTiles.isValid(south, west) || !SlippyTiles.isValid(north, east) || west >= east || south >= north) {
+            throw new IllegalArgumentException("bbox inválido: se espera oeste,sur,este,norte en grados");
+        }
+        if (zoom < 0 || zoom > SlippyTiles.MAX_ZOOM) {
+            throw new IllegalArgumentException("zoom fuera de rango: " + zoom);
+        }
+
+        // Se agrega desde el zoom guardado más cercano que no sea menos detallado que el pedido
+        int sourceZoom = zooms[zooms.length - 1];
+        for (int stored : zooms) {
+            if (stored >= zoom) {
+                sourceZoom = stored;
+                break;
+            }
+        }
+        int targetZoom = Math.min(zoom, sourceZoom);
+        int shift = sourceZoom - targetZoom;
+
+        int minX = SlippyTiles.tileX(west, sourceZoom);
+        int maxX = SlippyTiles.tileX(east, sourceZoom);
+        int minY = SlippyTiles.tileY(north, sourceZoom);
+        int maxY = SlippyTiles.tileY(south, sourceZoom);
+
+        int days = days(range);
+        LocalDate endDay = LocalDate.now(zone);
+        LocalDate startDay = endDay.minusDays(days - 1L);
+        long blocks = (long) ((maxX >> groupBits) - (minX >> groupBits) + 1) * ((maxY >> groupBits) - (minY >> groupBits) + 1);
+        long documents = blocks * days;
+        if (documents > maxDocumentsPerQuery) {
+            throw new IllegalArgumentException("La consulta leería " + documents + " documentos (máximo "
+                    + maxDocumentsPerQuery + "); hay que achicar el bbox, el rango o el zoom");
+        }
+
+        List<String> docIds = new ArrayList<>((int) documents);
+        for (LocalDate day = startDay; !day.isAfter(endDay); day = day.plusDays(1)) {
+            for (int blockX = minX >> groupBits; blockX <= maxX >> groupBits; blockX++) {
+                for (int blockY = minY >> groupBits; blockY <= maxY >> groupBits; blockY++) {
+                    docIds.add(docId(metric, sourceZoom, blockX, blockY, day));
+                }
+            }
+        }
+        DocumentReference[] refs = docIds.stream()
+                .map(docId -> firestore.collection(collectionName).document(docId))
+                .toArray(DocumentReference[]::new);
+
+        Map<Long, Long> counts = new HashMap<>();
+        int read = 0;
+        for (DocumentSnapshot document : firestore.getAll(refs).get()) {
+            Map<String, Long> tiles = new HashMap<>();
+            if (readTiles(document, tiles)) {
+                read++;
+            }
+            // Incluye lo que aún no se volcó, para que el día en curso no vaya un intervalo atrasado
+            pending.computeIfPresent(document.getId(), (key, block) -> {
+                block.counts.forEach((tile, count) -> tiles.merge(tile, count, Long::sum));
+                return block;
+            });
+            tiles.forEach((tile, count) -> {
+                int separator = tile.indexOf('_');
+                int x = Integer.parseInt(tile.substring(0, separator));
+                int y = Integer.parseInt(tile.substring(separator + 1));
+                if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                    counts.merge(((long) (x >> shift) << 32) | (y >> shift), count, Long::sum);
+                }
+            });
+        }
+
+        List<HeatmapTile> tiles = new ArrayList<>(counts.size());
+        long total = 0;
+        long max = 0;
+        for (Map.Entry<Long, Long> entry : counts.entrySet()) {
+            int x = (int) (entry.getKey() >>> 32);
+            int y = (int) (entry.getKey() & 0xffffffffL);
+            tiles.add(HeatmapTile.builder()
+                    .zoom(targetZoom)
+                    .x(x)
+                    .y(y)
+                    .count(entry.getValue())
+                    .west(SlippyTiles.longitude(x, targetZoom))
+                    .east(SlippyTiles.longitude(x + 1, targetZoom))
+                    .north(SlippyTiles.latitude(y, targetZoom))
+                    .south(SlippyTiles.latitude(y + 1, targetZoom))
+                    .build());
+            total += entry.getValue();
+            max = Math.max(max, entry.getValue());
+        }
+        tiles.sort(Comparator.comparingLong(HeatmapTile::getCount).reversed());
+
+        return Heatmap.builder()
+                .metric(metric)
+                .zoom(targetZoom)
+                .requestedZoom(zoom)
+                .sourceZoom(sourceZoom)
+                .west(west)
+                .south(south)
+                .east(east)
+                .north(north)
+                .startDay(startDay)
+                .endDay(endDay)
+                .documentsRead(read)
+                .totalCount(total)
+                .maxCount(max)
+                .tiles(tiles)
+                .build();
+    }
+
+    /**
+     * Vuelca los conteos pendientes a Firestore
+     */
+    public void flush() {
+        flushRequested.set(false);
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<PendingBlock> flushing = new ArrayList<>();
+        for (String docId : new ArrayList<>(pending.keySet())) {
+            // Al quitarlo del mapa nadie más lo modifica; lo que llegue después crea otro bloque
+            PendingBlock block = pending.remove(docId);
+            if (block != null) {
+                flushing.add(block);
+            }
+        }
+
+        int failures = 0;
+        for (int from = 0; from < flushing.size(); from += BATCH_SIZE) {
+            List<PendingBlock> chunk = flushing.subList(from, Math.min(flushing.size(), from + BATCH_SIZE));
+            WriteBatch batch = firestore.batch();
+            for (PendingBlock block : chunk) {
+                batch.set(firestore.collection(collectionName).document(block.docId), toUpdate(block), SetOptions.merge());
+            }
+            try {
+                batch.commit().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                chunk.forEach(this::restore);
+                failures += chunk.size();
+            } catch (ExecutionException e) {
+                chunk.forEach(this::restore);
+                failures += chunk.size();
+                log.error("❌ Error volcando {} bloques del mapa de calor: {}", chunk.size(), e.getCause().getMessage());
+            }
+        }
+        log.debug("🗺️ Bloques del mapa de calor volcados: {} ({} con error)", flushing.size() - failures, failures);
+    }
+
+    // Métodos privados de utilidad
+
+    private Map<String, Object> toUpdate(PendingBlock block) {
+        Map<String, Object> tiles = new HashMap<>();
+        long total = 0;
+        for (Map.Entry<String, Long> entry : block.counts.entrySet()) {
+            tiles.put(entry.getKey(), FieldValue.increment(entry.getValue()));
+            total += entry.getValue();
+        }
+
+        Map<String, Object> update = new HashMap<>();
+        update.put("metric", block.metric);
+        update.put("zoom", block.zoom);
+        update.put("blockX", block.blockX);
+        update.put("blockY", block.blockY);
+        update.put("day", Timestamp.ofTimeSecondsAndNanos(block.day.atStartOfDay(zone).toEpochSecond(), 0));
+        update.put("tiles", tiles);
+        update.put("total", FieldValue.increment(total));
+        update.put("updatedAt", FieldValue.serverTimestamp());
+        return update;
+    }
+
+    private void restore(PendingBlock block) {
+        pending.merge(block.docId, block, (current, failed) -> {
+            failed.counts.forEach((tile, count) -> current.counts.merge(tile, count, Long::sum));
+            return current;
+        });
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("❌ Error volcando el mapa de calor: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Copia el mapa de teselas del documento; false si no existe
+     */
+    @SuppressWarnings("unchecked")
+    private static boolean readTiles(DocumentSnapshot document, Map<String, Long> tiles) {
+        if (!document.exists()) {
+            return false;
+        }
+        Object stored = document.get("tiles");
+        if (stored instanceof Map) {
+            ((Map<String, Object>) stored).forEach((tile, count) -> {
+                if (count instanceof Number) {
+                    tiles.merge(tile, ((Number) count).longValue(), Long::sum);
+                }
+            });
+        }
+        return true;
+    }
+
+    private static int days(String range) {
+        switch (range == null ? "" : range.toLowerCase(Locale.ROOT)) {
+            case "today":
+                return 1;
+            case "month":
+                return 30;
+            case "year":
+                return 365;
+            case "week":
+            default:
+                return 7;
+        }
+    }
+
+    private static String tileKey(int x, int y) {
+        return x + "_" + y;
+    }
+
+    private static String docId(String metric, int zoom, int blockX, int blockY, LocalDate day) {
+        return metric + "_z" + zoom + "_" + blockX + "_" + blockY + "_" + day.format(DAY_FORMAT);
+    }
+
+    private static final class PendingBlock {
+        final String docId;
+        final String metric;
+        final int zoom;
+        final int blockX;
+        final int blockY;
+        final LocalDate day;
+        final Map<String, Long> counts = new HashMap<>();
+
+        PendingBlock(String docId, String metric, int zoom, int blockX, int blockY, LocalDate day) {
+            this.docId = docId;
+            this.metric = metric;
+            this.zoom = zoom;
+            this.blockX = blockX;
+            this.blockY = blockY;
+            this.day = day;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.disrupton.analytics.service;
+
+import com.disrupton.analytics.model.HeavyHitter;
+import com.disrupton.analytics.model.RollupGranularity;
+import com.disrupton.analytics.util.CountMinSketch;
+import com.disrupton.analytics.util.SpaceSaving;
+import com.google.api.core.ApiFuture;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Top-K en tiempo real (p. ej. objetos más vistos) con Space-Saving y Count-Min por día
+ *
+ * Cada métrica tiene en memoria un resumen Space-Saving y un sketch Count-Min por día.
+ * Space-Saving da los candidatos y Count-Min acota su conteo (ambos sobreestiman, así que
+ * se toma el mínimo). Un rango de varios días une los resúmenes diarios y el resultado se
+ * reutiliza durante merged-cache-ms, así que las consultas se responden desde memoria.
+ * Los días con cambios se guardan en Firestore cada snapshot-interval-ms y se recargan
+ * al arrancar. Los contadores son por instancia: con varias instancias cada una guarda
+ * su propia vista
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HeavyHittersService {
+
+    private final Firestore firestore;
+
+    @Qualifier("analyticsScheduler")
+    private final ScheduledExecutorService analyticsScheduler;
+
+    @Value("${analytics.topk.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analytics.topk.collection:analytics_topk}")
+    private String collectionName;
+
+    @Value("${analytics.topk.capacity:1000}")
+    private int capacity;
+
+    @Value("${analytics.topk.cms-width:2048}")
+    private int cmsWidth;
+
+    @Value("${analytics.topk.cms-depth:4}")
+    private int cmsDepth;
+
+    @Value("${analytics.topk.retention-days:35}")
+    private int retentionDays;
+
+    @Value("${analytics.topk.snapshot-interval-ms:300000}")
+    private long snapshotIntervalMs;
+
+    @Value("${analytics.topk.merged-cache-ms:1000}")
+    private long mergedCacheMs;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // Métrica -> día -> resumen del día
+    private final Map<String, ConcurrentSkipListMap<LocalDate, DayBucket>> buckets = new ConcurrentHashMap<>();
+    // Rangos de varios días ya unidos, por "métrica|desde|hasta"
+    private final Map<String, MergedView> mergedViews = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("🏆 Top-K en memoria deshabilitado");
+            return;
+        }
+        restore();
+        analyticsScheduler.scheduleWithFixedDelay(this::snapshotQuietly, snapshotIntervalMs, snapshotIntervalMs,
+                TimeUnit.MILLISECONDS);
+        log.info("🏆 Top-K en memoria: {} contadores por día, Count-Min {}x{}, {} días, snapshot cada {} ms",
+                capacity, cmsWidth, cmsDepth, retentionDays, snapshotIntervalMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (enabled) {
+            snapshotQuietly();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Registra una ocurrencia del elemento (p. ej. una vista del objeto)
+     */
+    public void offer(String metric, String item, Instant at) {
+        offer(metric, item, at, 1);
+    }
+
+    /**
+     * Registra weight ocurrencias del elemento (una muestra que representa a varias)
+     */
+    public void offer(String metric, String item, Instant at, long weight) {
+        if (!enabled || item == null || item.isBlank() || weight <= 0) {
+            return;
+        }
+        LocalDate day = at.atZone(zone).toLocalDate();
+        buckets.computeIfAbsent(metric, key -> new ConcurrentSkipListMap<>())
+                .computeIfAbsent(day, key -> new DayBucket(new SpaceSaving(capacity), new CountMinSketch(cmsWidth, cmsDepth)))
+                .offer(item, weight);
+    }
+
+    /**
+     * Los k elementos más frecuentes desde el día de since hasta hoy
+     */
+    public List<HeavyHitter> top(String metric, Instant since, int k) {
+        MergedView view = view(metric, since);
+        if (view == null) {
+            return List.of();
+        }
+        List<HeavyHitter> top = new ArrayList<>(k);
+        for (SpaceSaving.Counter counter : view.summary.top(k)) {
+            long count = Math.min(counter.getCount(), view.sketch.estimate(counter.getItem()));
+            top.add(new HeavyHitter(counter.getItem(), count, Math.max(0, counter.getCount() - counter.getError())));
+        }
+        top.sort(Comparator.comparingLong(HeavyHitter::getCount).reversed());
+        return top;
+    }
+
+    /**
+     * Frecuencia estimada de un elemento desde el día de since hasta hoy (cota superior)
+     */
+    public long count(String metric, String item, Instant since) {
+        MergedView view = view(metric, since);
+        return view != null ? view.sketch.estimate(item) : 0L;
+    }
+
+    /**
+     * Guarda en Firestore los días que cambiaron desde el último snapshot y descarta los vencidos
+     */
+    public void snapshot() {
+        LocalDate oldest = LocalDate.now(zone).minusDays(retentionDays);
+        List<ApiFuture<WriteResult>> writes = new ArrayList<>();
+
+        buckets.forEach((metric, days) -> {
+            days.headMap(oldest).clear();
+            days.forEach((day, bucket) -> {
+                DayBucket copy = bucket.copyIfDirty();
+                if (copy != null) {
+                    writes.add(firestore.collection(collectionName).document(docId(metric, day))
+                            .set(toDocument(metric, day, copy)));
+                }
+            });
+        });
+        mergedViews.values().removeIf(view -> view.from.isBefore(oldest));
+
+        int failures = 0;
+        for (ApiFuture<WriteResult> write : writes) {
+            try {
+                write.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failures++;
+            } catch (ExecutionException e) {
+                failures++;
+                log.error("❌ Error guardando snapshot de top-K: {}", e.getCause().getMessage());
+            }
+        }
+        if (failures > 0) {
+            // Se vuelve a intentar en el próximo snapshot
+            buckets.values().forEach(days -> days.values().forEach(DayBucket::markDirty));
+        }
+        log.debug("🏆 Snapshot de top-K: {} días guardados ({} con error)", writes.size() - failures, failures);
+    }
+
+    // Métodos privados de utilidad
+
+    private MergedView view(String metric, Instant since) {
+        if (!enabled) {
+            return null;
+        }
+        ConcurrentSkipListMap<LocalDate, DayBucket> days = buckets.get(metric);
+        if (days == null) {
+            return null;
+        }
+        LocalDate from = since.atZone(zone).toLocalDate();
+        LocalDate to = LocalDate.now(zone);
+        String key = metric + "|" + from + "|" + to;
+
+        MergedView cached = mergedViews.get(key);
+        long now = System.nanoTime();
+        if (cached != null && now - cached.builtAtNanos < TimeUnit.MILLISECONDS.toNanos(mergedCacheMs)) {
+            return cached;
+        }
+
+        SpaceSaving summary = new SpaceSaving(capacity);
+        CountMinSketch sketch = new CountMinSketch(cmsWidth, cmsDepth);
+        for (DayBucket bucket : days.subMap(from, true, to, true).values()) {
+            bucket.mergeInto(summary, sketch);
+        }
+        MergedView view = new MergedView(from, now, summary, sketch);
+        mergedViews.put(key, view);
+        return view;
+    }
+
+    private void restore() {
+        try {
+            LocalDate oldest = LocalDate.now(zone).minusDays(retentionDays);
+            QuerySnapshot snapshot = firestore.collection(collectionName)
+                    .whereGreaterThanOrEqualTo("day", toTimestamp(oldest))
+                    .get()
+                    .get();
+
+            int restored = 0;
+            for (QueryDocumentSnapshot document : snapshot) {
+                DayBucket bucket = fromDocument(document);
+                if (bucket != null) {
+                    LocalDate day = document.getTimestamp("day").toDate().toInstant().atZone(zone).toLocalDate();
+                    buckets.computeIfAbsent(document.getString("metric"), key -> new ConcurrentSkipListMap<>())
+                            .put(day, bucket);
+                    restored++;
+                }
+            }
+            log.info("🏆 Top-K restaurado desde Firestore: {} días", restored);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("❌ Error restaurando top-K, se empieza vacío: {}", e.getMessage(), e);
+        }
+    }
+
+    private Map<String, Object> toDocument(String metric, LocalDate day, DayBucket bucket) {
+        List<Map<String, Object>> counters = new ArrayList<>(bucket.summary.size());
+        for (SpaceSaving.Counter counter : bucket.summary.counters()) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("item", counter.getItem());
+            entry.put("count", counter.getCount());
+            entry.put("error", counter.getError());
+            counters.add(entry);
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("metric", metric);
+        data.put("day", toTimestamp(day));
+        data.put("capacity", capacity);
+        data.put("total", bucket.summary.getTotal());
+        data.put("counters", counters);
+        data.put("cmsWidth", cmsWidth);
+        data.put("cmsDepth", cmsDepth);
+        data.put("cms", Blob.fromBytes(bucket.sketch.toBytes()));
+        data.put("updatedAt", FieldValue.serverTimestamp());
+        return data;
+    }
+
+    @SuppressWarnings("unchecked")
+    private DayBucket fromDocument(DocumentSnapshot document) {
+        Long width = document.getLong("cmsWidth");
+        Long depth = document.getLong("cmsDepth");
+        Blob cms = document.getBlob("cms");
+        List<Map<String, Object>> counters = (List<Map<String, Object>>) document.get("counters");
+        if (width == null || depth == null || cms == null || counters == null
+                || width.intValue() != cmsWidth || depth.intValue() != cmsDepth) {
+            log.warn("⚠️ Snapshot de top-K {} ignorado: formato distinto al configurado", document.getId());
+            return null;
+        }
+
+        SpaceSaving summary = new SpaceSaving(capacity);
+        for (Map<String, Object> counter : counters) {
+            summary.offer((String) counter.get("item"), ((Number) counter.get("count")).longValue(),
+                    ((Number) counter.get("error")).longValue());
+        }
+        return new DayBucket(summary, CountMinSketch.fromBytes(cmsWidth, cmsDepth, cms.toBytes()));
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (Exception e) {
+            log.error("❌ Error en snapshot de top-K: {}", e.getMessage(), e);
+        }
+    }
+
+    private Timestamp toTimestamp(LocalDate day) {
+        Instant instant = day.atStartOfDay(zone).toInstant();
+        return Timestamp.ofTimeSecondsAndNanos(instant.getEpochSecond(), 0);
+    }
+
+    private String docId(String metric, LocalDate day) {
+        // "/" no es válido en ids de documento
+        return String.join("|", metric, RollupGranularity.DAY.name(),
+                RollupGranularity.DAY.key(day.atStartOfDay(zone))).replace('/', '_');
+    }
+
+    /**
+     * Resumen de un día; las escrituras llegan de varios hilos de petición
+     */
+    private static final class DayBucket {
+        private final SpaceSaving summary;
+        private final CountMinSketch sketch;
+        private boolean dirty;
+
+        DayBucket(SpaceSaving summary, CountMinSketch sketch) {
+            this.summary = summary;
+            this.sketch = sketch;
+        }
+
+        synchronized void offer(String item, long weight) {
+            summary.offer(item, weight, 0);
+            sketch.add(item, weight);
+            dirty = true;
+        }
+
+        synchronized void mergeInto(SpaceSaving targetSummary, CountMinSketch targetSketch) {
+            targetSummary.merge(summary);
+            targetSketch.merge(sketch);
+        }
+
+        synchronized DayBucket copyIfDirty() {
+            if (!dirty) {
+                return null;
+            }
+            dirty = false;
+            return new DayBucket(summary.copy(), sketch.copy());
+        }
+
+        synchronized void markDirty() {
+            dirty = true;
+        }
+    }
+
+    private static final class MergedView {
+        final LocalDate from;
+        final long builtAtNanos;
+        final SpaceSaving summary;
+        final CountMinSketch sketch;
+
+        MergedView(LocalDate from, long builtAtNanos, SpaceSaving summary, CountMinSketch sketch) {
+            this.from = from;
+            this.builtAtNanos = builtAtNanos;
+            this.summary = summary;
+            this.sketch = sketch;
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package com.disrupton.analytics.service;
+
+import com.disrupton.analytics.model.LeaderboardEntry;
+import com.disrupton.analytics.util.LinearScorer;
+import com.disrupton.analytics.util.RankedSkipList;
+import com.disrupton.config.ScoringConfig;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.SetOptions;
+import com.google.cloud.firestore.WriteBatch;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Ranking de usuarios por engagement, mantenido en memoria y actualizado con cada evento
+ *
+ * Cada usuario tiene siete contadores (sesiones, minutos de exploración, interacciones,
+ * comentarios, reacciones, compartidos y fotos) y su puntaje es la suma ponderada con los pesos
+ * de usuario de analytics.scoring. Un evento suma a los contadores y reubica al usuario en una
+ * skip list indexada: top-N y "rango de X" salen en O(log n) sin puntuar a todos.
+ *
+ * Los contadores se guardan en un documento por usuario de analytics_leaderboard (el tamaño de
+ * cada documento no crece con la cantidad de usuarios). Cada snapshot-interval-ms las sumas
+ * pendientes se vuelcan con FieldValue.increment en lotes, sin transacciones, y se releen los
+ * usuarios que cambiaron desde la última sincronización (updatedAt) para incorporar lo que volcaron
+ * otras instancias. Al arrancar se lee toda la colección
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LeaderboardService {
+
+    // Orden de los contadores; los nombres son los de los pesos de usuario de ScoringConfig
+    private static final String[] COLUMNS = {
+            "sessions", "explorationTime", "interactions", "comments", "reactions", "shares", "photos"};
+    private static final int SESSIONS = 0;
+    private static final int EXPLORATION_TIME = 1;
+    private static final int INTERACTIONS = 2;
+    private static final int COMMENTS = 3;
+    private static final int REACTIONS = 4;
+    private static final int SHARES = 5;
+    private static final int PHOTOS = 6;
+
+    // Un WriteBatch admite como máximo 500 escrituras
+    private static final int MAX_BATCH_WRITES = 500;
+    // Margen al releer por updatedAt: un commit puede hacerse visible después de otro más reciente
+    private static final long SYNC_OVERLAP_SECONDS = 60;
+
+    private final Firestore firestore;
+    private final ScoringConfig scoringConfig;
+
+    @Qualifier("analyticsScheduler")
+    private final ScheduledExecutorService analyticsScheduler;
+
+    @Value("${analytics.leaderboard.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analytics.leaderboard.collection:analytics_leaderboard}")
+    private String collectionName;
+
+    @Value("${analytics.leaderboard.snapshot-interval-ms:60000}")
+    private long snapshotIntervalMs;
+
+    private double[] weights;
+
+    // Todo el estado se protege con el mismo lock: las escrituras son O(log n)
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final RankedSkipList ranking = new RankedSkipList();
+    private final Map<String, double[]> totals = new HashMap<>();
+    // Sumas aún no volcadas, por usuario
+    private final Map<String, double[]> pending = new HashMap<>();
+
+    // updatedAt más reciente leído de Firestore; solo lo usan load/snapshot (sincronizados)
+    private Timestamp lastSync;
+
+    @PostConstruct
+    public void start() {
+        LinearScorer scorer = new LinearScorer(scoringConfig.getUser());
+        weights = new double[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            weights[i] = scorer.weight(COLUMNS[i]);
+        }
+
+        if (!enabled) {
+            log.info("🏆 Ranking de engagement deshabilitado");
+            return;
+        }
+        // La carga no bloquea el arranque; lo que llegue antes se suma al terminar
+        analyticsScheduler.execute(this::loadQuietly);
+        analyticsScheduler.scheduleWithFixedDelay(this::snapshotQuietly, snapshotIntervalMs, snapshotIntervalMs,
+                TimeUnit.MILLISECONDS);
+        log.info("🏆 Ranking de engagement en memoria: snapshot cada {} ms", snapshotIntervalMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (enabled) {
+            snapshotQuietly();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Una sesión del usuario (weight si es una muestra) y sus minutos de exploración, si se conocen
+     */
+    public void recordSession(String userId, Double explorationMinutes, long weight) {
+        double[] delta = new double[COLUMNS.length];
+        delta[SESSIONS] = weight;
+        delta[EXPLORATION_TIME] = explorationMinutes != null && explorationMinutes > 0 ? explorationMinutes : 0.0;
+        apply(userId, delta);
+    }
+
+    /**
+     * Minutos de exploración de una sesión ya contada (p. ej. al cerrarla)
+     */
+    public void recordExplorationTime(String userId, double minutes) {
+        if (minutes > 0) {
+            double[] delta = new double[COLUMNS.length];
+            delta[EXPLORATION_TIME] = minutes;
+            apply(userId, delta);
+        }
+    }
+
+    /**
+     * Una interacción del usuario; comentarios, reacciones, compartidos y fotos suman además a su contador
+     */
+    public void recordInteraction(String userId, String interactionType, long weight) {
+        double[] delta = new double[COLUMNS.length];
+        delta[INTERACTIONS] = weight;
+        if (interactionType != null) {
+            switch (interactionType.toUpperCase(Locale.ROOT)) {
+                case "COMMENT": delta[COMMENTS] = weight; break;
+                case "REACTION": delta[REACTIONS] = weight; break;
+                case "SHARE": delta[SHARES] = weight; break;
+                case "PHOTO": delta[PHOTOS] = weight; break;
+                default: break;
+            }
+        }
+        apply(userId, delta);
+    }
+
+    /**
+     * Los limit usuarios desde la posición offset (0 = primero)
+     */
+    public List<LeaderboardEntry> top(int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            List<LeaderboardEntry> entries = new ArrayList<>();
+            for (RankedSkipList.Entry entry : ranking.range(offset, limit)) {
+                entries.add(toEntry(entry.getMember(), entry.getScore(), entry.getRank()));
+            }
+            return entries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Posición del usuario o null si todavía no tiene actividad registrada
+     */
+    public LeaderboardEntry rankOf(String userId) {
+        lock.readLock().lock();
+        try {
+            int rank = ranking.rank(userId);
+            return rank >= 0 ? toEntry(userId, ranking.score(userId), rank) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ranking.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Vuelca las sumas pendientes y relee los usuarios que otras instancias modificaron
+     */
+    public synchronized void snapshot() {
+        List<Map.Entry<String, double[]>> flushing;
+        lock.writeLock().lock();
+        try {
+            flushing = new ArrayList<>(pending.entrySet());
+            pending.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        int failures = 0;
+        for (int from = 0; from < flushing.size(); from += MAX_BATCH_WRITES) {
+            List<Map.Entry<String, double[]>> chunk =
+                    flushing.subList(from, Math.min(from + MAX_BATCH_WRITES, flushing.size()));
+            try {
+                write(chunk);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                restore(chunk);
+                return;
+            } catch (Exception e) {
+                restore(chunk);
+                failures += chunk.size();
+                log.error("❌ Error guardando {} usuarios del ranking: {}", chunk.size(), e.getMessage());
+            }
+        }
+
+        try {
+            int refreshed = refresh();
+            log.debug("🏆 Snapshot del ranking: {} usuarios guardados ({} con error), {} releídos",
+                    flushing.size() - failures, failures, refreshed);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("❌ Error releyendo el ranking de engagement: {}", e.getMessage());
+        }
+    }
+
+    // Métodos privados de utilidad
+
+    private void apply(String userId, double[] delta) {
+        if (!enabled || userId == null || userId.isBlank()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            double[] total = totals.computeIfAbsent(userId, k -> new double[COLUMNS.length]);
+            add(total, delta);
+            pending.merge(userId, delta, (current, extra) -> {
+                add(current, extra);
+                return current;
+            });
+            ranking.put(userId, score(total));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private synchronized void load() throws ExecutionException, InterruptedException {
+        refresh();
+        log.info("🏆 Ranking de engagement cargado: {} usuarios", size());
+    }
+
+    /**
+     * Suma las pendientes de cada usuario a su documento (merge + increment, sin leerlo)
+     */
+    private void write(List<Map.Entry<String, double[]>> deltas) throws ExecutionException, InterruptedException {
+        WriteBatch batch = firestore.batch();
+        for (Map.Entry<String, double[]> entry : deltas) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("userId", entry.getKey());
+            double[] delta = entry.getValue();
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (delta[i] != 0.0) {
+                    data.put(COLUMNS[i], FieldValue.increment(delta[i]));
+                }
+            }
+            data.put("updatedAt", FieldValue.serverTimestamp());
+            batch.set(userReference(entry.getKey()), data, SetOptions.merge());
+        }
+        batch.commit().get();
+    }
+
+    /**
+     * Relee los usuarios modificados desde la última sincronización (todos la primera vez) y
+     * reemplaza su estado local por lo guardado más lo aún pendiente; devuelve cuántos leyó
+     */
+    private int refresh() throws ExecutionException, InterruptedException {
+        Query query = firestore.collection(collectionName);
+        if (lastSync != null) {
+            query = query.whereGreaterThan("updatedAt", Timestamp.ofTimeSecondsAndNanos(
+                    lastSync.getSeconds() - SYNC_OVERLAP_SECONDS, lastSync.getNanos()));
+        }
+
+        Map<String, double[]> stored = new HashMap<>();
+        Timestamp newest = lastSync;
+        for (DocumentSnapshot document : query.get().get().getDocuments()) {
+            String userId = document.getString("userId");
+            if (userId == null) {
+                continue;
+            }
+            stored.put(userId, fromDocument(document));
+            Timestamp updatedAt = document.getTimestamp("updatedAt");
+            if (updatedAt != null && (newest == null || updatedAt.compareTo(newest) > 0)) {
+                newest = updatedAt;
+            }
+        }
+        replaceUsers(stored);
+        lastSync = newest;
+        return stored.size();
+    }
+
+    /**
+     * Reemplaza el estado local de los usuarios por lo guardado más lo aún pendiente
+     */
+    private void replaceUsers(Map<String, double[]> stored) {
+        lock.writeLock().lock();
+        try {
+            stored.forEach((userId, counters) -> {
+                double[] total = counters.clone();
+                double[] delta = pending.get(userId);
+                if (delta != null) {
+                    add(total, delta);
+                }
+                totals.put(userId, total);
+                ranking.put(userId, score(total));
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void restore(List<Map.Entry<String, double[]>> deltas) {
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<String, double[]> entry : deltas) {
+                pending.merge(entry.getKey(), entry.getValue(), (current, failed) -> {
+                    add(current, failed);
+                    return current;
+                });
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void loadQuietly() {
+        try {
+            load();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("❌ Error cargando el ranking de engagement: {}", e.getMessage(), e);
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (Exception e) {
+            log.error("❌ Error guardando el ranking de engagement: {}", e.getMessage(), e);
+        }
+    }
+
+    private static double[] fromDocument(DocumentSnapshot document) {
+        double[] counters = new double[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            Double value = document.getDouble(COLUMNS[i]);
+            counters[i] = value != null ? value : 0.0;
+        }
+        return counters;
+    }
+
+    private LeaderboardEntry toEntry(String userId, double score, int rank) {
+        double[] counters = totals.getOrDefault(userId, new double[COLUMNS.length]);
+        return LeaderboardEntry.builder()
+                .userId(userId)
+                .rank(rank + 1)
+                .score(score)
+                .totalSessions((long) counters[SESSIONS])
+                .totalExplorationTime(counters[EXPLORATION_TIME])
+                .totalInteractions((long) counters[INTERACTIONS])
+                .commentsCount((long) counters[COMMENTS])
+                .reactionsCount((long) counters[REACTIONS])
+                .sharesCount((long) counters[SHARES])
+                .photosCount((long) counters[PHOTOS])
+                .build();
+    }
+
+    private double score(double[] counters) {
+        double score = 0.0;
+        for (int i = 0; i < counters.length; i++) {
+            score += weights[i] * counters[i];
+        }
+        return score;
+    }
+
+    private DocumentReference userReference(String userId) {
+        // "/" no es válido en ids de documento; el userId real va en el campo userId
+        return firestore.collection(collectionName).document(userId.replace('/', '_'));
+    }
+
+    private static void add(double[] target, double[] delta) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] += delta[i];
+        }
+    }
+}
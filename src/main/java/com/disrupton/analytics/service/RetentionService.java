@@ -0,0 +1,353 @@
+package com.disrupton.analytics.service;
+
+import com.disrupton.analytics.model.CohortRetention;
+import com.disrupton.analytics.model.RetentionMatrix;
+import com.disrupton.analytics.util.BitmapCodec;
+import com.google.api.core.ApiFuture;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Retención por cohortes con bitmaps diarios de usuarios activos
+ *
+ * Cada usuario tiene un ordinal estable (UserOrdinalDictionary) y cada día un documento con dos
+ * bitmaps comprimidos: los ordinales activos ese día y los que se vieron por primera vez (la
+ * cohorte del día). Las sesiones ingeridas se acumulan en memoria y se vuelcan cada
+ * flush-interval-ms uniendo (OR) con lo guardado en una transacción; la unión es idempotente,
+ * así que varias instancias pueden volcar al mismo día. La retención D1/D7/D30 de una cohorte es
+ * la cardinalidad de cohorte AND activos del día N; la rodante usa el OR de los días 1..N.
+ * 90 días de 100k usuarios son ~120 documentos de pocos KB y el cálculo toma milisegundos
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RetentionService {
+
+    private final Firestore firestore;
+    private final UserOrdinalDictionary dictionary;
+
+    @Qualifier("analyticsScheduler")
+    private final ScheduledExecutorService analyticsScheduler;
+
+    @Value("${analytics.retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analytics.retention.collection:analytics_retention}")
+    private String collectionName;
+
+    @Value("${analytics.retention.flush-interval-ms:60000}")
+    private long flushIntervalMs;
+
+    @Value("${analytics.retention.max-pending-users:50000}")
+    private int maxPendingUsers;
+
+    @Value("${analytics.retention.max-cohort-days:120}")
+    private int maxCohortDays;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // Usuarios activos aún no volcados, por día
+    private final Map<LocalDate, Set<String>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingUsers = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("📅 Retención por cohortes deshabilitada");
+            return;
+        }
+        analyticsScheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs,
+                TimeUnit.MILLISECONDS);
+        log.info("📅 Retención por cohortes con bitmaps diarios, volcado cada {} ms", flushIntervalMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (enabled) {
+            flushQuietly();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Registra al usuario como activo el día de at
+     */
+    public void recordActive(String userId, Instant at) {
+        if (!enabled || userId == null || userId.isBlank()) {
+            return;
+        }
+        LocalDate day = at.atZone(zone).toLocalDate();
+        // compute bloquea la entrada: no se pierde el usuario si flush() la está quitando
+        pending.compute(day, (key, users) -> {
+            if (users == null) {
+                users = new HashSet<>();
+            }
+            if (users.add(userId)) {
+                pendingUsers.incrementAndGet();
+            }
+            return users;
+        });
+
+        if (pendingUsers.get() >= maxPendingUsers && flushRequested.compareAndSet(false, true)) {
+            analyticsScheduler.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Vuelca los usuarios pendientes a los bitmaps diarios
+     */
+    public void flush() {
+        flushRequested.set(false);
+        for (LocalDate day : new ArrayList<>(pending.keySet())) {
+            Set<String> users = pending.remove(day);
+            if (users == null) {
+                continue;
+            }
+            pendingUsers.addAndGet(-users.size());
+            try {
+                write(day, users).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                restore(day, users);
+                return;
+            } catch (Exception e) {
+                restore(day, users);
+                log.error("❌ Error volcando bitmap de retención {}: {}", day, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Matriz de retención de las cohortes de [startDay, endDay] para los offsets dados (en días)
+     */
+    public RetentionMatrix cohortRetention(LocalDate startDay, LocalDate endDay, List<Integer> offsets)
+            throws ExecutionException, InterruptedException {
+        LocalDate today = LocalDate.now(zone);
+        if (endDay.isAfter(today)) {
+            endDay = today;
+        }
+        if (startDay.isBefore(endDay.minusDays(maxCohortDays - 1))) {
+            startDay = endDay.minusDays(maxCohortDays - 1);
+        }
+        List<Integer> sortedOffsets = offsets.stream().filter(offset -> offset > 0).distinct().sorted().toList();
+        int maxOffset = sortedOffsets.isEmpty() ? 0 : sortedOffsets.get(sortedOffsets.size() - 1);
+
+        LocalDate lastDay = endDay.plusDays(maxOffset).isAfter(today) ? today : endDay.plusDays(maxOffset);
+        Map<LocalDate, DayBitmaps> bitmaps = read(startDay, lastDay);
+
+        long started = System.nanoTime();
+        List<CohortRetention> cohorts = new ArrayList<>();
+        long[] retainedTotals = new long[sortedOffsets.size()];
+        long[] sizeTotals = new long[sortedOffsets.size()];
+        for (LocalDate day = startDay; !day.isAfter(endDay); day = day.plusDays(1)) {
+            DayBitmaps dayBitmaps = bitmaps.get(day);
+            BitSet cohort = dayBitmaps != null ? dayBitmaps.cohort : new BitSet();
+            long size = cohort.cardinality();
+
+            Map<String, Long> retained = new LinkedHashMap<>();
+            Map<String, Double> rate = new LinkedHashMap<>();
+            Map<String, Double> rolling = new LinkedHashMap<>();
+            BitSet activeSince = new BitSet();
+            int next = 0;
+            for (int offset = 1; offset <= maxOffset && !day.plusDays(offset).isAfter(today); offset++) {
+                DayBitmaps target = bitmaps.get(day.plusDays(offset));
+                if (target != null) {
+                    activeSince.or(target.active);
+                }
+                if (offset != sortedOffsets.get(next)) {
+                    continue;
+                }
+                long exact = target != null ? intersection(cohort, target.active) : 0L;
+                String label = "D" + offset;
+                retained.put(label, exact);
+                rate.put(label, percentage(exact, size));
+                rolling.put(label, percentage(intersection(cohort, activeSince), size));
+                retainedTotals[next] += exact;
+                sizeTotals[next] += size;
+                next++;
+            }
+
+            cohorts.add(CohortRetention.builder()
+                    .day(day)
+                    .size(size)
+                    .retained(retained)
+                    .retentionRate(rate)
+                    .rollingRetentionRate(rolling)
+                    .build());
+        }
+
+        Map<String, Double> average = new LinkedHashMap<>();
+        for (int i = 0; i < sortedOffsets.size(); i++) {
+            if (sizeTotals[i] > 0) {
+                average.put("D" + sortedOffsets.get(i), percentage(retainedTotals[i], sizeTotals[i]));
+            }
+        }
+        long computeMillis = Duration.ofNanos(System.nanoTime() - started).toMillis();
+        log.debug("📅 Retención de {} cohortes calculada en {} ms con {} bitmaps", cohorts.size(), computeMillis,
+                bitmaps.size());
+
+        return RetentionMatrix.builder()
+                .startDay(startDay)
+                .endDay(endDay)
+                .offsets(sortedOffsets)
+                .cohorts(cohorts)
+                .averageRetentionRate(average)
+                .bitmapsRead(bitmaps.size())
+                .computeMillis(computeMillis)
+                .build();
+    }
+
+    /**
+     * Porcentaje de los usuarios activos en la ventana anterior de igual largo que volvieron en
+     * [start, end); null si la ventana anterior no tiene bitmaps
+     */
+    public Double retentionRate(Instant start, Instant end) throws ExecutionException, InterruptedException {
+        LocalDate startDay = start.atZone(zone).toLocalDate();
+        LocalDate endDay = end.minusNanos(1).atZone(zone).toLocalDate();
+        long days = Math.max(1, endDay.toEpochDay() - startDay.toEpochDay() + 1);
+        LocalDate previousStart = startDay.minusDays(days);
+
+        Map<LocalDate, DayBitmaps> bitmaps = read(previousStart, endDay);
+        BitSet previous = new BitSet();
+        BitSet current = new BitSet();
+        bitmaps.forEach((day, dayBitmaps) -> (day.isBefore(startDay) ? previous : current).or(dayBitmaps.active));
+
+        long previousUsers = previous.cardinality();
+        if (previousUsers == 0) {
+            return null;
+        }
+        return percentage(intersection(previous, current), previousUsers);
+    }
+
+    // Métodos privados de utilidad
+
+    private ApiFuture<Void> write(LocalDate day, Set<String> users) throws ExecutionException, InterruptedException {
+        UserOrdinalDictionary.Resolved resolved = dictionary.resolve(users);
+        BitSet active = new BitSet();
+        BitSet cohort = new BitSet();
+        resolved.getOrdinals().forEach((userId, ordinal) -> {
+            active.set(ordinal);
+            if (resolved.getCreated().contains(userId)) {
+                cohort.set(ordinal);
+            }
+        });
+
+        DocumentReference ref = firestore.collection(collectionName).document(day.toString());
+        return firestore.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(ref).get();
+            DayBitmaps merged = new DayBitmaps((BitSet) active.clone(), (BitSet) cohort.clone());
+            DayBitmaps stored = fromDocument(snapshot);
+            if (stored != null) {
+                merged.active.or(stored.active);
+                merged.cohort.or(stored.cohort);
+            }
+
+            Map<String, Object> data = new HashMap<>();
+            data.put("day", Timestamp.ofTimeSecondsAndNanos(day.atStartOfDay(zone).toEpochSecond(), 0));
+            data.put("active", Blob.fromBytes(BitmapCodec.compress(merged.active)));
+            data.put("cohort", Blob.fromBytes(BitmapCodec.compress(merged.cohort)));
+            data.put("activeUsers", merged.active.cardinality());
+            data.put("newUsers", merged.cohort.cardinality());
+            data.put("updatedAt", FieldValue.serverTimestamp());
+            transaction.set(ref, data);
+            return null;
+        });
+    }
+
+    private void restore(LocalDate day, Set<String> users) {
+        pending.merge(day, users, (current, failed) -> {
+            current.addAll(failed);
+            return current;
+        });
+        // Puede contar de más algún repetido; solo se usa para adelantar el volcado
+        pendingUsers.addAndGet(users.size());
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("❌ Error volcando bitmaps de retención: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Bitmaps de los días de [from, to] que existen, con una sola lectura
+     */
+    private Map<LocalDate, DayBitmaps> read(LocalDate from, LocalDate to) throws ExecutionException, InterruptedException {
+        Map<LocalDate, DayBitmaps> bitmaps = new HashMap<>();
+        if (to.isBefore(from)) {
+            return bitmaps;
+        }
+        List<LocalDate> days = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            days.add(day);
+        }
+        DocumentReference[] refs = days.stream()
+                .map(day -> firestore.collection(collectionName).document(day.toString()))
+                .toArray(DocumentReference[]::new);
+
+        List<DocumentSnapshot> documents = firestore.getAll(refs).get();
+        for (int i = 0; i < documents.size(); i++) {
+            DayBitmaps dayBitmaps = fromDocument(documents.get(i));
+            if (dayBitmaps != null) {
+                bitmaps.put(days.get(i), dayBitmaps);
+            }
+        }
+        return bitmaps;
+    }
+
+    private static DayBitmaps fromDocument(DocumentSnapshot document) {
+        if (!document.exists()) {
+            return null;
+        }
+        Blob active = document.getBlob("active");
+        Blob cohort = document.getBlob("cohort");
+        return new DayBitmaps(
+                active != null ? BitmapCodec.decompress(active.toBytes()) : new BitSet(),
+                cohort != null ? BitmapCodec.decompress(cohort.toBytes()) : new BitSet());
+    }
+
+    private static long intersection(BitSet a, BitSet b) {
+        BitSet both = (BitSet) a.clone();
+        both.and(b);
+        return both.cardinality();
+    }
+
+    private static double percentage(long part, long total) {
+        return total > 0 ? (part * 100.0) / total : 0.0;
+    }
+
+    private static final class DayBitmaps {
+        final BitSet active;
+        final BitSet cohort;
+
+        DayBitmaps(BitSet active, BitSet cohort) {
+            this.active = active;
+            this.cohort = cohort;
+        }
+    }
+}
@@ -0,0 +1,600 @@
+package com.disrupton.analytics.service;
+
+import com.disrupton.analytics.model.RollupBucket;
+import com.disrupton.analytics.model.RollupGranularity;
+import com.disrupton.analytics.model.RollupSummary;
+import com.disrupton.analytics.util.DailyPrefixSums;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.*;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rollups por hora y por día de los eventos de analytics
+ *
+ * Cada evento incrementa (con FieldValue.increment, sin lecturas) un bucket por granularidad
+ * y por cada dimensión (objectId, zoneId, eventType...), además del total "all" de la métrica.
+ * Las consultas leen solo los buckets que cubren el rango pedido: días completos en el centro
+ * y horas en los bordes, así que el costo es O(buckets) y no O(eventos)
+ *
+ * Para rangos largos, los días ya cerrados salen de sumas de prefijo en memoria por serie
+ * ({@link DailyPrefixSums}) que se extienden de forma incremental: cada día se lee de
+ * Firestore una sola vez y después solo se leen los días nuevos y las horas de los bordes
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RollupService {
+
+    public static final String ALL_DIMENSION = "all";
+
+    private final Firestore firestore;
+
+    @Value("${analytics.rollup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analytics.rollup.collection:analytics_rollups}")
+    private String collectionName;
+
+    @Value("${analytics.rollup.max-tracked-buckets:20000}")
+    private int maxTrackedBuckets;
+
+    @Value("${analytics.rollup.prefix-sums.enabled:true}")
+    private boolean prefixSumsEnabled;
+
+    @Value("${analytics.rollup.prefix-sums.min-days:7}")
+    private int prefixMinDays;
+
+    @Value("${analytics.rollup.prefix-sums.settle-minutes:10}")
+    private long prefixSettleMinutes;
+
+    @Value("${analytics.rollup.prefix-sums.max-series:500}")
+    private int prefixMaxSeries;
+
+    @Value("${analytics.rollup.prefix-sums.max-age-minutes:60}")
+    private long prefixMaxAgeMinutes;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // Mínimo y máximo ya conocidos por bucket: si el valor cae dentro no hace falta transacción
+    private final Map<String, double[]> knownExtremes = new ConcurrentHashMap<>();
+
+    // Sumas de prefijo de días cerrados por serie (métrica|dimensión|valor)
+    private final Map<String, DailyPrefixSums> prefixSums = new ConcurrentHashMap<>();
+
+    /**
+     * Registra un evento en todos los buckets que le corresponden
+     *
+     * @param metric     nombre de la métrica (p. ej. "analytics_events")
+     * @param dimensions valores de dimensión del evento; los nulos se ignoran
+     * @param value      valor numérico opcional (duración, etc.) para sum/min/max
+     * @param at         instante del evento
+     */
+    public void record(String metric, Map<String, String> dimensions, Number value, Instant at) {
+        record(metric, dimensions, value, at, 1);
+    }
+
+    /**
+     * Registra un evento muestreado que representa weight eventos (count, valueCount y sum suben
+     * weight veces; min/max no cambian)
+     */
+    public void record(String metric, Map<String, String> dimensions, Number value, Instant at, long weight) {
+        if (!enabled || weight <= 0) {
+            return;
+        }
+
+        try {
+            List<String[]> dims = new ArrayList<>();
+            dims.add(new String[]{ALL_DIMENSION, ALL_DIMENSION});
+            if (dimensions != null) {
+                dimensions.forEach((dimension, dimensionValue) -> {
+                    if (dimensionValue != null && !dimensionValue.isBlank()) {
+                        dims.add(new String[]{dimension, dimensionValue});
+                    }
+                });
+            }
+
+            ZonedDateTime time = at.atZone(zone);
+            // Evento tardío (lote offline, hora de inicio del cliente) en un día ya cerrado
+            boolean settledDay = isSettled(RollupGranularity.DAY.truncate(time));
+            WriteBatch batch = firestore.batch();
+            List<String> extremesToUpdate = new ArrayList<>();
+
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                ZonedDateTime bucketStart = granularity.truncate(time);
+                for (String[] dim : dims) {
+                    String docId = docId(metric, dim[0], dim[1], granularity, bucketStart);
+
+                    Map<String, Object> update = new HashMap<>();
+                    update.put("metric", metric);
+                    update.put("dimension", dim[0]);
+                    update.put("dimensionValue", dim[1]);
+                    update.put("granularity", granularity.name());
+                    update.put("bucketStart", toTimestamp(bucketStart.toInstant()));
+                    update.put("count", FieldValue.increment(weight));
+                    if (value != null) {
+                        update.put("valueCount", FieldValue.increment(weight));
+                        update.put("sum", FieldValue.increment(value.doubleValue() * weight));
+                        if (mayChangeExtremes(docId, value.doubleValue())) {
+                            extremesToUpdate.add(docId);
+                        }
+                    }
+                    update.put("updatedAt", FieldValue.serverTimestamp());
+
+                    batch.set(firestore.collection(collectionName).document(docId), update, SetOptions.merge());
+                }
+            }
+
+            // Los rollups son secundarios: no se bloquea la petición esperando el commit
+            ApiFutures.addCallback(batch.commit(), new ApiFutureCallback<List<WriteResult>>() {
+                @Override
+                public void onFailure(Throwable t) {
+                    log.error("❌ Error actualizando rollups de {}: {}", metric, t.getMessage());
+                }
+
+                @Override
+                public void onSuccess(List<WriteResult> result) {
+                    log.debug("📈 Rollups de {} actualizados ({} buckets)", metric, result.size());
+                    if (settledDay) {
+                        // Las sumas de prefijo de ese día ya no valen: se releen en la próxima consulta
+                        for (String[] dim : dims) {
+                            prefixSums.remove(seriesKey(metric, dim[0], dim[1]));
+                        }
+                    }
+                }
+            }, MoreExecutors.directExecutor());
+
+            for (String docId : extremesToUpdate) {
+                updateExtremes(docId, value.doubleValue());
+            }
+        } catch (Exception e) {
+            log.error("❌ Error registrando rollup de {}: {}", metric, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Combina los buckets que cubren [start, end) con resolución de una hora
+     */
+    public RollupSummary summarize(String metric, String dimension, String dimensionValue,
+                                   Instant start, Instant end) throws ExecutionException, InterruptedException {
+        List<BucketSlot> slots = cover(start, end);
+        List<RollupBucket> buckets = new ArrayList<>();
+
+        // Los días cerrados del centro salen de las sumas de prefijo; el resto se lee por id
+        int indexedDays = closedDays(slots);
+        if (indexedDays > 0) {
+            int first = firstDaySlot(slots);
+            LocalDate from = slots.get(first).start.toLocalDate();
+            buckets.add(prefixTotal(metric, dimension, dimensionValue, from, from.plusDays(indexedDays)));
+            slots = new ArrayList<>(slots);
+            slots.subList(first, first + indexedDays).clear();
+        }
+        List<RollupBucket> read = readBuckets(metric, dimension, dimensionValue, slots);
+        buckets.addAll(read);
+
+        RollupSummary summary = RollupSummary.builder()
+                .metric(metric)
+                .dimension(dimension)
+                .dimensionValue(dimensionValue)
+                .start(LocalDateTime.ofInstant(start, zone))
+                .end(LocalDateTime.ofInstant(end, zone))
+                .bucketsRead(read.size())
+                .indexedDays(indexedDays)
+                .build();
+
+        for (RollupBucket bucket : buckets) {
+            summary.setCount(summary.getCount() + bucket.getCount());
+            summary.setValueCount(summary.getValueCount() + bucket.getValueCount());
+            summary.setSum(summary.getSum() + bucket.getSum());
+            summary.setMin(minOf(summary.getMin(), bucket.getMin()));
+            summary.setMax(maxOf(summary.getMax(), bucket.getMax()));
+        }
+        return summary;
+    }
+
+    /**
+     * Total de una métrica en [start, end)
+     */
+    public long count(String metric, Instant start, Instant end) throws ExecutionException, InterruptedException {
+        return summarize(metric, ALL_DIMENSION, ALL_DIMENSION, start, end).getCount();
+    }
+
+    /**
+     * Serie temporal de una métrica con una granularidad fija (buckets vacíos incluidos)
+     */
+    public List<RollupBucket> series(String metric, String dimension, String dimensionValue,
+                                     RollupGranularity granularity, Instant start, Instant end)
+            throws ExecutionException, InterruptedException {
+        List<BucketSlot> slots = new ArrayList<>();
+        ZonedDateTime limit = end.atZone(zone);
+        for (ZonedDateTime cursor = granularity.truncate(start.atZone(zone)); cursor.isBefore(limit);
+             cursor = granularity.next(cursor)) {
+            slots.add(new BucketSlot(granularity, cursor));
+        }
+
+        int indexedDays = closedDays(slots);
+        if (indexedDays == 0) {
+            return readBuckets(metric, dimension, dimensionValue, slots, true);
+        }
+
+        // Los slots diarios son contiguos desde el primero: los cerrados salen de memoria
+        LocalDate from = slots.get(0).start.toLocalDate();
+        List<RollupBucket> series = new ArrayList<>(prefixDays(metric, dimension, dimensionValue,
+                from, from.plusDays(indexedDays)));
+        series.addAll(readBuckets(metric, dimension, dimensionValue, slots.subList(indexedDays, slots.size()), true));
+        return series;
+    }
+
+    /**
+     * Conteo de un mismo bucket para varias series de una métrica, con una sola lectura
+     *
+     * @param series pares {dimensión, valor}
+     * @return conteos en el orden de series (0 si el bucket no existe)
+     */
+    public long[] bucketCounts(String metric, List<String[]> series, RollupGranularity granularity,
+                               Instant bucketStart) throws ExecutionException, InterruptedException {
+        long[] counts = new long[series.size()];
+        if (series.isEmpty()) {
+            return counts;
+        }
+
+        ZonedDateTime start = granularity.truncate(bucketStart.atZone(zone));
+        DocumentReference[] refs = series.stream()
+                .map(dim -> firestore.collection(collectionName)
+                        .document(docId(metric, dim[0], dim[1], granularity, start)))
+                .toArray(DocumentReference[]::new);
+
+        List<DocumentSnapshot> documents = firestore.getAll(refs).get();
+        for (int i = 0; i < documents.size(); i++) {
+            counts[i] = documents.get(i).exists() ? longOf(documents.get(i).getLong("count")) : 0L;
+        }
+        return counts;
+    }
+
+    /**
+     * Granularidad adecuada para una serie de [start, end): horas hasta dos días, días a partir de ahí
+     */
+    public RollupGranularity granularityFor(Instant start, Instant end) {
+        return Duration.between(start, end).compareTo(Duration.ofHours(48)) <= 0
+                ? RollupGranularity.HOUR
+                : RollupGranularity.DAY;
+    }
+
+    /**
+     * Conteo por valor de una dimensión en [start, end)
+     * Una consulta por tramo contiguo de la cobertura (como máximo tres).
+     * Requiere el índice compuesto (metric, dimension, granularity, bucketStart) de firestore.indexes.json
+     */
+    public Map<String, Long> breakdown(String metric, String dimension, Instant start, Instant end)
+            throws ExecutionException, InterruptedException {
+        Map<String, Long> counts = new HashMap<>();
+        breakdownSummaries(metric, dimension, start, end).forEach((value, summary) ->
+                counts.put(value, summary.getCount()));
+        return counts;
+    }
+
+    /**
+     * Como breakdown, con count, valueCount y sum por valor de la dimensión (sin min/max)
+     */
+    public Map<String, RollupSummary> breakdownSummaries(String metric, String dimension, Instant start, Instant end)
+            throws ExecutionException, InterruptedException {
+        Map<String, RollupSummary> summaries = new HashMap<>();
+        List<BucketSlot> cover = cover(start, end);
+
+        int i = 0;
+        while (i < cover.size()) {
+            RollupGranularity granularity = cover.get(i).granularity;
+            ZonedDateTime runStart = cover.get(i).start;
+            ZonedDateTime runEnd = granularity.next(runStart);
+            while (++i < cover.size() && cover.get(i).granularity == granularity) {
+                runEnd = granularity.next(cover.get(i).start);
+            }
+
+            QuerySnapshot snapshot = firestore.collection(collectionName)
+                    .whereEqualTo("metric", metric)
+                    .whereEqualTo("dimension", dimension)
+                    .whereEqualTo("granularity", granularity.name())
+                    .whereGreaterThanOrEqualTo("bucketStart", toTimestamp(runStart.toInstant()))
+                    .whereLessThan("bucketStart", toTimestamp(runEnd.toInstant()))
+                    .select("dimensionValue", "count", "valueCount", "sum")
+                    .get()
+                    .get();
+
+            for (QueryDocumentSnapshot document : snapshot) {
+                String value = document.getString("dimensionValue");
+                RollupSummary summary = summaries.computeIfAbsent(value, v -> RollupSummary.builder()
+                        .metric(metric)
+                        .dimension(dimension)
+                        .dimensionValue(v)
+                        .start(LocalDateTime.ofInstant(start, zone))
+                        .end(LocalDateTime.ofInstant(end, zone))
+                        .build());
+                summary.setCount(summary.getCount() + longOf(document.getLong("count")));
+                summary.setValueCount(summary.getValueCount() + longOf(document.getLong("valueCount")));
+                summary.setSum(summary.getSum() + (document.getDouble("sum") != null ? document.getDouble("sum") : 0.0));
+                summary.setBucketsRead(summary.getBucketsRead() + 1);
+            }
+        }
+        return summaries;
+    }
+
+    // Métodos privados de utilidad
+
+    /**
+     * Cobertura mínima de [start, end): días completos cuando caben, horas en los bordes
+     */
+    List<BucketSlot> cover(Instant start, Instant end) {
+        List<BucketSlot> slots = new ArrayList<>();
+        ZonedDateTime limit = end.atZone(zone);
+        ZonedDateTime cursor = RollupGranularity.HOUR.truncate(start.atZone(zone));
+
+        while (cursor.isBefore(limit)) {
+            ZonedDateTime nextDay = RollupGranularity.DAY.next(cursor);
+            if (RollupGranularity.DAY.truncate(cursor).equals(cursor) && !nextDay.isAfter(limit)) {
+                slots.add(new BucketSlot(RollupGranularity.DAY, cursor));
+                cursor = nextDay;
+            } else {
+                slots.add(new BucketSlot(RollupGranularity.HOUR, cursor));
+                cursor = RollupGranularity.HOUR.next(cursor);
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Cantidad de slots diarios cerrados, contados desde el primero, que conviene resolver con las
+     * sumas de prefijo; 0 si el rango es corto o el índice está deshabilitado
+     */
+    private int closedDays(List<BucketSlot> slots) {
+        if (!prefixSumsEnabled) {
+            return 0;
+        }
+        int first = firstDaySlot(slots);
+        if (first < 0) {
+            return 0;
+        }
+
+        int closed = 0;
+        for (int i = first; i < slots.size() && slots.get(i).granularity == RollupGranularity.DAY; i++) {
+            if (!isSettled(slots.get(i).start)) {
+                break;
+            }
+            closed++;
+        }
+        return closed >= prefixMinDays ? closed : 0;
+    }
+
+    /**
+     * Un día está cerrado cuando terminó hace más de settle-minutes. Puede recibir eventos tardíos:
+     * record() descarta entonces las sumas de prefijo de las series afectadas
+     */
+    private boolean isSettled(ZonedDateTime dayStart) {
+        ZonedDateTime settled = ZonedDateTime.now(zone).minusMinutes(prefixSettleMinutes);
+        return !RollupGranularity.DAY.next(dayStart).isAfter(settled);
+    }
+
+    private static int firstDaySlot(List<BucketSlot> slots) {
+        for (int i = 0; i < slots.size(); i++) {
+            if (slots.get(i).granularity == RollupGranularity.DAY) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private RollupBucket prefixTotal(String metric, String dimension, String dimensionValue,
+                                     LocalDate from, LocalDate to) throws ExecutionException, InterruptedException {
+        DailyPrefixSums sums = prefixSeries(metric, dimension, dimensionValue);
+        synchronized (sums) {
+            ensureCovered(sums, metric, dimension, dimensionValue, from, to);
+            return sums.total(from, to);
+        }
+    }
+
+    private List<RollupBucket> prefixDays(String metric, String dimension, String dimensionValue,
+                                          LocalDate from, LocalDate to) throws ExecutionException, InterruptedException {
+        DailyPrefixSums sums = prefixSeries(metric, dimension, dimensionValue);
+        synchronized (sums) {
+            ensureCovered(sums, metric, dimension, dimensionValue, from, to);
+            return sums.days(from, to, metric, dimension, dimensionValue);
+        }
+    }
+
+    private DailyPrefixSums prefixSeries(String metric, String dimension, String dimensionValue) {
+        String key = seriesKey(metric, dimension, dimensionValue);
+        // Las series poco consultadas no se expulsan una a una; se descarta todo al llegar al límite
+        if (prefixSums.size() >= prefixMaxSeries && !prefixSums.containsKey(key)) {
+            prefixSums.clear();
+        }
+        // Los eventos tardíos que registra otra instancia no invalidan esta caché: se relee cada max-age
+        long maxAgeNanos = TimeUnit.MINUTES.toNanos(prefixMaxAgeMinutes);
+        return prefixSums.compute(key, (k, sums) ->
+                sums == null || System.nanoTime() - sums.getCreatedAtNanos() > maxAgeNanos ? new DailyPrefixSums() : sums);
+    }
+
+    private static String seriesKey(String metric, String dimension, String dimensionValue) {
+        return String.join("|", metric, dimension, dimensionValue);
+    }
+
+    /**
+     * Extiende el tramo cubierto hasta incluir [from, to), leyendo solo los días que faltan
+     */
+    private void ensureCovered(DailyPrefixSums sums, String metric, String dimension, String dimensionValue,
+                               LocalDate from, LocalDate to) throws ExecutionException, InterruptedException {
+        if (sums.covers(from, to)) {
+            return;
+        }
+        if (sums.isEmpty()) {
+            sums.append(from, readDays(metric, dimension, dimensionValue, from, to));
+            log.debug("📈 Sumas de prefijo de {}|{}|{} creadas: {} días", metric, dimension, dimensionValue,
+                    sums.size());
+            return;
+        }
+        if (from.isBefore(sums.getStart())) {
+            sums.prepend(from, readDays(metric, dimension, dimensionValue, from, sums.getStart()));
+        }
+        if (to.isAfter(sums.getEnd())) {
+            sums.append(sums.getEnd(), readDays(metric, dimension, dimensionValue, sums.getEnd(), to));
+        }
+    }
+
+    private List<RollupBucket> readDays(String metric, String dimension, String dimensionValue,
+                                        LocalDate from, LocalDate to) throws ExecutionException, InterruptedException {
+        List<BucketSlot> slots = new ArrayList<>();
+        for (LocalDate day = from; day.isBefore(to); day = day.plusDays(1)) {
+            slots.add(new BucketSlot(RollupGranularity.DAY, day.atStartOfDay(zone)));
+        }
+        return readBuckets(metric, dimension, dimensionValue, slots, true);
+    }
+
+    private List<RollupBucket> readBuckets(String metric, String dimension, String dimensionValue,
+                                           List<BucketSlot> slots) throws ExecutionException, InterruptedException {
+        return readBuckets(metric, dimension, dimensionValue, slots, false);
+    }
+
+    private List<RollupBucket> readBuckets(String metric, String dimension, String dimensionValue,
+                                           List<BucketSlot> slots, boolean includeEmpty)
+            throws ExecutionException, InterruptedException {
+        if (slots.isEmpty()) {
+            return List.of();
+        }
+
+        DocumentReference[] refs = slots.stream()
+                .map(slot -> firestore.collection(collectionName)
+                        .document(docId(metric, dimension, dimensionValue, slot.granularity, slot.start)))
+                .toArray(DocumentReference[]::new);
+
+        // Lectura directa por id: no requiere índices y cuesta un documento por bucket
+        ApiFuture<List<DocumentSnapshot>> future = firestore.getAll(refs);
+        List<DocumentSnapshot> documents = future.get();
+
+        List<RollupBucket> buckets = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i++) {
+            DocumentSnapshot document = documents.get(i);
+            BucketSlot slot = slots.get(i);
+            if (!document.exists() && !includeEmpty) {
+                continue;
+            }
+
+            RollupBucket bucket = RollupBucket.builder()
+                    .metric(metric)
+                    .dimension(dimension)
+                    .dimensionValue(dimensionValue)
+                    .granularity(slot.granularity)
+                    .bucketStart(slot.start.toLocalDateTime())
+                    .build();
+            if (document.exists()) {
+                bucket.setCount(longOf(document.getLong("count")));
+                bucket.setValueCount(longOf(document.getLong("valueCount")));
+                bucket.setSum(document.getDouble("sum") != null ? document.getDouble("sum") : 0.0);
+                bucket.setMin(document.getDouble("min"));
+                bucket.setMax(document.getDouble("max"));
+            }
+            buckets.add(bucket);
+        }
+        return buckets;
+    }
+
+    private boolean mayChangeExtremes(String docId, double value) {
+        double[] known = knownExtremes.get(docId);
+        return known == null || value < known[0] || value > known[1];
+    }
+
+    /**
+     * min/max no tienen transformación atómica en el SDK, así que se actualizan en una
+     * transacción, solo cuando el valor puede superar los extremos ya conocidos del bucket
+     */
+    private void updateExtremes(String docId, double value) {
+        DocumentReference ref = firestore.collection(collectionName).document(docId);
+
+        ApiFuture<double[]> future = firestore.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(ref).get();
+            Double min = snapshot.getDouble("min");
+            Double max = snapshot.getDouble("max");
+
+            Map<String, Object> update = new HashMap<>();
+            if (min == null || value < min) {
+                min = value;
+                update.put("min", value);
+            }
+            if (max == null || value > max) {
+                max = value;
+                update.put("max", value);
+            }
+            if (!update.isEmpty()) {
+                transaction.set(ref, update, SetOptions.merge());
+            }
+            return new double[]{min, max};
+        });
+
+        ApiFutures.addCallback(future, new ApiFutureCallback<double[]>() {
+            @Override
+            public void onFailure(Throwable t) {
+                log.error("❌ Error actualizando min/max del rollup {}: {}", docId, t.getMessage());
+            }
+
+            @Override
+            public void onSuccess(double[] extremes) {
+                // Los buckets viejos dejan de recibir eventos; se descarta todo al llegar al límite
+                if (knownExtremes.size() >= maxTrackedBuckets) {
+                    knownExtremes.clear();
+                }
+                knownExtremes.put(docId, extremes);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private static String docId(String metric, String dimension, String dimensionValue,
+                                RollupGranularity granularity, ZonedDateTime bucketStart) {
+        // "/" no es válido en ids de documento
+        return String.join("|", metric, dimension, dimensionValue, granularity.name(), granularity.key(bucketStart))
+                .replace('/', '_');
+    }
+
+    private static Timestamp toTimestamp(Instant instant) {
+        return Timestamp.ofTimeSecondsAndNanos(instant.getEpochSecond(), instant.getNano());
+    }
+
+    private static long longOf(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    private static Double minOf(Double a, Double b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return Math.min(a, b);
+    }
+
+    private static Double maxOf(Double a, Double b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return Math.max(a, b);
+    }
+
+    static final class BucketSlot {
+        final RollupGranularity granularity;
+        final ZonedDateTime start;
+
+        BucketSlot(RollupGranularity granularity, ZonedDateTime start) {
+            this.granularity = granularity;
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.disrupton.analytics.service;
+
+import com.disrupton.analytics.model.DurationQuantiles;
+import com.disrupton.analytics.model.RollupGranularity;
+import com.disrupton.analytics.util.TDigest;
+import com.google.api.core.ApiFuture;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Percentiles de duración de sesión con t-digest por día y dimensión (total y por zona)
+ *
+ * Las duraciones (en segundos) se agregan a digests en memoria y cada flush-interval-ms se
+ * suman en una transacción al digest guardado como Blob (unos pocos KB por documento).
+ * Un rango arbitrario se responde fusionando los digests diarios: el costo es un documento
+ * por día y dimensión, no un recorrido de user_sessions. Conteo y suma se guardan aparte,
+ * así que la media es exacta
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SessionDurationService {
+
+    private static final String METRIC = "session_duration";
+
+    private final Firestore firestore;
+
+    @Qualifier("analyticsScheduler")
+    private final ScheduledExecutorService analyticsScheduler;
+
+    @Value("${analytics.quantiles.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analytics.quantiles.collection:analytics_digests}")
+    private String collectionName;
+
+    @Value("${analytics.quantiles.compression:100}")
+    private double compression;
+
+    @Value("${analytics.quantiles.flush-interval-ms:60000}")
+    private long flushIntervalMs;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // Digests con duraciones aún no volcadas, por id de documento
+    private final Map<String, PendingDigest> pending = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("⏱️ Percentiles de duración de sesión deshabilitados");
+            return;
+        }
+        analyticsScheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs,
+                TimeUnit.MILLISECONDS);
+        log.info("⏱️ Percentiles de duración de sesión con t-digest (compresión {}), volcado cada {} ms",
+                compression, flushIntervalMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (enabled) {
+            flushQuietly();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Registra la duración de una sesión terminada
+     *
+     * @param dimensions p. ej. zoneId o sessionType; los nulos se ignoran. Siempre se registra
+     *                   también en el total "all"
+     */
+    public void record(Map<String, String> dimensions, double durationSeconds, Instant endedAt) {
+        if (!enabled || Double.isNaN(durationSeconds) || durationSeconds < 0) {
+            return;
+        }
+        ZonedDateTime day = RollupGranularity.DAY.truncate(endedAt.atZone(zone));
+        record(RollupService.ALL_DIMENSION, RollupService.ALL_DIMENSION, day, durationSeconds);
+        if (dimensions != null) {
+            dimensions.forEach((dimension, value) -> {
+                if (value != null && !value.isBlank()) {
+                    record(dimension, value, day, durationSeconds);
+                }
+            });
+        }
+    }
+
+    /**
+     * Media y percentiles de los días que tocan [start, end)
+     */
+    public DurationQuantiles summarize(String dimension, String dimensionValue, Instant start, Instant end)
+            throws ExecutionException, InterruptedException {
+        return summarizeMany(dimension, List.of(dimensionValue), start, end).get(dimensionValue);
+    }
+
+    /**
+     * Media y percentiles para varios valores de una dimensión, con una sola lectura
+     */
+    public Map<String, DurationQuantiles> summarizeMany(String dimension, Collection<String> dimensionValues,
+                                                        Instant start, Instant end)
+            throws ExecutionException, InterruptedException {
+        List<ZonedDateTime> days = days(start, end);
+        List<String> values = new ArrayList<>(new LinkedHashSet<>(dimensionValues));
+        List<DocumentSnapshot> documents = List.of();
+
+        if (!days.isEmpty() && !values.isEmpty()) {
+            DocumentReference[] refs = new DocumentReference[values.size() * days.size()];
+            int i = 0;
+            for (String value : values) {
+                for (ZonedDateTime day : days) {
+                    refs[i++] = firestore.collection(collectionName).document(docId(dimension, value, day));
+                }
+            }
+            documents = firestore.getAll(refs).get();
+        }
+
+        Map<String, DurationQuantiles> result = new HashMap<>();
+        for (int v = 0; v < values.size(); v++) {
+            Accumulator accumulator = new Accumulator(new TDigest(compression));
+            int read = 0;
+            for (int d = 0; d < days.size(); d++) {
+                DocumentSnapshot document = documents.get(v * days.size() + d);
+                if (mergeDocument(accumulator, document)) {
+                    read++;
+                }
+                mergePending(accumulator, document.getId());
+            }
+            result.put(values.get(v), toQuantiles(dimension, values.get(v), days, accumulator, read));
+        }
+        return result;
+    }
+
+    /**
+     * Vuelca los digests pendientes a Firestore
+     */
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<ApiFuture<Void>> futures = new ArrayList<>();
+        List<PendingDigest> flushing = new ArrayList<>();
+        for (String docId : new ArrayList<>(pending.keySet())) {
+            PendingDigest digest = pending.remove(docId);
+            if (digest != null) {
+                flushing.add(digest);
+                futures.add(write(digest));
+            }
+        }
+
+        int failures = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                restore(flushing.get(i));
+                failures++;
+            } catch (ExecutionException e) {
+                restore(flushing.get(i));
+                failures++;
+                log.error("❌ Error volcando digest {}: {}", flushing.get(i).docId, e.getCause().getMessage());
+            }
+        }
+        log.debug("⏱️ Digests volcados: {} ({} con error)", flushing.size() - failures, failures);
+    }
+
+    // Métodos privados de utilidad
+
+    private void record(String dimension, String dimensionValue, ZonedDateTime day, double seconds) {
+        String docId = docId(dimension, dimensionValue, day);
+        pending.compute(docId, (key, digest) -> {
+            if (digest == null) {
+                digest = new PendingDigest(key, dimension, dimensionValue, day, new Accumulator(new TDigest(compression)));
+            }
+            digest.accumulator.add(seconds);
+            return digest;
+        });
+    }
+
+    private ApiFuture<Void> write(PendingDigest pendingDigest) {
+        DocumentReference ref = firestore.collection(collectionName).document(pendingDigest.docId);
+        return firestore.runTransaction(transaction -> {
+            DocumentSnapshot snapshot = transaction.get(ref).get();
+            Accumulator merged = pendingDigest.accumulator.copy();
+            mergeDocument(merged, snapshot);
+
+            Map<String, Object> data = new HashMap<>();
+            data.put("metric", METRIC);
+            data.put("dimension", pendingDigest.dimension);
+            data.put("dimensionValue", pendingDigest.dimensionValue);
+            data.put("day", Timestamp.ofTimeSecondsAndNanos(pendingDigest.day.toEpochSecond(), 0));
+            data.put("count", merged.count);
+            data.put("sum", merged.sum);
+            data.put("digest", Blob.fromBytes(merged.digest.toBytes()));
+            data.put("updatedAt", FieldValue.serverTimestamp());
+            transaction.set(ref, data);
+            return null;
+        });
+    }
+
+    private void restore(PendingDigest digest) {
+        pending.merge(digest.docId, digest, (current, failed) -> {
+            current.accumulator.merge(failed.accumulator);
+            return current;
+        });
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("❌ Error volcando digests de duración: {}", e.getMessage(), e);
+        }
+    }
+
+    private boolean mergeDocument(Accumulator accumulator, DocumentSnapshot document) {
+        if (!document.exists()) {
+            return false;
+        }
+        Blob digest = document.getBlob("digest");
+        Long count = document.getLong("count");
+        Double sum = document.getDouble("sum");
+        if (digest == null || count == null || sum == null) {
+            return false;
+        }
+        accumulator.digest.merge(TDigest.fromBytes(digest.toBytes()));
+        accumulator.count += count;
+        accumulator.sum += sum;
+        return true;
+    }
+
+    /**
+     * Incluye lo que aún no se volcó
+     */
+    private void mergePending(Accumulator accumulator, String docId) {
+        pending.computeIfPresent(docId, (key, digest) -> {
+            accumulator.merge(digest.accumulator);
+            return digest;
+        });
+    }
+
+    private DurationQuantiles toQuantiles(String dimension, String dimensionValue, List<ZonedDateTime> days,
+                                          Accumulator accumulator, int read) {
+        boolean empty = accumulator.count == 0;
+        return DurationQuantiles.builder()
+                .dimension(dimension)
+                .dimensionValue(dimensionValue)
+                .startDay(days.isEmpty() ? null : days.get(0).toLocalDate())
+                .endDay(days.isEmpty() ? null : days.get(days.size() - 1).toLocalDate())
+                .count(accumulator.count)
+                .mean(empty ? null : accumulator.sum / accumulator.count)
+                .min(empty ? null : accumulator.digest.getMin())
+                .max(empty ? null : accumulator.digest.getMax())
+                .p50(empty ? null : accumulator.digest.quantile(0.50))
+                .p90(empty ? null : accumulator.digest.quantile(0.90))
+                .p99(empty ? null : accumulator.digest.quantile(0.99))
+                .digestsRead(read)
+                .build();
+    }
+
+    /**
+     * Días (en la zona del servidor) que tocan [start, end)
+     */
+    private List<ZonedDateTime> days(Instant start, Instant end) {
+        List<ZonedDateTime> days = new ArrayList<>();
+        ZonedDateTime limit = end.atZone(zone);
+        for (ZonedDateTime day = RollupGranularity.DAY.truncate(start.atZone(zone)); day.isBefore(limit);
+             day = RollupGranularity.DAY.next(day)) {
+            days.add(day);
+        }
+        return days;
+    }
+
+    private static String docId(String dimension, String dimensionValue, ZonedDateTime day) {
+        // "/" no es válido en ids de documento
+        return String.join("|", METRIC, dimension, dimensionValue, RollupGranularity.DAY.name(),
+                RollupGranularity.DAY.key(day)).replace('/', '_');
+    }
+
+    /**
+     * Digest más conteo y suma exactos
+     */
+    private static final class Accumulator {
+        final TDigest digest;
+        long count;
+        double sum;
+
+        Accumulator(TDigest digest) {
+            this.digest = digest;
+        }
+
+        void add(double value) {
+            digest.add(value);
+            count++;
+            sum += value;
+        }
+
+        void merge(Accumulator other) {
+            digest.merge(other.digest);
+            count += other.count;
+            sum += other.sum;
+        }
+
+        Accumulator copy() {
+            Accumulator copy = new Accumulator(digest.copy());
+            copy.count = count;
+            copy.sum = sum;
+            return copy;
+        }
+    }
+
+    private static final class PendingDigest {
+        final String docId;
+        final String dimension;
+        final String dimensionValue;
+        final ZonedDateTime day;
+        final Accumulator accumulator;
+
+        PendingDigest(String docId, String dimension, String dimensionValue, ZonedDateTime day,
+                      Accumulator accumulator) {
+            this.docId = docId;
+            this.dimension = dimension;
+            this.dimensionValue = dimensionValue;
+            this.day = day;
+            this.accumulator = accumulator;
+        }
+    }
+}
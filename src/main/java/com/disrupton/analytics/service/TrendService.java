@@ -0,0 +1,386 @@
+package com.disrupton.analytics.service;
+
+import com.disrupton.analytics.model.RollupGranularity;
+import com.disrupton.analytics.model.TrendForecast;
+import com.disrupton.analytics.util.HoltLinear;
+import com.disrupton.service.FirebaseAnalyticsService;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Tendencias y pronósticos precalculados por serie horaria (Holt lineal + EWMA)
+ *
+ * Cada hora cerrada se lee una vez de los rollups horarios (una lectura por métrica y hora
+ * para todas sus series) y actualiza el estado de cada serie en O(1). El estado de todas las
+ * series de una métrica se guarda en un solo documento (cuatro números por serie) junto con la
+ * última hora incorporada; la escritura es una transacción que solo avanza si nadie más lo hizo,
+ * así varias instancias no cuentan dos veces la misma hora. Los endpoints de predicción leen estos
+ * estados en memoria en lugar de recalcular el dashboard
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TrendService {
+
+    private static final String ALL_SERIES = key(RollupService.ALL_DIMENSION, RollupService.ALL_DIMENSION);
+
+    // Nombre de cada métrica en las claves de predictions()
+    private static final Map<String, String> PREDICTION_LABELS = Map.of(
+            FirebaseAnalyticsService.CULTURAL_OBJECT_VIEWS_METRIC, "Views",
+            FirebaseAnalyticsService.USER_SESSIONS_COLLECTION, "Sessions",
+            FirebaseAnalyticsService.INTERACTION_EVENTS_COLLECTION, "Interactions");
+
+    private final Firestore firestore;
+    private final RollupService rollupService;
+
+    @Qualifier("analyticsScheduler")
+    private final ScheduledExecutorService analyticsScheduler;
+
+    @Value("${analytics.trends.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analytics.trends.collection:analytics_trends}")
+    private String collectionName;
+
+    @Value("${analytics.trends.alpha:0.3}")
+    private double alpha;
+
+    @Value("${analytics.trends.beta:0.1}")
+    private double beta;
+
+    @Value("${analytics.trends.ewma-alpha:0.2}")
+    private double ewmaAlpha;
+
+    @Value("${analytics.trends.tick-interval-ms:60000}")
+    private long tickIntervalMs;
+
+    @Value("${analytics.trends.settle-minutes:2}")
+    private long settleMinutes;
+
+    @Value("${analytics.trends.max-catchup-hours:48}")
+    private int maxCatchupHours;
+
+    @Value("${analytics.trends.max-series-per-metric:200}")
+    private int maxSeriesPerMetric;
+
+    // Métricas con tendencia y dimensiones seguidas de cada una (además del total)
+    private final Map<String, List<String>> trackedDimensions = new LinkedHashMap<>();
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // Series vistas en la ingesta que todavía no tienen estado guardado
+    private final Map<String, Set<String>> observed = new ConcurrentHashMap<>();
+
+    // Último estado conocido por métrica (inmutable una vez publicado)
+    private final Map<String, MetricTrends> trends = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void start() {
+        trackedDimensions.put(FirebaseAnalyticsService.CULTURAL_OBJECT_VIEWS_METRIC, List.of());
+        trackedDimensions.put(FirebaseAnalyticsService.USER_SESSIONS_COLLECTION, List.of("zoneId"));
+        trackedDimensions.put(FirebaseAnalyticsService.INTERACTION_EVENTS_COLLECTION, List.of("zoneId", "theme"));
+
+        if (!enabled) {
+            log.info("📉 Tendencias deshabilitadas");
+            return;
+        }
+        analyticsScheduler.scheduleWithFixedDelay(this::tickQuietly, tickIntervalMs, tickIntervalMs,
+                TimeUnit.MILLISECONDS);
+        log.info("📉 Tendencias Holt (α={}, β={}) y EWMA (α={}) por hora para {}", alpha, beta, ewmaAlpha,
+                trackedDimensions.keySet());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Registra las series de un evento ingerido para que entren en el próximo tick
+     */
+    public void observe(String metric, Map<String, String> dimensions) {
+        List<String> tracked = trackedDimensions.get(metric);
+        if (!enabled || tracked == null || tracked.isEmpty() || dimensions == null) {
+            return;
+        }
+        Set<String> keys = observed.computeIfAbsent(metric, k -> ConcurrentHashMap.newKeySet());
+        for (String dimension : tracked) {
+            String value = dimensions.get(dimension);
+            if (value != null && !value.isBlank() && keys.size() < maxSeriesPerMetric) {
+                keys.add(key(dimension, value));
+            }
+        }
+    }
+
+    /**
+     * Pronósticos de todas las series de una métrica, opcionalmente de una sola dimensión
+     */
+    public List<TrendForecast> forecasts(String metric, String dimension)
+            throws ExecutionException, InterruptedException {
+        MetricTrends metricTrends = load(metric);
+        return metricTrends.series.values().stream()
+                .filter(series -> dimension == null || dimension.equals(series.dimension))
+                .map(series -> toForecast(metric, metricTrends.lastBucket, series))
+                .sorted(Comparator.comparingDouble(TrendForecast::getNext24Hours).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Pronóstico del total de una métrica; null si todavía no hay horas incorporadas
+     */
+    public TrendForecast forecastTotal(String metric) throws ExecutionException, InterruptedException {
+        MetricTrends metricTrends = load(metric);
+        SeriesState total = metricTrends.series.get(ALL_SERIES);
+        return total != null ? toForecast(metric, metricTrends.lastBucket, total) : null;
+    }
+
+    /**
+     * Predicciones del total de cada métrica seguida: próximo día, próxima semana y tendencia por hora
+     */
+    public Map<String, Double> predictions() throws ExecutionException, InterruptedException {
+        Map<String, Double> predictions = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : PREDICTION_LABELS.entrySet()) {
+            TrendForecast total = forecastTotal(entry.getKey());
+            if (total == null || total.getSamples() == 0) {
+                continue;
+            }
+            predictions.put("nextDay" + entry.getValue(), total.getNext24Hours());
+            predictions.put("nextWeek" + entry.getValue(), total.getNext7Days());
+            predictions.put(Character.toLowerCase(entry.getValue().charAt(0)) + entry.getValue().substring(1)
+                    + "TrendPerHour", total.getTrendPerHour());
+        }
+        return predictions;
+    }
+
+    public Set<String> getTrackedMetrics() {
+        return Collections.unmodifiableSet(trackedDimensions.keySet());
+    }
+
+    /**
+     * Incorpora las horas cerradas pendientes de todas las métricas
+     */
+    public void tick() throws ExecutionException, InterruptedException {
+        ZonedDateTime closedBefore = RollupGranularity.HOUR.truncate(ZonedDateTime.now(zone).minusMinutes(settleMinutes));
+        for (String metric : trackedDimensions.keySet()) {
+            advance(metric, closedBefore);
+        }
+    }
+
+    // Métodos privados de utilidad
+
+    private void tickQuietly() {
+        try {
+            tick();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("❌ Error actualizando tendencias: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Avanza el estado de una métrica hasta la hora que empieza en closedBefore (exclusiva)
+     */
+    private void advance(String metric, ZonedDateTime closedBefore) throws ExecutionException, InterruptedException {
+        DocumentReference ref = firestore.collection(collectionName).document(metric);
+        MetricTrends stored = fromDocument(ref.get().get());
+
+        ZonedDateTime earliest = closedBefore.minusHours(maxCatchupHours);
+        ZonedDateTime first = stored.lastBucket != null
+                ? RollupGranularity.HOUR.next(stored.lastBucket.atZone(zone))
+                : earliest;
+        if (first.isBefore(earliest)) {
+            // Tras una caída larga se retoma desde earliest: las series siguen desde su último estado
+            first = earliest;
+        }
+        if (!first.isBefore(closedBefore)) {
+            trends.put(metric, stored);
+            return;
+        }
+
+        Map<String, SeriesState> series = new LinkedHashMap<>();
+        stored.series.forEach((key, state) -> series.put(key, state.copy()));
+        series.computeIfAbsent(ALL_SERIES, k -> new SeriesState(RollupService.ALL_DIMENSION, RollupService.ALL_DIMENSION));
+        Set<String> pending = observed.getOrDefault(metric, Set.of());
+        for (String key : pending) {
+            if (series.size() >= maxSeriesPerMetric) {
+                break;
+            }
+            series.computeIfAbsent(key, SeriesState::fromKey);
+        }
+
+        List<String> keys = new ArrayList<>(series.keySet());
+        List<String[]> dims = keys.stream()
+                .map(key -> new String[]{series.get(key).dimension, series.get(key).dimensionValue})
+                .collect(Collectors.toList());
+
+        int hours = 0;
+        ZonedDateTime hour = first;
+        for (; hour.isBefore(closedBefore); hour = RollupGranularity.HOUR.next(hour)) {
+            long[] counts = rollupService.bucketCounts(metric, dims, RollupGranularity.HOUR, hour.toInstant());
+            for (int i = 0; i < keys.size(); i++) {
+                series.get(keys.get(i)).holt.update(counts[i], alpha, beta, ewmaAlpha);
+            }
+            hours++;
+        }
+
+        Instant lastBucket = RollupGranularity.HOUR.truncate(closedBefore.minusHours(1)).toInstant();
+        MetricTrends updated = new MetricTrends(lastBucket, series);
+        Instant expected = stored.lastBucket;
+
+        boolean committed = firestore.runTransaction(transaction -> {
+            DocumentSnapshot current = transaction.get(ref).get();
+            Instant currentLast = current.exists() && current.getTimestamp("lastBucket") != null
+                    ? current.getTimestamp("lastBucket").toDate().toInstant()
+                    : null;
+            if (!Objects.equals(currentLast, expected)) {
+                // Otra instancia ya incorporó estas horas
+                return false;
+            }
+            transaction.set(ref, toDocument(metric, updated));
+            return true;
+        }).get();
+
+        if (committed) {
+            trends.put(metric, updated);
+            pending.removeAll(keys);
+            log.debug("📉 Tendencias de {} actualizadas: {} horas, {} series", metric, hours, keys.size());
+        } else {
+            trends.put(metric, fromDocument(ref.get().get()));
+        }
+    }
+
+    private MetricTrends load(String metric) throws ExecutionException, InterruptedException {
+        MetricTrends cached = trends.get(metric);
+        if (cached != null) {
+            return cached;
+        }
+        MetricTrends stored = fromDocument(firestore.collection(collectionName).document(metric).get().get());
+        trends.put(metric, stored);
+        return stored;
+    }
+
+    private TrendForecast toForecast(String metric, Instant lastBucket, SeriesState series) {
+        HoltLinear holt = series.holt;
+        return TrendForecast.builder()
+                .metric(metric)
+                .dimension(series.dimension)
+                .dimensionValue(series.dimensionValue)
+                .lastBucket(lastBucket != null ? LocalDateTime.ofInstant(lastBucket, zone) : null)
+                .samples(holt.getSamples())
+                .level(holt.getLevel())
+                .trendPerHour(holt.getTrend())
+                .ewma(holt.getEwma())
+                .nextHour(Math.max(0, holt.forecast(1)))
+                .next24Hours(Math.max(0, holt.forecastTotal(24)))
+                .next7Days(Math.max(0, holt.forecastTotal(24 * 7)))
+                .build();
+    }
+
+    private Map<String, Object> toDocument(String metric, MetricTrends metricTrends) {
+        Map<String, Object> series = new HashMap<>();
+        metricTrends.series.forEach((key, state) -> {
+            Map<String, Object> fields = new HashMap<>();
+            fields.put("dimension", state.dimension);
+            fields.put("dimensionValue", state.dimensionValue);
+            fields.put("level", state.holt.getLevel());
+            fields.put("trend", state.holt.getTrend());
+            fields.put("ewma", state.holt.getEwma());
+            fields.put("samples", state.holt.getSamples());
+            series.put(key, fields);
+        });
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("metric", metric);
+        data.put("lastBucket", Timestamp.ofTimeSecondsAndNanos(metricTrends.lastBucket.getEpochSecond(), 0));
+        data.put("series", series);
+        data.put("updatedAt", FieldValue.serverTimestamp());
+        return data;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MetricTrends fromDocument(DocumentSnapshot document) {
+        if (!document.exists()) {
+            return new MetricTrends(null, Map.of());
+        }
+        Timestamp lastBucket = document.getTimestamp("lastBucket");
+        Map<String, SeriesState> series = new LinkedHashMap<>();
+        Object stored = document.get("series");
+        if (stored instanceof Map) {
+            ((Map<String, Object>) stored).forEach((key, value) -> {
+                if (value instanceof Map) {
+                    Map<String, Object> fields = (Map<String, Object>) value;
+                    series.put(key, new SeriesState(
+                            String.valueOf(fields.get("dimension")),
+                            String.valueOf(fields.get("dimensionValue")),
+                            new HoltLinear(doubleOf(fields.get("level")), doubleOf(fields.get("trend")),
+                                    doubleOf(fields.get("ewma")), (long) doubleOf(fields.get("samples")))));
+                }
+            });
+        }
+        return new MetricTrends(lastBucket != null ? lastBucket.toDate().toInstant() : null, series);
+    }
+
+    private static double doubleOf(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0.0;
+    }
+
+    private static String key(String dimension, String dimensionValue) {
+        return dimension + "=" + dimensionValue;
+    }
+
+    private static final class MetricTrends {
+        final Instant lastBucket;
+        final Map<String, SeriesState> series;
+
+        MetricTrends(Instant lastBucket, Map<String, SeriesState> series) {
+            this.lastBucket = lastBucket;
+            this.series = series;
+        }
+    }
+
+    private static final class SeriesState {
+        final String dimension;
+        final String dimensionValue;
+        final HoltLinear holt;
+
+        SeriesState(String dimension, String dimensionValue) {
+            this(dimension, dimensionValue, new HoltLinear());
+        }
+
+        SeriesState(String dimension, String dimensionValue, HoltLinear holt) {
+            this.dimension = dimension;
+            this.dimensionValue = dimensionValue;
+            this.holt = holt;
+        }
+
+        static SeriesState fromKey(String key) {
+            int separator = key.indexOf('=');
+            return new SeriesState(key.substring(0, separator), key.substring(separator + 1));
+        }
+
+        SeriesState copy() {
+            return new SeriesState(dimension, dimensionValue,
+                    new HoltLinear(holt.getLevel(), holt.getTrend(), holt.getEwma(), holt.getSamples()));
+        }
+    }
+}
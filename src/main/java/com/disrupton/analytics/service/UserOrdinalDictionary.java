@@ -0,0 +1,162 @@
+package com.disrupton.analytics.service;
+
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Diccionario estable userId → ordinal (0, 1, 2...) guardado en Firestore
+ *
+ * Cada usuario tiene un documento con su ordinal y un contador global guarda el siguiente libre.
+ * Los ordinales se asignan por lotes en una transacción que relee el contador y los documentos
+ * de los usuarios, así dos instancias nunca dan el mismo ordinal ni reasignan uno existente.
+ * Como se asignan en orden de primera aparición, quedan densos y sirven de posición en bitmaps
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserOrdinalDictionary {
+
+    // Límite de documentos por transacción (Firestore admite 500 escrituras)
+    private static final int BATCH_SIZE = 400;
+
+    private final Firestore firestore;
+
+    @Value("${analytics.retention.dictionary-collection:analytics_user_ordinals}")
+    private String collectionName;
+
+    @Value("${analytics.retention.collection:analytics_retention}")
+    private String retentionCollection;
+
+    @Value("${analytics.retention.max-cached-users:200000}")
+    private int maxCachedUsers;
+
+    // Los ordinales no cambian nunca, así que el caché no se invalida (solo se vacía si crece demasiado)
+    private final Map<String, Integer> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Ordinales de varios usuarios, asignando los que todavía no tienen
+     */
+    public Resolved resolve(Collection<String> userIds) throws ExecutionException, InterruptedException {
+        Map<String, Integer> ordinals = new HashMap<>();
+        Set<String> created = new HashSet<>();
+        List<String> unknown = new ArrayList<>();
+        for (String userId : new LinkedHashSet<>(userIds)) {
+            Integer ordinal = cache.get(userId);
+            if (ordinal != null) {
+                ordinals.put(userId, ordinal);
+            } else {
+                unknown.add(userId);
+            }
+        }
+
+        for (int from = 0; from < unknown.size(); from += BATCH_SIZE) {
+            List<String> batch = unknown.subList(from, Math.min(unknown.size(), from + BATCH_SIZE));
+            DocumentReference[] refs = batch.stream().map(this::reference).toArray(DocumentReference[]::new);
+
+            List<String> missing = new ArrayList<>();
+            List<DocumentSnapshot> documents = firestore.getAll(refs).get();
+            for (int i = 0; i < documents.size(); i++) {
+                Long ordinal = documents.get(i).getLong("ordinal");
+                if (ordinal != null) {
+                    ordinals.put(batch.get(i), ordinal.intValue());
+                } else {
+                    missing.add(batch.get(i));
+                }
+            }
+            if (!missing.isEmpty()) {
+                Resolved assigned = assign(missing);
+                ordinals.putAll(assigned.ordinals);
+                created.addAll(assigned.created);
+            }
+        }
+
+        if (cache.size() + unknown.size() > maxCachedUsers) {
+            cache.clear();
+        }
+        for (String userId : unknown) {
+            cache.put(userId, ordinals.get(userId));
+        }
+        if (!created.isEmpty()) {
+            log.debug("🧮 Ordinales asignados a {} usuarios nuevos", created.size());
+        }
+        return new Resolved(ordinals, created);
+    }
+
+    // Métodos privados de utilidad
+
+    private Resolved assign(List<String> userIds) throws ExecutionException, InterruptedException {
+        DocumentReference counter = firestore.collection(retentionCollection).document("dictionary");
+        DocumentReference[] refs = userIds.stream().map(this::reference).toArray(DocumentReference[]::new);
+
+        return firestore.runTransaction(transaction -> {
+            DocumentSnapshot counterSnapshot = transaction.get(counter).get();
+            List<DocumentSnapshot> current = transaction.getAll(refs).get();
+
+            Long stored = counterSnapshot.exists() ? counterSnapshot.getLong("next") : null;
+            long next = stored != null ? stored : 0L;
+            Map<String, Integer> ordinals = new HashMap<>();
+            Set<String> created = new HashSet<>();
+            for (int i = 0; i < userIds.size(); i++) {
+                Long ordinal = current.get(i).getLong("ordinal");
+                if (ordinal != null) {
+                    // Otra instancia lo asignó entre la lectura y la transacción
+                    ordinals.put(userIds.get(i), ordinal.intValue());
+                    continue;
+                }
+                if (next > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("Se agotaron los ordinales de usuario");
+                }
+                Map<String, Object> data = new HashMap<>();
+                data.put("userId", userIds.get(i));
+                data.put("ordinal", next);
+                data.put("createdAt", FieldValue.serverTimestamp());
+                transaction.set(refs[i], data);
+                ordinals.put(userIds.get(i), (int) next);
+                created.add(userIds.get(i));
+                next++;
+            }
+
+            Map<String, Object> counterData = new HashMap<>();
+            counterData.put("next", next);
+            counterData.put("updatedAt", FieldValue.serverTimestamp());
+            transaction.set(counter, counterData);
+            return new Resolved(ordinals, created);
+        }).get();
+    }
+
+    private DocumentReference reference(String userId) {
+        // "/" no es válido en ids de documento
+        return firestore.collection(collectionName).document(userId.replace('/', '_'));
+    }
+
+    /**
+     * Ordinales resueltos y usuarios que recibieron uno por primera vez
+     */
+    public static final class Resolved {
+        private final Map<String, Integer> ordinals;
+        private final Set<String> created;
+
+        Resolved(Map<String, Integer> ordinals, Set<String> created) {
+            this.ordinals = ordinals;
+            this.created = created;
+        }
+
+        public Map<String, Integer> getOrdinals() {
+            return ordinals;
+        }
+
+        public Set<String> getCreated() {
+            return created;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.disrupton.analytics.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.BitSet;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Serialización comprimida de bitmaps de ordinales (BitSet + deflate)
+ *
+ * Los ordinales de usuario son densos (se asignan 0, 1, 2...), así que un BitSet ocupa
+ * un bit por usuario conocido: 100k usuarios son 12.5 KB sin comprimir. Los días con pocos
+ * activos son casi todo ceros y deflate los reduce a unos cientos de bytes
+ */
+public final class BitmapCodec {
+
+    private BitmapCodec() {
+    }
+
+    public static byte[] compress(BitSet bitmap) {
+        byte[] raw = bitmap.toByteArray();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int written = deflater.deflate(buffer);
+                out.write(buffer, 0, written);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static BitSet decompress(byte[] compressed) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int read = inflater.inflate(buffer);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Bitmap comprimido truncado");
+                }
+                out.write(buffer, 0, read);
+            }
+            return BitSet.valueOf(out.toByteArray());
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Bitmap comprimido inválido: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
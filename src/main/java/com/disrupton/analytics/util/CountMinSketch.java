@@ -0,0 +1,132 @@
+package com.disrupton.analytics.util;
+
+import com.google.common.hash.Hashing;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sketch Count-Min para estimar la frecuencia de cualquier elemento con memoria fija
+ *
+ * depth filas de width contadores; la estimación es el mínimo de las filas y nunca
+ * subestima. Con probabilidad 1 - e^-depth el error es como máximo e / width × total.
+ * Dos sketches de igual tamaño se combinan sumando celda a celda. No es thread-safe
+ */
+public final class CountMinSketch {
+
+    private final int width;
+    private final int depth;
+    private final long[][] table;
+    private long total;
+
+    public CountMinSketch(int width, int depth) {
+        if (width <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("Dimensiones inválidas: " + width + "x" + depth);
+        }
+        this.width = width;
+        this.depth = depth;
+        this.table = new long[depth][width];
+    }
+
+    public void add(String item, long count) {
+        long hash = hash(item);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int row = 0; row < depth; row++) {
+            table[row][index(h1, h2, row)] += count;
+        }
+        total += count;
+    }
+
+    /**
+     * Frecuencia estimada (cota superior)
+     */
+    public long estimate(String item) {
+        long hash = hash(item);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, table[row][index(h1, h2, row)]);
+        }
+        return min;
+    }
+
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("No se pueden unir sketches Count-Min de distinto tamaño");
+        }
+        for (int row = 0; row < depth; row++) {
+            for (int col = 0; col < width; col++) {
+                table[row][col] += other.table[row][col];
+            }
+        }
+        total += other.total;
+    }
+
+    /**
+     * Cota del error absoluto de estimate(): e / width × total
+     */
+    public double errorBound() {
+        return Math.E / width * total;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public CountMinSketch copy() {
+        CountMinSketch copy = new CountMinSketch(width, depth);
+        copy.merge(this);
+        return copy;
+    }
+
+    /**
+     * Serializa las celdas (fila por fila) como longs big-endian
+     */
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * width * depth);
+        for (long[] row : table) {
+            for (long cell : row) {
+                buffer.putLong(cell);
+            }
+        }
+        return buffer.array();
+    }
+
+    public static CountMinSketch fromBytes(int width, int depth, byte[] bytes) {
+        if (bytes.length != Long.BYTES * width * depth) {
+            throw new IllegalArgumentException("Tamaño inválido para un sketch de " + width + "x" + depth);
+        }
+        CountMinSketch sketch = new CountMinSketch(width, depth);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long total = 0;
+        for (int row = 0; row < depth; row++) {
+            for (int col = 0; col < width; col++) {
+                sketch.table[row][col] = buffer.getLong();
+                if (row == 0) {
+                    total += sketch.table[row][col];
+                }
+            }
+        }
+        sketch.total = total;
+        return sketch;
+    }
+
+    private int index(int h1, int h2, int row) {
+        // Familia de hashes por doble hashing (Kirsch-Mitzenmacher)
+        return Math.floorMod(h1 + row * h2, width);
+    }
+
+    private static long hash(String item) {
+        return Hashing.murmur3_128().hashString(item, StandardCharsets.UTF_8).asLong();
+    }
+}
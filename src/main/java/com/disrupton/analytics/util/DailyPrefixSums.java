@@ -0,0 +1,192 @@
+package com.disrupton.analytics.util;
+
+import com.disrupton.analytics.model.RollupBucket;
+import com.disrupton.analytics.model.RollupGranularity;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sumas de prefijo de los buckets diarios de una serie (métrica, dimensión, valor)
+ *
+ * Cubre un tramo contiguo de días [start, end) que se extiende hacia adelante o hacia atrás
+ * a medida que llegan consultas más largas. count, valueCount y sum de cualquier sub-rango
+ * salen de dos posiciones de los prefijos (O(1)); min y max se recorren día a día en memoria.
+ * Pensado para días cerrados; si uno recibe un evento tardío, quien la usa debe descartarla y
+ * volver a cargarla. No es thread-safe
+ */
+public final class DailyPrefixSums {
+
+    private final long createdAtNanos = System.nanoTime();
+    private LocalDate start;
+    private int days;
+
+    // Prefijos: posición i = total de los días [start, start + i)
+    private long[] countPrefix = new long[1];
+    private long[] valueCountPrefix = new long[1];
+    private double[] sumPrefix = new double[1];
+
+    // Por día; NaN si el día no tiene valores
+    private double[] min = new double[0];
+    private double[] max = new double[0];
+
+    /**
+     * System.nanoTime() de creación, para descartar series cargadas hace demasiado
+     */
+    public long getCreatedAtNanos() {
+        return createdAtNanos;
+    }
+
+    public boolean isEmpty() {
+        return days == 0;
+    }
+
+    public LocalDate getStart() {
+        return start;
+    }
+
+    /**
+     * Primer día no cubierto
+     */
+    public LocalDate getEnd() {
+        return start != null ? start.plusDays(days) : null;
+    }
+
+    public int size() {
+        return days;
+    }
+
+    public boolean covers(LocalDate from, LocalDate to) {
+        return !isEmpty() && !from.isBefore(start) && !to.isAfter(getEnd());
+    }
+
+    /**
+     * Agrega días consecutivos a continuación del último cubierto
+     *
+     * @param from    primer día de los buckets
+     * @param buckets un bucket por día, vacíos incluidos
+     */
+    public void append(LocalDate from, List<RollupBucket> buckets) {
+        if (buckets.isEmpty()) {
+            return;
+        }
+        if (isEmpty()) {
+            start = from;
+        } else if (!from.equals(getEnd())) {
+            throw new IllegalArgumentException("Los días agregados deben continuar en " + getEnd() + ": " + from);
+        }
+
+        int total = days + buckets.size();
+        countPrefix = Arrays.copyOf(countPrefix, total + 1);
+        valueCountPrefix = Arrays.copyOf(valueCountPrefix, total + 1);
+        sumPrefix = Arrays.copyOf(sumPrefix, total + 1);
+        min = Arrays.copyOf(min, total);
+        max = Arrays.copyOf(max, total);
+
+        for (RollupBucket bucket : buckets) {
+            countPrefix[days + 1] = countPrefix[days] + bucket.getCount();
+            valueCountPrefix[days + 1] = valueCountPrefix[days] + bucket.getValueCount();
+            sumPrefix[days + 1] = sumPrefix[days] + bucket.getSum();
+            min[days] = bucket.getMin() != null ? bucket.getMin() : Double.NaN;
+            max[days] = bucket.getMax() != null ? bucket.getMax() : Double.NaN;
+            days++;
+        }
+    }
+
+    /**
+     * Agrega días consecutivos que terminan justo antes del primero cubierto
+     * Recalcula los prefijos: O(días cubiertos)
+     */
+    public void prepend(LocalDate from, List<RollupBucket> buckets) {
+        if (buckets.isEmpty()) {
+            return;
+        }
+        if (isEmpty()) {
+            append(from, buckets);
+            return;
+        }
+        if (!from.plusDays(buckets.size()).equals(start)) {
+            throw new IllegalArgumentException("Los días antepuestos deben terminar en " + start + ": " + from);
+        }
+
+        List<RollupBucket> all = new ArrayList<>(buckets);
+        all.addAll(days(start, getEnd(), null, null, null));
+        reset();
+        append(from, all);
+    }
+
+    /**
+     * Total de los días [from, to); deben estar cubiertos
+     */
+    public RollupBucket total(LocalDate from, LocalDate to) {
+        int a = index(from);
+        int b = index(to);
+
+        double low = Double.NaN;
+        double high = Double.NaN;
+        for (int i = a; i < b; i++) {
+            if (!Double.isNaN(min[i]) && (Double.isNaN(low) || min[i] < low)) {
+                low = min[i];
+            }
+            if (!Double.isNaN(max[i]) && (Double.isNaN(high) || max[i] > high)) {
+                high = max[i];
+            }
+        }
+
+        return RollupBucket.builder()
+                .granularity(RollupGranularity.DAY)
+                .bucketStart(from.atStartOfDay())
+                .count(countPrefix[b] - countPrefix[a])
+                .valueCount(valueCountPrefix[b] - valueCountPrefix[a])
+                .sum(sumPrefix[b] - sumPrefix[a])
+                .min(Double.isNaN(low) ? null : low)
+                .max(Double.isNaN(high) ? null : high)
+                .build();
+    }
+
+    /**
+     * Buckets diarios de [from, to); deben estar cubiertos
+     */
+    public List<RollupBucket> days(LocalDate from, LocalDate to, String metric, String dimension,
+                                   String dimensionValue) {
+        int a = index(from);
+        int b = index(to);
+        List<RollupBucket> result = new ArrayList<>(b - a);
+        for (int i = a; i < b; i++) {
+            result.add(RollupBucket.builder()
+                    .metric(metric)
+                    .dimension(dimension)
+                    .dimensionValue(dimensionValue)
+                    .granularity(RollupGranularity.DAY)
+                    .bucketStart(start.plusDays(i).atStartOfDay())
+                    .count(countPrefix[i + 1] - countPrefix[i])
+                    .valueCount(valueCountPrefix[i + 1] - valueCountPrefix[i])
+                    .sum(sumPrefix[i + 1] - sumPrefix[i])
+                    .min(Double.isNaN(min[i]) ? null : min[i])
+                    .max(Double.isNaN(max[i]) ? null : max[i])
+                    .build());
+        }
+        return result;
+    }
+
+    private int index(LocalDate day) {
+        long index = ChronoUnit.DAYS.between(start, day);
+        if (isEmpty() || index < 0 || index > days) {
+            throw new IllegalArgumentException("Día fuera del tramo cubierto [" + start + ", " + getEnd() + "): " + day);
+        }
+        return (int) index;
+    }
+
+    private void reset() {
+        start = null;
+        days = 0;
+        countPrefix = new long[1];
+        valueCountPrefix = new long[1];
+        sumPrefix = new double[1];
+        min = new double[0];
+        max = new double[0];
+    }
+}
@@ -0,0 +1,69 @@
+package com.disrupton.analytics.util;
+
+/**
+ * Suavizado exponencial de Holt (nivel + tendencia lineal) y una EWMA simple de la misma serie
+ *
+ * Cada observación actualiza el estado en O(1):
+ *   nivel_t     = α·x_t + (1 - α)·(nivel_{t-1} + tendencia_{t-1})
+ *   tendencia_t = β·(nivel_t - nivel_{t-1}) + (1 - β)·tendencia_{t-1}
+ *   ewma_t      = γ·x_t + (1 - γ)·ewma_{t-1}
+ * y el pronóstico a h pasos es nivel + h·tendencia. El estado son cuatro números, así que
+ * se persiste tal cual. No es thread-safe
+ */
+public final class HoltLinear {
+
+    private double level;
+    private double trend;
+    private double ewma;
+    private long samples;
+
+    public HoltLinear() {
+    }
+
+    public HoltLinear(double level, double trend, double ewma, long samples) {
+        this.level = level;
+        this.trend = trend;
+        this.ewma = ewma;
+        this.samples = samples;
+    }
+
+    /**
+     * Incorpora la observación de un nuevo intervalo
+     *
+     * @param alpha     peso de la observación en el nivel (0..1)
+     * @param beta      peso del último cambio de nivel en la tendencia (0..1)
+     * @param ewmaAlpha peso de la observación en la EWMA (0..1)
+     */
+    public void update(double value, double alpha, double beta, double ewmaAlpha) {
+        if (samples == 0) {
+            level = value;
+            trend = 0;
+            ewma = value;
+        } else {
+            double previousLevel = level;
+            level = alpha * value + (1 - alpha) * (level + trend);
+            trend = beta * (level - previousLevel) + (1 - beta) * trend;
+            ewma = ewmaAlpha * value + (1 - ewmaAlpha) * ewma;
+        }
+        samples++;
+    }
+
+    /**
+     * Valor esperado del intervalo h pasos adelante (h = 1 es el próximo)
+     */
+    public double forecast(int steps) {
+        return level + steps * trend;
+    }
+
+    /**
+     * Suma esperada de los próximos h intervalos: h·nivel + tendencia·h(h+1)/2
+     */
+    public double forecastTotal(int steps) {
+        return steps * level + trend * steps * (steps + 1) / 2.0;
+    }
+
+    public double getLevel() { return level; }
+    public double getTrend() { return trend; }
+    public double getEwma() { return ewma; }
+    public long getSamples() { return samples; }
+}
@@ -0,0 +1,160 @@
+package com.disrupton.analytics.util;
+
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Sketch HyperLogLog para contar elementos distintos con memoria fija
+ *
+ * Con precisión p usa 2^p registros de un byte (p = 12: 4 KB) y el error estándar
+ * relativo es 1.04 / sqrt(2^p) (≈1.6% con p = 12). Dos sketches de igual precisión se
+ * combinan con el máximo registro a registro, así que la unión de días es exacta
+ * respecto de contar el conjunto unido. Usa hash de 64 bits, por lo que no necesita la
+ * corrección de rango grande del algoritmo original; para cardinalidades pequeñas se
+ * aplica linear counting. No es thread-safe
+ */
+public final class HyperLogLog {
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 16;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precisión HyperLogLog fuera de rango: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    private HyperLogLog(int precision, byte[] registers) {
+        this.precision = precision;
+        this.registers = registers;
+    }
+
+    /**
+     * Reconstruye un sketch serializado con toBytes()
+     */
+    public static HyperLogLog fromBytes(int precision, byte[] registers) {
+        if (registers.length != 1 << precision) {
+            throw new IllegalArgumentException("Tamaño de registros inválido para precisión " + precision);
+        }
+        return new HyperLogLog(precision, registers.clone());
+    }
+
+    /**
+     * Agrega un elemento; devuelve true si cambió algún registro
+     */
+    public boolean offer(String item) {
+        return offerHash(Hashing.murmur3_128().hashString(item, StandardCharsets.UTF_8).asLong());
+    }
+
+    public boolean offerHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // Bit centinela: el rango queda acotado a 64 - p + 1
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Une otro sketch a este (máximo por registro)
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("No se pueden unir sketches de precisión "
+                    + precision + " y " + other.precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Cardinalidad estimada
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0.0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // Linear counting: más preciso cuando muchos registros siguen vacíos
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Error estándar relativo de la estimación (1.04 / sqrt(m))
+     */
+    public double relativeStandardError() {
+        return relativeStandardError(precision);
+    }
+
+    public static double relativeStandardError(int precision) {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+
+    public boolean isEmpty() {
+        for (byte register : registers) {
+            if (register != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Registros serializados (un byte por registro)
+     */
+    public byte[] toBytes() {
+        return registers.clone();
+    }
+
+    public HyperLogLog copy() {
+        return new HyperLogLog(precision, registers.clone());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof HyperLogLog)) return false;
+        HyperLogLog other = (HyperLogLog) o;
+        return precision == other.precision && Arrays.equals(registers, other.registers);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * precision + Arrays.hashCode(registers);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16: return 0.673;
+            case 32: return 0.697;
+            case 64: return 0.709;
+            default: return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.disrupton.analytics.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Segmento del journal: archivo de tamaño fijo mapeado en memoria con registros
+ * [longitud int][crc32c int][payload]. Una longitud 0 marca el final de los datos
+ * (el archivo se crea lleno de ceros). Un único hilo escribe; la lectura es concurrente
+ * y solo ve hasta writePosition, que se publica después de escribir cada registro
+ */
+public final class JournalSegment implements Closeable {
+
+    public static final String SUFFIX = ".wal";
+    public static final int RECORD_HEADER = 8;
+
+    private final long id;
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private volatile int writePosition;
+
+    private JournalSegment(long id, Path file, FileChannel channel, MappedByteBuffer buffer, int capacity) {
+        this.id = id;
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Crea un segmento nuevo y vacío
+     */
+    public static JournalSegment create(Path directory, long id, int capacity) throws IOException {
+        Path file = directory.resolve(fileName(id));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        return new JournalSegment(id, file, channel, buffer, capacity);
+    }
+
+    /**
+     * Abre un segmento existente y recupera su final: el primer registro con longitud
+     * inválida o CRC incorrecto (escritura cortada por un crash) marca el fin de los datos
+     */
+    public static JournalSegment open(Path file) throws IOException {
+        long id = parseId(file);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int capacity = (int) channel.size();
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        JournalSegment segment = new JournalSegment(id, file, channel, buffer, capacity);
+
+        int position = 0;
+        byte[] payload;
+        while ((payload = segment.readPayload(position, capacity)) != null) {
+            position += RECORD_HEADER + payload.length;
+        }
+        segment.writePosition = position;
+        return segment;
+    }
+
+    /**
+     * Agrega un registro; devuelve false si no cabe en el segmento
+     */
+    public boolean append(byte[] payload) {
+        int position = writePosition;
+        if (position + RECORD_HEADER + payload.length > capacity) {
+            return false;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.put(position + RECORD_HEADER, payload);
+        // La longitud se escribe al final: un registro a medias queda con longitud 0
+        buffer.putInt(position, payload.length);
+        writePosition = position + RECORD_HEADER + payload.length;
+        return true;
+    }
+
+    /**
+     * Lee el payload del registro en la posición dada; null si no hay más registros
+     */
+    public byte[] read(int position) {
+        return readPayload(position, writePosition);
+    }
+
+    /**
+     * Fuerza los cambios al disco (durabilidad ante caídas del sistema operativo)
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    public boolean isEmpty() {
+        return writePosition == 0;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public int getWritePosition() {
+        return writePosition;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static String fileName(long id) {
+        return String.format("segment-%020d%s", id, SUFFIX);
+    }
+
+    public static long parseId(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring("segment-".length(), name.length() - SUFFIX.length()));
+    }
+
+    public static boolean isSegmentFile(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith("segment-") && name.endsWith(SUFFIX) && Files.isRegularFile(file);
+    }
+
+    private byte[] readPayload(int position, int limit) {
+        if (position + RECORD_HEADER > limit) {
+            return null;
+        }
+        ByteBuffer view = buffer.duplicate();
+        int length = view.getInt(position);
+        // Comparación sin sumar la longitud: una longitud corrupta cercana a Integer.MAX_VALUE desbordaría
+        if (length <= 0 || length > limit - position - RECORD_HEADER) {
+            return null;
+        }
+        int expectedCrc = view.getInt(position + 4);
+        byte[] payload = new byte[length];
+        view.get(position + RECORD_HEADER, payload);
+
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue() == expectedCrc ? payload : null;
+    }
+}
@@ -0,0 +1,230 @@
+package com.disrupton.analytics.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Conjunto ordenado de miembros por puntaje con rango en O(log n) (skip list indexada)
+ *
+ * Orden: puntaje descendente y, a igual puntaje, miembro ascendente; el rango 0 es el primero.
+ * Cada enlace guarda cuántos nodos salta (span), así el rango de un miembro es la suma de los
+ * saltos al buscarlo y el k-ésimo se encuentra bajando por los mismos saltos. Actualizar un
+ * puntaje es quitar e insertar: O(log n) esperado. Un mapa miembro → puntaje permite ubicar el
+ * nodo sin recorrer la lista. No es thread-safe
+ */
+public final class RankedSkipList {
+
+    private static final int MAX_LEVEL = 32;
+    private static final double LEVEL_PROBABILITY = 0.25;
+
+    private final Node head = new Node(null, 0.0, MAX_LEVEL);
+    private final Map<String, Double> scores = new HashMap<>();
+    private int level = 1;
+    private int length;
+
+    /**
+     * Miembro con su puntaje y su rango (0 = mayor puntaje)
+     */
+    public static final class Entry {
+        private final String member;
+        private final double score;
+        private final int rank;
+
+        Entry(String member, double score, int rank) {
+            this.member = member;
+            this.score = score;
+            this.rank = rank;
+        }
+
+        public String getMember() { return member; }
+        public double getScore() { return score; }
+        public int getRank() { return rank; }
+    }
+
+    /**
+     * Inserta el miembro o actualiza su puntaje
+     */
+    public void put(String member, double score) {
+        if (Double.isNaN(score)) {
+            throw new IllegalArgumentException("Puntaje inválido para " + member);
+        }
+        Double current = scores.get(member);
+        if (current != null) {
+            if (current == score) {
+                return;
+            }
+            delete(member, current);
+        }
+        insert(member, score);
+        scores.put(member, score);
+    }
+
+    public boolean remove(String member) {
+        Double current = scores.remove(member);
+        if (current == null) {
+            return false;
+        }
+        delete(member, current);
+        return true;
+    }
+
+    public Double score(String member) {
+        return scores.get(member);
+    }
+
+    public int size() {
+        return length;
+    }
+
+    /**
+     * Rango del miembro (0 = mayor puntaje) o -1 si no está
+     */
+    public int rank(String member) {
+        Double score = scores.get(member);
+        if (score == null) {
+            return -1;
+        }
+        int traversed = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && !precedes(score, member, x.next[i].score, x.next[i].member)) {
+                traversed += x.span[i];
+                x = x.next[i];
+            }
+            if (x != head && x.member.equals(member)) {
+                return traversed - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Hasta count miembros desde el rango offset, en orden
+     */
+    public List<Entry> range(int offset, int count) {
+        List<Entry> entries = new ArrayList<>(Math.max(0, Math.min(count, length - offset)));
+        Node x = offset >= 0 && offset < length ? byRank(offset + 1) : null;
+        for (int rank = offset; x != null && entries.size() < count; rank++, x = x.next[0]) {
+            entries.add(new Entry(x.member, x.score, rank));
+        }
+        return entries;
+    }
+
+    // Métodos privados de utilidad
+
+    /**
+     * true si (scoreA, memberA) va antes que (scoreB, memberB)
+     */
+    private static boolean precedes(double scoreA, String memberA, double scoreB, String memberB) {
+        int byScore = Double.compare(scoreB, scoreA);
+        return byScore < 0 || (byScore == 0 && memberA.compareTo(memberB) < 0);
+    }
+
+    private void insert(String member, double score) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && precedes(x.next[i].score, x.next[i].member, score, member)) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = length;
+            }
+            level = nodeLevel;
+        }
+
+        Node node = new Node(member, score, nodeLevel);
+        for (int i = 0; i < nodeLevel; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = (rank[0] - rank[i]) + 1;
+        }
+        for (int i = nodeLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        length++;
+    }
+
+    private void delete(String member, double score) {
+        Node[] update = new Node[MAX_LEVEL];
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && precedes(x.next[i].score, x.next[i].member, score, member)) {
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+        x = x.next[0];
+        if (x == null || x.score != score || !x.member.equals(member)) {
+            return;
+        }
+
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == x) {
+                update[i].span[i] += x.span[i] - 1;
+                update[i].next[i] = x.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        length--;
+    }
+
+    /**
+     * Nodo en la posición 1-based dada
+     */
+    private Node byRank(int position) {
+        int traversed = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && traversed + x.span[i] <= position) {
+                traversed += x.span[i];
+                x = x.next[i];
+            }
+            if (traversed == position) {
+                return x;
+            }
+        }
+        return null;
+    }
+
+    private static int randomLevel() {
+        int nodeLevel = 1;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (nodeLevel < MAX_LEVEL && random.nextDouble() < LEVEL_PROBABILITY) {
+            nodeLevel++;
+        }
+        return nodeLevel;
+    }
+
+    private static final class Node {
+        final String member;
+        final double score;
+        final Node[] next;
+        final int[] span;
+
+        Node(String member, double score, int nodeLevel) {
+            this.member = member;
+            this.score = score;
+            this.next = new Node[nodeLevel];
+            this.span = new int[nodeLevel];
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.disrupton.analytics.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Columnas primitivas con nombre (struct-of-arrays) para puntuar muchas filas de una vez
+ *
+ * Cada columna es un long[] o double[] del mismo largo; la fila i es el elemento i de todas.
+ * Los valores ausentes se cargan como 0. No copia los arreglos: no modificarlos mientras se puntúa
+ */
+public final class ScoreColumns {
+
+    private final int rows;
+    private final Map<String, Object> columns = new HashMap<>();
+
+    public ScoreColumns(int rows) {
+        if (rows < 0) {
+            throw new IllegalArgumentException("Cantidad de filas inválida: " + rows);
+        }
+        this.rows = rows;
+    }
+
+    public ScoreColumns add(String name, long[] values) {
+        return put(name, values, values.length);
+    }
+
+    public ScoreColumns add(String name, double[] values) {
+        return put(name, values, values.length);
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * long[], double[] o null si la columna no existe
+     */
+    Object column(String name) {
+        return columns.get(name);
+    }
+
+    private ScoreColumns put(String name, Object values, int length) {
+        if (length != rows) {
+            throw new IllegalArgumentException("La columna " + name + " tiene " + length
+                    + " filas y se esperaban " + rows);
+        }
+        columns.put(name, values);
+        return this;
+    }
+}
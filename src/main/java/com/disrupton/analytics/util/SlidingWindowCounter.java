@@ -0,0 +1,54 @@
+package com.disrupton.analytics.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Contador de eventos en una ventana deslizante (p. ej. el último minuto) con resolución de un segundo
+ *
+ * Un slot por segundo en un arreglo circular; cada slot guarda el segundo al que pertenece, así
+ * los slots viejos se reciclan al escribir y se ignoran al leer. Thread-safe y sin locks: dos
+ * escritores que reciclan el mismo slot a la vez pueden perder un evento, aceptable para métricas en vivo
+ */
+public final class SlidingWindowCounter {
+
+    private final int windowSeconds;
+    private final AtomicLongArray counts;
+    private final AtomicLongArray seconds;
+
+    public SlidingWindowCounter(int windowSeconds) {
+        if (windowSeconds <= 0) {
+            throw new IllegalArgumentException("La ventana debe ser de al menos un segundo: " + windowSeconds);
+        }
+        this.windowSeconds = windowSeconds;
+        this.counts = new AtomicLongArray(windowSeconds);
+        this.seconds = new AtomicLongArray(windowSeconds);
+    }
+
+    public void increment(long nowMillis) {
+        add(nowMillis, 1);
+    }
+
+    public void add(long nowMillis, long delta) {
+        long second = nowMillis / 1000;
+        int slot = (int) (second % windowSeconds);
+        long stamped = seconds.get(slot);
+        if (stamped != second && seconds.compareAndSet(slot, stamped, second)) {
+            counts.set(slot, 0);
+        }
+        counts.addAndGet(slot, delta);
+    }
+
+    /**
+     * Eventos de los últimos windowSeconds segundos, el actual incluido
+     */
+    public long sum(long nowMillis) {
+        long second = nowMillis / 1000;
+        long total = 0;
+        for (int slot = 0; slot < windowSeconds; slot++) {
+            if (second - seconds.get(slot) < windowSeconds) {
+                total += counts.get(slot);
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,50 @@
+package com.disrupton.analytics.util;
+
+/**
+ * Teselas "slippy map" (z/x/y, proyección Web Mercator) como las de OpenStreetMap
+ *
+ * En el zoom z el mundo se divide en 2^z x 2^z teselas; x crece hacia el este e y hacia el sur.
+ * Las latitudes se recortan a ±85.0511°, el límite de la proyección
+ */
+public final class SlippyTiles {
+
+    public static final int MAX_ZOOM = 22;
+    public static final double MAX_LATITUDE = 85.0511287798;
+
+    private SlippyTiles() {
+    }
+
+    public static int tileX(double longitude, int zoom) {
+        int n = 1 << zoom;
+        int x = (int) Math.floor((longitude + 180.0) / 360.0 * n);
+        return Math.max(0, Math.min(n - 1, x));
+    }
+
+    public static int tileY(double latitude, int zoom) {
+        int n = 1 << zoom;
+        double radians = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude)));
+        int y = (int) Math.floor((1.0 - Math.log(Math.tan(radians) + 1.0 / Math.cos(radians)) / Math.PI) / 2.0 * n);
+        return Math.max(0, Math.min(n - 1, y));
+    }
+
+    /**
+     * Longitud del borde oeste de la columna x
+     */
+    public static double longitude(int x, int zoom) {
+        return x / (double) (1 << zoom) * 360.0 - 180.0;
+    }
+
+    /**
+     * Latitud del borde norte de la fila y
+     */
+    public static double latitude(int y, int zoom) {
+        double t = Math.PI * (1.0 - 2.0 * y / (1 << zoom));
+        return Math.toDegrees(Math.atan(Math.sinh(t)));
+    }
+
+    public static boolean isValid(double latitude, double longitude) {
+        return !Double.isNaN(latitude) && !Double.isNaN(longitude)
+                && latitude >= -90.0 && latitude <= 90.0
+                && longitude >= -180.0 && longitude <= 180.0;
+    }
+}
@@ -0,0 +1,140 @@
+package com.disrupton.analytics.util;
+
+import java.util.*;
+
+/**
+ * Resumen Space-Saving (Metwally et al.) para los elementos más frecuentes de un stream
+ *
+ * Mantiene como máximo capacity contadores. Cuando llega un elemento nuevo y no hay lugar,
+ * reemplaza al de menor conteo y hereda ese conteo como error. Todo elemento con frecuencia
+ * real mayor que N / capacity está garantizado en el resumen, y para cada contador
+ * count - error <= real <= count. No es thread-safe
+ */
+public final class SpaceSaving {
+
+    private final int capacity;
+    private final Map<String, Counter> counters;
+    // Ordenado por conteo ascendente: el primero es el que se reemplaza
+    private final TreeSet<Counter> byCount = new TreeSet<>(
+            Comparator.comparingLong(Counter::getCount).thenComparing(Counter::getItem));
+    private long total;
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("La capacidad debe ser positiva: " + capacity);
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    public void offer(String item) {
+        offer(item, 1, 0);
+    }
+
+    /**
+     * Suma increment al elemento; error es la sobreestimación ya acumulada de ese incremento
+     */
+    public void offer(String item, long increment, long error) {
+        total += increment;
+        Counter counter = counters.get(item);
+        if (counter != null) {
+            byCount.remove(counter);
+            counter = new Counter(item, counter.count + increment, counter.error + error);
+        } else if (counters.size() < capacity) {
+            counter = new Counter(item, increment, error);
+        } else {
+            Counter evicted = byCount.pollFirst();
+            counters.remove(evicted.item);
+            counter = new Counter(item, evicted.count + increment, evicted.count + error);
+        }
+        counters.put(item, counter);
+        byCount.add(counter);
+    }
+
+    /**
+     * Suma otro resumen a este; los límites de error se conservan sumando ambos errores
+     */
+    public void merge(SpaceSaving other) {
+        for (Counter counter : other.counters.values()) {
+            // Lo que el otro no registró pudo tener hasta su conteo mínimo
+            offer(counter.item, counter.count, counter.error);
+        }
+        total += other.total - other.counters.values().stream().mapToLong(Counter::getCount).sum();
+    }
+
+    /**
+     * Los n elementos con mayor conteo, de mayor a menor
+     */
+    public List<Counter> top(int n) {
+        List<Counter> top = new ArrayList<>(Math.min(n, counters.size()));
+        Iterator<Counter> it = byCount.descendingIterator();
+        while (it.hasNext() && top.size() < n) {
+            top.add(it.next());
+        }
+        return top;
+    }
+
+    public Counter get(String item) {
+        return counters.get(item);
+    }
+
+    public Collection<Counter> counters() {
+        return Collections.unmodifiableCollection(counters.values());
+    }
+
+    /**
+     * Conteo mínimo actual: cota del error para elementos que no están en el resumen
+     */
+    public long minCount() {
+        return counters.size() < capacity || byCount.isEmpty() ? 0 : byCount.first().count;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    public SpaceSaving copy() {
+        SpaceSaving copy = new SpaceSaving(capacity);
+        for (Counter counter : counters.values()) {
+            copy.counters.put(counter.item, counter);
+            copy.byCount.add(counter);
+        }
+        copy.total = total;
+        return copy;
+    }
+
+    /**
+     * Contador inmutable de un elemento: la frecuencia real está en [count - error, count]
+     */
+    public static final class Counter {
+        private final String item;
+        private final long count;
+        private final long error;
+
+        public Counter(String item, long count, long error) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getItem() {
+            return item;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.disrupton.analytics.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * t-digest (Dunning) para estimar cuantiles de un stream con memoria acotada
+ *
+ * Variante "merging": los valores se acumulan en un buffer y se fusionan ordenados con
+ * los centroides existentes. El tamaño de cada centroide lo limita la función de escala
+ * k1(q) = δ/2π · asin(2q - 1), que deja centroides chicos en las colas: p99 es mucho más
+ * preciso que con un histograma de igual tamaño. Como máximo ~δ centroides; dos digests
+ * se combinan fusionando sus centroides. No es thread-safe
+ */
+public final class TDigest {
+
+    private final double compression;
+    private double[] means;
+    private long[] weights;
+    private int centroids;
+    private long totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    private final double[] bufferMeans;
+    private final long[] bufferWeights;
+    private int buffered;
+
+    public TDigest(double compression) {
+        if (compression < 10) {
+            throw new IllegalArgumentException("La compresión del t-digest debe ser >= 10: " + compression);
+        }
+        this.compression = compression;
+        int capacity = (int) Math.ceil(compression) * 2 + 10;
+        this.means = new double[capacity];
+        this.weights = new long[capacity];
+        this.bufferMeans = new double[capacity * 4];
+        this.bufferWeights = new long[capacity * 4];
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    public void add(double value, long weight) {
+        if (Double.isNaN(value) || weight <= 0) {
+            return;
+        }
+        if (buffered == bufferMeans.length) {
+            compress();
+        }
+        bufferMeans[buffered] = value;
+        bufferWeights[buffered] = weight;
+        buffered++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Agrega los centroides de otro digest a este
+     */
+    public void merge(TDigest other) {
+        other.compress();
+        for (int i = 0; i < other.centroids; i++) {
+            add(other.means[i], other.weights[i]);
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Valor estimado del cuantil q (0..1); NaN si el digest está vacío
+     */
+    public double quantile(double q) {
+        compress();
+        if (centroids == 0) {
+            return Double.NaN;
+        }
+        if (q <= 0) {
+            return min;
+        }
+        if (q >= 1) {
+            return max;
+        }
+        if (centroids == 1) {
+            return means[0];
+        }
+
+        double index = q * totalWeight;
+        // Antes del centro del primer centroide: interpolar desde el mínimo
+        double firstCenter = weights[0] / 2.0;
+        if (index < firstCenter) {
+            return min + (means[0] - min) * (index / firstCenter);
+        }
+
+        double cumulative = 0;
+        for (int i = 0; i < centroids - 1; i++) {
+            double center = cumulative + weights[i] / 2.0;
+            double nextCenter = cumulative + weights[i] + weights[i + 1] / 2.0;
+            if (index <= nextCenter) {
+                double fraction = (index - center) / (nextCenter - center);
+                return means[i] + (means[i + 1] - means[i]) * fraction;
+            }
+            cumulative += weights[i];
+        }
+
+        // Después del centro del último centroide: interpolar hacia el máximo
+        int last = centroids - 1;
+        double lastCenter = totalWeight - weights[last] / 2.0;
+        double fraction = (index - lastCenter) / (totalWeight - lastCenter);
+        return means[last] + (max - means[last]) * Math.min(1.0, fraction);
+    }
+
+    public long size() {
+        compress();
+        return totalWeight;
+    }
+
+    public boolean isEmpty() {
+        return centroids == 0 && buffered == 0;
+    }
+
+    public double getMin() {
+        return isEmpty() ? Double.NaN : min;
+    }
+
+    public double getMax() {
+        return isEmpty() ? Double.NaN : max;
+    }
+
+    public double getCompression() {
+        return compression;
+    }
+
+    public int centroidCount() {
+        compress();
+        return centroids;
+    }
+
+    public TDigest copy() {
+        TDigest copy = new TDigest(compression);
+        copy.merge(this);
+        return copy;
+    }
+
+    /**
+     * Serializa: compresión, mínimo, máximo, cantidad de centroides y pares (media, peso)
+     */
+    public byte[] toBytes() {
+        compress();
+        ByteBuffer buffer = ByteBuffer.allocate(8 * 3 + 4 + centroids * 16);
+        buffer.putDouble(compression);
+        buffer.putDouble(min);
+        buffer.putDouble(max);
+        buffer.putInt(centroids);
+        for (int i = 0; i < centroids; i++) {
+            buffer.putDouble(means[i]);
+            buffer.putLong(weights[i]);
+        }
+        return buffer.array();
+    }
+
+    public static TDigest fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        TDigest digest = new TDigest(buffer.getDouble());
+        double min = buffer.getDouble();
+        double max = buffer.getDouble();
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            digest.add(buffer.getDouble(), buffer.getLong());
+        }
+        digest.compress();
+        if (count > 0) {
+            digest.min = min;
+            digest.max = max;
+        }
+        return digest;
+    }
+
+    /**
+     * Fusiona el buffer con los centroides respetando el límite de tamaño de k1
+     */
+    private void compress() {
+        if (buffered == 0) {
+            return;
+        }
+
+        int n = centroids + buffered;
+        double[] allMeans = new double[n];
+        long[] allWeights = new long[n];
+        System.arraycopy(means, 0, allMeans, 0, centroids);
+        System.arraycopy(weights, 0, allWeights, 0, centroids);
+        System.arraycopy(bufferMeans, 0, allMeans, centroids, buffered);
+        System.arraycopy(bufferWeights, 0, allWeights, centroids, buffered);
+        sortByMean(allMeans, allWeights);
+
+        long total = 0;
+        for (long weight : allWeights) {
+            total += weight;
+        }
+
+        double[] newMeans = new double[Math.max(means.length, n)];
+        long[] newWeights = new long[newMeans.length];
+        int count = 0;
+        newMeans[0] = allMeans[0];
+        newWeights[0] = allWeights[0];
+        long soFar = 0;
+        double kLeft = k(0);
+
+        for (int i = 1; i < n; i++) {
+            long proposed = newWeights[count] + allWeights[i];
+            double kRight = k((double) (soFar + proposed) / total);
+            if (kRight - kLeft <= 1) {
+                // Cabe en el centroide actual: media ponderada
+                newMeans[count] += (allMeans[i] - newMeans[count]) * allWeights[i] / proposed;
+                newWeights[count] = proposed;
+            } else {
+                soFar += newWeights[count];
+                kLeft = k((double) soFar / total);
+                count++;
+                newMeans[count] = allMeans[i];
+                newWeights[count] = allWeights[i];
+            }
+        }
+
+        centroids = count + 1;
+        means = Arrays.copyOf(newMeans, Math.max(centroids, means.length));
+        weights = Arrays.copyOf(newWeights, means.length);
+        totalWeight = total;
+        buffered = 0;
+    }
+
+    private double k(double q) {
+        return compression / (2 * Math.PI) * Math.asin(2 * Math.min(1.0, Math.max(0.0, q)) - 1);
+    }
+
+    private static void sortByMean(double[] values, long[] weights) {
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+        double[] sortedValues = new double[values.length];
+        long[] sortedWeights = new long[weights.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedValues[i] = values[order[i]];
+            sortedWeights[i] = weights[order[i]];
+        }
+        System.arraycopy(sortedValues, 0, values, 0, values.length);
+        System.arraycopy(sortedWeights, 0, weights, 0, weights.length);
+    }
+}
@@ -55,13 +55,20 @@ public class AnalyticsEventController {
 
     /**
      * Create new analytics event
+     * Returns 202 Accepted without an eventId when the sampling policy dropped the event (not stored)
      */
     @PostMapping
     public ResponseEntity<AnalyticsEventDto> createEvent(@RequestBody AnalyticsEventRequest request) {
         try {
             log.info("Creating new analytics event for user: {}", request.getUserId());
             AnalyticsEventDto createdEvent = analyticsEventService.createEvent(request);
+            if (createdEvent.getEventId() == null) {
+                return ResponseEntity.accepted().body(createdEvent);
+            }
             return ResponseEntity.ok(createdEvent);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid analytics event: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error creating event: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
@@ -1,6 +1,7 @@
 package com.disrupton.analyticsEvent.dto;
 
 import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.annotation.IgnoreExtraProperties;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -8,6 +9,7 @@ import lombok.NoArgsConstructor;
 import java.util.Map;
 
 @Data
+@IgnoreExtraProperties
 @NoArgsConstructor
 @AllArgsConstructor
 public class AnalyticsEventDto {
@@ -22,6 +24,7 @@ public class AnalyticsEventDto {
     private Double longitude;
     private String deviceInfo;
     private String appVersion;
+    private Long samplingWeight; // events this stored sample stands for; 0 when it was sampled out and not stored
     private Timestamp createdAt;
     private Timestamp updatedAt;
 }
@@ -1,8 +1,12 @@
 package com.disrupton.analyticsEvent.service;
 
+import com.disrupton.analytics.model.AnalyticsRecord;
+import com.disrupton.analytics.model.TrackedEventType;
+import com.disrupton.analytics.service.AnalyticsEventPipeline;
 import com.disrupton.analyticsEvent.dto.AnalyticsEventDto;
 import com.disrupton.analyticsEvent.dto.AnalyticsEventRequest;
 import com.disrupton.analyticsEvent.model.AnalyticsEvent;
+import com.disrupton.service.FirestoreAggregationService;
 import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
 import lombok.RequiredArgsConstructor;
@@ -13,7 +17,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 
 @Service
@@ -22,7 +25,10 @@ import java.util.concurrent.ExecutionException;
 public class AnalyticsEventService {
 
     private final Firestore firestore;
+    private final FirestoreAggregationService aggregationService;
+    private final AnalyticsEventPipeline eventPipeline;
     private static final String COLLECTION_NAME = "analytics_events";
+    private static final String SAMPLING_WEIGHT_FIELD = AnalyticsEventPipeline.SAMPLING_WEIGHT_FIELD;
 
     /**
      * Get all analytics events
@@ -54,25 +60,52 @@ public class AnalyticsEventService {
 
     /**
      * Create new analytics event
+     * Stored through the analytics pipeline, which also feeds the rollups; high-volume event types go through
+     * the sampling policy. A sampled-out event is not stored: it comes back without an eventId and with
+     * samplingWeight 0
      */
     public AnalyticsEventDto createEvent(AnalyticsEventRequest request) throws ExecutionException, InterruptedException {
+        Timestamp now = Timestamp.now();
+        AnalyticsRecord record = AnalyticsRecord.builder()
+                .type(TrackedEventType.EVENT)
+                .name(request.getEventType())
+                .userId(request.getUserId())
+                .sessionId(request.getSessionId())
+                .latitude(request.getLatitude())
+                .longitude(request.getLongitude())
+                .occurredAt(now.toSqlTimestamp().toInstant())
+                .build();
+        Map<String, Object> attributes = record.getAttributes();
+        attributes.put("eventName", request.getEventName());
+        attributes.put("eventData", request.getEventData());
+        attributes.put("location", request.getLocation());
+        attributes.put("deviceInfo", request.getDeviceInfo());
+        attributes.put("appVersion", request.getAppVersion());
+        attributes.put("updatedAt", now);
+        eventPipeline.ingestAndWait(record);
+        
+        boolean stored = record.getSamplingWeight() > 0;
+        
         AnalyticsEventDto event = new AnalyticsEventDto();
-        event.setEventId(UUID.randomUUID().toString());
-        event.setUserId(request.getUserId());
-        event.setSessionId(request.getSessionId());
-        event.setEventType(request.getEventType());
+        event.setEventId(stored ? record.getId() : null);
+        event.setUserId(record.getUserId());
+        event.setSessionId(record.getSessionId());
+        event.setEventType(record.getName());
         event.setEventName(request.getEventName());
         event.setEventData(request.getEventData());
         event.setLocation(request.getLocation());
-        event.setLatitude(request.getLatitude());
-        event.setLongitude(request.getLongitude());
+        event.setLatitude(record.getLatitude());
+        event.setLongitude(record.getLongitude());
         event.setDeviceInfo(request.getDeviceInfo());
         event.setAppVersion(request.getAppVersion());
-        event.setCreatedAt(Timestamp.now());
-        event.setUpdatedAt(Timestamp.now());
+        event.setCreatedAt(now);
+        event.setUpdatedAt(now);
+        event.setSamplingWeight(record.getSamplingWeight());
         
-        DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(event.getEventId());
-        docRef.set(event).get();
+        if (!stored) {
+            log.debug("Analytics event sampled out: {}", event.getEventType());
+            return event;
+        }
         
         log.info("Analytics event created successfully: {}", event.getEventId());
         return event;
@@ -102,7 +135,7 @@ public class AnalyticsEventService {
         event.setUpdatedAt(Timestamp.now());
         
         DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(eventId);
-        docRef.set(event).get();
+        docRef.set(event, SetOptions.merge()).get();
         
         log.info("Analytics event updated successfully: {}", eventId);
         return event;
@@ -185,27 +218,16 @@ public class AnalyticsEventService {
     public Map<String, Object> getEventStats() throws ExecutionException, InterruptedException {
         Map<String, Object> stats = new HashMap<>();
         
-        QuerySnapshot allEvents = firestore.collection(COLLECTION_NAME).get().get();
+        CollectionReference collection = firestore.collection(COLLECTION_NAME);
         
-        stats.put("totalEvents", allEvents.size());
+        // Events are sampled, so each stored document counts as the events it stands for
+        stats.put("totalEvents", aggregationService.weightedCount(collection, SAMPLING_WEIGHT_FIELD));
         
         // Count by event type
-        Map<String, Integer> typeCounts = new HashMap<>();
-        for (QueryDocumentSnapshot document : allEvents) {
-            AnalyticsEventDto event = document.toObject(AnalyticsEventDto.class);
-            String type = event.getEventType();
-            typeCounts.put(type, typeCounts.getOrDefault(type, 0) + 1);
-        }
-        stats.put("eventsByType", typeCounts);
+        stats.put("eventsByType", aggregationService.weightedCountBy(collection, "eventType", SAMPLING_WEIGHT_FIELD));
         
         // Count by event name
-        Map<String, Integer> nameCounts = new HashMap<>();
-        for (QueryDocumentSnapshot document : allEvents) {
-            AnalyticsEventDto event = document.toObject(AnalyticsEventDto.class);
-            String name = event.getEventName();
-            nameCounts.put(name, nameCounts.getOrDefault(name, 0) + 1);
-        }
-        stats.put("eventsByName", nameCounts);
+        stats.put("eventsByName", aggregationService.weightedCountBy(collection, "eventName", SAMPLING_WEIGHT_FIELD));
         
         return stats;
     }
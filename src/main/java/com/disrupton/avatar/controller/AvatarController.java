@@ -1,10 +1,12 @@
 package com.disrupton.avatar.controller;
 
 import com.disrupton.avatar.dto.AvatarDto;
+import com.disrupton.avatar.dto.AvatarUploadResult;
 import com.disrupton.avatar.model.Avatar;
 import com.disrupton.avatar.service.AvatarService;
 import com.disrupton.avatar.service.GeminiAvatarService;
 import com.disrupton.avatar.service.AvatarStorageService;
+import com.disrupton.storage.model.ModelUploadResult;
 import com.disrupton.storage.service.FirebaseStorageService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -190,10 +192,11 @@ public class AvatarController {
             }
             
             // Subir el archivo GLB usando el nombre del avatar
-            String downloadUrl = avatarStorageService.uploadAvatarGLB(file, avatar.getDisplayName().toLowerCase());
+            ModelUploadResult result = avatarStorageService.uploadAvatarModel(file, avatar.getDisplayName().toLowerCase());
             
-            // Actualizar el avatar con la nueva URL
-            avatar.setAvatar3DModelUrl(downloadUrl);
+            // Actualizar el avatar con la nueva URL y las estadísticas del modelo
+            avatar.setAvatar3DModelUrl(result.getDownloadUrl());
+            avatar.setModelStats(result.getModelStats());
             avatarService.updateAvatar(avatar);
             
             return ResponseEntity.ok(Map.of(
@@ -201,9 +204,10 @@ public class AvatarController {
                 "message", "Archivo GLB subido y avatar actualizado exitosamente",
                 "avatarId", avatarId,
                 "avatarName", avatar.getDisplayName(),
-                "downloadUrl", downloadUrl,
+                "downloadUrl", result.getDownloadUrl(),
                 "fileName", file.getOriginalFilename(),
-                "fileSize", file.getSize()
+                "fileSize", file.getSize(),
+                "modelStats", result.getModelStats()
             ));
             
         } catch (Exception e) {
@@ -236,10 +240,11 @@ public class AvatarController {
             }
             
             // Subir el archivo GLB desde la ruta local
-            String downloadUrl = avatarStorageService.uploadAvatarFromLocalPath(localFilePath, avatar.getDisplayName().toLowerCase());
+            ModelUploadResult result = avatarStorageService.uploadAvatarModelFromLocalPath(localFilePath, avatar.getDisplayName().toLowerCase());
             
-            // Actualizar el avatar con la nueva URL
-            avatar.setAvatar3DModelUrl(downloadUrl);
+            // Actualizar el avatar con la nueva URL y las estadísticas del modelo
+            avatar.setAvatar3DModelUrl(result.getDownloadUrl());
+            avatar.setModelStats(result.getModelStats());
             avatarService.updateAvatar(avatar);
             
             return ResponseEntity.ok(Map.of(
@@ -247,8 +252,9 @@ public class AvatarController {
                 "message", "Archivo GLB subido desde local y avatar actualizado exitosamente",
                 "avatarId", avatarId,
                 "avatarName", avatar.getDisplayName(),
-                "downloadUrl", downloadUrl,
-                "localFilePath", localFilePath
+                "downloadUrl", result.getDownloadUrl(),
+                "localFilePath", localFilePath,
+                "modelStats", result.getModelStats()
             ));
             
         } catch (Exception e) {
@@ -260,6 +266,77 @@ public class AvatarController {
         }
     }
 
+    /**
+     * Sube varios archivos GLB en paralelo (bulk upload)
+     */
+    @PostMapping("/glb-files/bulk-upload")
+    public ResponseEntity<Map<String, Object>> bulkUploadGLBFiles(
+            @RequestParam("files") MultipartFile[] files,
+            @RequestParam("avatarNames") String[] avatarNames) {
+        
+        try {
+            log.info("🎭 Subida masiva de {} archivos GLB", files.length);
+            
+            List<AvatarUploadResult> results = avatarStorageService.uploadMultipleAvatars(files, avatarNames);
+            
+            return ResponseEntity.ok(buildBulkResponse(results));
+            
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "error", e.getMessage()
+            ));
+        } catch (Exception e) {
+            log.error("❌ Error en subida masiva de archivos GLB: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(Map.of(
+                "success", false,
+                "error", "Error en subida masiva de archivos GLB: " + e.getMessage()
+            ));
+        }
+    }
+
+    /**
+     * Importa en paralelo todos los GLB de un directorio local (para migración)
+     */
+    @PostMapping("/glb-files/import-directory")
+    public ResponseEntity<Map<String, Object>> importGLBDirectory(
+            @RequestParam("directoryPath") String directoryPath) {
+        
+        try {
+            log.info("📂 Importando archivos GLB desde directorio: {}", directoryPath);
+            
+            List<AvatarUploadResult> results = avatarStorageService.importAvatarsFromDirectory(directoryPath);
+            
+            Map<String, Object> response = buildBulkResponse(results);
+            response.put("directoryPath", directoryPath);
+            return ResponseEntity.ok(response);
+            
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "error", e.getMessage()
+            ));
+        } catch (Exception e) {
+            log.error("❌ Error importando directorio GLB: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(Map.of(
+                "success", false,
+                "error", "Error importando directorio GLB: " + e.getMessage()
+            ));
+        }
+    }
+
+    private Map<String, Object> buildBulkResponse(List<AvatarUploadResult> results) {
+        long succeeded = results.stream().filter(AvatarUploadResult::isSuccess).count();
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", succeeded == results.size());
+        response.put("total", results.size());
+        response.put("succeeded", succeeded);
+        response.put("failed", results.size() - succeeded);
+        response.put("results", results);
+        return response;
+    }
+
     /**
      * Lista todos los archivos GLB disponibles en Storage
      */
@@ -1,5 +1,6 @@
 package com.disrupton.avatar.dto;
 
+import com.disrupton.storage.model.GlbStats;
 import com.google.cloud.Timestamp;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -13,6 +14,7 @@ public class AvatarDto {
     private String type;
     private String displayName;
     private String avatar3DModelUrl;
+    private GlbStats modelStats; // estadísticas del GLB subido
     private Timestamp createdAt;
     private Timestamp updatedAt;
 }
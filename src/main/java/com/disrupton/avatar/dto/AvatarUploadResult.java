@@ -0,0 +1,24 @@
+package com.disrupton.avatar.dto;
+
+import com.disrupton.storage.model.GlbStats;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado individual de una subida masiva de avatares GLB
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvatarUploadResult {
+    private String avatarName;
+    private String source; // nombre original del archivo o ruta local
+    private boolean success;
+    private String downloadUrl;
+    private String filePath; // ruta en Storage
+    private Long bytes;
+    private Long durationMs;
+    private String error;
+    private GlbStats modelStats;
+}
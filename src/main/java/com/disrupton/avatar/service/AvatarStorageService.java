@@ -1,31 +1,57 @@
 package com.disrupton.avatar.service;
 
-import com.google.cloud.storage.*;
+import com.disrupton.avatar.dto.AvatarUploadResult;
+import com.disrupton.storage.model.GlbStats;
+import com.disrupton.storage.model.ModelUploadResult;
+import com.disrupton.storage.model.StoredBlob;
+import com.disrupton.storage.service.BlobMetadataCache;
+import com.disrupton.storage.service.BlobStore;
+import com.disrupton.storage.service.GlbInspector;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AvatarStorageService {
 
-    @Value("${firebase.project.storage.bucket:disrupton-new.firebasestorage.app}")
-    private String bucketName;
+    private static final String GLB_CONTENT_TYPE = "model/gltf-binary";
 
-    private final Storage storage;
+    private final BlobStore blobStore;
+    private final BlobMetadataCache metadataCache;
+    private final GlbInspector glbInspector;
+    @Qualifier("avatarUploadExecutor")
+    private final ExecutorService avatarUploadExecutor;
 
     /**
      * Sube un avatar GLB a Firebase Storage
      */
     public String uploadAvatarGLB(MultipartFile file, String avatarName) throws IOException {
+        return uploadAvatarModel(file, avatarName).getDownloadUrl();
+    }
+
+    /**
+     * Sube un avatar GLB validando su estructura y complejidad; devuelve URL y estadísticas
+     */
+    public ModelUploadResult uploadAvatarModel(MultipartFile file, String avatarName) throws IOException {
         log.info("🎭 Subiendo avatar GLB: {} - Tamaño: {} bytes", file.getOriginalFilename(), file.getSize());
         
         // Validar que sea un archivo GLB
@@ -41,57 +67,98 @@ public class AvatarStorageService {
         String fileName = generateAvatarFileName(file.getOriginalFilename(), avatarName);
         String filePath = String.format("avatars/glb/%s", fileName);
         
-        BlobId blobId = BlobId.of(bucketName, filePath);
-        Map<String, String> metadata = new HashMap<>();
-        metadata.put("avatarName", avatarName);
-        metadata.put("uploadedAt", String.valueOf(System.currentTimeMillis()));
-        
-        BlobInfo blobInfo = BlobInfo.newBuilder(blobId)
-                .setContentType("model/gltf-binary")
-                .setMetadata(metadata)
-                .build();
-        
-        Blob blob = storage.create(blobInfo, file.getBytes());
-        
-        String downloadUrl = blob.getMediaLink();
-        log.info("✅ Avatar GLB subido exitosamente: {} - URL: {}", fileName, downloadUrl);
-        
-        return downloadUrl;
+        // Se copia a un archivo temporal para mapearlo en memoria y subirlo desde disco
+        Path tempFile = Files.createTempFile("avatar-upload-", ".glb");
+        try {
+            file.transferTo(tempFile);
+            
+            GlbStats stats = glbInspector.inspect(tempFile);
+            
+            Map<String, String> metadata = new HashMap<>(stats.toMetadata());
+            metadata.put("avatarName", avatarName);
+            metadata.put("uploadedAt", String.valueOf(System.currentTimeMillis()));
+            
+            StoredBlob blob = blobStore.put(filePath, GLB_CONTENT_TYPE, metadata, tempFile);
+            metadataCache.invalidate(filePath);
+            
+            String downloadUrl = blob.getMediaLink();
+            log.info("✅ Avatar GLB subido exitosamente: {} - URL: {}", fileName, downloadUrl);
+            
+            return new ModelUploadResult(downloadUrl, filePath, blob.getSize(), stats);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
     }
 
     /**
-     * Sube múltiples avatares GLB (para bulk upload)
+     * Sube múltiples avatares GLB en paralelo (para bulk upload)
+     * Devuelve un resultado por archivo, en el mismo orden recibido
      */
-    public String[] uploadMultipleAvatars(MultipartFile[] files, String[] avatarNames) throws IOException {
-        log.info("🎭 Subiendo {} avatares GLB", files.length);
+    public List<AvatarUploadResult> uploadMultipleAvatars(MultipartFile[] files, String[] avatarNames) {
+        log.info("🎭 Subiendo {} avatares GLB en paralelo", files.length);
         
         if (files.length != avatarNames.length) {
             throw new IllegalArgumentException("El número de archivos debe coincidir con el número de nombres");
         }
         
-        String[] urls = new String[files.length];
-        
+        List<CompletableFuture<AvatarUploadResult>> futures = new ArrayList<>();
         for (int i = 0; i < files.length; i++) {
             MultipartFile file = files[i];
             String avatarName = avatarNames[i];
-            
-            try {
-                urls[i] = uploadAvatarGLB(file, avatarName);
-                log.info("✅ Avatar {} subido: {}", i + 1, avatarName);
-            } catch (Exception e) {
-                log.error("❌ Error subiendo avatar {}: {}", i + 1, e.getMessage());
-                urls[i] = null;
-            }
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> timedUpload(avatarName, file.getOriginalFilename(), () -> uploadAvatarModel(file, avatarName)),
+                    avatarUploadExecutor));
+        }
+        
+        return collectResults(futures);
+    }
+
+    /**
+     * Importa en paralelo todos los GLB de un directorio local (para migración)
+     * El nombre del avatar se toma del nombre del archivo sin extensión
+     */
+    public List<AvatarUploadResult> importAvatarsFromDirectory(String directoryPath) throws IOException {
+        Path directory = Paths.get(directoryPath);
+        
+        if (!Files.isDirectory(directory)) {
+            throw new IllegalArgumentException("El directorio local no existe: " + directoryPath);
+        }
+        
+        List<Path> glbFiles;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            glbFiles = paths
+                    .filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().toLowerCase().endsWith(".glb"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        
+        log.info("📂 Importando {} avatares GLB desde: {}", glbFiles.size(), directoryPath);
+        
+        List<CompletableFuture<AvatarUploadResult>> futures = new ArrayList<>();
+        for (Path glbFile : glbFiles) {
+            String fileName = glbFile.getFileName().toString();
+            String avatarName = fileName.substring(0, fileName.length() - ".glb".length()).toLowerCase();
+            String localPath = glbFile.toString();
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> timedUpload(avatarName, localPath, () -> uploadAvatarModelFromLocalPath(localPath, avatarName)),
+                    avatarUploadExecutor));
         }
         
-        log.info("✅ {} avatares subidos exitosamente", files.length);
-        return urls;
+        return collectResults(futures);
     }
 
     /**
      * Sube un avatar GLB desde un archivo local (para migración)
      */
     public String uploadAvatarFromLocalPath(String localFilePath, String avatarName) throws IOException {
+        return uploadAvatarModelFromLocalPath(localFilePath, avatarName).getDownloadUrl();
+    }
+
+    /**
+     * Sube un avatar GLB desde un archivo local validando su estructura y complejidad
+     */
+    public ModelUploadResult uploadAvatarModelFromLocalPath(String localFilePath, String avatarName) throws IOException {
         log.info("🎭 Subiendo avatar desde archivo local: {} - Nombre: {}", localFilePath, avatarName);
         
         java.io.File localFile = new java.io.File(localFilePath);
@@ -107,26 +174,21 @@ public class AvatarStorageService {
         String fileName = generateAvatarFileName(localFile.getName(), avatarName);
         String filePath = String.format("avatars/glb/%s", fileName);
         
-        BlobId blobId = BlobId.of(bucketName, filePath);
-        Map<String, String> metadata = new HashMap<>();
+        GlbStats stats = glbInspector.inspect(localFile.toPath());
+        
+        Map<String, String> metadata = new HashMap<>(stats.toMetadata());
         metadata.put("avatarName", avatarName);
         metadata.put("uploadedAt", String.valueOf(System.currentTimeMillis()));
         metadata.put("source", "local_file");
         
-        BlobInfo blobInfo = BlobInfo.newBuilder(blobId)
-                .setContentType("model/gltf-binary")
-                .setMetadata(metadata)
-                .build();
-        
-        // Leer archivo local
-        byte[] fileBytes = java.nio.file.Files.readAllBytes(localFile.toPath());
-        
-        Blob blob = storage.create(blobInfo, fileBytes);
+        // Subir directamente desde el archivo local
+        StoredBlob blob = blobStore.put(filePath, GLB_CONTENT_TYPE, metadata, localFile.toPath());
+        metadataCache.invalidate(filePath);
         
         String downloadUrl = blob.getMediaLink();
         log.info("✅ Avatar GLB subido desde archivo local: {} - URL: {}", fileName, downloadUrl);
         
-        return downloadUrl;
+        return new ModelUploadResult(downloadUrl, filePath, blob.getSize(), stats);
     }
 
     /**
@@ -139,8 +201,9 @@ public class AvatarStorageService {
             // Buscar el archivo por nombre
             String prefix = String.format("avatars/glb/%s", avatarName);
             
-            for (Blob blob : storage.list(bucketName, Storage.BlobListOption.prefix(prefix)).iterateAll()) {
-                boolean deleted = storage.delete(blob.getBlobId());
+            for (StoredBlob blob : blobStore.list(prefix)) {
+                boolean deleted = blobStore.delete(blob.getPath());
+                metadataCache.invalidate(blob.getPath());
                 if (deleted) {
                     log.info("✅ Avatar GLB eliminado exitosamente: {}", avatarName);
                     return true;
@@ -164,7 +227,7 @@ public class AvatarStorageService {
             
             String prefix = String.format("avatars/glb/%s", avatarName);
             
-            for (Blob blob : storage.list(bucketName, Storage.BlobListOption.prefix(prefix)).iterateAll()) {
+            for (StoredBlob blob : blobStore.list(prefix)) {
                 String url = blob.getMediaLink();
                 log.info("✅ URL del avatar GLB obtenida: {}", url);
                 return url;
@@ -187,8 +250,8 @@ public class AvatarStorageService {
             
             java.util.List<String> avatarNames = new java.util.ArrayList<>();
             
-            for (Blob blob : storage.list(bucketName, Storage.BlobListOption.prefix("avatars/glb/")).iterateAll()) {
-                String fileName = blob.getName();
+            for (StoredBlob blob : blobStore.list("avatars/glb/")) {
+                String fileName = blob.getPath();
                 String avatarName = fileName.replace("avatars/glb/", "").replace(".glb", "");
                 avatarNames.add(avatarName);
             }
@@ -208,7 +271,7 @@ public class AvatarStorageService {
         try {
             String prefix = String.format("avatars/glb/%s", avatarName);
             
-            for (Blob blob : storage.list(bucketName, Storage.BlobListOption.prefix(prefix)).iterateAll()) {
+            for (StoredBlob blob : blobStore.list(prefix)) {
                 return true;
             }
             
@@ -228,7 +291,7 @@ public class AvatarStorageService {
             
             String prefix = String.format("avatars/glb/%s", avatarName);
             
-            for (Blob blob : storage.list(bucketName, Storage.BlobListOption.prefix(prefix)).iterateAll()) {
+            for (StoredBlob blob : blobStore.list(prefix)) {
                 AvatarInfo info = new AvatarInfo();
                 info.setName(avatarName);
                 info.setUrl(blob.getMediaLink());
@@ -258,6 +321,45 @@ public class AvatarStorageService {
 
     // Métodos privados de utilidad
     
+    @FunctionalInterface
+    private interface UploadTask {
+        ModelUploadResult upload() throws IOException;
+    }
+    
+    private AvatarUploadResult timedUpload(String avatarName, String source, UploadTask task) {
+        long start = System.nanoTime();
+        AvatarUploadResult result = new AvatarUploadResult();
+        result.setAvatarName(avatarName);
+        result.setSource(source);
+        
+        try {
+            ModelUploadResult upload = task.upload();
+            result.setSuccess(true);
+            result.setDownloadUrl(upload.getDownloadUrl());
+            result.setFilePath(upload.getFilePath());
+            result.setBytes(upload.getSize());
+            result.setModelStats(upload.getModelStats());
+            log.info("✅ Avatar subido: {}", avatarName);
+        } catch (Exception e) {
+            log.error("❌ Error subiendo avatar {}: {}", avatarName, e.getMessage());
+            result.setSuccess(false);
+            result.setError(e.getMessage());
+        }
+        
+        result.setDurationMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return result;
+    }
+    
+    private List<AvatarUploadResult> collectResults(List<CompletableFuture<AvatarUploadResult>> futures) {
+        List<AvatarUploadResult> results = futures.stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
+        
+        long succeeded = results.stream().filter(AvatarUploadResult::isSuccess).count();
+        log.info("✅ {} de {} avatares subidos exitosamente", succeeded, results.size());
+        return results;
+    }
+    
     private boolean isGLBFile(MultipartFile file) {
         String fileName = file.getOriginalFilename();
         return fileName != null && fileName.toLowerCase().endsWith(".glb");
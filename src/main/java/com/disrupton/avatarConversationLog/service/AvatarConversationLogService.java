@@ -3,6 +3,7 @@ package com.disrupton.avatarConversationLog.service;
 import com.disrupton.avatarConversationLog.dto.AvatarConversationLogDto;
 import com.disrupton.avatarConversationLog.dto.AvatarConversationLogRequest;
 import com.disrupton.avatarConversationLog.model.AvatarConversationLog;
+import com.disrupton.service.FirestoreAggregationService;
 import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
 import lombok.RequiredArgsConstructor;
@@ -22,6 +23,7 @@ import java.util.concurrent.ExecutionException;
 public class AvatarConversationLogService {
 
     private final Firestore firestore;
+    private final FirestoreAggregationService aggregationService;
     private static final String COLLECTION_NAME = "avatar_conversation_logs";
 
     /**
@@ -175,27 +177,15 @@ public class AvatarConversationLogService {
     public Map<String, Object> getConversationStats() throws ExecutionException, InterruptedException {
         Map<String, Object> stats = new HashMap<>();
         
-        QuerySnapshot allLogs = firestore.collection(COLLECTION_NAME).get().get();
+        CollectionReference collection = firestore.collection(COLLECTION_NAME);
         
-        stats.put("totalConversations", allLogs.size());
+        stats.put("totalConversations", aggregationService.count(collection));
         
         // Count by avatar
-        Map<String, Integer> avatarCounts = new HashMap<>();
-        for (QueryDocumentSnapshot document : allLogs) {
-            AvatarConversationLogDto logEntry = document.toObject(AvatarConversationLogDto.class);
-            String avatarId = logEntry.getAvatarId();
-            avatarCounts.put(avatarId, avatarCounts.getOrDefault(avatarId, 0) + 1);
-        }
-        stats.put("conversationsByAvatar", avatarCounts);
+        stats.put("conversationsByAvatar", aggregationService.countBy(collection, "avatarId"));
         
         // Count by user
-        Map<String, Integer> userCounts = new HashMap<>();
-        for (QueryDocumentSnapshot document : allLogs) {
-            AvatarConversationLogDto logEntry = document.toObject(AvatarConversationLogDto.class);
-            String userId = logEntry.getUserId();
-            userCounts.put(userId, userCounts.getOrDefault(userId, 0) + 1);
-        }
-        stats.put("conversationsByUser", userCounts);
+        stats.put("conversationsByUser", aggregationService.countBy(collection, "userId"));
         
         return stats;
     }
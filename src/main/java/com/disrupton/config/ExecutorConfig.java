@@ -0,0 +1,111 @@
+package com.disrupton.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pools de hilos compartidos por los servicios
+ * Spring cierra cada ExecutorService al detener el contexto
+ */
+@Configuration
+@Slf4j
+public class ExecutorConfig {
+
+    /**
+     * Pool acotado para subidas masivas de avatares GLB
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService avatarUploadExecutor(
+            @Value("${storage.bulk-upload.threads:4}") int threads) {
+        log.info("🧵 Pool de subidas de avatares: {} hilos", threads);
+        return Executors.newFixedThreadPool(threads, namedThreadFactory("avatar-upload"));
+    }
+
+    /**
+     * Pool para componer las secciones del dashboard (mapeo de documentos a DTOs)
+     * Las consultas a Firestore ya son asíncronas; aquí solo se procesan sus resultados.
+     * Nada que bloquee corre aquí: eso va a dashboardBlockingExecutor
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService dashboardExecutor(
+            @Value("${dashboard.executor.threads:4}") int threads) {
+        log.info("🧵 Pool del dashboard: {} hilos", threads);
+        return Executors.newFixedThreadPool(threads, namedThreadFactory("dashboard"));
+    }
+
+    /**
+     * Pool para las lecturas bloqueantes del dashboard (rollups, sketches, digests, retención)
+     * Un rango de fechas lanza más de diez a la vez, así que el pool es más grande que
+     * dashboardExecutor para que no esperen en cola y venza el timeout de la sección
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService dashboardBlockingExecutor(
+            @Value("${dashboard.executor.blocking-threads:16}") int threads) {
+        log.info("🧵 Pool de lecturas bloqueantes del dashboard: {} hilos", threads);
+        return Executors.newFixedThreadPool(threads, namedThreadFactory("dashboard-blocking"));
+    }
+
+    /**
+     * Pool para recalcular en segundo plano los snapshots cacheados del dashboard
+     * Separado de dashboardExecutor: cada recálculo espera a las secciones que corren allí
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService dashboardRefreshExecutor(
+            @Value("${dashboard.cache.refresh-threads:2}") int threads) {
+        log.info("🧵 Pool de refresco de snapshots del dashboard: {} hilos", threads);
+        return Executors.newFixedThreadPool(threads, namedThreadFactory("dashboard-refresh"));
+    }
+
+    /**
+     * Pool para enviar los deltas del stream SSE del dashboard
+     * Una escritura bloqueada en el socket no se puede cancelar: retiene su hilo hasta que vence
+     * el timeout de escritura del contenedor. Cada suscriptor tiene como mucho un envío en curso,
+     * así que el pool crece hasta max-subscribers y los clientes bloqueados no dejan sin hilo al resto
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService dashboardStreamExecutor(
+            @Value("${dashboard.stream.send-threads:4}") int threads,
+            @Value("${dashboard.stream.max-subscribers:100}") int maxSubscribers) {
+        int maxThreads = Math.max(threads, maxSubscribers);
+        log.info("🧵 Pool del stream del dashboard: {} a {} hilos", threads, maxThreads);
+        return new ThreadPoolExecutor(threads, maxThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                namedThreadFactory("dashboard-stream"));
+    }
+
+    /**
+     * Hilo del tick y la reconciliación del stream SSE
+     * Separado de analyticsScheduler para que el tick no se atrase detrás de los volcados de sketches
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ScheduledExecutorService dashboardStreamScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(namedThreadFactory("dashboard-stream-tick"));
+    }
+
+    /**
+     * Hilo para tareas periódicas de analytics (volcado de sketches, etc.)
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ScheduledExecutorService analyticsScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(namedThreadFactory("analytics-scheduler"));
+    }
+
+    static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,61 @@
+package com.disrupton.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Políticas de muestreo de eventos de analytics de alto volumen, por tipo de evento
+ * Los tipos sin política se guardan siempre
+ */
+@Configuration
+@ConfigurationProperties(prefix = "analytics.sampling")
+@Getter
+@Setter
+public class SamplingConfig {
+
+    public enum Mode {
+        /** Se guarda 1 de cada oneIn eventos al azar */
+        FIXED,
+        /** Cubeta de tokens por usuario: tokensPerSecond sostenidos y ráfagas de hasta burst */
+        PER_USER,
+        /** La tasa se ajusta para escribir como máximo budgetPerSecond eventos por segundo */
+        DYNAMIC
+    }
+
+    private boolean enabled = true;
+
+    /**
+     * Por debajo de esta tasa (eventos por segundo del tipo) no se muestrea: los tipos raros se guardan siempre
+     */
+    private double rareThresholdPerSecond = 5.0;
+
+    /**
+     * Ventana en segundos con la que se mide la tasa de cada tipo
+     */
+    private int rateWindowSeconds = 10;
+
+    /**
+     * Máximo de cubetas usuario/tipo en memoria
+     */
+    private int maxTrackedUsers = 100_000;
+
+    /**
+     * Política por tipo de evento (eventType, en mayúsculas; "CULTURAL_OBJECT_VIEW" para las vistas de objetos)
+     */
+    private Map<String, Policy> policies = new LinkedHashMap<>();
+
+    @Getter
+    @Setter
+    public static class Policy {
+        private Mode mode = Mode.FIXED;
+        private int oneIn = 10;
+        private double tokensPerSecond = 1.0;
+        private int burst = 5;
+        private double budgetPerSecond = 20.0;
+    }
+}
@@ -0,0 +1,58 @@
+package com.disrupton.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pesos de los puntajes de engagement (objetos, zonas, temas y usuarios)
+ * Cada mapa es nombre de columna → peso; los valores por defecto son los históricos
+ */
+@Configuration
+@ConfigurationProperties(prefix = "analytics.scoring")
+@Getter
+@Setter
+public class ScoringConfig {
+
+    /**
+     * Filas a partir de las cuales el puntaje por columnas se calcula en paralelo
+     */
+    private int parallelThreshold = 100_000;
+
+    /**
+     * Objetos culturales: views, comments, reactions, shares, explorationTime (por segundo)
+     */
+    private Map<String, Double> engagement = weights(
+            "views", 1.0, "comments", 3.0, "reactions", 2.0, "shares", 5.0, "explorationTime", 0.1);
+
+    /**
+     * Zonas: sessions, uniqueVisitors, sessionDuration (por minuto), dailySessions, weeklySessions
+     */
+    private Map<String, Double> zone = weights(
+            "sessions", 1.0, "uniqueVisitors", 2.0, "sessionDuration", 0.5, "dailySessions", 5.0, "weeklySessions", 2.0);
+
+    /**
+     * Temas: interactions, comments, reactions, shares, photos, engagementTime (por minuto)
+     */
+    private Map<String, Double> theme = weights(
+            "interactions", 1.0, "comments", 4.0, "reactions", 2.0, "shares", 6.0, "photos", 3.0, "engagementTime", 0.2);
+
+    /**
+     * Usuarios: sessions, explorationTime (por minuto), interactions, comments, reactions, shares, photos
+     */
+    private Map<String, Double> user = weights(
+            "sessions", 2.0, "explorationTime", 0.1, "interactions", 1.5, "comments", 3.0, "reactions", 2.0,
+            "shares", 4.0, "photos", 2.5);
+
+    private static Map<String, Double> weights(Object... pairs) {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            weights.put((String) pairs[i], (Double) pairs[i + 1]);
+        }
+        return weights;
+    }
+}
@@ -1,5 +1,6 @@
 package com.disrupton.cultural.dto;
 
+import com.disrupton.storage.model.GlbStats;
 import com.google.cloud.Timestamp;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -13,6 +14,7 @@ public class CulturalObjectDto {
     private String title;
     private String description;
     private String modelUrl; // URL en Firebase Storage del modelo 3D
+    private GlbStats modelStats; // estadísticas del modelo GLB (mallas, vértices, texturas, bytes)
     private String createdBy; // reference a documento en users
     private Timestamp createdAt;
     private String status; // pending, approved, rejected
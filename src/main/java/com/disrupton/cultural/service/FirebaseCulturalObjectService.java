@@ -1,6 +1,8 @@
 package com.disrupton.cultural.service;
 
 import com.disrupton.cultural.dto.CulturalObjectDto;
+import com.disrupton.service.DashboardStreamService;
+import com.disrupton.storage.model.GlbStats;
 import com.google.api.core.ApiFuture;
 import com.google.cloud.firestore.*;
 import lombok.RequiredArgsConstructor;
@@ -17,6 +19,7 @@ import java.util.concurrent.ExecutionException;
 public class FirebaseCulturalObjectService {
 
     private final Firestore db;
+    private final DashboardStreamService dashboardStreamService;
     private static final String COLLECTION_NAME = "cultural_objects";
 
     /**
@@ -46,6 +49,7 @@ public class FirebaseCulturalObjectService {
         
         WriteResult result = future.get();
         log.info("✅ Objeto cultural guardado exitosamente con ID: {}. Timestamp: {}", objectId, result.getUpdateTime());
+        dashboardStreamService.moderationQueueChanged();
         
         return culturalObject;
     }
@@ -167,6 +171,7 @@ public class FirebaseCulturalObjectService {
         
         WriteResult result = future.get();
         log.info("✅ Estado del objeto cultural actualizado exitosamente. Timestamp: {}", result.getUpdateTime());
+        dashboardStreamService.moderationQueueChanged();
         
         return culturalObject;
     }
@@ -175,6 +180,13 @@ public class FirebaseCulturalObjectService {
      * Actualiza la URL del modelo 3D
      */
     public CulturalObjectDto updateModelUrl(String objectId, String modelUrl) throws ExecutionException, InterruptedException {
+        return updateModelUrl(objectId, modelUrl, null);
+    }
+
+    /**
+     * Actualiza la URL del modelo 3D junto con sus estadísticas GLB
+     */
+    public CulturalObjectDto updateModelUrl(String objectId, String modelUrl, GlbStats modelStats) throws ExecutionException, InterruptedException {
         log.info("🏗️ Actualizando URL del modelo 3D para: {}", objectId);
         
         CulturalObjectDto culturalObject = getCulturalObjectById(objectId);
@@ -184,6 +196,9 @@ public class FirebaseCulturalObjectService {
         }
         
         culturalObject.setModelUrl(modelUrl);
+        if (modelStats != null) {
+            culturalObject.setModelStats(modelStats);
+        }
         
         ApiFuture<WriteResult> future = db.collection(COLLECTION_NAME)
                 .document(objectId)
@@ -207,6 +222,7 @@ public class FirebaseCulturalObjectService {
         
         WriteResult result = future.get();
         log.info("✅ Objeto cultural eliminado exitosamente. Timestamp: {}", result.getUpdateTime());
+        dashboardStreamService.moderationQueueChanged();
         
         return true;
     }
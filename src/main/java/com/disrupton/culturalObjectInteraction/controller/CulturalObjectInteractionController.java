@@ -3,7 +3,6 @@ package com.disrupton.culturalObjectInteraction.controller;
 import com.disrupton.culturalObjectInteraction.dto.CulturalObjectInteractionDto;
 import com.disrupton.culturalObjectInteraction.dto.CulturalObjectInteractionRequest;
 import com.disrupton.culturalObjectInteraction.service.CulturalObjectInteractionService;
-import com.disrupton.service.FirebaseAnalyticsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -19,7 +18,6 @@ import java.util.List;
 public class CulturalObjectInteractionController {
 
     private final CulturalObjectInteractionService culturalObjectInteractionService;
-    private final FirebaseAnalyticsService firebaseAnalyticsService;
 
     /**
      * Get all cultural object interactions
@@ -62,13 +60,12 @@ public class CulturalObjectInteractionController {
     public ResponseEntity<CulturalObjectInteractionDto> createInteraction(@RequestBody CulturalObjectInteractionRequest request) {
         try {
             log.info("Creating new cultural object interaction for user: {}", request.getUserId());
+            // The service stores it through the analytics pipeline, which also tracks it
             CulturalObjectInteractionDto createdInteraction = culturalObjectInteractionService.createInteraction(request);
-            
-            // Track analytics event
-            firebaseAnalyticsService.saveSocialInteraction(createdInteraction);
-            firebaseAnalyticsService.logEvent("cultural_object_interaction_created", createdInteraction);
-            
             return ResponseEntity.ok(createdInteraction);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid interaction: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error creating interaction: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
@@ -1,8 +1,12 @@
 package com.disrupton.culturalObjectInteraction.service;
 
+import com.disrupton.analytics.model.AnalyticsRecord;
+import com.disrupton.analytics.model.TrackedEventType;
+import com.disrupton.analytics.service.AnalyticsEventPipeline;
 import com.disrupton.culturalObjectInteraction.dto.CulturalObjectInteractionDto;
 import com.disrupton.culturalObjectInteraction.dto.CulturalObjectInteractionRequest;
 import com.disrupton.culturalObjectInteraction.model.CulturalObjectInteraction;
+import com.disrupton.service.FirestoreAggregationService;
 import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
 import lombok.RequiredArgsConstructor;
@@ -13,7 +17,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 
 @Service
@@ -22,6 +25,8 @@ import java.util.concurrent.ExecutionException;
 public class CulturalObjectInteractionService {
 
     private final Firestore firestore;
+    private final FirestoreAggregationService aggregationService;
+    private final AnalyticsEventPipeline eventPipeline;
     private static final String COLLECTION_NAME = "cultural_object_interactions";
 
     /**
@@ -54,23 +59,38 @@ public class CulturalObjectInteractionService {
 
     /**
      * Create new cultural object interaction
+     * Stored through the analytics pipeline, which validates it and feeds the rollups and the leaderboard
      */
     public CulturalObjectInteractionDto createInteraction(CulturalObjectInteractionRequest request) throws ExecutionException, InterruptedException {
+        Timestamp now = Timestamp.now();
+        AnalyticsRecord record = AnalyticsRecord.builder()
+                .type(TrackedEventType.INTERACTION)
+                .name(request.getInteractionType())
+                .userId(request.getUserId())
+                .objectId(request.getObjectId())
+                .latitude(request.getLatitude())
+                .longitude(request.getLongitude())
+                .occurredAt(now.toSqlTimestamp().toInstant())
+                .build();
+        Map<String, Object> attributes = record.getAttributes();
+        attributes.put("content", request.getContent());
+        attributes.put("rating", request.getRating());
+        attributes.put("location", request.getLocation());
+        attributes.put("updatedAt", now);
+        eventPipeline.ingestAndWait(record);
+        
         CulturalObjectInteractionDto interaction = new CulturalObjectInteractionDto();
-        interaction.setInteractionId(UUID.randomUUID().toString());
-        interaction.setUserId(request.getUserId());
-        interaction.setObjectId(request.getObjectId());
-        interaction.setInteractionType(request.getInteractionType());
+        interaction.setInteractionId(record.getId());
+        interaction.setUserId(record.getUserId());
+        interaction.setObjectId(record.getObjectId());
+        interaction.setInteractionType(record.getName());
         interaction.setContent(request.getContent());
         interaction.setRating(request.getRating());
         interaction.setLocation(request.getLocation());
-        interaction.setLatitude(request.getLatitude());
-        interaction.setLongitude(request.getLongitude());
-        interaction.setCreatedAt(Timestamp.now());
-        interaction.setUpdatedAt(Timestamp.now());
-        
-        DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(interaction.getInteractionId());
-        docRef.set(interaction).get();
+        interaction.setLatitude(record.getLatitude());
+        interaction.setLongitude(record.getLongitude());
+        interaction.setCreatedAt(now);
+        interaction.setUpdatedAt(now);
         
         log.info("Cultural object interaction created successfully: {}", interaction.getInteractionId());
         return interaction;
@@ -98,7 +118,7 @@ public class CulturalObjectInteractionService {
         interaction.setUpdatedAt(Timestamp.now());
         
         DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(interactionId);
-        docRef.set(interaction).get();
+        docRef.set(interaction, SetOptions.merge()).get();
         
         log.info("Cultural object interaction updated successfully: {}", interactionId);
         return interaction;
@@ -181,36 +201,15 @@ public class CulturalObjectInteractionService {
     public Map<String, Object> getInteractionStats() throws ExecutionException, InterruptedException {
         Map<String, Object> stats = new HashMap<>();
         
-        QuerySnapshot allInteractions = firestore.collection(COLLECTION_NAME).get().get();
+        CollectionReference collection = firestore.collection(COLLECTION_NAME);
         
-        stats.put("totalInteractions", allInteractions.size());
+        stats.put("totalInteractions", aggregationService.count(collection));
         
         // Count by interaction type
-        Map<String, Integer> typeCounts = new HashMap<>();
-        for (QueryDocumentSnapshot document : allInteractions) {
-            CulturalObjectInteractionDto interaction = document.toObject(CulturalObjectInteractionDto.class);
-            String type = interaction.getInteractionType();
-            typeCounts.put(type, typeCounts.getOrDefault(type, 0) + 1);
-        }
-        stats.put("interactionsByType", typeCounts);
-        
-        // Calculate average rating
-        double totalRating = 0;
-        int interactionsWithRating = 0;
+        stats.put("interactionsByType", aggregationService.countBy(collection, "interactionType"));
         
-        for (QueryDocumentSnapshot document : allInteractions) {
-            CulturalObjectInteractionDto interaction = document.toObject(CulturalObjectInteractionDto.class);
-            if (interaction.getRating() != null && interaction.getRating() > 0) {
-                totalRating += interaction.getRating();
-                interactionsWithRating++;
-            }
-        }
-        
-        if (interactionsWithRating > 0) {
-            stats.put("averageRating", totalRating / interactionsWithRating);
-        } else {
-            stats.put("averageRating", 0.0);
-        }
+        // Calculate average rating (only rated interactions)
+        stats.put("averageRating", aggregationService.average(collection.whereGreaterThan("rating", 0), "rating"));
         
         return stats;
     }
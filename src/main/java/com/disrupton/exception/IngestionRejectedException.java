@@ -0,0 +1,10 @@
+package com.disrupton.exception;
+
+/**
+ * El buffer de ingesta de analytics está lleno y la política de desborde es rechazar (HTTP 429)
+ */
+public class IngestionRejectedException extends RuntimeException {
+    public IngestionRejectedException(String mensaje) {
+        super(mensaje);
+    }
+}
@@ -0,0 +1,10 @@
+package com.disrupton.exception;
+
+/**
+ * Modelo 3D (GLB) malformado o que excede los límites de complejidad permitidos
+ */
+public class InvalidModelException extends IllegalArgumentException {
+    public InvalidModelException(String mensaje) {
+        super(mensaje);
+    }
+}
@@ -0,0 +1,19 @@
+package com.disrupton.exception;
+
+/**
+ * Falló la escritura directa de un lote de analytics después de confirmar sus primeros documentos
+ * written indica cuántos (desde el inicio del lote) quedaron escritos en Firestore
+ */
+public class PartialWriteException extends IllegalStateException {
+
+    private final int written;
+
+    public PartialWriteException(String mensaje, int written, Throwable causa) {
+        super(mensaje, causa);
+        this.written = written;
+    }
+
+    public int getWritten() {
+        return written;
+    }
+}
@@ -1,12 +1,17 @@
 package com.disrupton.service;
 
+import com.disrupton.analytics.util.LinearScorer;
+import com.disrupton.analytics.util.ScoreColumns;
+import com.disrupton.config.ScoringConfig;
 import com.disrupton.user.dto.*;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -14,56 +19,54 @@ import java.util.stream.Collectors;
 @Slf4j
 public class AnalyticsCalculationService {
     
+    private final ScoringConfig scoringConfig;
+    
+    // Weight vectors from analytics.scoring.*; shared by the per-DTO and columnar paths
+    private LinearScorer engagementScorer;
+    private LinearScorer zoneScorer;
+    private LinearScorer themeScorer;
+    private LinearScorer userScorer;
+    
+    @PostConstruct
+    public void init() {
+        engagementScorer = new LinearScorer(scoringConfig.getEngagement());
+        zoneScorer = new LinearScorer(scoringConfig.getZone());
+        themeScorer = new LinearScorer(scoringConfig.getTheme());
+        userScorer = new LinearScorer(scoringConfig.getUser());
+        log.info("Scoring weights - objects: {}, zones: {}, themes: {}, users: {}",
+                engagementScorer.getWeights(), zoneScorer.getWeights(), themeScorer.getWeights(), userScorer.getWeights());
+    }
+    
     /**
      * Calculate engagement score for cultural objects
+     * Use engagementScores to rank many objects at once
      */
     public Double calculateEngagementScore(CulturalObjectViewMetricDto metric) {
         if (metric == null) return 0.0;
         
-        double score = 0.0;
-        
-        // Views contribute to score (weight: 1.0)
-        score += metric.getTotalViews() * 1.0;
-        
-        // Comments have higher weight (weight: 3.0)
-        score += metric.getTotalComments() * 3.0;
-        
-        // Reactions contribute (weight: 2.0)
-        score += metric.getTotalReactions() * 2.0;
-        
-        // Shares are highly valuable (weight: 5.0)
-        score += metric.getTotalShares() * 5.0;
-        
-        // Average exploration time contributes (weight: 0.1 per second)
-        score += (metric.getAverageExplorationTime() != null ? 
-                 metric.getAverageExplorationTime() * 0.1 : 0.0);
-        
-        return score;
+        LinearScorer weights = engagementScorer;
+        return weights.weight("views") * value(metric.getTotalViews())
+                + weights.weight("comments") * value(metric.getTotalComments())
+                + weights.weight("reactions") * value(metric.getTotalReactions())
+                + weights.weight("shares") * value(metric.getTotalShares())
+                // Average exploration time is in seconds
+                + weights.weight("explorationTime") * value(metric.getAverageExplorationTime());
     }
     
     /**
      * Calculate zone popularity score
+     * Daily and weekly sessions are weighted on top of the total so recent activity counts more
      */
     public Double calculateZonePopularityScore(CampusZoneActivityDto activity) {
         if (activity == null) return 0.0;
         
-        double score = 0.0;
-        
-        // Total sessions contribute (weight: 1.0)
-        score += activity.getTotalArSessions() * 1.0;
-        
-        // Unique visitors are important (weight: 2.0)
-        score += activity.getUniqueVisitors() * 2.0;
-        
-        // Average session duration contributes (weight: 0.5 per minute)
-        score += (activity.getAverageSessionDuration() != null ? 
-                 activity.getAverageSessionDuration() * 0.5 : 0.0);
-        
-        // Recent activity is more valuable
-        score += activity.getDailyArSessions() * 5.0; // Higher weight for recent activity
-        score += activity.getWeeklyArSessions() * 2.0;
-        
-        return score;
+        LinearScorer weights = zoneScorer;
+        return weights.weight("sessions") * value(activity.getTotalArSessions())
+                + weights.weight("uniqueVisitors") * value(activity.getUniqueVisitors())
+                // Average session duration is in minutes
+                + weights.weight("sessionDuration") * value(activity.getAverageSessionDuration())
+                + weights.weight("dailySessions") * value(activity.getDailyArSessions())
+                + weights.weight("weeklySessions") * value(activity.getWeeklyArSessions());
     }
     
     /**
@@ -72,28 +75,14 @@ public class AnalyticsCalculationService {
     public Double calculateThemeInteractionScore(ThemeInteractionDto interaction) {
         if (interaction == null) return 0.0;
         
-        double score = 0.0;
-        
-        // Base interactions (weight: 1.0)
-        score += interaction.getTotalInteractions() * 1.0;
-        
-        // Comments are highly valuable (weight: 4.0)
-        score += interaction.getCommentsCount() * 4.0;
-        
-        // Reactions contribute (weight: 2.0)
-        score += interaction.getReactionsCount() * 2.0;
-        
-        // Shares are very valuable (weight: 6.0)
-        score += interaction.getSharesCount() * 6.0;
-        
-        // Photos show engagement (weight: 3.0)
-        score += interaction.getPhotosCount() * 3.0;
-        
-        // Average engagement time (weight: 0.2 per minute)
-        score += (interaction.getAverageEngagementTime() != null ? 
-                 interaction.getAverageEngagementTime() * 0.2 : 0.0);
-        
-        return score;
+        LinearScorer weights = themeScorer;
+        return weights.weight("interactions") * value(interaction.getTotalInteractions())
+                + weights.weight("comments") * value(interaction.getCommentsCount())
+                + weights.weight("reactions") * value(interaction.getReactionsCount())
+                + weights.weight("shares") * value(interaction.getSharesCount())
+                + weights.weight("photos") * value(interaction.getPhotosCount())
+                // Average engagement time is in minutes
+                + weights.weight("engagementTime") * value(interaction.getAverageEngagementTime());
     }
     
     /**
@@ -102,22 +91,23 @@ public class AnalyticsCalculationService {
     public String calculateUserEngagementLevel(UserActivityDto user) {
         if (user == null) return "Low";
         
-        double score = 0.0;
-        
-        // Session frequency
-        score += user.getTotalSessions() * 2.0;
-        
-        // Total exploration time (minutes)
-        score += (user.getTotalExplorationTime() != null ? 
-                 user.getTotalExplorationTime() * 0.1 : 0.0);
-        
-        // Interactions
-        score += user.getTotalInteractions() * 1.5;
-        score += user.getCommentsCount() * 3.0;
-        score += user.getReactionsCount() * 2.0;
-        score += user.getSharesCount() * 4.0;
-        score += user.getPhotosCount() * 2.5;
-        
+        LinearScorer weights = userScorer;
+        double score = weights.weight("sessions") * value(user.getTotalSessions())
+                // Total exploration time is in minutes
+                + weights.weight("explorationTime") * value(user.getTotalExplorationTime())
+                + weights.weight("interactions") * value(user.getTotalInteractions())
+                + weights.weight("comments") * value(user.getCommentsCount())
+                + weights.weight("reactions") * value(user.getReactionsCount())
+                + weights.weight("shares") * value(user.getSharesCount())
+                + weights.weight("photos") * value(user.getPhotosCount());
+        
+        return engagementLevel(score);
+    }
+    
+    /**
+     * Engagement level for a user score
+     */
+    public String engagementLevel(double score) {
         if (score >= 100) return "Very High";
         else if (score >= 50) return "High";
         else if (score >= 20) return "Medium";
@@ -125,6 +115,86 @@ public class AnalyticsCalculationService {
         else return "Very Low";
     }
     
+    /**
+     * Batch engagement scores over columns views, comments, reactions, shares, explorationTime
+     * Columns come straight from primitive sources (rollups, streamed accumulators) without one DTO per row;
+     * inputs from analytics.scoring.parallel-threshold rows are scored in parallel
+     */
+    public double[] engagementScores(ScoreColumns columns) {
+        return engagementScorer.score(columns, scoringConfig.getParallelThreshold());
+    }
+    
+    /**
+     * Batch zone popularity scores over columns sessions, uniqueVisitors, sessionDuration, dailySessions, weeklySessions
+     */
+    public double[] zonePopularityScores(ScoreColumns columns) {
+        return zoneScorer.score(columns, scoringConfig.getParallelThreshold());
+    }
+    
+    /**
+     * Batch theme scores over columns interactions, comments, reactions, shares, photos, engagementTime
+     */
+    public double[] themeInteractionScores(ScoreColumns columns) {
+        return themeScorer.score(columns, scoringConfig.getParallelThreshold());
+    }
+    
+    /**
+     * Batch user scores over columns sessions, explorationTime, interactions, comments, reactions, shares, photos
+     * Map each score to a label with engagementLevel
+     */
+    public double[] userEngagementScores(ScoreColumns columns) {
+        return userScorer.score(columns, scoringConfig.getParallelThreshold());
+    }
+    
+    /**
+     * Row indices of the top scores, highest first, without sorting the whole input
+     */
+    public int[] rank(double[] scores, int limit) {
+        return LinearScorer.topK(scores, limit);
+    }
+    
+    /**
+     * Engagement columns for object DTOs already in memory (null values load as 0)
+     */
+    public static ScoreColumns engagementColumns(List<CulturalObjectViewMetricDto> metrics) {
+        return new ScoreColumns(metrics.size())
+                .add("views", longs(metrics, CulturalObjectViewMetricDto::getTotalViews))
+                .add("comments", longs(metrics, CulturalObjectViewMetricDto::getTotalComments))
+                .add("reactions", longs(metrics, CulturalObjectViewMetricDto::getTotalReactions))
+                .add("shares", longs(metrics, CulturalObjectViewMetricDto::getTotalShares))
+                .add("explorationTime", doubles(metrics, CulturalObjectViewMetricDto::getAverageExplorationTime));
+    }
+    
+    public static ScoreColumns zoneColumns(List<CampusZoneActivityDto> zones) {
+        return new ScoreColumns(zones.size())
+                .add("sessions", longs(zones, CampusZoneActivityDto::getTotalArSessions))
+                .add("uniqueVisitors", longs(zones, CampusZoneActivityDto::getUniqueVisitors))
+                .add("sessionDuration", doubles(zones, CampusZoneActivityDto::getAverageSessionDuration))
+                .add("dailySessions", longs(zones, CampusZoneActivityDto::getDailyArSessions))
+                .add("weeklySessions", longs(zones, CampusZoneActivityDto::getWeeklyArSessions));
+    }
+    
+    public static ScoreColumns themeColumns(List<ThemeInteractionDto> themes) {
+        return new ScoreColumns(themes.size())
+                .add("interactions", longs(themes, ThemeInteractionDto::getTotalInteractions))
+                .add("comments", longs(themes, ThemeInteractionDto::getCommentsCount))
+                .add("reactions", longs(themes, ThemeInteractionDto::getReactionsCount))
+                .add("shares", longs(themes, ThemeInteractionDto::getSharesCount))
+                .add("photos", longs(themes, ThemeInteractionDto::getPhotosCount))
+                .add("engagementTime", doubles(themes, ThemeInteractionDto::getAverageEngagementTime));
+    }
+    
+    public static ScoreColumns userColumns(List<UserActivityDto> users) {
+        return new ScoreColumns(users.size())
+                .add("sessions", longs(users, UserActivityDto::getTotalSessions))
+                .add("explorationTime", doubles(users, UserActivityDto::getTotalExplorationTime))
+                .add("interactions", longs(users, UserActivityDto::getTotalInteractions))
+                .add("comments", longs(users, UserActivityDto::getCommentsCount))
+                .add("reactions", longs(users, UserActivityDto::getReactionsCount))
+                .add("shares", longs(users, UserActivityDto::getSharesCount))
+                .add("photos", longs(users, UserActivityDto::getPhotosCount));
+    }
+    
     /**
      * Calculate content optimization recommendations
      */
@@ -315,32 +385,25 @@ public class AnalyticsCalculationService {
         return ((currentValue.doubleValue() - previousValue.doubleValue()) / previousValue.doubleValue()) * 100.0;
     }
     
-    /**
-     * Predict future trends based on current data
-     */
-    public Map<String, Double> generateTrendPredictions(DashboardMetricsDto metrics) {
-        Map<String, Double> predictions = new HashMap<>();
-        
-        if (metrics == null || metrics.getOverallStats() == null) return predictions;
-        
-        OverallStatsDto stats = metrics.getOverallStats();
-        
-        // Simple linear projection based on daily vs weekly growth
-        if (stats.getActiveUsersToday() != null && stats.getActiveUsersThisWeek() != null) {
-            double dailyAverage = stats.getActiveUsersThisWeek().doubleValue() / 7.0;
-            double growthFactor = stats.getActiveUsersToday().doubleValue() / dailyAverage;
-            
-            predictions.put("nextWeekActiveUsers", stats.getActiveUsersThisWeek() * growthFactor);
-            predictions.put("nextMonthActiveUsers", stats.getActiveUsersThisMonth() != null ? 
-                    stats.getActiveUsersThisMonth() * growthFactor : stats.getActiveUsersThisWeek() * 4 * growthFactor);
+    private static double value(Number number) {
+        return number != null ? number.doubleValue() : 0.0;
+    }
+    
+    private static <T> long[] longs(List<T> rows, Function<T, Long> field) {
+        long[] values = new long[rows.size()];
+        for (int i = 0; i < values.length; i++) {
+            Long value = field.apply(rows.get(i));
+            values[i] = value != null ? value : 0L;
         }
-        
-        // Predict social engagement growth
-        if (stats.getSocialFunctionUsage() != null && stats.getTotalViews() != null) {
-            double currentSocialRate = stats.getSocialFunctionUsage().doubleValue() / stats.getTotalViews().doubleValue();
-            predictions.put("projectedSocialEngagementRate", Math.min(currentSocialRate * 1.1, 0.5)); // Cap at 50%
+        return values;
+    }
+    
+    private static <T> double[] doubles(List<T> rows, Function<T, Double> field) {
+        double[] values = new double[rows.size()];
+        for (int i = 0; i < values.length; i++) {
+            Double value = field.apply(rows.get(i));
+            values[i] = value != null ? value : 0.0;
         }
-        
-        return predictions;
+        return values;
     }
 }
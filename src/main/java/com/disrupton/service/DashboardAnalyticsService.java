@@ -1,52 +1,99 @@
 package com.disrupton.service;
 
+import com.disrupton.analytics.model.DistinctCountEstimate;
+import com.disrupton.analytics.model.DurationQuantiles;
+import com.disrupton.analytics.model.HeavyHitter;
+import com.disrupton.analytics.model.LeaderboardEntry;
+import com.disrupton.analytics.model.RollupBucket;
+import com.disrupton.analytics.model.RollupGranularity;
+import com.disrupton.analytics.model.TrackBatchResult;
+import com.disrupton.analytics.model.TrackedEvent;
+import com.disrupton.analytics.service.AnalyticsEventPipeline;
+import com.disrupton.analytics.service.DistinctCountService;
+import com.disrupton.analytics.service.HeavyHittersService;
+import com.disrupton.analytics.service.LeaderboardService;
+import com.disrupton.analytics.service.RetentionService;
+import com.disrupton.analytics.service.RollupService;
+import com.disrupton.analytics.service.SessionDurationService;
+import com.disrupton.analytics.util.ScoreColumns;
 import com.disrupton.user.dto.*;
+import com.google.api.core.ApiFuture;
 import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import static com.disrupton.service.FirestoreAggregationService.toCompletable;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class DashboardAnalyticsService {
     
-    private final FirebaseAnalyticsService firebaseAnalyticsService;
+    private final AnalyticsEventPipeline eventPipeline;
     private final AnalyticsCalculationService analyticsCalculationService;
+    private final FirestoreAggregationService aggregationService;
+    private final DistinctCountService distinctCountService;
+    private final HeavyHittersService heavyHittersService;
+    private final SessionDurationService sessionDurationService;
+    private final RetentionService retentionService;
+    private final LeaderboardService leaderboardService;
+    private final RollupService rollupService;
+    private final DashboardSnapshotCache snapshotCache;
     private final Firestore firestore;
     
+    @Qualifier("dashboardExecutor")
+    private final ExecutorService dashboardExecutor;
+    
+    @Qualifier("dashboardBlockingExecutor")
+    private final ExecutorService blockingExecutor;
+    
+    @Value("${dashboard.section-timeout-ms:3000}")
+    private long sectionTimeoutMs;
+    
     /**
      * Get comprehensive dashboard metrics
+     * All sections are queried at once; latency is bounded by the slowest section
      */
     public DashboardMetricsDto getDashboardMetrics(String timeRange) {
         log.info("Generating dashboard metrics for time range: {}", timeRange);
         
         try {
-            DashboardMetricsDto metrics = new DashboardMetricsDto();
+            Set<String> degradedSections = ConcurrentHashMap.newKeySet();
             
-            // Get most viewed cultural objects
-            metrics.setMostViewedObjects(getMostViewedObjects(timeRange, 10));
+            CompletableFuture<List<CulturalObjectViewMetricDto>> mostViewed = section("mostViewedObjects",
+                () -> getMostViewedObjectsAsync(timeRange, 10), List.of(), degradedSections);
+            CompletableFuture<List<CampusZoneActivityDto>> zoneActivity = section("campusZoneActivity",
+                () -> getCampusZoneActivityAsync(timeRange, 10), List.of(), degradedSections);
+            CompletableFuture<List<ThemeInteractionDto>> themes = section("themeInteractions",
+                () -> getThemeInteractionsAsync(timeRange, 10), List.of(), degradedSections);
+            CompletableFuture<OverallStatsDto> overallStats = section("overallStats",
+                () -> getOverallStatsAsync(timeRange), new OverallStatsDto(), degradedSections);
             
-            // Get campus zone activity
-            metrics.setCampusZoneActivity(getCampusZoneActivity(timeRange, 10));
-            
-            // Get theme interactions
-            metrics.setThemeInteractions(getThemeInteractions(timeRange, 10));
-            
-            // Get overall statistics
-            metrics.setOverallStats(getOverallStats(timeRange));
+            CompletableFuture.allOf(mostViewed, zoneActivity, themes, overallStats).join();
             
+            DashboardMetricsDto metrics = new DashboardMetricsDto();
+            metrics.setMostViewedObjects(mostViewed.join());
+            metrics.setCampusZoneActivity(zoneActivity.join());
+            metrics.setThemeInteractions(themes.join());
+            metrics.setOverallStats(overallStats.join());
             metrics.setGeneratedAt(LocalDateTime.now());
+            metrics.setDegraded(!degradedSections.isEmpty());
+            metrics.setDegradedSections(new ArrayList<>(degradedSections));
             
-            log.info("Dashboard metrics generated successfully");
+            log.info("Dashboard metrics generated successfully (degraded sections: {})", degradedSections);
             return metrics;
             
         } catch (Exception e) {
@@ -55,6 +102,35 @@ public class DashboardAnalyticsService {
         }
     }
     
+    // Cached snapshots: served from memory and refreshed in the background (see DashboardSnapshotCache)
+    
+    public DashboardSnapshotCache.Snapshot<DashboardMetricsDto> getDashboardMetricsSnapshot(String timeRange) {
+        return snapshotCache.get("metrics", timeRange, 0, () -> getDashboardMetrics(timeRange));
+    }
+    
+    public DashboardSnapshotCache.Snapshot<List<CulturalObjectViewMetricDto>> getMostViewedObjectsSnapshot(
+            String timeRange, int limit) {
+        return snapshotCache.get("mostViewedObjects", timeRange, limit, () -> getMostViewedObjects(timeRange, limit));
+    }
+    
+    public DashboardSnapshotCache.Snapshot<List<CampusZoneActivityDto>> getCampusZoneActivitySnapshot(
+            String timeRange, int limit) {
+        return snapshotCache.get("campusZoneActivity", timeRange, limit, () -> getCampusZoneActivity(timeRange, limit));
+    }
+    
+    public DashboardSnapshotCache.Snapshot<List<ThemeInteractionDto>> getThemeInteractionsSnapshot(
+            String timeRange, int limit) {
+        return snapshotCache.get("themeInteractions", timeRange, limit, () -> getThemeInteractions(timeRange, limit));
+    }
+    
+    public DashboardSnapshotCache.Snapshot<OverallStatsDto> getOverallStatsSnapshot(String timeRange) {
+        return snapshotCache.get("overallStats", timeRange, 0, () -> getOverallStats(timeRange));
+    }
+    
+    public DashboardSnapshotCache.Snapshot<List<UserActivityDto>> getUserActivitySnapshot(String timeRange, int limit) {
+        return snapshotCache.get("userActivity", timeRange, limit, () -> getUserActivity(timeRange, limit));
+    }
+    
     /**
      * Get most viewed cultural objects
      */
@@ -62,20 +138,38 @@ public class DashboardAnalyticsService {
         log.info("Getting most viewed objects for time range: {}, limit: {}", timeRange, limit);
         
         try {
-            Query query = firestore.collection("cultural_objects");
-            
-            // Apply time filter if specified
-            if (!"all".equals(timeRange)) {
-                Timestamp startTime = getStartTimeForRange(timeRange);
-                query = query.whereGreaterThanOrEqualTo("createdAt", startTime);
+            return getMostViewedObjectsAsync(timeRange, limit).get();
+        } catch (Exception e) {
+            log.error("Error getting most viewed objects: {}", e.getMessage(), e);
+            return List.of();
+        }
+    }
+    
+    public CompletableFuture<List<CulturalObjectViewMetricDto>> getMostViewedObjectsAsync(String timeRange, int limit) {
+        // Views inside the range come from the in-memory top-K; the stored totalViews is only used for "all"
+        if (!"all".equals(timeRange) && heavyHittersService.isEnabled()) {
+            Instant since = getStartTimeForRange(timeRange).toDate().toInstant();
+            List<HeavyHitter> top = heavyHittersService.top(FirebaseAnalyticsService.CULTURAL_OBJECT_VIEWS_METRIC,
+                since, limit);
+            if (!top.isEmpty()) {
+                return getMostViewedObjectsFromTopK(top);
             }
-            
-            QuerySnapshot snapshot = query
-                .orderBy("totalViews", Query.Direction.DESCENDING)
-                .limit(limit)
-                .get()
-                .get();
-            
+        }
+        
+        Query query = firestore.collection("cultural_objects");
+        
+        // Apply time filter if specified
+        if (!"all".equals(timeRange)) {
+            Timestamp startTime = getStartTimeForRange(timeRange);
+            query = query.whereGreaterThanOrEqualTo("createdAt", startTime);
+        }
+        
+        ApiFuture<QuerySnapshot> future = query
+            .orderBy("totalViews", Query.Direction.DESCENDING)
+            .limit(limit)
+            .get();
+        
+        return toCompletable(future).thenApplyAsync(snapshot -> {
             List<CulturalObjectViewMetricDto> objects = new ArrayList<>();
             
             for (QueryDocumentSnapshot document : snapshot) {
@@ -94,10 +188,60 @@ public class DashboardAnalyticsService {
             }
             
             return objects;
+        }, dashboardExecutor);
+    }
+    
+    /**
+     * Build the most-viewed list from heavy hitters, reading only those objects for their names
+     */
+    private CompletableFuture<List<CulturalObjectViewMetricDto>> getMostViewedObjectsFromTopK(List<HeavyHitter> top) {
+        CollectionReference objects = firestore.collection("cultural_objects");
+        DocumentReference[] refs = top.stream()
+            .map(hitter -> objects.document(hitter.getItem()))
+            .toArray(DocumentReference[]::new);
+        
+        LocalDateTime now = LocalDateTime.now();
+        Instant today = toTimestamp(now.toLocalDate().atStartOfDay()).toDate().toInstant();
+        Instant weekAgo = toTimestamp(now.minusWeeks(1)).toDate().toInstant();
+        Instant monthAgo = toTimestamp(now.minusMonths(1)).toDate().toInstant();
+        String metric = FirebaseAnalyticsService.CULTURAL_OBJECT_VIEWS_METRIC;
+        
+        return toCompletable(firestore.getAll(refs)).thenApplyAsync(documents -> {
+            List<CulturalObjectViewMetricDto> result = new ArrayList<>();
             
-        } catch (Exception e) {
-            log.error("Error getting most viewed objects: {}", e.getMessage(), e);
-            return List.of();
+            for (int i = 0; i < top.size(); i++) {
+                HeavyHitter hitter = top.get(i);
+                DocumentSnapshot document = documents.get(i);
+                
+                CulturalObjectViewMetricDto dto = new CulturalObjectViewMetricDto();
+                dto.setObjectId(hitter.getItem());
+                dto.setTotalViews(hitter.getCount());
+                dto.setDailyViews(heavyHittersService.count(metric, hitter.getItem(), today));
+                dto.setWeeklyViews(heavyHittersService.count(metric, hitter.getItem(), weekAgo));
+                dto.setMonthlyViews(heavyHittersService.count(metric, hitter.getItem(), monthAgo));
+                applyObjectDetails(dto, document);
+                
+                result.add(dto);
+            }
+            
+            return result;
+        }, dashboardExecutor);
+    }
+    
+    /**
+     * Object name, type and stored totals; totals stay at 0 for objects without a document
+     */
+    private void applyObjectDetails(CulturalObjectViewMetricDto dto, DocumentSnapshot document) {
+        dto.setTotalComments(0L);
+        dto.setTotalReactions(0L);
+        dto.setTotalShares(0L);
+        if (document.exists()) {
+            dto.setObjectName(document.getString("name"));
+            dto.setCulturalType(document.getString("type"));
+            dto.setTotalComments(document.getLong("totalComments") != null ? document.getLong("totalComments") : 0L);
+            dto.setTotalReactions(document.getLong("totalReactions") != null ? document.getLong("totalReactions") : 0L);
+            dto.setTotalShares(document.getLong("totalShares") != null ? document.getLong("totalShares") : 0L);
+            dto.setAverageExplorationTime(document.getDouble("averageExplorationTime"));
         }
     }
     
@@ -108,20 +252,29 @@ public class DashboardAnalyticsService {
         log.info("Getting campus zone activity for time range: {}, limit: {}", timeRange, limit);
         
         try {
-            Query query = firestore.collection("campus_zones");
-            
-            // Apply time filter if specified
-            if (!"all".equals(timeRange)) {
-                Timestamp startTime = getStartTimeForRange(timeRange);
-                query = query.whereGreaterThanOrEqualTo("lastActivity", startTime);
-            }
-            
-            QuerySnapshot snapshot = query
-                .orderBy("totalArSessions", Query.Direction.DESCENDING)
-                .limit(limit)
-                .get()
-                .get();
-            
+            return getCampusZoneActivityAsync(timeRange, limit).get();
+        } catch (Exception e) {
+            log.error("Error getting campus zone activity: {}", e.getMessage(), e);
+            return List.of();
+        }
+    }
+    
+    public CompletableFuture<List<CampusZoneActivityDto>> getCampusZoneActivityAsync(String timeRange, int limit) {
+        Query query = firestore.collection("campus_zones");
+        Timestamp startTime = "all".equals(timeRange) ? null : getStartTimeForRange(timeRange);
+        
+        // Apply time filter if specified
+        if (startTime != null) {
+            query = query.whereGreaterThanOrEqualTo("lastActivity", startTime);
+        }
+        
+        ApiFuture<QuerySnapshot> future = query
+            .orderBy("totalArSessions", Query.Direction.DESCENDING)
+            .limit(limit)
+            .get();
+        
+        // Blocking pool: the zone visitor estimates and percentiles read sketches and digests
+        return toCompletable(future).thenApplyAsync(snapshot -> {
             List<CampusZoneActivityDto> zones = new ArrayList<>();
             
             for (QueryDocumentSnapshot document : snapshot) {
@@ -138,12 +291,16 @@ public class DashboardAnalyticsService {
                 zones.add(dto);
             }
             
-            return zones;
+            // Unique visitors over the range come from HyperLogLog sketches when available
+            if (startTime != null && distinctCountService.isEnabled()) {
+                applyZoneVisitorEstimates(zones, startTime.toDate().toInstant(), Instant.now());
+            }
+            if (startTime != null && sessionDurationService.isEnabled()) {
+                applyZoneDurationQuantiles(zones, startTime.toDate().toInstant(), Instant.now());
+            }
             
-        } catch (Exception e) {
-            log.error("Error getting campus zone activity: {}", e.getMessage(), e);
-            return List.of();
-        }
+            return zones;
+        }, blockingExecutor);
     }
     
     /**
@@ -153,56 +310,109 @@ public class DashboardAnalyticsService {
         log.info("Getting theme interactions for time range: {}, limit: {}", timeRange, limit);
         
         try {
-            // Get interactions and group by theme
-            Query query = firestore.collection("cultural_object_interactions");
-            
-            if (!"all".equals(timeRange)) {
-                Timestamp startTime = getStartTimeForRange(timeRange);
-                query = query.whereGreaterThanOrEqualTo("createdAt", startTime);
-            }
-            
-            QuerySnapshot snapshot = query.get().get();
-            
-            // Group interactions by theme
-            Map<String, List<QueryDocumentSnapshot>> themeGroups = new HashMap<>();
-            
-            for (QueryDocumentSnapshot document : snapshot) {
-                String theme = document.getString("theme");
-                if (theme != null) {
-                    themeGroups.computeIfAbsent(theme, k -> new ArrayList<>()).add(document);
-                }
-            }
-            
-            // Convert to DTOs and calculate metrics
-            List<ThemeInteractionDto> themes = themeGroups.entrySet().stream()
-                .map(entry -> {
-                    ThemeInteractionDto dto = new ThemeInteractionDto();
-                    dto.setTheme(entry.getKey());
-                    dto.setCulture(getCultureFromTheme(entry.getKey()));
-                    
-                    List<QueryDocumentSnapshot> interactions = entry.getValue();
-                    dto.setTotalInteractions((long) interactions.size());
-                    dto.setCommentsCount(countByType(interactions, "COMMENT"));
-                    dto.setReactionsCount(countByType(interactions, "REACTION"));
-                    dto.setSharesCount(countByType(interactions, "SHARE"));
-                    dto.setPhotosCount(countByType(interactions, "PHOTO"));
-                    dto.setAverageEngagementTime(calculateAverageEngagementTime(interactions));
-                    dto.setInteractionScore(analyticsCalculationService.calculateThemeInteractionScore(dto));
-                    
-                    return dto;
-                })
-                .sorted((t1, t2) -> Double.compare(t2.getInteractionScore(), t1.getInteractionScore()))
-                .limit(limit)
-                .collect(Collectors.toList());
-            
-            return themes;
-            
+            return getThemeInteractionsAsync(timeRange, limit).get();
         } catch (Exception e) {
             log.error("Error getting theme interactions: {}", e.getMessage(), e);
             return List.of();
         }
     }
     
+    public CompletableFuture<List<ThemeInteractionDto>> getThemeInteractionsAsync(String timeRange, int limit) {
+        Timestamp startTime = "all".equals(timeRange) ? null : getStartTimeForRange(timeRange);
+        return getThemeInteractionsAsync(startTime, null, limit);
+    }
+    
+    /**
+     * Theme interactions created in [start, end); null bounds are open
+     * Bounded ranges read the per-theme rollups covering the window; "all" scans the projected interactions
+     */
+    private CompletableFuture<List<ThemeInteractionDto>> getThemeInteractionsAsync(Timestamp start, Timestamp end,
+                                                                                   int limit) {
+        if (start != null) {
+            Instant from = start.toDate().toInstant();
+            Instant to = end != null ? end.toDate().toInstant() : Instant.now();
+            return blockingAsync(() -> themeRollups(from, to))
+                .thenApplyAsync(themes -> topThemes(themes, limit), dashboardExecutor);
+        }
+        
+        // Single pass over the projected fields; memory grows with the number of themes only
+        Map<String, ThemeAccumulator> themes = new HashMap<>();
+        Query projected = firestore.collection("cultural_object_interactions")
+            .select("theme", "interactionType", "engagementTime");
+        
+        return aggregationService.streamAsync(projected, document -> {
+            String theme = document.getString("theme");
+            if (theme != null) {
+                themes.computeIfAbsent(theme, k -> new ThemeAccumulator())
+                    .add(document.getString("interactionType"), document.getDouble("engagementTime"));
+            }
+        }).thenApplyAsync(ignored -> topThemes(themes, limit), dashboardExecutor);
+    }
+    
+    /**
+     * Per-theme totals, engagement time and per-type counts in [start, end) from the theme rollups
+     * (two queries per contiguous run of buckets, independent of the number of interactions)
+     */
+    private Map<String, ThemeAccumulator> themeRollups(Instant start, Instant end)
+            throws ExecutionException, InterruptedException {
+        Map<String, ThemeAccumulator> themes = new HashMap<>();
+        rollupService.breakdownSummaries(FirebaseAnalyticsService.THEME_INTERACTIONS_METRIC, "theme", start, end)
+            .forEach((theme, summary) -> themes.computeIfAbsent(theme, k -> new ThemeAccumulator())
+                .addTotals(summary.getCount(), summary.getSum()));
+        rollupService.breakdown(FirebaseAnalyticsService.THEME_INTERACTIONS_METRIC,
+                FirebaseAnalyticsService.THEME_INTERACTION_TYPE_DIMENSION, start, end)
+            .forEach((themeAndType, count) -> {
+                int separator = themeAndType.lastIndexOf('|');
+                ThemeAccumulator theme = themes.get(themeAndType.substring(0, Math.max(separator, 0)));
+                if (theme != null) {
+                    theme.addTypeCount(themeAndType.substring(separator + 1), count);
+                }
+            });
+        return themes;
+    }
+    
+    private List<ThemeInteractionDto> topThemes(Map<String, ThemeAccumulator> themes, int limit) {
+        // Score every theme in one columnar pass straight from the accumulators;
+        // DTOs are only built for the top ones
+        int rows = themes.size();
+        List<String> names = new ArrayList<>(rows);
+        List<ThemeAccumulator> accumulators = new ArrayList<>(rows);
+        long[] interactions = new long[rows];
+        long[] comments = new long[rows];
+        long[] reactions = new long[rows];
+        long[] shares = new long[rows];
+        long[] photos = new long[rows];
+        double[] engagementTime = new double[rows];
+        for (Map.Entry<String, ThemeAccumulator> entry : themes.entrySet()) {
+            int row = names.size();
+            ThemeAccumulator theme = entry.getValue();
+            names.add(entry.getKey());
+            accumulators.add(theme);
+            interactions[row] = theme.total;
+            comments[row] = theme.comments;
+            reactions[row] = theme.reactions;
+            shares[row] = theme.shares;
+            photos[row] = theme.photos;
+            engagementTime[row] = theme.averageEngagementTime();
+        }
+        
+        double[] scores = analyticsCalculationService.themeInteractionScores(new ScoreColumns(rows)
+            .add("interactions", interactions)
+            .add("comments", comments)
+            .add("reactions", reactions)
+            .add("shares", shares)
+            .add("photos", photos)
+            .add("engagementTime", engagementTime));
+        List<ThemeInteractionDto> top = new ArrayList<>();
+        for (int index : analyticsCalculationService.rank(scores, limit)) {
+            ThemeInteractionDto dto = accumulators.get(index).toDto(names.get(index));
+            dto.setCulture(getCultureFromTheme(names.get(index)));
+            dto.setInteractionScore(scores[index]);
+            top.add(dto);
+        }
+        return top;
+    }
+    
     /**
      * Get overall statistics
      */
@@ -210,41 +420,70 @@ public class DashboardAnalyticsService {
         log.info("Getting overall stats for time range: {}", timeRange);
         
         try {
-            OverallStatsDto stats = new OverallStatsDto();
-            
-            // Get total users
-            QuerySnapshot usersSnapshot = firestore.collection("users").get().get();
-            stats.setTotalUsers((long) usersSnapshot.size());
-            
-            // Get total interactions
-            QuerySnapshot interactionsSnapshot = firestore.collection("cultural_object_interactions").get().get();
-            stats.setTotalComments((long) interactionsSnapshot.size());
-            
-            // Get total views
-            QuerySnapshot objectsSnapshot = firestore.collection("cultural_objects").get().get();
-            long totalViews = objectsSnapshot.getDocuments().stream()
-                .mapToLong(doc -> doc.getLong("totalViews") != null ? doc.getLong("totalViews") : 0L)
-                .sum();
-            stats.setTotalViews(totalViews);
-            
-            // Calculate active users
-            stats.setActiveUsersToday(calculateActiveUsersToday());
-            stats.setActiveUsersThisWeek(calculateActiveUsersThisWeek());
-            stats.setActiveUsersThisMonth(calculateActiveUsersThisMonth());
-            
-            // Calculate session metrics
-            stats.setAverageSessionDuration(calculateAverageSessionDuration());
-            stats.setSocialFunctionUsage(calculateSocialFunctionUsage());
-            stats.setUserRetentionRate(calculateUserRetentionRate());
-            
-            return stats;
-            
+            return getOverallStatsAsync(timeRange).get();
         } catch (Exception e) {
             log.error("Error getting overall stats: {}", e.getMessage(), e);
             return new OverallStatsDto();
         }
     }
     
+    /**
+     * All aggregation queries are issued together; a failed one counts as 0 like before
+     */
+    public CompletableFuture<OverallStatsDto> getOverallStatsAsync(String timeRange) {
+        CollectionReference users = firestore.collection("users");
+        CollectionReference interactions = firestore.collection("cultural_object_interactions");
+        
+        CompletableFuture<Long> totalUsers = stat("total users",
+            aggregationService.countAsync(users), 0L);
+        CompletableFuture<Long> totalComments = stat("total interactions",
+            aggregationService.countAsync(interactions), 0L);
+        CompletableFuture<Double> totalViews = stat("total views",
+            aggregationService.sumAsync(firestore.collection("cultural_objects"), "totalViews"), 0.0);
+        CompletableFuture<Long> activeToday = activeUsersSince("active users today",
+            LocalDateTime.now().toLocalDate().atStartOfDay());
+        CompletableFuture<Long> activeThisWeek = activeUsersSince("active users this week",
+            LocalDateTime.now().minusWeeks(1));
+        CompletableFuture<Long> activeThisMonth = activeUsersSince("active users this month",
+            LocalDateTime.now().minusMonths(1));
+        CompletableFuture<DurationQuantiles> sessionDurations = sessionDurationQuantiles(timeRange);
+        // durationSeconds is written by both the tracking pipeline and the session CRUD; sessions saved
+        // before it existed only have "duration" (ms) and are folded into the same average
+        CompletableFuture<Double> averageSessionDuration = stat("average session duration",
+            aggregationService.averageWithLegacyAsync(firestore.collection("user_sessions"),
+                "durationSeconds", "duration", 0.001), 0.0);
+        Instant now = Instant.now();
+        CompletableFuture<Double> weeklyRetention = retentionRate(now.minus(7, ChronoUnit.DAYS), now);
+        CompletableFuture<Long> socialFunctionUsage = stat("social function usage",
+            aggregationService.countAsync(interactions
+                .whereIn("interactionType", Arrays.asList("COMMENT", "REACTION", "SHARE", "PHOTO"))), 0L);
+        
+        return CompletableFuture.allOf(totalUsers, totalComments, totalViews, activeToday, activeThisWeek,
+                activeThisMonth, averageSessionDuration, sessionDurations, weeklyRetention, socialFunctionUsage)
+            .thenApply(ignored -> {
+                OverallStatsDto stats = new OverallStatsDto();
+                stats.setTotalUsers(totalUsers.join());
+                stats.setTotalComments(totalComments.join());
+                stats.setTotalViews(totalViews.join().longValue());
+                stats.setActiveUsersToday(activeToday.join());
+                stats.setActiveUsersThisWeek(activeThisWeek.join());
+                stats.setActiveUsersThisMonth(activeThisMonth.join());
+                stats.setAverageSessionDuration(toMinutes(averageSessionDuration.join()));
+                DurationQuantiles durations = sessionDurations.join();
+                if (durations != null && durations.getCount() > 0) {
+                    stats.setAverageSessionDuration(toMinutes(durations.getMean()));
+                    stats.setSessionDurationP50(toMinutes(durations.getP50()));
+                    stats.setSessionDurationP90(toMinutes(durations.getP90()));
+                    stats.setSessionDurationP99(toMinutes(durations.getP99()));
+                }
+                stats.setSocialFunctionUsage(socialFunctionUsage.join());
+                stats.setUserRetentionRate(weeklyRetention.join() != null
+                    ? weeklyRetention.join()
+                    : calculateUserRetentionRate(activeThisWeek.join(), totalUsers.join()));
+                return stats;
+            });
+    }
+    
     /**
      * Get user activity analytics
      */
@@ -252,19 +491,37 @@ public class DashboardAnalyticsService {
         log.info("Getting user activity for time range: {}, limit: {}", timeRange, limit);
         
         try {
-            Query query = firestore.collection("users");
-            
-            if (!"all".equals(timeRange)) {
-                Timestamp startTime = getStartTimeForRange(timeRange);
-                query = query.whereGreaterThanOrEqualTo("lastActivity", startTime);
-            }
-            
-            QuerySnapshot snapshot = query
-                .orderBy("lastActivity", Query.Direction.DESCENDING)
-                .limit(limit)
-                .get()
-                .get();
-            
+            return getUserActivityAsync(timeRange, limit).get();
+        } catch (Exception e) {
+            log.error("Error getting user activity: {}", e.getMessage(), e);
+            return List.of();
+        }
+    }
+    
+    public CompletableFuture<List<UserActivityDto>> getUserActivityAsync(String timeRange, int limit) {
+        Timestamp startTime = "all".equals(timeRange) ? null : getStartTimeForRange(timeRange);
+        return getUserActivityAsync(startTime, null, limit);
+    }
+    
+    /**
+     * Users whose last activity falls in [start, end); null bounds are open
+     */
+    private CompletableFuture<List<UserActivityDto>> getUserActivityAsync(Timestamp start, Timestamp end, int limit) {
+        Query query = firestore.collection("users");
+        
+        if (start != null) {
+            query = query.whereGreaterThanOrEqualTo("lastActivity", start);
+        }
+        if (end != null) {
+            query = query.whereLessThan("lastActivity", end);
+        }
+        
+        ApiFuture<QuerySnapshot> future = query
+            .orderBy("lastActivity", Query.Direction.DESCENDING)
+            .limit(limit)
+            .get();
+        
+        return toCompletable(future).thenApplyAsync(snapshot -> {
             List<UserActivityDto> users = new ArrayList<>();
             
             for (QueryDocumentSnapshot document : snapshot) {
@@ -279,226 +536,515 @@ public class DashboardAnalyticsService {
                 dto.setReactionsCount(document.getLong("reactionsCount") != null ? document.getLong("reactionsCount") : 0L);
                 dto.setSharesCount(document.getLong("sharesCount") != null ? document.getLong("sharesCount") : 0L);
                 dto.setPhotosCount(document.getLong("photosCount") != null ? document.getLong("photosCount") : 0L);
-                // Engagement level calculated by AnalyticsCalculationService
+                dto.setEngagementLevel(analyticsCalculationService.calculateUserEngagementLevel(dto));
+                // Rank and score come from the in-memory leaderboard (O(log n) per user)
+                LeaderboardEntry ranked = leaderboardService.rankOf(dto.getUserId());
+                if (ranked != null) {
+                    dto.setEngagementRank(ranked.getRank());
+                    dto.setEngagementScore(ranked.getScore());
+                }
                 
                 users.add(dto);
             }
             
             return users;
-            
-        } catch (Exception e) {
-            log.error("Error getting user activity: {}", e.getMessage(), e);
-            return List.of();
-        }
+        }, dashboardExecutor);
     }
     
     /**
-     * Get time range analytics
+     * Get analytics for the half-open window [startDate, endDate)
+     * Counts come from hourly/daily rollups (only the covering buckets are read, settled days from
+     * in-memory prefix sums), so long ranges cost about as much as short ones
      */
     public TimeRangeAnalyticsDto getTimeRangeAnalytics(LocalDateTime startDate, LocalDateTime endDate) {
-        log.info("Getting time range analytics from {} to {}", startDate, endDate);
+        log.info("Getting time range analytics for [{}, {})", startDate, endDate);
         
         TimeRangeAnalyticsDto analytics = new TimeRangeAnalyticsDto();
         analytics.setStartDate(startDate);
         analytics.setEndDate(endDate);
         
-        // Determine time range type
         long daysBetween = ChronoUnit.DAYS.between(startDate, endDate);
-        String timeRange;
-        if (daysBetween <= 1) {
-            timeRange = "daily";
-        } else if (daysBetween <= 7) {
-            timeRange = "weekly";
-        } else {
-            timeRange = "monthly";
-        }
-        analytics.setTimeRange(timeRange);
-        
-        // Get analytics data
-        analytics.setTopViewedObjects(getMostViewedObjects(timeRange, 5));
-        analytics.setTopActiveZones(getCampusZoneActivity(timeRange, 5));
-        analytics.setTopThemes(getThemeInteractions(timeRange, 5));
-        analytics.setTopActiveUsers(getUserActivity(timeRange, 5));
-        analytics.setStats(getOverallStats(timeRange));
+        analytics.setTimeRange(daysBetween <= 1 ? "daily" : daysBetween <= 7 ? "weekly" : "monthly");
+        
+        Instant start = startDate.atZone(ZoneId.systemDefault()).toInstant();
+        Instant end = endDate.atZone(ZoneId.systemDefault()).toInstant();
+        RollupGranularity granularity = rollupService.granularityFor(start, end);
+        analytics.setGranularity(granularity.name());
+        
+        // Get analytics data (all sections in parallel)
+        Set<String> degradedSections = ConcurrentHashMap.newKeySet();
+        
+        CompletableFuture<List<CulturalObjectViewMetricDto>> topObjects = section("topViewedObjects",
+            () -> getMostViewedObjectsInRangeAsync(start, end, 5), List.of(), degradedSections);
+        CompletableFuture<List<CampusZoneActivityDto>> topZones = section("topActiveZones",
+            () -> getCampusZoneActivityInRangeAsync(start, end, 5), List.of(), degradedSections);
+        CompletableFuture<List<ThemeInteractionDto>> topThemes = section("topThemes",
+            () -> getThemeInteractionsAsync(toTimestamp(startDate), toTimestamp(endDate), 5), List.of(), degradedSections);
+        CompletableFuture<List<UserActivityDto>> topUsers = section("topActiveUsers",
+            () -> getUserActivityAsync(toTimestamp(startDate), toTimestamp(endDate), 5), List.of(), degradedSections);
+        CompletableFuture<OverallStatsDto> stats = section("stats",
+            () -> getOverallStatsInRangeAsync(start, end), new OverallStatsDto(), degradedSections);
+        CompletableFuture<Long> activeUsers = section("activeUsers",
+            () -> activeUsersInRange(start, end), null, degradedSections);
+        CompletableFuture<Map<String, List<RollupBucket>>> activity = section("activity",
+            () -> getActivitySeriesAsync(start, end, granularity), Map.of(), degradedSections);
+        CompletableFuture<Double> retention = section("retention",
+            () -> retentionRate(start, end), null, degradedSections);
+        
+        CompletableFuture.allOf(topObjects, topZones, topThemes, topUsers, stats, activeUsers, activity, retention).join();
+        
+        analytics.setTopViewedObjects(topObjects.join());
+        analytics.setTopActiveZones(topZones.join());
+        analytics.setTopThemes(topThemes.join());
+        analytics.setTopActiveUsers(topUsers.join());
+        analytics.setStats(stats.join());
+        analytics.setActiveUsers(activeUsers.join());
+        analytics.setActivity(activity.join());
+        if (analytics.getStats() != null && retention.join() != null) {
+            analytics.getStats().setUserRetentionRate(retention.join());
+        } else if (analytics.getStats() != null && activeUsers.join() != null) {
+            OverallStatsDto rangeStats = analytics.getStats();
+            rangeStats.setUserRetentionRate(calculateUserRetentionRate(activeUsers.join(), rangeStats.getTotalUsers()));
+        }
+        analytics.setDegraded(!degradedSections.isEmpty());
+        analytics.setDegradedSections(new ArrayList<>(degradedSections));
         
         return analytics;
     }
     
-    // Helper methods
+    /**
+     * Most viewed objects in [start, end) from the per-object view rollups
+     */
+    private CompletableFuture<List<CulturalObjectViewMetricDto>> getMostViewedObjectsInRangeAsync(Instant start,
+                                                                                                 Instant end, int limit) {
+        return blockingAsync(() -> rollupService.breakdown(FirebaseAnalyticsService.CULTURAL_OBJECT_VIEWS_METRIC,
+                "objectId", start, end))
+            .thenCompose(views -> {
+                List<Map.Entry<String, Long>> top = topEntries(views, limit);
+                if (top.isEmpty()) {
+                    return CompletableFuture.completedFuture(List.<CulturalObjectViewMetricDto>of());
+                }
+                CollectionReference objects = firestore.collection("cultural_objects");
+                DocumentReference[] refs = top.stream()
+                    .map(entry -> objects.document(entry.getKey()))
+                    .toArray(DocumentReference[]::new);
+                
+                return toCompletable(firestore.getAll(refs)).thenApplyAsync(documents -> {
+                    List<CulturalObjectViewMetricDto> result = new ArrayList<>();
+                    for (int i = 0; i < top.size(); i++) {
+                        CulturalObjectViewMetricDto dto = new CulturalObjectViewMetricDto();
+                        dto.setObjectId(top.get(i).getKey());
+                        dto.setTotalViews(top.get(i).getValue());
+                        applyObjectDetails(dto, documents.get(i));
+                        result.add(dto);
+                    }
+                    return result;
+                }, dashboardExecutor);
+            });
+    }
     
-    private Timestamp getStartTimeForRange(String timeRange) {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime startTime;
-        
-        switch (timeRange.toLowerCase()) {
-            case "today":
-                startTime = now.toLocalDate().atStartOfDay();
-                break;
-            case "week":
-                startTime = now.minusWeeks(1);
-                break;
-            case "month":
-                startTime = now.minusMonths(1);
-                break;
-            case "year":
-                startTime = now.minusYears(1);
-                break;
-            default:
-                startTime = now.minusDays(7); // Default to last week
-        }
-        
-        return Timestamp.of(java.util.Date.from(startTime.atZone(ZoneId.systemDefault()).toInstant()));
+    /**
+     * Zones with the most AR sessions in [start, end) from the per-zone session rollups
+     */
+    private CompletableFuture<List<CampusZoneActivityDto>> getCampusZoneActivityInRangeAsync(Instant start,
+                                                                                            Instant end, int limit) {
+        return blockingAsync(() -> rollupService.breakdown(FirebaseAnalyticsService.USER_SESSIONS_COLLECTION,
+                "zoneId", start, end))
+            .thenCompose(sessions -> {
+                List<Map.Entry<String, Long>> top = topEntries(sessions, limit);
+                if (top.isEmpty()) {
+                    return CompletableFuture.completedFuture(List.<CampusZoneActivityDto>of());
+                }
+                CollectionReference campusZones = firestore.collection("campus_zones");
+                DocumentReference[] refs = top.stream()
+                    .map(entry -> campusZones.document(entry.getKey()))
+                    .toArray(DocumentReference[]::new);
+                
+                // Blocking pool: the zone visitor estimates and percentiles read sketches and digests
+                return toCompletable(firestore.getAll(refs)).thenApplyAsync(documents -> {
+                    List<CampusZoneActivityDto> zones = new ArrayList<>();
+                    for (int i = 0; i < top.size(); i++) {
+                        DocumentSnapshot document = documents.get(i);
+                        CampusZoneActivityDto dto = new CampusZoneActivityDto();
+                        dto.setZoneId(top.get(i).getKey());
+                        dto.setTotalArSessions(top.get(i).getValue());
+                        if (document.exists()) {
+                            dto.setZoneName(document.getString("name"));
+                            dto.setZoneDescription(document.getString("description"));
+                            dto.setLatitude(document.getDouble("latitude"));
+                            dto.setLongitude(document.getDouble("longitude"));
+                        }
+                        zones.add(dto);
+                    }
+                    if (distinctCountService.isEnabled()) {
+                        applyZoneVisitorEstimates(zones, start, end);
+                    }
+                    if (sessionDurationService.isEnabled()) {
+                        applyZoneDurationQuantiles(zones, start, end);
+                    }
+                    return zones;
+                }, blockingExecutor);
+            });
     }
     
-    private String getCultureFromTheme(String theme) {
-        // Simple mapping - can be expanded
-        if (theme.toLowerCase().contains("inca")) return "Inca";
-        if (theme.toLowerCase().contains("colonial")) return "Colonial";
-        if (theme.toLowerCase().contains("republican")) return "Republican";
-        if (theme.toLowerCase().contains("modern")) return "Modern";
-        return "Mixed";
+    /**
+     * Stats for [start, end); totalUsers stays the all-time count like in the relative ranges
+     */
+    private CompletableFuture<OverallStatsDto> getOverallStatsInRangeAsync(Instant start, Instant end) {
+        Timestamp from = Timestamp.of(java.util.Date.from(start));
+        Timestamp to = Timestamp.of(java.util.Date.from(end));
+        Query interactions = firestore.collection("cultural_object_interactions")
+            .whereGreaterThanOrEqualTo("createdAt", from)
+            .whereLessThan("createdAt", to);
+        
+        CompletableFuture<Long> totalUsers = stat("total users",
+            aggregationService.countAsync(firestore.collection("users")), 0L);
+        CompletableFuture<Long> totalComments = stat("interactions in range",
+            aggregationService.countAsync(interactions), 0L);
+        CompletableFuture<Long> socialFunctionUsage = stat("social function usage in range",
+            aggregationService.countAsync(interactions
+                .whereIn("interactionType", Arrays.asList("COMMENT", "REACTION", "SHARE", "PHOTO"))), 0L);
+        CompletableFuture<Long> totalViews = blockingAsync(() -> rollupService.count(
+                FirebaseAnalyticsService.CULTURAL_OBJECT_VIEWS_METRIC, start, end))
+            .exceptionally(e -> {
+                log.error("Error counting views in range", e);
+                return 0L;
+            });
+        CompletableFuture<DurationQuantiles> sessionDurations = sessionDurationService.isEnabled()
+            ? blockingAsync(() -> sessionDurationService.summarize(RollupService.ALL_DIMENSION,
+                    RollupService.ALL_DIMENSION, start, end))
+                .exceptionally(e -> {
+                    log.error("Error calculating session duration percentiles in range", e);
+                    return null;
+                })
+            : CompletableFuture.completedFuture(null);
+        
+        return CompletableFuture.allOf(totalUsers, totalComments, socialFunctionUsage, totalViews, sessionDurations)
+            .thenApply(ignored -> {
+                OverallStatsDto stats = new OverallStatsDto();
+                stats.setTotalUsers(totalUsers.join());
+                stats.setTotalComments(totalComments.join());
+                stats.setSocialFunctionUsage(socialFunctionUsage.join());
+                stats.setTotalViews(totalViews.join());
+                DurationQuantiles durations = sessionDurations.join();
+                if (durations != null && durations.getCount() > 0) {
+                    stats.setAverageSessionDuration(toMinutes(durations.getMean()));
+                    stats.setSessionDurationP50(toMinutes(durations.getP50()));
+                    stats.setSessionDurationP90(toMinutes(durations.getP90()));
+                    stats.setSessionDurationP99(toMinutes(durations.getP99()));
+                }
+                return stats;
+            });
     }
     
-    private Long countByType(List<QueryDocumentSnapshot> interactions, String type) {
-        return interactions.stream()
-            .filter(doc -> type.equals(doc.getString("interactionType")))
-            .count();
+    /**
+     * Distinct active users in [start, end); the sketches are daily, so partial days count whole
+     */
+    private CompletableFuture<Long> activeUsersInRange(Instant start, Instant end) {
+        if (!distinctCountService.isEnabled()) {
+            return stat("active users in range", aggregationService.countAsync(firestore.collection("users")
+                .whereGreaterThanOrEqualTo("lastActivity", Timestamp.of(java.util.Date.from(start)))
+                .whereLessThan("lastActivity", Timestamp.of(java.util.Date.from(end)))), 0L);
+        }
+        return blockingAsync(() -> distinctCountService.estimate(DistinctCountService.VISITORS_METRIC,
+                RollupService.ALL_DIMENSION, RollupService.ALL_DIMENSION, start, end).getEstimate());
     }
     
-    private Double calculateAverageEngagementTime(List<QueryDocumentSnapshot> interactions) {
-        return interactions.stream()
-            .mapToDouble(doc -> doc.getDouble("engagementTime") != null ? doc.getDouble("engagementTime") : 0.0)
-            .average()
-            .orElse(0.0);
+    /**
+     * Share of the previous equal-length window's users who came back in [start, end), from the daily
+     * retention bitmaps; null when they are disabled or have no data yet (callers fall back to active/total)
+     */
+    private CompletableFuture<Double> retentionRate(Instant start, Instant end) {
+        if (!retentionService.isEnabled()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return blockingAsync(() -> retentionService.retentionRate(start, end)).exceptionally(e -> {
+            log.error("Error calculating retention rate", e);
+            return null;
+        });
     }
     
-    private Long calculateActiveUsersToday() {
-        try {
-            Timestamp startOfDay = Timestamp.of(java.util.Date.from(
-                LocalDateTime.now().toLocalDate().atStartOfDay().atZone(ZoneId.systemDefault()).toInstant()
-            ));
-            
-            QuerySnapshot snapshot = firestore.collection("users")
-                .whereGreaterThanOrEqualTo("lastActivity", startOfDay)
-                .get()
-                .get();
-            
-            return (long) snapshot.size();
-        } catch (Exception e) {
-            log.error("Error calculating active users today", e);
-            return 0L;
+    /**
+     * Event series per metric for the window, one bucket per hour or per day
+     */
+    private CompletableFuture<Map<String, List<RollupBucket>>> getActivitySeriesAsync(Instant start, Instant end,
+                                                                                      RollupGranularity granularity) {
+        List<String> metrics = List.of(
+            FirebaseAnalyticsService.CULTURAL_OBJECT_VIEWS_METRIC,
+            FirebaseAnalyticsService.INTERACTION_EVENTS_COLLECTION,
+            FirebaseAnalyticsService.USER_SESSIONS_COLLECTION,
+            FirebaseAnalyticsService.SOCIAL_INTERACTIONS_COLLECTION,
+            FirebaseAnalyticsService.ANALYTICS_EVENTS_COLLECTION);
+        
+        Map<String, CompletableFuture<List<RollupBucket>>> futures = new LinkedHashMap<>();
+        for (String metric : metrics) {
+            futures.put(metric, blockingAsync(() -> rollupService.series(metric, RollupService.ALL_DIMENSION,
+                RollupService.ALL_DIMENSION, granularity, start, end)));
         }
+        
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+            .thenApply(ignored -> {
+                Map<String, List<RollupBucket>> series = new LinkedHashMap<>();
+                futures.forEach((metric, future) -> series.put(metric, future.join()));
+                return series;
+            });
     }
     
-    private Long calculateActiveUsersThisWeek() {
+    // Helper methods
+    
+    /**
+     * Bounds a dashboard section by the configured timeout
+     * On timeout or failure the fallback is returned and the section is marked as degraded
+     */
+    private <T> CompletableFuture<T> section(String name, Supplier<CompletableFuture<T>> query, T fallback,
+                                             Set<String> degradedSections) {
+        CompletableFuture<T> future;
         try {
-            Timestamp startOfWeek = Timestamp.of(java.util.Date.from(
-                LocalDateTime.now().minusWeeks(1).atZone(ZoneId.systemDefault()).toInstant()
-            ));
-            
-            QuerySnapshot snapshot = firestore.collection("users")
-                .whereGreaterThanOrEqualTo("lastActivity", startOfWeek)
-                .get()
-                .get();
-            
-            return (long) snapshot.size();
+            future = query.get();
         } catch (Exception e) {
-            log.error("Error calculating active users this week", e);
-            return 0L;
+            future = CompletableFuture.failedFuture(e);
         }
+        
+        return future
+            .orTimeout(sectionTimeoutMs, TimeUnit.MILLISECONDS)
+            .exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof TimeoutException) {
+                    log.warn("Dashboard section '{}' timed out after {} ms", name, sectionTimeoutMs);
+                } else {
+                    log.error("Dashboard section '{}' failed: {}", name, cause.getMessage(), cause);
+                }
+                degradedSections.add(name);
+                return fallback;
+            });
     }
     
-    private Long calculateActiveUsersThisMonth() {
-        try {
-            Timestamp startOfMonth = Timestamp.of(java.util.Date.from(
-                LocalDateTime.now().minusMonths(1).atZone(ZoneId.systemDefault()).toInstant()
-            ));
-            
-            QuerySnapshot snapshot = firestore.collection("users")
-                .whereGreaterThanOrEqualTo("lastActivity", startOfMonth)
-                .get()
-                .get();
-            
-            return (long) snapshot.size();
-        } catch (Exception e) {
-            log.error("Error calculating active users this month", e);
-            return 0L;
+    /**
+     * Distinct active users since the given time
+     * With HyperLogLog sketches this reads one ~4 KB document per day (day granularity,
+     * about 1.6% standard error); otherwise it counts users by lastActivity
+     */
+    private CompletableFuture<Long> activeUsersSince(String name, LocalDateTime since) {
+        if (!distinctCountService.isEnabled()) {
+            return stat(name, aggregationService.countAsync(
+                firestore.collection("users").whereGreaterThanOrEqualTo("lastActivity", toTimestamp(since))), 0L);
         }
+        Instant start = since.atZone(ZoneId.systemDefault()).toInstant();
+        return blockingAsync(() -> distinctCountService.estimate(DistinctCountService.VISITORS_METRIC,
+                RollupService.ALL_DIMENSION, RollupService.ALL_DIMENSION, start, Instant.now()).getEstimate())
+            .exceptionally(e -> {
+                log.error("Error calculating {}", name, e);
+                return 0L;
+            });
     }
     
-    private Double calculateAverageSessionDuration() {
+    /**
+     * Replace stored zone visitor counters with distinct estimates for the range (one batched read)
+     */
+    private void applyZoneVisitorEstimates(List<CampusZoneActivityDto> zones, Instant start, Instant end) {
+        if (zones.isEmpty()) {
+            return;
+        }
         try {
-            QuerySnapshot snapshot = firestore.collection("user_sessions").get().get();
-            
-            return snapshot.getDocuments().stream()
-                .mapToDouble(doc -> doc.getDouble("duration") != null ? doc.getDouble("duration") : 0.0)
-                .average()
-                .orElse(0.0);
+            List<String> zoneIds = zones.stream().map(CampusZoneActivityDto::getZoneId).collect(Collectors.toList());
+            Map<String, DistinctCountEstimate> estimates = distinctCountService.estimateMany(
+                DistinctCountService.VISITORS_METRIC, "zoneId", zoneIds, start, end);
+            for (CampusZoneActivityDto zone : zones) {
+                DistinctCountEstimate estimate = estimates.get(zone.getZoneId());
+                if (estimate != null && estimate.getSketchesRead() > 0) {
+                    zone.setUniqueVisitors(estimate.getEstimate());
+                }
+            }
         } catch (Exception e) {
-            log.error("Error calculating average session duration", e);
-            return 0.0;
+            log.error("Error estimating zone unique visitors: {}", e.getMessage(), e);
         }
     }
     
-    private Long calculateSocialFunctionUsage() {
-        try {
-            QuerySnapshot snapshot = firestore.collection("cultural_object_interactions")
-                .whereIn("interactionType", Arrays.asList("COMMENT", "REACTION", "SHARE", "PHOTO"))
-                .get()
-                .get();
-            
-            return (long) snapshot.size();
-        } catch (Exception e) {
-            log.error("Error calculating social function usage", e);
-            return 0L;
+    /**
+     * Session duration mean and percentiles for the range from the daily t-digests
+     * Completes with null for "all" or when the digests are disabled (the stored average is used)
+     */
+    private CompletableFuture<DurationQuantiles> sessionDurationQuantiles(String timeRange) {
+        if ("all".equals(timeRange) || !sessionDurationService.isEnabled()) {
+            return CompletableFuture.completedFuture(null);
         }
+        Instant start = getStartTimeForRange(timeRange).toDate().toInstant();
+        return blockingAsync(() -> sessionDurationService.summarize(RollupService.ALL_DIMENSION,
+                RollupService.ALL_DIMENSION, start, Instant.now()))
+            .exceptionally(e -> {
+                log.error("Error calculating session duration percentiles", e);
+                return null;
+            });
     }
     
-    private Double calculateUserRetentionRate() {
+    /**
+     * Replace stored zone session averages with digest-based mean and percentiles for the range
+     */
+    private void applyZoneDurationQuantiles(List<CampusZoneActivityDto> zones, Instant start, Instant end) {
+        if (zones.isEmpty()) {
+            return;
+        }
         try {
-            // Simple calculation: users active this week / total users
-            Long activeUsers = calculateActiveUsersThisWeek();
-            Long totalUsers = Long.valueOf(firestore.collection("users").get().get().size());
-            
-            if (totalUsers > 0) {
-                return (activeUsers.doubleValue() / totalUsers.doubleValue()) * 100.0;
+            List<String> zoneIds = zones.stream().map(CampusZoneActivityDto::getZoneId).collect(Collectors.toList());
+            Map<String, DurationQuantiles> quantiles = sessionDurationService.summarizeMany("zoneId", zoneIds,
+                start, end);
+            for (CampusZoneActivityDto zone : zones) {
+                DurationQuantiles durations = quantiles.get(zone.getZoneId());
+                if (durations != null && durations.getCount() > 0) {
+                    zone.setAverageSessionDuration(toMinutes(durations.getMean()));
+                    zone.setSessionDurationP50(toMinutes(durations.getP50()));
+                    zone.setSessionDurationP90(toMinutes(durations.getP90()));
+                    zone.setSessionDurationP99(toMinutes(durations.getP99()));
+                }
             }
-            return 0.0;
         } catch (Exception e) {
-            log.error("Error calculating user retention rate", e);
-            return 0.0;
+            log.error("Error calculating zone session duration percentiles: {}", e.getMessage(), e);
         }
     }
     
     /**
-     * Track user interaction event
+     * Runs a blocking call (rollup or sketch reads) on the blocking pool, never on dashboardExecutor
      */
-    public void trackInteractionEvent(Object interaction) {
-        log.info("Tracking interaction event: {}", interaction);
-        firebaseAnalyticsService.saveInteractionEvent(interaction);
+    private <T> CompletableFuture<T> blockingAsync(Callable<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, blockingExecutor);
+    }
+    
+    private static List<Map.Entry<String, Long>> topEntries(Map<String, Long> counts, int limit) {
+        return counts.entrySet().stream()
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+            .limit(limit)
+            .collect(Collectors.toList());
+    }
+    
+    private static Double toMinutes(Double seconds) {
+        return seconds != null ? seconds / 60.0 : null;
+    }
+    
+    private <T> CompletableFuture<T> stat(String name, ApiFuture<T> future, T fallback) {
+        return toCompletable(future).exceptionally(e -> {
+            log.error("Error calculating {}", name, e);
+            return fallback;
+        });
+    }
+    
+    private Timestamp toTimestamp(LocalDateTime dateTime) {
+        return Timestamp.of(java.util.Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant()));
+    }
+    
+    private Timestamp getStartTimeForRange(String timeRange) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime startTime;
+        
+        switch (timeRange.toLowerCase()) {
+            case "today":
+                startTime = now.toLocalDate().atStartOfDay();
+                break;
+            case "week":
+                startTime = now.minusWeeks(1);
+                break;
+            case "month":
+                startTime = now.minusMonths(1);
+                break;
+            case "year":
+                startTime = now.minusYears(1);
+                break;
+            default:
+                startTime = now.minusDays(7); // Default to last week
+        }
+        
+        return toTimestamp(startTime);
+    }
+    
+    private String getCultureFromTheme(String theme) {
+        // Simple mapping - can be expanded
+        if (theme.toLowerCase().contains("inca")) return "Inca";
+        if (theme.toLowerCase().contains("colonial")) return "Colonial";
+        if (theme.toLowerCase().contains("republican")) return "Republican";
+        if (theme.toLowerCase().contains("modern")) return "Modern";
+        return "Mixed";
+    }
+    
+    private Double calculateUserRetentionRate(Long activeUsers, Long totalUsers) {
+        // Fallback when there are no retention bitmaps: users active in the window / total users
+        if (totalUsers != null && totalUsers > 0) {
+            return (activeUsers.doubleValue() / totalUsers.doubleValue()) * 100.0;
+        }
+        return 0.0;
     }
     
     /**
-     * Track user session
+     * Track a single event; returns false when it is a retry of an event already received
      */
-    public void trackUserSession(Object session) {
-        log.info("Tracking user session: {}", session);
-        firebaseAnalyticsService.saveUserSession(session);
+    public boolean trackEvent(TrackedEvent event) {
+        log.info("Tracking {}: {}", event.getType().getLabel(), event.getRecord().getId());
+        return eventPipeline.ingest(event);
     }
     
     /**
-     * Track social interaction
+     * Track a batch of already validated events
      */
-    public void trackSocialInteraction(Object interaction) {
-        log.info("Tracking social interaction: {}", interaction);
-        firebaseAnalyticsService.saveSocialInteraction(interaction);
+    public TrackBatchResult trackBatch(List<TrackedEvent> events) {
+        log.info("Tracking batch of {} events", events.size());
+        return eventPipeline.ingestAll(events);
     }
     
     /**
-     * Track analytics event
+     * Per-theme counters filled while streaming interactions
      */
-    public void trackAnalyticsEvent(Object event) {
-        log.info("Tracking analytics event: {}", event);
-        firebaseAnalyticsService.saveAnalyticsEvent(event);
+    private static final class ThemeAccumulator {
+        private long total;
+        private long comments;
+        private long reactions;
+        private long shares;
+        private long photos;
+        private double engagementTimeSum;
+        
+        void add(String interactionType, Double engagementTime) {
+            total++;
+            if (interactionType != null) {
+                addTypeCount(interactionType, 1);
+            }
+            // Interactions without engagementTime count as 0, as before
+            if (engagementTime != null) {
+                engagementTimeSum += engagementTime;
+            }
+        }
+        
+        void addTotals(long count, double engagementTime) {
+            total += count;
+            engagementTimeSum += engagementTime;
+        }
+        
+        void addTypeCount(String interactionType, long count) {
+            switch (interactionType) {
+                case "COMMENT": comments += count; break;
+                case "REACTION": reactions += count; break;
+                case "SHARE": shares += count; break;
+                case "PHOTO": photos += count; break;
+                default: break;
+            }
+        }
+        
+        double averageEngagementTime() {
+            return total > 0 ? engagementTimeSum / total : 0.0;
+        }
+        
+        ThemeInteractionDto toDto(String theme) {
+            ThemeInteractionDto dto = new ThemeInteractionDto();
+            dto.setTheme(theme);
+            dto.setTotalInteractions(total);
+            dto.setCommentsCount(comments);
+            dto.setReactionsCount(reactions);
+            dto.setSharesCount(shares);
+            dto.setPhotosCount(photos);
+            dto.setAverageEngagementTime(averageEngagementTime());
+            return dto;
+        }
     }
 }
@@ -0,0 +1,313 @@
+package com.disrupton.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Caché de snapshots del dashboard por (endpoint, timeRange, limit) con stale-while-revalidate
+ *
+ * - Fresco (edad <= fresh-ms): se devuelve tal cual, sin tocar Firestore
+ * - Viejo (edad <= max-stale-ms): se devuelve marcado como stale y se recalcula en segundo plano
+ * - Sin snapshot o demasiado viejo: el primer lector lo calcula y los demás esperan ese mismo cálculo
+ *
+ * Un scheduler recalcula cada refresh-interval-ms las claves leídas en los últimos idle-ms
+ * y descarta las demás, así la carga sobre Firestore depende de cuántas claves están en uso
+ * y no de cuántos administradores tienen el dashboard abierto
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DashboardSnapshotCache {
+
+    public static final String GENERATED_AT_HEADER = "X-Snapshot-Generated-At";
+    public static final String STALE_HEADER = "X-Snapshot-Stale";
+
+    @Qualifier("analyticsScheduler")
+    private final ScheduledExecutorService analyticsScheduler;
+
+    @Qualifier("dashboardRefreshExecutor")
+    private final ExecutorService refreshExecutor;
+
+    @Value("${dashboard.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${dashboard.cache.fresh-ms:30000}")
+    private long freshMs;
+
+    @Value("${dashboard.cache.max-stale-ms:300000}")
+    private long maxStaleMs;
+
+    @Value("${dashboard.cache.refresh-interval-ms:30000}")
+    private long refreshIntervalMs;
+
+    @Value("${dashboard.cache.idle-ms:600000}")
+    private long idleMs;
+
+    @Value("${dashboard.cache.max-entries:200}")
+    private int maxEntries;
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong refreshFailures = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("📸 Caché de snapshots del dashboard deshabilitada");
+            return;
+        }
+        analyticsScheduler.scheduleWithFixedDelay(this::refreshHotKeys, refreshIntervalMs, refreshIntervalMs,
+                TimeUnit.MILLISECONDS);
+        log.info("📸 Caché de snapshots del dashboard: fresco {} ms, stale hasta {} ms, refresco cada {} ms",
+                freshMs, maxStaleMs, refreshIntervalMs);
+    }
+
+    /**
+     * Devuelve el snapshot de la clave, calculándolo con loader solo si no hay uno utilizable
+     *
+     * @param limit 0 si el endpoint no tiene límite
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Snapshot<T> get(String endpoint, String timeRange, int limit, Supplier<T> loader) {
+        if (!enabled) {
+            return new Snapshot<>(loader.get(), Instant.now(), false);
+        }
+
+        Key key = new Key(endpoint, timeRange, limit);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            if (entries.size() >= maxEntries) {
+                // Caché llena: se calcula sin guardar hasta que el scheduler libere claves inactivas
+                misses.incrementAndGet();
+                log.debug("📸 Caché del dashboard llena ({} claves), {} sin caché", entries.size(), key);
+                return new Snapshot<>(loader.get(), Instant.now(), false);
+            }
+            entry = entries.computeIfAbsent(key, k -> new Entry(k, loader));
+        }
+        entry.lastAccessMs = System.currentTimeMillis();
+
+        Snapshot<?> snapshot = entry.snapshot;
+        if (snapshot != null) {
+            long age = snapshot.getAgeMillis();
+            if (age <= freshMs) {
+                hits.incrementAndGet();
+                return (Snapshot<T>) snapshot;
+            }
+            if (age <= maxStaleMs) {
+                staleHits.incrementAndGet();
+                refreshInBackground(entry);
+                return new Snapshot<>((T) snapshot.value, snapshot.generatedAt, true);
+            }
+        }
+
+        misses.incrementAndGet();
+        try {
+            return (Snapshot<T>) refresh(entry, false).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Descarta todos los snapshots (p. ej. tras una corrección de datos)
+     */
+    public void invalidateAll() {
+        entries.clear();
+        log.info("🧹 Caché de snapshots del dashboard vaciada");
+    }
+
+    /**
+     * Contadores de aciertos/fallos para exponer en el API
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long staleCount = staleHits.get();
+        long missCount = misses.get();
+        long total = hitCount + staleCount + missCount;
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("hits", hitCount);
+        stats.put("staleHits", staleCount);
+        stats.put("misses", missCount);
+        stats.put("coalescedMisses", coalesced.get());
+        stats.put("hitRate", total > 0 ? (double) (hitCount + staleCount) / total : 0.0);
+        stats.put("refreshes", refreshes.get());
+        stats.put("refreshFailures", refreshFailures.get());
+        stats.put("size", entries.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("freshMs", freshMs);
+        stats.put("maxStaleMs", maxStaleMs);
+        stats.put("refreshIntervalMs", refreshIntervalMs);
+        return stats;
+    }
+
+    // Métodos privados de utilidad
+
+    /**
+     * Recalcula una clave; si ya hay un cálculo en curso devuelve ese mismo future
+     *
+     * @param background true para calcular en el pool de refresco, false en el hilo que llama
+     */
+    private CompletableFuture<Snapshot<?>> refresh(Entry entry, boolean background) {
+        while (true) {
+            CompletableFuture<Snapshot<?>> current = entry.inFlight.get();
+            if (current != null) {
+                if (!background) {
+                    coalesced.incrementAndGet();
+                }
+                return current;
+            }
+            Snapshot<?> latest = entry.snapshot;
+            if (!background && latest != null && latest.getAgeMillis() <= freshMs) {
+                // Otro lector terminó el cálculo justo antes
+                coalesced.incrementAndGet();
+                return CompletableFuture.completedFuture(latest);
+            }
+            CompletableFuture<Snapshot<?>> created = new CompletableFuture<>();
+            if (!entry.inFlight.compareAndSet(null, created)) {
+                continue;
+            }
+            if (background) {
+                try {
+                    refreshExecutor.execute(() -> load(entry, created));
+                } catch (RejectedExecutionException e) {
+                    entry.inFlight.set(null);
+                    created.completeExceptionally(e);
+                }
+            } else {
+                load(entry, created);
+            }
+            return created;
+        }
+    }
+
+    private void refreshInBackground(Entry entry) {
+        refresh(entry, true).exceptionally(e -> null);
+    }
+
+    private void load(Entry entry, CompletableFuture<Snapshot<?>> future) {
+        long started = System.currentTimeMillis();
+        try {
+            Snapshot<?> snapshot = new Snapshot<>(entry.loader.get(), Instant.now(), false);
+            entry.snapshot = snapshot;
+            refreshes.incrementAndGet();
+            log.debug("📸 Snapshot {} recalculado en {} ms", entry.key, System.currentTimeMillis() - started);
+            future.complete(snapshot);
+        } catch (Throwable e) {
+            // Se conserva el snapshot anterior; los lectores siguen viéndolo como stale
+            refreshFailures.incrementAndGet();
+            log.error("❌ Error recalculando snapshot {}: {}", entry.key, e.getMessage());
+            future.completeExceptionally(e);
+        } finally {
+            entry.inFlight.set(null);
+        }
+    }
+
+    /**
+     * Tarea periódica: recalcula las claves en uso y descarta las inactivas
+     */
+    private void refreshHotKeys() {
+        try {
+            long now = System.currentTimeMillis();
+            int refreshed = 0;
+            for (Entry entry : entries.values()) {
+                if (now - entry.lastAccessMs > idleMs) {
+                    entries.remove(entry.key, entry);
+                    log.debug("📸 Snapshot {} descartado por inactividad", entry.key);
+                } else {
+                    refreshInBackground(entry);
+                    refreshed++;
+                }
+            }
+            if (refreshed > 0) {
+                log.debug("📸 Refresco programado de {} snapshots del dashboard", refreshed);
+            }
+        } catch (Exception e) {
+            log.error("❌ Error en el refresco programado del dashboard: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Snapshot servido: valor, momento en que se calculó y si se sirvió vencido
+     */
+    public static final class Snapshot<T> {
+        private final T value;
+        private final Instant generatedAt;
+        private final boolean stale;
+
+        private Snapshot(T value, Instant generatedAt, boolean stale) {
+            this.value = value;
+            this.generatedAt = generatedAt;
+            this.stale = stale;
+        }
+
+        public T getValue() { return value; }
+        public Instant getGeneratedAt() { return generatedAt; }
+        public boolean isStale() { return stale; }
+
+        public long getAgeMillis() {
+            return Math.max(0, Duration.between(generatedAt, Instant.now()).toMillis());
+        }
+
+        /**
+         * Cabeceras de respuesta: Age (segundos), momento del cálculo y si se sirvió vencido
+         */
+        public HttpHeaders toHeaders() {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.AGE, String.valueOf(getAgeMillis() / 1000));
+            headers.set(GENERATED_AT_HEADER, generatedAt.toString());
+            headers.set(STALE_HEADER, String.valueOf(stale));
+            return headers;
+        }
+    }
+
+    private record Key(String endpoint, String timeRange, int limit) {
+        @Override
+        public String toString() {
+            return endpoint + "|" + Objects.toString(timeRange, "") + "|" + limit;
+        }
+    }
+
+    private static final class Entry {
+        final Key key;
+        final Supplier<?> loader;
+        final AtomicReference<CompletableFuture<Snapshot<?>>> inFlight = new AtomicReference<>();
+        volatile Snapshot<?> snapshot;
+        volatile long lastAccessMs = System.currentTimeMillis();
+
+        Entry(Key key, Supplier<?> loader) {
+            this.key = key;
+            this.loader = loader;
+        }
+    }
+}
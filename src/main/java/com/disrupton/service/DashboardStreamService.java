@@ -0,0 +1,376 @@
+package com.disrupton.service;
+
+import com.disrupton.analytics.model.HeavyHitter;
+import com.disrupton.analytics.service.HeavyHittersService;
+import com.disrupton.analytics.util.SlidingWindowCounter;
+import com.google.cloud.firestore.Firestore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.disrupton.service.FirestoreAggregationService.toCompletable;
+
+/**
+ * Métricas en vivo del dashboard empujadas por Server-Sent Events
+ *
+ * Los contadores se alimentan en memoria desde el camino de ingesta y rollups (sin consultas por
+ * evento). Un tick a max-updates-per-second arma el estado actual y a cada suscriptor le envía solo
+ * las claves que cambiaron desde su último envío, así varios eventos entre ticks llegan como un
+ * único delta. Los envíos corren en un pool propio: si un cliente todavía no terminó de recibir el
+ * envío anterior se lo saltea (su próximo delta acumula los cambios) y si sigue bloqueado más de
+ * slow-consumer-timeout-ms se lo da de baja. Una escritura bloqueada no se puede interrumpir: el
+ * emisor se cierra cuando esa escritura termina o vence el timeout de escritura del contenedor, y
+ * mientras tanto su hilo cuenta contra max-subscribers. Los clientes sin cambios reciben un heartbeat
+ *
+ * El tick y la reconciliación corren en su propio scheduler (dashboardStreamScheduler). Las
+ * sesiones activas y la cola de moderación se reconcilian con un conteo en Firestore cada
+ * reconcile-interval-ms, solo mientras haya suscriptores
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DashboardStreamService {
+
+    private static final int RATE_WINDOW_SECONDS = 60;
+
+    private final Firestore firestore;
+    private final FirestoreAggregationService aggregationService;
+    private final HeavyHittersService heavyHittersService;
+
+    @Qualifier("dashboardStreamScheduler")
+    private final ScheduledExecutorService streamScheduler;
+
+    @Qualifier("dashboardStreamExecutor")
+    private final ExecutorService sendExecutor;
+
+    @Value("${dashboard.stream.enabled:true}")
+    private boolean enabled;
+
+    @Value("${dashboard.stream.max-updates-per-second:2}")
+    private int maxUpdatesPerSecond;
+
+    @Value("${dashboard.stream.heartbeat-ms:15000}")
+    private long heartbeatMs;
+
+    @Value("${dashboard.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${dashboard.stream.max-subscribers:100}")
+    private int maxSubscribers;
+
+    @Value("${dashboard.stream.slow-consumer-timeout-ms:10000}")
+    private long slowConsumerTimeoutMs;
+
+    @Value("${dashboard.stream.reconcile-interval-ms:30000}")
+    private long reconcileIntervalMs;
+
+    @Value("${dashboard.stream.top-objects:5}")
+    private int topObjects;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Map<String, SlidingWindowCounter> eventRates = new ConcurrentHashMap<>();
+    private final AtomicLong activeSessions = new AtomicLong();
+    private final AtomicLong moderationQueue = new AtomicLong(-1);
+    private final AtomicBoolean moderationDirty = new AtomicBoolean(true);
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicLong deltasSent = new AtomicLong();
+    private final AtomicLong heartbeatsSent = new AtomicLong();
+    private final AtomicLong skippedBusy = new AtomicLong();
+    private final AtomicLong droppedSlow = new AtomicLong();
+    // Suscriptores dados de baja cuyo envío sigue bloqueado (retienen un hilo del pool)
+    private final AtomicInteger stalledSends = new AtomicInteger();
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("📡 Stream en vivo del dashboard deshabilitado");
+            return;
+        }
+        long tickMs = Math.max(1, 1000L / Math.max(1, maxUpdatesPerSecond));
+        streamScheduler.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        streamScheduler.scheduleWithFixedDelay(this::reconcileIfWatched, reconcileIntervalMs, reconcileIntervalMs,
+                TimeUnit.MILLISECONDS);
+        log.info("📡 Stream en vivo del dashboard: hasta {} actualizaciones/s por cliente, heartbeat cada {} ms",
+                maxUpdatesPerSecond, heartbeatMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Registra un nuevo cliente; el primer envío trae el estado completo
+     *
+     * @throws IllegalStateException si el stream está deshabilitado o se alcanzó max-subscribers
+     */
+    public SseEmitter subscribe() {
+        if (!enabled) {
+            throw new IllegalStateException("El stream del dashboard está deshabilitado");
+        }
+        if (subscribers.size() + stalledSends.get() >= maxSubscribers) {
+            throw new IllegalStateException("Se alcanzó el máximo de " + maxSubscribers + " suscriptores");
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+
+        boolean first = subscribers.isEmpty();
+        subscribers.add(subscriber);
+        if (first) {
+            // Sin suscriptores no se reconcilia: el primero arranca con conteos frescos
+            streamScheduler.execute(this::reconcile);
+        }
+        log.info("📡 Nuevo suscriptor del dashboard ({} conectados)", subscribers.size());
+        return emitter;
+    }
+
+    /**
+     * Un evento ingerido para la métrica dada (se llama desde el camino de rollups)
+     */
+    public void recordEvent(String metric) {
+        recordEvent(metric, 1);
+    }
+
+    /**
+     * Con muestreo, weight es la cantidad de eventos que representa la muestra
+     */
+    public void recordEvent(String metric, long weight) {
+        if (enabled) {
+            eventRates.computeIfAbsent(metric, k -> new SlidingWindowCounter(RATE_WINDOW_SECONDS))
+                    .add(System.currentTimeMillis(), weight);
+        }
+    }
+
+    public void sessionStarted() {
+        activeSessions.incrementAndGet();
+    }
+
+    public void sessionEnded() {
+        activeSessions.updateAndGet(current -> Math.max(0, current - 1));
+    }
+
+    /**
+     * La cola de moderación cambió: se recuenta en el próximo tick
+     */
+    public void moderationQueueChanged() {
+        moderationDirty.set(true);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("subscribers", subscribers.size());
+        stats.put("maxSubscribers", maxSubscribers);
+        stats.put("maxUpdatesPerSecond", maxUpdatesPerSecond);
+        stats.put("deltasSent", deltasSent.get());
+        stats.put("heartbeatsSent", heartbeatsSent.get());
+        stats.put("skippedBusy", skippedBusy.get());
+        stats.put("droppedSlow", droppedSlow.get());
+        stats.put("stalledSends", stalledSends.get());
+        return stats;
+    }
+
+    // Métodos privados de utilidad
+
+    private void tick() {
+        try {
+            if (subscribers.isEmpty()) {
+                return;
+            }
+            if (moderationDirty.compareAndSet(true, false)) {
+                reconcileModerationQueue();
+            }
+
+            Map<String, Object> state = currentState();
+            long now = System.currentTimeMillis();
+            for (Subscriber subscriber : subscribers) {
+                dispatch(subscriber, state, now);
+            }
+        } catch (Exception e) {
+            log.error("❌ Error en el tick del stream del dashboard: {}", e.getMessage(), e);
+        }
+    }
+
+    private void dispatch(Subscriber subscriber, Map<String, Object> state, long now) {
+        if (!subscriber.sending.compareAndSet(false, true)) {
+            // Cliente lento: no se encola nada, el próximo delta acumula los cambios
+            skippedBusy.incrementAndGet();
+            if (now - subscriber.sendStartedMs > slowConsumerTimeoutMs) {
+                dropStalled(subscriber);
+            }
+            return;
+        }
+
+        Map<String, Object> delta = diff(subscriber.lastSent, state);
+        boolean heartbeat = delta.isEmpty() && now - subscriber.lastSentMs >= heartbeatMs;
+        if (delta.isEmpty() && !heartbeat) {
+            subscriber.sending.set(false);
+            return;
+        }
+
+        subscriber.sendStartedMs = now;
+        try {
+            sendExecutor.execute(() -> send(subscriber, state, delta, heartbeat));
+        } catch (RejectedExecutionException e) {
+            finishSend(subscriber);
+        }
+    }
+
+    private void send(Subscriber subscriber, Map<String, Object> state, Map<String, Object> delta, boolean heartbeat) {
+        try {
+            if (heartbeat) {
+                subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                heartbeatsSent.incrementAndGet();
+            } else {
+                delta.put("sentAt", System.currentTimeMillis());
+                subscriber.emitter.send(SseEmitter.event()
+                        .name(subscriber.lastSent.isEmpty() ? "snapshot" : "delta")
+                        .id(String.valueOf(sequence.incrementAndGet()))
+                        .data(delta, MediaType.APPLICATION_JSON));
+                subscriber.lastSent = state;
+                deltasSent.incrementAndGet();
+            }
+            subscriber.lastSentMs = System.currentTimeMillis();
+        } catch (IOException | IllegalStateException e) {
+            // El cliente cerró la conexión
+            remove(subscriber);
+        } finally {
+            finishSend(subscriber);
+        }
+    }
+
+    /**
+     * Da de baja a un cliente con un envío bloqueado. No se cierra el emisor aquí: complete()
+     * espera el lock que retiene la escritura en curso y bloquearía el tick; lo cierra finishSend
+     */
+    private void dropStalled(Subscriber subscriber) {
+        synchronized (subscriber) {
+            if (!subscriber.sending.get() || subscriber.dropped) {
+                return;
+            }
+            subscriber.dropped = true;
+            stalledSends.incrementAndGet();
+        }
+        remove(subscriber);
+        droppedSlow.incrementAndGet();
+        log.warn("📡 Suscriptor desconectado: no consume hace más de {} ms", slowConsumerTimeoutMs);
+    }
+
+    private void finishSend(Subscriber subscriber) {
+        boolean dropped;
+        synchronized (subscriber) {
+            subscriber.sending.set(false);
+            dropped = subscriber.dropped;
+        }
+        if (dropped) {
+            stalledSends.decrementAndGet();
+            subscriber.emitter.complete();
+        }
+    }
+
+    private Map<String, Object> currentState() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("activeSessions", activeSessions.get());
+
+        Map<String, Long> perMinute = new TreeMap<>();
+        eventRates.forEach((metric, counter) -> perMinute.put(metric, counter.sum(now)));
+        state.put("viewsPerMinute", perMinute.getOrDefault(FirebaseAnalyticsService.CULTURAL_OBJECT_VIEWS_METRIC, 0L));
+        state.put("eventsPerMinute", perMinute);
+
+        if (heavyHittersService.isEnabled()) {
+            List<HeavyHitter> top = heavyHittersService.top(FirebaseAnalyticsService.CULTURAL_OBJECT_VIEWS_METRIC,
+                    LocalDate.now(zone).atStartOfDay(zone).toInstant(), topObjects);
+            state.put("topObjectsToday", top);
+        }
+
+        long queue = moderationQueue.get();
+        state.put("moderationQueue", queue >= 0 ? queue : null);
+        return state;
+    }
+
+    private static Map<String, Object> diff(Map<String, Object> previous, Map<String, Object> current) {
+        Map<String, Object> delta = new LinkedHashMap<>();
+        current.forEach((key, value) -> {
+            if (!previous.containsKey(key) || !Objects.equals(previous.get(key), value)) {
+                delta.put(key, value);
+            }
+        });
+        return delta;
+    }
+
+    private void reconcileIfWatched() {
+        if (!subscribers.isEmpty()) {
+            reconcile();
+        }
+    }
+
+    private void reconcile() {
+        toCompletable(aggregationService.countAsync(firestore.collection("user_sessions")
+                .whereEqualTo("status", "active")))
+                .thenAccept(activeSessions::set)
+                .exceptionally(e -> {
+                    log.error("❌ Error contando sesiones activas: {}", e.getMessage());
+                    return null;
+                });
+        reconcileModerationQueue();
+    }
+
+    private void reconcileModerationQueue() {
+        toCompletable(aggregationService.countAsync(firestore.collection("cultural_objects")
+                .whereEqualTo("status", "pending")))
+                .thenAccept(moderationQueue::set)
+                .exceptionally(e -> {
+                    log.error("❌ Error contando la cola de moderación: {}", e.getMessage());
+                    return null;
+                });
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            log.info("📡 Suscriptor del dashboard desconectado ({} conectados)", subscribers.size());
+        }
+    }
+
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        final AtomicBoolean sending = new AtomicBoolean();
+        boolean dropped; // protegido por el monitor del suscriptor
+        volatile Map<String, Object> lastSent = Map.of();
+        volatile long lastSentMs;
+        volatile long sendStartedMs;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+}
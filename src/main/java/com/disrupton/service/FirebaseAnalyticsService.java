@@ -1,21 +1,28 @@
 package com.disrupton.service;
 
+import com.disrupton.analytics.model.AnalyticsRecord;
+import com.disrupton.analytics.model.TrackedEvent;
+import com.disrupton.analytics.model.TrackedEventType;
+import com.disrupton.analytics.service.AnalyticsEventPipeline;
+import com.disrupton.analytics.service.RollupService;
+import com.disrupton.exception.IngestionRejectedException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 
 /**
  * Servicio para manejar analytics de Firebase
- * Guarda eventos en Firestore y genera métricas
+ * Registra eventos a través de AnalyticsEventPipeline y genera métricas
  */
 @Service
 @RequiredArgsConstructor
@@ -23,29 +30,45 @@ import java.util.concurrent.ExecutionException;
 public class FirebaseAnalyticsService {
     
     private final Firestore firestore;
+    private final FirestoreAggregationService aggregationService;
+    private final RollupService rollupService;
+    private final AnalyticsEventPipeline eventPipeline;
+    private final ObjectMapper objectMapper;
     
     // Nombres de las colecciones
-    private static final String ANALYTICS_EVENTS_COLLECTION = "analytics_events";
-    private static final String USER_SESSIONS_COLLECTION = "user_sessions";
-    private static final String INTERACTION_EVENTS_COLLECTION = "interaction_events";
-    private static final String SOCIAL_INTERACTIONS_COLLECTION = "social_interactions";
+    public static final String ANALYTICS_EVENTS_COLLECTION = "analytics_events";
+    public static final String USER_SESSIONS_COLLECTION = "user_sessions";
+    // Solo métrica de rollup: las interacciones se guardan en cultural_object_interactions
+    public static final String INTERACTION_EVENTS_COLLECTION = "interaction_events";
+    public static final String SOCIAL_INTERACTIONS_COLLECTION = "social_interactions";
+    
+    // Métrica de rollup para vistas por objeto cultural
+    public static final String CULTURAL_OBJECT_VIEWS_METRIC = "cultural_object_views";
+    
+    // Métrica de rollup de interacciones por tema: dimensión theme y theme|interactionType
+    public static final String THEME_INTERACTIONS_METRIC = "theme_interactions";
+    public static final String THEME_INTERACTION_TYPE_DIMENSION = "themeInteractionType";
     
     /**
      * Guarda un evento de analytics genérico
+     * eventData se guarda como mapa; si trae userId se usa para el muestreo
      */
+    @SuppressWarnings("unchecked")
     public void logEvent(String eventName, Object eventData) {
         try {
-            Map<String, Object> event = new HashMap<>();
-            event.put("eventId", UUID.randomUUID().toString());
-            event.put("eventName", eventName);
-            event.put("eventData", eventData);
-            event.put("timestamp", Timestamp.now());
-            event.put("createdAt", LocalDateTime.now());
+            Map<String, Object> data = eventData == null || eventData instanceof Map
+                    ? (Map<String, Object>) eventData
+                    : objectMapper.convertValue(eventData, Map.class);
+            Object userId = data != null ? data.get("userId") : null;
             
-            firestore.collection(ANALYTICS_EVENTS_COLLECTION)
-                    .document(event.get("eventId").toString())
-                    .set(event)
-                    .get();
+            AnalyticsRecord record = AnalyticsRecord.builder()
+                    .type(TrackedEventType.EVENT)
+                    .name(eventName)
+                    .userId(userId != null ? userId.toString() : null)
+                    .build();
+            record.getAttributes().put("eventName", eventName);
+            record.getAttributes().put("eventData", data);
+            eventPipeline.ingest(new TrackedEvent(record));
             
             log.info("Analytics event logged: {} - {}", eventName, eventData);
         } catch (Exception e) {
@@ -79,177 +102,54 @@ public class FirebaseAnalyticsService {
         }
     }
     
-    /**
-     * Guarda evento de interacción de usuario
-     */
-    public void saveInteractionEvent(Object interaction) {
-        try {
-            Map<String, Object> event = new HashMap<>();
-            event.put("interactionId", UUID.randomUUID().toString());
-            event.put("interactionData", interaction);
-            event.put("timestamp", Timestamp.now());
-            event.put("createdAt", LocalDateTime.now());
-            event.put("eventType", "USER_INTERACTION");
-            
-            firestore.collection(INTERACTION_EVENTS_COLLECTION)
-                    .document(event.get("interactionId").toString())
-                    .set(event)
-                    .get();
-            
-            log.info("Interaction event saved: {}", event.get("interactionId"));
-        } catch (Exception e) {
-            log.error("Error saving interaction event: {}", e.getMessage(), e);
-        }
-    }
-    
-    /**
-     * Guarda sesión de usuario
-     */
-    public void saveUserSession(Object session) {
-        try {
-            Map<String, Object> sessionData = new HashMap<>();
-            sessionData.put("sessionId", UUID.randomUUID().toString());
-            sessionData.put("sessionData", session);
-            sessionData.put("startTime", Timestamp.now());
-            sessionData.put("createdAt", LocalDateTime.now());
-            sessionData.put("eventType", "USER_SESSION");
-            
-            firestore.collection(USER_SESSIONS_COLLECTION)
-                    .document(sessionData.get("sessionId").toString())
-                    .set(sessionData)
-                    .get();
-            
-            log.info("User session saved: {}", sessionData.get("sessionId"));
-        } catch (Exception e) {
-            log.error("Error saving user session: {}", e.getMessage(), e);
-        }
-    }
-    
-    /**
-     * Actualiza sesión de usuario con tiempo de fin
-     */
-    public void updateUserSession(String sessionId, Object sessionData) {
-        try {
-            Map<String, Object> updateData = new HashMap<>();
-            updateData.put("sessionData", sessionData);
-            updateData.put("endTime", Timestamp.now());
-            updateData.put("updatedAt", LocalDateTime.now());
-            
-            firestore.collection(USER_SESSIONS_COLLECTION)
-                    .document(sessionId)
-                    .update(updateData)
-                    .get();
-            
-            log.info("User session updated: {}", sessionId);
-        } catch (Exception e) {
-            log.error("Error updating user session: {}", e.getMessage(), e);
-        }
-    }
-    
-    /**
-     * Guarda interacción social (comentarios, likes, shares)
-     */
-    public void saveSocialInteraction(Object interaction) {
-        try {
-            Map<String, Object> event = new HashMap<>();
-            event.put("socialInteractionId", UUID.randomUUID().toString());
-            event.put("interactionData", interaction);
-            event.put("timestamp", Timestamp.now());
-            event.put("createdAt", LocalDateTime.now());
-            event.put("eventType", "SOCIAL_INTERACTION");
-            
-            firestore.collection(SOCIAL_INTERACTIONS_COLLECTION)
-                    .document(event.get("socialInteractionId").toString())
-                    .set(event)
-                    .get();
-            
-            log.info("Social interaction saved: {}", event.get("socialInteractionId"));
-        } catch (Exception e) {
-            log.error("Error saving social interaction: {}", e.getMessage(), e);
-        }
-    }
-    
-    /**
-     * Guarda evento de analytics específico
-     */
-    public void saveAnalyticsEvent(Object event) {
-        try {
-            Map<String, Object> analyticsEvent = new HashMap<>();
-            analyticsEvent.put("analyticsEventId", UUID.randomUUID().toString());
-            analyticsEvent.put("eventData", event);
-            analyticsEvent.put("timestamp", Timestamp.now());
-            analyticsEvent.put("createdAt", LocalDateTime.now());
-            analyticsEvent.put("eventType", "ANALYTICS_EVENT");
-            
-            firestore.collection(ANALYTICS_EVENTS_COLLECTION)
-                    .document(analyticsEvent.get("analyticsEventId").toString())
-                    .set(analyticsEvent)
-                    .get();
-            
-            log.info("Analytics event saved: {}", analyticsEvent.get("analyticsEventId"));
-        } catch (Exception e) {
-            log.error("Error saving analytics event: {}", e.getMessage(), e);
-        }
-    }
-    
     /**
      * Guarda evento de vista de objeto cultural
+     *
+     * @throws IllegalArgumentException   si las coordenadas no son válidas
+     * @throws IngestionRejectedException si la cola de escritura está llena
      */
     public void saveCulturalObjectView(String objectId, String userId, Double latitude, Double longitude) {
-        try {
-            Map<String, Object> viewEvent = new HashMap<>();
-            viewEvent.put("viewId", UUID.randomUUID().toString());
-            viewEvent.put("objectId", objectId);
-            viewEvent.put("userId", userId);
-            viewEvent.put("latitude", latitude);
-            viewEvent.put("longitude", longitude);
-            viewEvent.put("timestamp", Timestamp.now());
-            viewEvent.put("createdAt", LocalDateTime.now());
-            viewEvent.put("eventType", "CULTURAL_OBJECT_VIEW");
-            
-            firestore.collection(ANALYTICS_EVENTS_COLLECTION)
-                    .document(viewEvent.get("viewId").toString())
-                    .set(viewEvent)
-                    .get();
-            
-            log.info("Cultural object view saved: {} for object: {}", viewEvent.get("viewId"), objectId);
-        } catch (Exception e) {
-            log.error("Error saving cultural object view: {}", e.getMessage(), e);
-        }
+        AnalyticsRecord view = AnalyticsRecord.builder()
+                .type(TrackedEventType.EVENT)
+                .name(AnalyticsEventPipeline.CULTURAL_OBJECT_VIEW)
+                .objectId(objectId)
+                .userId(userId)
+                .latitude(latitude)
+                .longitude(longitude)
+                .build();
+        eventPipeline.ingest(new TrackedEvent(view));
+        
+        log.info("Cultural object view saved: {} for object: {}", view.getId(), objectId);
     }
     
     /**
-     * Guarda evento de sesión AR
+     * Guarda evento de sesión AR (duración en segundos)
+     *
+     * @throws IllegalArgumentException   si las coordenadas o la duración no son válidas
+     * @throws IngestionRejectedException si la cola de escritura está llena
      */
     public void saveARSession(String userId, String zoneId, Double latitude, Double longitude, Long duration) {
-        try {
-            Map<String, Object> arSession = new HashMap<>();
-            arSession.put("arSessionId", UUID.randomUUID().toString());
-            arSession.put("userId", userId);
-            arSession.put("zoneId", zoneId);
-            arSession.put("latitude", latitude);
-            arSession.put("longitude", longitude);
-            arSession.put("duration", duration);
-            arSession.put("startTime", Timestamp.now());
-            arSession.put("createdAt", LocalDateTime.now());
-            arSession.put("eventType", "AR_SESSION");
-            
-            firestore.collection(USER_SESSIONS_COLLECTION)
-                    .document(arSession.get("arSessionId").toString())
-                    .set(arSession)
-                    .get();
-            
-            log.info("AR session saved: {} for user: {} in zone: {}", arSession.get("arSessionId"), userId, zoneId);
-        } catch (Exception e) {
-            log.error("Error saving AR session: {}", e.getMessage(), e);
-        }
+        AnalyticsRecord session = AnalyticsRecord.builder()
+                .type(TrackedEventType.SESSION)
+                .name("AR_SESSION")
+                .userId(userId)
+                .zoneId(zoneId)
+                .latitude(latitude)
+                .longitude(longitude)
+                .durationSeconds(duration != null ? duration.doubleValue() : null)
+                .build();
+        session.getAttributes().put("startTime", Timestamp.now());
+        eventPipeline.ingest(new TrackedEvent(session));
+        
+        log.info("AR session saved: {} for user: {} in zone: {}", session.getId(), userId, zoneId);
     }
     
     // Métodos privados para obtener métricas
     
     private Long getTotalEvents() throws ExecutionException, InterruptedException {
-        QuerySnapshot snapshot = firestore.collection(ANALYTICS_EVENTS_COLLECTION).get().get();
-        return (long) snapshot.size();
+        // Los eventos genéricos se muestrean: cada documento cuenta por su peso
+        return aggregationService.weightedCount(firestore.collection(ANALYTICS_EVENTS_COLLECTION),
+                AnalyticsEventPipeline.SAMPLING_WEIGHT_FIELD);
     }
     
     private Long getEventsToday() throws ExecutionException, InterruptedException {
@@ -257,12 +157,7 @@ public class FirebaseAnalyticsService {
             LocalDateTime.now().toLocalDate().atStartOfDay().atZone(ZoneId.systemDefault()).toInstant()
         ));
         
-        QuerySnapshot snapshot = firestore.collection(ANALYTICS_EVENTS_COLLECTION)
-                .whereGreaterThanOrEqualTo("timestamp", startOfDay)
-                .get()
-                .get();
-        
-        return (long) snapshot.size();
+        return rollupService.count(ANALYTICS_EVENTS_COLLECTION, startOfDay.toDate().toInstant(), Instant.now());
     }
     
     private Long getEventsThisWeek() throws ExecutionException, InterruptedException {
@@ -270,59 +165,38 @@ public class FirebaseAnalyticsService {
             LocalDateTime.now().minusWeeks(1).atZone(ZoneId.systemDefault()).toInstant()
         ));
         
-        QuerySnapshot snapshot = firestore.collection(ANALYTICS_EVENTS_COLLECTION)
-                .whereGreaterThanOrEqualTo("timestamp", startOfWeek)
-                .get()
-                .get();
-        
-        return (long) snapshot.size();
+        return rollupService.count(ANALYTICS_EVENTS_COLLECTION, startOfWeek.toDate().toInstant(), Instant.now());
     }
     
     private Map<String, Long> getEventsByType() throws ExecutionException, InterruptedException {
-        QuerySnapshot snapshot = firestore.collection(ANALYTICS_EVENTS_COLLECTION).get().get();
-        
-        Map<String, Long> eventsByType = new HashMap<>();
-        
-        for (QueryDocumentSnapshot document : snapshot) {
-            String eventType = document.getString("eventType");
-            if (eventType != null) {
-                eventsByType.put(eventType, eventsByType.getOrDefault(eventType, 0L) + 1);
-            }
-        }
-        
-        return eventsByType;
+        return aggregationService.weightedCountBy(firestore.collection(ANALYTICS_EVENTS_COLLECTION), "eventType",
+                AnalyticsEventPipeline.SAMPLING_WEIGHT_FIELD);
     }
     
     private Map<String, Object> getUserEngagementMetrics() throws ExecutionException, InterruptedException {
         Map<String, Object> metrics = new HashMap<>();
         
         // Total de sesiones
-        QuerySnapshot sessionsSnapshot = firestore.collection(USER_SESSIONS_COLLECTION).get().get();
-        metrics.put("totalSessions", sessionsSnapshot.size());
+        long totalSessions = aggregationService.count(firestore.collection(USER_SESSIONS_COLLECTION));
+        metrics.put("totalSessions", totalSessions);
         
         // Sesiones activas hoy
         Timestamp startOfDay = Timestamp.of(java.util.Date.from(
             LocalDateTime.now().toLocalDate().atStartOfDay().atZone(ZoneId.systemDefault()).toInstant()
         ));
         
-        QuerySnapshot todaySessionsSnapshot = firestore.collection(USER_SESSIONS_COLLECTION)
-                .whereGreaterThanOrEqualTo("startTime", startOfDay)
-                .get()
-                .get();
+        long sessionsToday = rollupService.count(USER_SESSIONS_COLLECTION, startOfDay.toDate().toInstant(), Instant.now());
         
-        metrics.put("activeSessionsToday", todaySessionsSnapshot.size());
+        metrics.put("activeSessionsToday", sessionsToday);
         
         // Total de interacciones sociales
-        QuerySnapshot socialSnapshot = firestore.collection(SOCIAL_INTERACTIONS_COLLECTION).get().get();
-        metrics.put("totalSocialInteractions", socialSnapshot.size());
+        long totalSocial = aggregationService.count(firestore.collection(SOCIAL_INTERACTIONS_COLLECTION));
+        metrics.put("totalSocialInteractions", totalSocial);
         
         // Interacciones sociales hoy
-        QuerySnapshot todaySocialSnapshot = firestore.collection(SOCIAL_INTERACTIONS_COLLECTION)
-                .whereGreaterThanOrEqualTo("timestamp", startOfDay)
-                .get()
-                .get();
+        long socialToday = rollupService.count(SOCIAL_INTERACTIONS_COLLECTION, startOfDay.toDate().toInstant(), Instant.now());
         
-        metrics.put("socialInteractionsToday", todaySocialSnapshot.size());
+        metrics.put("socialInteractionsToday", socialToday);
         
         return metrics;
     }
@@ -335,29 +209,23 @@ public class FirebaseAnalyticsService {
             Map<String, Object> stats = new HashMap<>();
             
             // Sesiones del usuario
-            QuerySnapshot userSessions = firestore.collection(USER_SESSIONS_COLLECTION)
-                    .whereEqualTo("userId", userId)
-                    .get()
-                    .get();
+            long userSessions = aggregationService.count(firestore.collection(USER_SESSIONS_COLLECTION)
+                    .whereEqualTo("userId", userId));
             
-            stats.put("totalSessions", userSessions.size());
+            stats.put("totalSessions", userSessions);
             
             // Interacciones sociales del usuario
-            QuerySnapshot userSocialInteractions = firestore.collection(SOCIAL_INTERACTIONS_COLLECTION)
-                    .whereEqualTo("userId", userId)
-                    .get()
-                    .get();
+            long userSocialInteractions = aggregationService.count(firestore.collection(SOCIAL_INTERACTIONS_COLLECTION)
+                    .whereEqualTo("userId", userId));
             
-            stats.put("totalSocialInteractions", userSocialInteractions.size());
+            stats.put("totalSocialInteractions", userSocialInteractions);
             
             // Vistas de objetos culturales del usuario
-            QuerySnapshot userViews = firestore.collection(ANALYTICS_EVENTS_COLLECTION)
+            long userViews = aggregationService.weightedCount(firestore.collection(ANALYTICS_EVENTS_COLLECTION)
                     .whereEqualTo("userId", userId)
-                    .whereEqualTo("eventType", "CULTURAL_OBJECT_VIEW")
-                    .get()
-                    .get();
+                    .whereEqualTo("eventType", AnalyticsEventPipeline.CULTURAL_OBJECT_VIEW), AnalyticsEventPipeline.SAMPLING_WEIGHT_FIELD);
             
-            stats.put("totalObjectViews", userViews.size());
+            stats.put("totalObjectViews", userViews);
             
             return stats;
         } catch (Exception e) {
@@ -374,27 +242,21 @@ public class FirebaseAnalyticsService {
             Map<String, Object> stats = new HashMap<>();
             
             // Vistas del objeto
-            QuerySnapshot objectViews = firestore.collection(ANALYTICS_EVENTS_COLLECTION)
+            long objectViews = aggregationService.weightedCount(firestore.collection(ANALYTICS_EVENTS_COLLECTION)
                     .whereEqualTo("objectId", objectId)
-                    .whereEqualTo("eventType", "CULTURAL_OBJECT_VIEW")
-                    .get()
-                    .get();
+                    .whereEqualTo("eventType", AnalyticsEventPipeline.CULTURAL_OBJECT_VIEW), AnalyticsEventPipeline.SAMPLING_WEIGHT_FIELD);
             
-            stats.put("totalViews", objectViews.size());
+            stats.put("totalViews", objectViews);
             
             // Vistas hoy
             Timestamp startOfDay = Timestamp.of(java.util.Date.from(
                 LocalDateTime.now().toLocalDate().atStartOfDay().atZone(ZoneId.systemDefault()).toInstant()
             ));
             
-            QuerySnapshot todayViews = firestore.collection(ANALYTICS_EVENTS_COLLECTION)
-                    .whereEqualTo("objectId", objectId)
-                    .whereEqualTo("eventType", "CULTURAL_OBJECT_VIEW")
-                    .whereGreaterThanOrEqualTo("timestamp", startOfDay)
-                    .get()
-                    .get();
+            long todayViews = rollupService.summarize(CULTURAL_OBJECT_VIEWS_METRIC, "objectId", objectId,
+                    startOfDay.toDate().toInstant(), Instant.now()).getCount();
             
-            stats.put("viewsToday", todayViews.size());
+            stats.put("viewsToday", todayViews);
             
             return stats;
         } catch (Exception e) {
@@ -402,4 +264,4 @@ public class FirebaseAnalyticsService {
             return new HashMap<>();
         }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,205 @@
+package com.disrupton.service;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.rpc.ApiStreamObserver;
+import com.google.cloud.firestore.*;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Consultas de agregación de Firestore (count/sum/average) ejecutadas en el servidor
+ * Solo se transfiere el resultado, no los documentos de la colección
+ */
+@Service
+@Slf4j
+public class FirestoreAggregationService {
+
+    /**
+     * Cuenta los documentos que cumplen la consulta
+     */
+    public ApiFuture<Long> countAsync(Query query) {
+        return ApiFutures.transform(query.count().get(), AggregateQuerySnapshot::getCount,
+                MoreExecutors.directExecutor());
+    }
+
+    public long count(Query query) throws ExecutionException, InterruptedException {
+        return countAsync(query).get();
+    }
+
+    /**
+     * Suma un campo numérico (los documentos sin el campo no cuentan)
+     */
+    public ApiFuture<Double> sumAsync(Query query, String field) {
+        AggregateField sum = AggregateField.sum(field);
+        return ApiFutures.transform(query.aggregate(sum).get(), snapshot -> toDouble(snapshot.get(sum)),
+                MoreExecutors.directExecutor());
+    }
+
+    public double sum(Query query, String field) throws ExecutionException, InterruptedException {
+        return sumAsync(query, field).get();
+    }
+
+    /**
+     * Promedio de un campo numérico; 0 si ningún documento tiene el campo
+     */
+    public ApiFuture<Double> averageAsync(Query query, String field) {
+        AggregateField average = AggregateField.average(field);
+        return ApiFutures.transform(query.aggregate(average).get(), snapshot -> toDouble(snapshot.get(average)),
+                MoreExecutors.directExecutor());
+    }
+
+    public double average(Query query, String field) throws ExecutionException, InterruptedException {
+        return averageAsync(query, field).get();
+    }
+
+    /**
+     * Promedio de field incluyendo los documentos viejos que solo tienen el dato en legacyField con
+     * otra escala (valor = legacyField * legacyScale; se toman los legacyField positivos)
+     * Cuántos documentos tienen un campo sale de suma / promedio: dos agregaciones en total.
+     * Supone que los documentos con ambos campos guardan el mismo valor en los dos
+     */
+    public ApiFuture<Double> averageWithLegacyAsync(Query query, String field, String legacyField, double legacyScale) {
+        AggregateField sum = AggregateField.sum(field);
+        AggregateField average = AggregateField.average(field);
+        AggregateField count = AggregateField.count();
+        AggregateField legacySum = AggregateField.sum(legacyField);
+        ApiFuture<AggregateQuerySnapshot> current = query.aggregate(sum, average).get();
+        ApiFuture<AggregateQuerySnapshot> legacy = query.whereGreaterThan(legacyField, 0)
+                .aggregate(count, legacySum, sum, average).get();
+        return ApiFutures.transformAsync(current, all -> ApiFutures.transform(legacy, withLegacy -> {
+            double total = toDouble(all.get(sum));
+            long documents = documentsWith(all, sum, average);
+            // Los que tienen legacyField pero no field
+            long legacyOnly = Math.max(0, withLegacy.getCount() - documentsWith(withLegacy, sum, average));
+            double legacyTotal = Math.max(0.0, toDouble(withLegacy.get(legacySum)) * legacyScale
+                    - toDouble(withLegacy.get(sum)));
+            long n = documents + legacyOnly;
+            return n > 0 ? (total + (legacyOnly > 0 ? legacyTotal : 0.0)) / n : 0.0;
+        }, MoreExecutors.directExecutor()), MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Eventos reales que representan los documentos de la consulta: suma el peso de muestreo y
+     * cuenta como 1 los documentos sin el campo (escritos antes del muestreo)
+     * Con filtros de igualdad requiere el índice compuesto (filtros..., weightField); los de
+     * analytics_events están en firestore.indexes.json
+     */
+    public ApiFuture<Long> weightedCountAsync(Query query, String weightField) {
+        AggregateField count = AggregateField.count();
+        AggregateField sum = AggregateField.sum(weightField);
+        // Las dos consultas salen a la vez; solo se encadenan los resultados
+        ApiFuture<AggregateQuerySnapshot> totals = query.aggregate(count, sum).get();
+        ApiFuture<Long> weighted = countAsync(query.whereGreaterThan(weightField, 0));
+        return ApiFutures.transformAsync(totals, snapshot -> ApiFutures.transform(weighted,
+                withWeight -> Math.round(toDouble(snapshot.get(sum))) + snapshot.getCount() - withWeight,
+                MoreExecutors.directExecutor()), MoreExecutors.directExecutor());
+    }
+
+    public long weightedCount(Query query, String weightField) throws ExecutionException, InterruptedException {
+        return weightedCountAsync(query, weightField).get();
+    }
+
+    /**
+     * Conteo agrupado por el valor de un campo
+     * Firestore no agrupa en el servidor, así que se descarga solo ese campo (proyección)
+     */
+    public Map<String, Long> countBy(Query query, String field) throws ExecutionException, InterruptedException {
+        Map<String, Long> counts = new HashMap<>();
+        for (QueryDocumentSnapshot document : query.select(field).get().get()) {
+            Object value = document.get(field);
+            counts.merge(value != null ? value.toString() : "unknown", 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Como countBy, pero cada documento suma su peso de muestreo (1 si no tiene el campo)
+     */
+    public Map<String, Long> weightedCountBy(Query query, String field, String weightField)
+            throws ExecutionException, InterruptedException {
+        Map<String, Long> counts = new HashMap<>();
+        for (QueryDocumentSnapshot document : query.select(field, weightField).get().get()) {
+            Object value = document.get(field);
+            Long weight = document.getLong(weightField);
+            counts.merge(value != null ? value.toString() : "unknown", weight != null ? weight : 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Recorre los resultados de la consulta a medida que llegan del servidor (server streaming),
+     * sin armar un QuerySnapshot con todos los documentos. El consumidor se llama de a un
+     * documento por vez desde el hilo de gRPC; el futuro termina al llegar el último
+     */
+    public CompletableFuture<Void> streamAsync(Query query, Consumer<DocumentSnapshot> consumer) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        query.stream(new ApiStreamObserver<DocumentSnapshot>() {
+            private Throwable consumerError;
+
+            @Override
+            public void onNext(DocumentSnapshot document) {
+                if (consumerError != null) {
+                    return;
+                }
+                try {
+                    consumer.accept(document);
+                } catch (Throwable t) {
+                    // No se puede cancelar el stream: se ignora el resto y se informa al terminar
+                    consumerError = t;
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                result.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                if (consumerError != null) {
+                    result.completeExceptionally(consumerError);
+                } else {
+                    result.complete(null);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Adapta un ApiFuture de Firestore a CompletableFuture para poder componerlo
+     */
+    public static <T> CompletableFuture<T> toCompletable(ApiFuture<T> future) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ApiFutures.addCallback(future, new ApiFutureCallback<T>() {
+            @Override
+            public void onFailure(Throwable t) {
+                result.completeExceptionally(t);
+            }
+
+            @Override
+            public void onSuccess(T value) {
+                result.complete(value);
+            }
+        }, MoreExecutors.directExecutor());
+        return result;
+    }
+
+    private static long documentsWith(AggregateQuerySnapshot snapshot, AggregateField sum, AggregateField average) {
+        double mean = toDouble(snapshot.get(average));
+        return mean != 0.0 ? Math.round(toDouble(snapshot.get(sum)) / mean) : 0L;
+    }
+
+    private static double toDouble(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0.0;
+    }
+}
@@ -62,6 +62,9 @@ public class SocialInteractionController {
             log.info("Creating new social interaction for user: {}", request.getUserId());
             SocialInteractionDto createdInteraction = socialInteractionService.createInteraction(request);
             return ResponseEntity.ok(createdInteraction);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid social interaction: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error creating interaction: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
@@ -1,11 +1,13 @@
 package com.disrupton.socialInteraction.dto;
 
 import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.annotation.IgnoreExtraProperties;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Data
+@IgnoreExtraProperties
 @NoArgsConstructor
 @AllArgsConstructor
 public class SocialInteractionDto {
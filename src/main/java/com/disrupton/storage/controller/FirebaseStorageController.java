@@ -1,12 +1,17 @@
 package com.disrupton.storage.controller;
 
+import com.disrupton.cultural.service.FirebaseCulturalObjectService;
+import com.disrupton.storage.model.ModelUploadResult;
+import com.disrupton.storage.model.StoredBlob;
 import com.disrupton.storage.service.FirebaseStorageService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -18,6 +23,7 @@ import java.util.Map;
 public class FirebaseStorageController {
     
     private final FirebaseStorageService storageService;
+    private final FirebaseCulturalObjectService culturalObjectService;
     
     /**
      * Subir modelo 3D
@@ -26,21 +32,37 @@ public class FirebaseStorageController {
     public ResponseEntity<Map<String, Object>> uploadModel3D(
             @RequestParam("file") MultipartFile file,
             @RequestParam("userId") String userId,
-            @RequestParam("modelId") String modelId) {
+            @RequestParam("modelId") String modelId,
+            @RequestParam(value = "culturalObjectId", required = false) String culturalObjectId) {
         
         try {
             log.info("📁 Subiendo modelo 3D: {} para usuario: {}", file.getOriginalFilename(), userId);
             
-            String downloadUrl = storageService.uploadModel3D(file, userId, modelId);
+            ModelUploadResult result = storageService.uploadModel3DWithStats(file, userId, modelId);
+            
+            // Guardar URL y estadísticas en el objeto cultural si se indicó
+            if (culturalObjectId != null && !culturalObjectId.isBlank()) {
+                culturalObjectService.updateModelUrl(culturalObjectId, result.getDownloadUrl(), result.getModelStats());
+            }
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("downloadUrl", downloadUrl);
+            response.put("downloadUrl", result.getDownloadUrl());
             response.put("fileName", file.getOriginalFilename());
             response.put("fileSize", file.getSize());
+            response.put("modelStats", result.getModelStats());
             
             return ResponseEntity.ok(response);
             
+        } catch (IllegalArgumentException e) {
+            log.warn("⚠️ Modelo 3D rechazado: {}", e.getMessage());
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("error", e.getMessage());
+            
+            return ResponseEntity.badRequest().body(response);
+            
         } catch (Exception e) {
             log.error("❌ Error al subir modelo 3D: {}", e.getMessage(), e);
             
@@ -211,6 +233,50 @@ public class FirebaseStorageController {
         }
     }
 
+    /**
+     * Descargar el contenido de un archivo (usado por las URLs del backend local)
+     */
+    @GetMapping("/download")
+    public ResponseEntity<byte[]> downloadFile(@RequestParam("filePath") String filePath) {
+        
+        try {
+            StoredBlob metadata = storageService.getFileMetadata(filePath);
+            if (metadata == null) {
+                return ResponseEntity.notFound().build();
+            }
+            
+            ByteBuffer buffer = storageService.readFile(filePath);
+            byte[] content = new byte[buffer.remaining()];
+            buffer.get(content);
+            
+            MediaType contentType = metadata.getContentType() != null
+                    ? MediaType.parseMediaType(metadata.getContentType())
+                    : MediaType.APPLICATION_OCTET_STREAM;
+            
+            return ResponseEntity.ok()
+                    .contentType(contentType)
+                    .contentLength(content.length)
+                    .body(content);
+            
+        } catch (Exception e) {
+            log.error("❌ Error al descargar archivo: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    /**
+     * Estadísticas de la caché de metadatos de Storage
+     */
+    @GetMapping("/cache-stats")
+    public ResponseEntity<Map<String, Object>> getMetadataCacheStats() {
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("metadataCache", storageService.getMetadataCacheStats());
+        
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Subir imágenes para comentarios del mural
      */
@@ -0,0 +1,48 @@
+package com.disrupton.storage.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Estadísticas de complejidad de un modelo GLB (glTF binario)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GlbStats {
+    private Integer gltfVersion;
+    private Long totalBytes;
+    private Long jsonBytes;
+    private Long binBytes;
+    private Integer meshCount;
+    private Integer primitiveCount;
+    private Long vertexCount;
+    private Long triangleCount;
+    private Integer materialCount;
+    private Integer textureCount;
+    private Integer imageCount;
+    private Integer nodeCount;
+    private Integer animationCount;
+
+    /**
+     * Representación como metadatos de blob (todos los valores como texto)
+     */
+    public Map<String, String> toMetadata() {
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("glbVersion", String.valueOf(gltfVersion));
+        metadata.put("glbTotalBytes", String.valueOf(totalBytes));
+        metadata.put("glbBinBytes", String.valueOf(binBytes));
+        metadata.put("glbMeshes", String.valueOf(meshCount));
+        metadata.put("glbPrimitives", String.valueOf(primitiveCount));
+        metadata.put("glbVertices", String.valueOf(vertexCount));
+        metadata.put("glbTriangles", String.valueOf(triangleCount));
+        metadata.put("glbMaterials", String.valueOf(materialCount));
+        metadata.put("glbTextures", String.valueOf(textureCount));
+        metadata.put("glbImages", String.valueOf(imageCount));
+        return metadata;
+    }
+}
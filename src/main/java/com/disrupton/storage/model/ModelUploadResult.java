@@ -0,0 +1,18 @@
+package com.disrupton.storage.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado de subir un modelo 3D: URL, ruta en Storage y estadísticas del GLB (si aplica)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ModelUploadResult {
+    private String downloadUrl;
+    private String filePath;
+    private Long size; // en bytes
+    private GlbStats modelStats; // null si el archivo no es GLB
+}
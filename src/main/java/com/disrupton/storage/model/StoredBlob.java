@@ -0,0 +1,25 @@
+package com.disrupton.storage.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Metadatos de un archivo guardado en un BlobStore
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredBlob {
+    private String path;
+    private String mediaLink; // URL de descarga
+    private Long size; // en bytes
+    private String contentType;
+    private Long createTime; // epoch millis
+    private Long updateTime; // epoch millis
+    private Map<String, String> metadata;
+}
@@ -0,0 +1,173 @@
+package com.disrupton.storage.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Caché en memoria de metadatos de blobs (existencia y URL pública)
+ * Guarda también los objetos inexistentes (caché negativa) y expira por TTL y tamaño máximo
+ *
+ * Una consulta a Storage puede terminar después de una subida o un borrado del mismo blob: por eso
+ * cada invalidate incrementa una generación (por franja de hash de la ruta) y los put descartan el
+ * resultado si la generación cambió desde que empezó la consulta
+ */
+@Component
+@Slf4j
+public class BlobMetadataCache {
+
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    // Generaciones por franja: acotadas en memoria; una colisión solo evita cachear esa consulta
+    private static final int GENERATION_STRIPES = 1024;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    // LinkedHashMap en orden de acceso para expulsar la entrada menos usada
+    private final LinkedHashMap<String, Entry> entries;
+
+    public BlobMetadataCache(
+            @Value("${storage.metadata-cache.ttl-seconds:300}") long ttlSeconds,
+            @Value("${storage.metadata-cache.max-entries:10000}") int maxEntries) {
+        this.ttlMillis = ttlSeconds * 1000L;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > BlobMetadataCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Busca un blob en caché. Devuelve null si no hay entrada válida;
+     * si la hay, {@link Entry#exists()} indica si el objeto existe en el bucket
+     */
+    public Entry lookup(String filePath) {
+        synchronized (entries) {
+            Entry entry = entries.get(filePath);
+            if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+                hits.incrementAndGet();
+                return entry;
+            }
+            if (entry != null) {
+                entries.remove(filePath);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Generación actual del blob; leerla antes de consultar Storage y pasarla a putPresent/putMissing
+     */
+    public long generation(String filePath) {
+        return generations.get(stripe(filePath));
+    }
+
+    /**
+     * Registra un blob existente con su URL pública, salvo que se haya invalidado desde generation
+     */
+    public Entry putPresent(String filePath, String mediaLink, long generation) {
+        return put(filePath, new Entry(true, mediaLink, System.currentTimeMillis() + ttlMillis), generation);
+    }
+
+    /**
+     * Registra un blob inexistente (caché negativa), salvo que se haya invalidado desde generation
+     */
+    public Entry putMissing(String filePath, long generation) {
+        return put(filePath, new Entry(false, null, System.currentTimeMillis() + ttlMillis), generation);
+    }
+
+    /**
+     * Elimina la entrada de un blob (tras subirlo o borrarlo)
+     */
+    public void invalidate(String filePath) {
+        synchronized (entries) {
+            generations.incrementAndGet(stripe(filePath));
+            entries.remove(filePath);
+        }
+    }
+
+    /**
+     * Vacía toda la caché
+     */
+    public void clear() {
+        synchronized (entries) {
+            for (int i = 0; i < GENERATION_STRIPES; i++) {
+                generations.incrementAndGet(i);
+            }
+            entries.clear();
+        }
+        log.info("🧹 Caché de metadatos de Storage vaciada");
+    }
+
+    /**
+     * Contadores de aciertos/fallos para exponer en el API
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("evictions", evictions.get());
+        stats.put("hitRate", total > 0 ? (double) hitCount / total : 0.0);
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlSeconds", ttlMillis / 1000L);
+        return stats;
+    }
+
+    private Entry put(String filePath, Entry entry, long generation) {
+        if (ttlMillis > 0 && maxEntries > 0) {
+            // La comparación y el put bajo el mismo lock que invalidate: no se cuela un valor viejo
+            synchronized (entries) {
+                if (generations.get(stripe(filePath)) == generation) {
+                    entries.put(filePath, entry);
+                }
+            }
+        }
+        return entry;
+    }
+
+    private static int stripe(String filePath) {
+        return Math.floorMod(filePath.hashCode(), GENERATION_STRIPES);
+    }
+
+    /**
+     * Entrada de la caché: existencia y URL pública del blob
+     */
+    public static final class Entry {
+        private final boolean exists;
+        private final String mediaLink;
+        private final long expiresAt;
+
+        private Entry(boolean exists, String mediaLink, long expiresAt) {
+            this.exists = exists;
+            this.mediaLink = mediaLink;
+            this.expiresAt = expiresAt;
+        }
+
+        public boolean exists() { return exists; }
+        public String getMediaLink() { return mediaLink; }
+    }
+}
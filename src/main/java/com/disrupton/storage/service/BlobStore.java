@@ -0,0 +1,57 @@
+package com.disrupton.storage.service;
+
+import com.disrupton.storage.model.StoredBlob;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Abstracción del almacenamiento de archivos (GCS/Firebase Storage o disco local)
+ * Las rutas siguen las mismas convenciones en todos los backends (models/..., avatars/glb/...)
+ */
+public interface BlobStore {
+
+    /**
+     * Guarda un archivo a partir de un arreglo de bytes
+     */
+    StoredBlob put(String path, String contentType, Map<String, String> metadata, byte[] content) throws IOException;
+
+    /**
+     * Guarda un archivo leyendo el stream sin cargarlo completo en memoria
+     */
+    StoredBlob put(String path, String contentType, Map<String, String> metadata, InputStream content) throws IOException;
+
+    /**
+     * Guarda un archivo a partir de un archivo local
+     */
+    StoredBlob put(String path, String contentType, Map<String, String> metadata, Path source) throws IOException;
+
+    /**
+     * Obtiene los metadatos de un archivo, o null si no existe
+     */
+    StoredBlob get(String path);
+
+    /**
+     * Elimina un archivo. Devuelve false si no existía
+     */
+    boolean delete(String path);
+
+    /**
+     * Lista los archivos cuya ruta empieza con el prefijo indicado
+     */
+    List<StoredBlob> list(String prefix);
+
+    /**
+     * Lee el contenido completo de un archivo
+     */
+    ByteBuffer read(String path) throws IOException;
+
+    /**
+     * URL pública directa de un archivo (sin consultar metadatos)
+     */
+    String publicUrl(String path);
+}
@@ -1,48 +1,71 @@
 package com.disrupton.storage.service;
 
-import com.google.cloud.storage.*;
+import com.disrupton.storage.model.GlbStats;
+import com.disrupton.storage.model.ModelUploadResult;
+import com.disrupton.storage.model.StoredBlob;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
 import java.util.UUID;
 
 @Service
 @Slf4j
 public class FirebaseStorageService {
 
-    @Value("${firebase.project.storage.bucket:disrupton-new.firebasestorage.app}")  // ✅ Correcto
-    private String bucketName;
-
-    private final Storage storage; // ✅ Inyectar el bean configurado
+    private final BlobStore blobStore; // ✅ GCS o disco local según storage.backend
+    private final BlobMetadataCache metadataCache;
+    private final GlbInspector glbInspector;
 
     // Constructor para inyección de dependencias
-    public FirebaseStorageService(Storage storage) {
-        this.storage = storage;
+    public FirebaseStorageService(BlobStore blobStore, BlobMetadataCache metadataCache, GlbInspector glbInspector) {
+        this.blobStore = blobStore;
+        this.metadataCache = metadataCache;
+        this.glbInspector = glbInspector;
     }
     /**
      * Sube un archivo 3D (modelo) a Firebase Storage
      */
     public String uploadModel3D(MultipartFile file, String userId, String modelId) throws IOException {
+        return uploadModel3DWithStats(file, userId, modelId).getDownloadUrl();
+    }
+
+    /**
+     * Sube un archivo 3D y, si es GLB, lo valida y devuelve sus estadísticas de complejidad
+     */
+    public ModelUploadResult uploadModel3DWithStats(MultipartFile file, String userId, String modelId) throws IOException {
         log.info("📁 Subiendo modelo 3D: {} para usuario: {}", file.getOriginalFilename(), userId);
         
         String fileName = generateFileName(file.getOriginalFilename(), "models");
         String filePath = String.format("models/%s/%s/%s", userId, modelId, fileName);
         
-        BlobId blobId = BlobId.of(bucketName, filePath);
-        BlobInfo blobInfo = BlobInfo.newBuilder(blobId)
-                .setContentType(file.getContentType())
-                .build();
+        StoredBlob blob;
+        GlbStats stats = null;
         
-        Blob blob = storage.create(blobInfo, file.getBytes());
+        if (isGLBFile(file)) {
+            // Se copia a un archivo temporal para mapearlo en memoria y subirlo desde disco
+            Path tempFile = Files.createTempFile("model-upload-", ".glb");
+            try {
+                file.transferTo(tempFile);
+                stats = glbInspector.inspect(tempFile);
+                blob = blobStore.put(filePath, "model/gltf-binary", stats.toMetadata(), tempFile);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } else {
+            blob = blobStore.put(filePath, file.getContentType(), null, file.getBytes());
+        }
+        metadataCache.invalidate(filePath);
         
         String downloadUrl = blob.getMediaLink();
         log.info("✅ Modelo 3D subido exitosamente: {}", downloadUrl);
         
-        return downloadUrl;
+        return new ModelUploadResult(downloadUrl, filePath, blob.getSize(), stats);
     }
 
     /**
@@ -54,12 +77,8 @@ public class FirebaseStorageService {
         String fileName = generateFileName(file.getOriginalFilename(), "thumbnails");
         String filePath = String.format("thumbnails/%s/%s/%s", userId, modelId, fileName);
         
-        BlobId blobId = BlobId.of(bucketName, filePath);
-        BlobInfo blobInfo = BlobInfo.newBuilder(blobId)
-                .setContentType(file.getContentType())
-                .build();
-        
-        Blob blob = storage.create(blobInfo, file.getBytes());
+        StoredBlob blob = blobStore.put(filePath, file.getContentType(), null, file.getBytes());
+        metadataCache.invalidate(filePath);
         
         String downloadUrl = blob.getMediaLink();
         log.info("✅ Thumbnail subido exitosamente: {}", downloadUrl);
@@ -80,12 +99,8 @@ public class FirebaseStorageService {
             String fileName = generateFileName(file.getOriginalFilename(), "processing");
             String filePath = String.format("processing/%s/%s/%s", userId, modelId, fileName);
             
-            BlobId blobId = BlobId.of(bucketName, filePath);
-            BlobInfo blobInfo = BlobInfo.newBuilder(blobId)
-                    .setContentType(file.getContentType())
-                    .build();
-            
-            Blob blob = storage.create(blobInfo, file.getBytes());
+            StoredBlob blob = blobStore.put(filePath, file.getContentType(), null, file.getBytes());
+            metadataCache.invalidate(filePath);
             urls[i] = blob.getMediaLink();
         }
         
@@ -100,8 +115,8 @@ public class FirebaseStorageService {
         try {
             log.info("🗑️ Eliminando archivo: {}", filePath);
             
-            BlobId blobId = BlobId.of(bucketName, filePath);
-            boolean deleted = storage.delete(blobId);
+            boolean deleted = blobStore.delete(filePath);
+            metadataCache.invalidate(filePath);
             
             if (deleted) {
                 log.info("✅ Archivo eliminado exitosamente: {}", filePath);
@@ -121,11 +136,10 @@ public class FirebaseStorageService {
      */
     public String getPublicUrl(String filePath) {
         try {
-            BlobId blobId = BlobId.of(bucketName, filePath);
-            Blob blob = storage.get(blobId);
+            BlobMetadataCache.Entry entry = lookupMetadata(filePath);
             
-            if (blob != null) {
-                return blob.getMediaLink();
+            if (entry.exists()) {
+                return entry.getMediaLink();
             } else {
                 log.warn("⚠️ Archivo no encontrado: {}", filePath);
                 return null;
@@ -136,6 +150,53 @@ public class FirebaseStorageService {
         }
     }
 
+    /**
+     * Obtiene los metadatos de un blob desde la caché o, si no están, desde Storage
+     */
+    private BlobMetadataCache.Entry lookupMetadata(String filePath) {
+        BlobMetadataCache.Entry cached = metadataCache.lookup(filePath);
+        if (cached != null) {
+            return cached;
+        }
+        
+        // Si una subida o un borrado invalida la ruta mientras tanto, el resultado no se cachea
+        long generation = metadataCache.generation(filePath);
+        StoredBlob blob = blobStore.get(filePath);
+        return blob != null
+                ? metadataCache.putPresent(filePath, blob.getMediaLink(), generation)
+                : metadataCache.putMissing(filePath, generation);
+    }
+
+    /**
+     * Lee el contenido de un archivo (mapeado en memoria con el backend local)
+     */
+    public ByteBuffer readFile(String filePath) throws IOException {
+        return blobStore.read(filePath);
+    }
+
+    /**
+     * Obtiene los metadatos de un archivo, o null si no existe
+     */
+    public StoredBlob getFileMetadata(String filePath) {
+        return blobStore.get(filePath);
+    }
+
+    /**
+     * Estadísticas de la caché de metadatos (aciertos, fallos, tamaño)
+     */
+    public Map<String, Object> getMetadataCacheStats() {
+        return metadataCache.getStats();
+    }
+
+    /**
+     * Indica si el archivo subido es un modelo GLB (por extensión o content type)
+     */
+    private boolean isGLBFile(MultipartFile file) {
+        String fileName = file.getOriginalFilename();
+        return (fileName != null && fileName.toLowerCase().endsWith(".glb"))
+                || "model/gltf-binary".equals(file.getContentType());
+    }
+
     /**
      * Genera un nombre de archivo único
      */
@@ -154,9 +215,7 @@ public class FirebaseStorageService {
      */
     public boolean fileExists(String filePath) {
         try {
-            BlobId blobId = BlobId.of(bucketName, filePath);
-            Blob blob = storage.get(blobId);
-            return blob != null;
+            return lookupMetadata(filePath).exists();
         } catch (Exception e) {
             log.error("❌ Error al verificar archivo: {}", e.getMessage(), e);
             return false;
@@ -175,16 +234,13 @@ public class FirebaseStorageService {
             String fileName = generateFileName(file.getOriginalFilename(), "comment");
             String filePath = String.format("comments/%s/%s/%s", userId, commentId, fileName);
 
-            BlobId blobId = BlobId.of(bucketName, filePath);
-            BlobInfo blobInfo = BlobInfo.newBuilder(blobId)
-                    .setContentType(file.getContentType())
-                    .build();
 
             // ✅ SIMPLE: Solo crear el blob
-            Blob blob = storage.create(blobInfo, file.getBytes());
+            blobStore.put(filePath, file.getContentType(), null, file.getBytes());
+            metadataCache.invalidate(filePath);
 
             // ✅ URL directa (funciona por tu configuración IAM)
-            urls[i] = String.format("https://storage.googleapis.com/%s/%s", bucketName, filePath);
+            urls[i] = blobStore.publicUrl(filePath);
         }
 
         log.info("✅ {} imágenes subidas para comentario", files.length);
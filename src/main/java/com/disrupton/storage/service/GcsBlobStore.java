@@ -0,0 +1,106 @@
+package com.disrupton.storage.service;
+
+import com.disrupton.storage.model.StoredBlob;
+import com.google.cloud.storage.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BlobStore sobre Google Cloud Storage (bucket de Firebase Storage)
+ */
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "gcs", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class GcsBlobStore implements BlobStore {
+
+    @Value("${firebase.project.storage.bucket:disrupton-new.firebasestorage.app}")
+    private String bucketName;
+
+    private final Storage storage;
+
+    @Override
+    public StoredBlob put(String path, String contentType, Map<String, String> metadata, byte[] content) {
+        Blob blob = storage.create(blobInfo(path, contentType, metadata), content);
+        return toStoredBlob(blob);
+    }
+
+    @Override
+    public StoredBlob put(String path, String contentType, Map<String, String> metadata, InputStream content) throws IOException {
+        Blob blob = storage.createFrom(blobInfo(path, contentType, metadata), content);
+        return toStoredBlob(blob);
+    }
+
+    @Override
+    public StoredBlob put(String path, String contentType, Map<String, String> metadata, Path source) throws IOException {
+        Blob blob = storage.createFrom(blobInfo(path, contentType, metadata), source);
+        return toStoredBlob(blob);
+    }
+
+    @Override
+    public StoredBlob get(String path) {
+        Blob blob = storage.get(BlobId.of(bucketName, path));
+        return blob != null ? toStoredBlob(blob) : null;
+    }
+
+    @Override
+    public boolean delete(String path) {
+        return storage.delete(BlobId.of(bucketName, path));
+    }
+
+    @Override
+    public List<StoredBlob> list(String prefix) {
+        List<StoredBlob> blobs = new ArrayList<>();
+        for (Blob blob : storage.list(bucketName, Storage.BlobListOption.prefix(prefix)).iterateAll()) {
+            blobs.add(toStoredBlob(blob));
+        }
+        return blobs;
+    }
+
+    @Override
+    public ByteBuffer read(String path) {
+        return ByteBuffer.wrap(storage.readAllBytes(BlobId.of(bucketName, path)));
+    }
+
+    @Override
+    public String publicUrl(String path) {
+        return String.format("https://storage.googleapis.com/%s/%s", bucketName, path);
+    }
+
+    private BlobInfo blobInfo(String path, String contentType, Map<String, String> metadata) {
+        BlobInfo.Builder builder = BlobInfo.newBuilder(BlobId.of(bucketName, path))
+                .setContentType(contentType);
+        if (metadata != null && !metadata.isEmpty()) {
+            builder.setMetadata(metadata);
+        }
+        return builder.build();
+    }
+
+    private StoredBlob toStoredBlob(Blob blob) {
+        return StoredBlob.builder()
+                .path(blob.getName())
+                .mediaLink(blob.getMediaLink())
+                .size(blob.getSize())
+                .contentType(blob.getContentType())
+                .createTime(toEpochMillis(blob.getCreateTimeOffsetDateTime()))
+                .updateTime(toEpochMillis(blob.getUpdateTimeOffsetDateTime()))
+                .metadata(blob.getMetadata())
+                .build();
+    }
+
+    private static Long toEpochMillis(OffsetDateTime time) {
+        return time != null ? time.toInstant().toEpochMilli() : null;
+    }
+}
@@ -0,0 +1,265 @@
+package com.disrupton.storage.service;
+
+import com.disrupton.exception.InvalidModelException;
+import com.disrupton.storage.model.GlbStats;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Valida e inspecciona modelos GLB (glTF 2.0 binario) mapeando el archivo en memoria
+ * Verifica cabecera, tabla de chunks y límites del JSON, y extrae estadísticas
+ * sin copiar el chunk BIN. Rechaza los modelos que exceden los límites configurados
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GlbInspector {
+
+    private static final int GLB_MAGIC = 0x46546C67; // "glTF"
+    private static final int CHUNK_TYPE_JSON = 0x4E4F534A; // "JSON"
+    private static final int CHUNK_TYPE_BIN = 0x004E4942; // "BIN\0"
+    private static final int HEADER_LENGTH = 12;
+    private static final int CHUNK_HEADER_LENGTH = 8;
+
+    // Modos de primitiva glTF
+    private static final int MODE_TRIANGLES = 4;
+    private static final int MODE_TRIANGLE_STRIP = 5;
+    private static final int MODE_TRIANGLE_FAN = 6;
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${storage.glb.max-bytes:52428800}")
+    private long maxBytes;
+
+    @Value("${storage.glb.max-vertices:1000000}")
+    private long maxVertices;
+
+    @Value("${storage.glb.max-triangles:1000000}")
+    private long maxTriangles;
+
+    @Value("${storage.glb.max-meshes:256}")
+    private int maxMeshes;
+
+    @Value("${storage.glb.max-textures:32}")
+    private int maxTextures;
+
+    /**
+     * Inspecciona un archivo GLB en disco y aplica los límites de complejidad
+     */
+    public GlbStats inspect(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > maxBytes) {
+                throw new InvalidModelException(String.format(
+                        "El archivo GLB excede el tamaño máximo permitido (%d > %d bytes)", size, maxBytes));
+            }
+            if (size < HEADER_LENGTH) {
+                throw new InvalidModelException("El archivo es demasiado pequeño para ser un GLB válido");
+            }
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            GlbStats stats = inspect(buffer);
+            enforceBudgets(stats);
+
+            log.info("🔎 GLB inspeccionado: {} mallas, {} vértices, {} triángulos, {} texturas, {} bytes",
+                    stats.getMeshCount(), stats.getVertexCount(), stats.getTriangleCount(),
+                    stats.getTextureCount(), stats.getTotalBytes());
+            return stats;
+        }
+    }
+
+    /**
+     * Valida la estructura binaria y extrae estadísticas de un GLB ya mapeado
+     */
+    public GlbStats inspect(ByteBuffer source) throws IOException {
+        ByteBuffer buffer = source.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        long total = buffer.limit();
+
+        // Cabecera de 12 bytes: magic, versión, longitud total
+        if (total < HEADER_LENGTH || buffer.getInt(0) != GLB_MAGIC) {
+            throw new InvalidModelException("El archivo no es un GLB válido (magic incorrecto)");
+        }
+        int version = buffer.getInt(4);
+        if (version != 2) {
+            throw new InvalidModelException("Versión de GLB no soportada: " + version);
+        }
+        long declaredLength = Integer.toUnsignedLong(buffer.getInt(8));
+        if (declaredLength != total) {
+            throw new InvalidModelException(String.format(
+                    "La longitud declarada del GLB (%d) no coincide con el tamaño del archivo (%d)", declaredLength, total));
+        }
+
+        // Tabla de chunks: el primero debe ser JSON, el BIN (opcional) debe ser el segundo
+        JsonNode gltf = null;
+        long jsonBytes = 0;
+        long binBytes = 0;
+        long offset = HEADER_LENGTH;
+        int chunkIndex = 0;
+
+        while (offset < total) {
+            if (total - offset < CHUNK_HEADER_LENGTH) {
+                throw new InvalidModelException("Cabecera de chunk truncada en el byte " + offset);
+            }
+            long chunkLength = Integer.toUnsignedLong(buffer.getInt((int) offset));
+            int chunkType = buffer.getInt((int) offset + 4);
+            long dataStart = offset + CHUNK_HEADER_LENGTH;
+            long dataEnd = dataStart + chunkLength;
+
+            if (dataEnd > total) {
+                throw new InvalidModelException("Chunk " + chunkIndex + " excede los límites del archivo");
+            }
+            if (chunkLength % 4 != 0) {
+                throw new InvalidModelException("Chunk " + chunkIndex + " no está alineado a 4 bytes");
+            }
+
+            if (chunkIndex == 0) {
+                if (chunkType != CHUNK_TYPE_JSON || chunkLength == 0) {
+                    throw new InvalidModelException("El primer chunk del GLB debe ser JSON");
+                }
+                // Solo se copia el JSON; el BIN se queda en el buffer mapeado
+                byte[] json = new byte[(int) chunkLength];
+                buffer.get((int) dataStart, json);
+                gltf = objectMapper.readTree(json);
+                jsonBytes = chunkLength;
+            } else if (chunkType == CHUNK_TYPE_BIN) {
+                if (chunkIndex != 1) {
+                    throw new InvalidModelException("El chunk BIN debe ser el segundo chunk del GLB");
+                }
+                binBytes = chunkLength;
+            } else if (chunkType == CHUNK_TYPE_JSON) {
+                throw new InvalidModelException("El GLB contiene más de un chunk JSON");
+            }
+            // Otros tipos de chunk se ignoran según la especificación
+
+            offset = dataEnd;
+            chunkIndex++;
+        }
+
+        if (gltf == null || !gltf.isObject()) {
+            throw new InvalidModelException("El chunk JSON del GLB no es un objeto glTF válido");
+        }
+
+        validateBuffers(gltf, binBytes);
+        return collectStats(gltf, version, total, jsonBytes, binBytes);
+    }
+
+    // Métodos privados de utilidad
+
+    private void validateBuffers(JsonNode gltf, long binBytes) {
+        String assetVersion = gltf.path("asset").path("version").asText("");
+        if (!assetVersion.startsWith("2")) {
+            throw new InvalidModelException("asset.version del glTF no es 2.x: " + assetVersion);
+        }
+
+        JsonNode buffers = gltf.path("buffers");
+        for (int i = 0; i < buffers.size(); i++) {
+            JsonNode buf = buffers.get(i);
+            long byteLength = buf.path("byteLength").asLong(-1);
+            if (byteLength < 0) {
+                throw new InvalidModelException("buffers[" + i + "] no declara byteLength");
+            }
+            // El buffer 0 sin uri vive en el chunk BIN
+            if (i == 0 && !buf.has("uri") && byteLength > binBytes) {
+                throw new InvalidModelException("buffers[0] excede el tamaño del chunk BIN");
+            }
+        }
+
+        JsonNode bufferViews = gltf.path("bufferViews");
+        for (int i = 0; i < bufferViews.size(); i++) {
+            JsonNode view = bufferViews.get(i);
+            int bufferIndex = view.path("buffer").asInt(-1);
+            if (bufferIndex < 0 || bufferIndex >= buffers.size()) {
+                throw new InvalidModelException("bufferViews[" + i + "] referencia un buffer inexistente");
+            }
+            long end = view.path("byteOffset").asLong(0) + view.path("byteLength").asLong(0);
+            if (end > buffers.get(bufferIndex).path("byteLength").asLong(0)) {
+                throw new InvalidModelException("bufferViews[" + i + "] excede los límites de su buffer");
+            }
+        }
+    }
+
+    private GlbStats collectStats(JsonNode gltf, int version, long total, long jsonBytes, long binBytes) {
+        JsonNode accessors = gltf.path("accessors");
+        JsonNode meshes = gltf.path("meshes");
+
+        int primitiveCount = 0;
+        long vertexCount = 0;
+        long triangleCount = 0;
+
+        for (JsonNode mesh : meshes) {
+            for (JsonNode primitive : mesh.path("primitives")) {
+                primitiveCount++;
+
+                long vertices = accessorCount(accessors, primitive.path("attributes").path("POSITION"));
+                vertexCount += vertices;
+
+                long elements = primitive.has("indices")
+                        ? accessorCount(accessors, primitive.path("indices"))
+                        : vertices;
+                int mode = primitive.path("mode").asInt(MODE_TRIANGLES);
+                if (mode == MODE_TRIANGLES) {
+                    triangleCount += elements / 3;
+                } else if ((mode == MODE_TRIANGLE_STRIP || mode == MODE_TRIANGLE_FAN) && elements >= 3) {
+                    triangleCount += elements - 2;
+                }
+            }
+        }
+
+        GlbStats stats = new GlbStats();
+        stats.setGltfVersion(version);
+        stats.setTotalBytes(total);
+        stats.setJsonBytes(jsonBytes);
+        stats.setBinBytes(binBytes);
+        stats.setMeshCount(meshes.size());
+        stats.setPrimitiveCount(primitiveCount);
+        stats.setVertexCount(vertexCount);
+        stats.setTriangleCount(triangleCount);
+        stats.setMaterialCount(gltf.path("materials").size());
+        stats.setTextureCount(gltf.path("textures").size());
+        stats.setImageCount(gltf.path("images").size());
+        stats.setNodeCount(gltf.path("nodes").size());
+        stats.setAnimationCount(gltf.path("animations").size());
+        return stats;
+    }
+
+    private long accessorCount(JsonNode accessors, JsonNode indexNode) {
+        if (indexNode.isMissingNode()) {
+            return 0;
+        }
+        int index = indexNode.asInt(-1);
+        if (index < 0 || index >= accessors.size()) {
+            throw new InvalidModelException("Referencia a accessor inexistente: " + index);
+        }
+        return accessors.get(index).path("count").asLong(0);
+    }
+
+    private void enforceBudgets(GlbStats stats) {
+        if (stats.getVertexCount() > maxVertices) {
+            throw new InvalidModelException(String.format(
+                    "El modelo tiene demasiados vértices (%d > %d)", stats.getVertexCount(), maxVertices));
+        }
+        if (stats.getTriangleCount() > maxTriangles) {
+            throw new InvalidModelException(String.format(
+                    "El modelo tiene demasiados triángulos (%d > %d)", stats.getTriangleCount(), maxTriangles));
+        }
+        if (stats.getMeshCount() > maxMeshes) {
+            throw new InvalidModelException(String.format(
+                    "El modelo tiene demasiadas mallas (%d > %d)", stats.getMeshCount(), maxMeshes));
+        }
+        if (stats.getTextureCount() > maxTextures) {
+            throw new InvalidModelException(String.format(
+                    "El modelo tiene demasiadas texturas (%d > %d)", stats.getTextureCount(), maxTextures));
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.disrupton.storage.service;
+
+import com.disrupton.storage.model.StoredBlob;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * BlobStore sobre el sistema de archivos local (NIO)
+ * Escribe con transferencias de FileChannel y lee con archivos mapeados en memoria.
+ * Pensado para despliegues de un solo nodo y para medir el rendimiento de subidas sin bucket
+ */
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+@Slf4j
+public class LocalBlobStore implements BlobStore {
+
+    // Los metadatos (content type y metadata de usuario) se guardan en un archivo hermano
+    private static final String META_SUFFIX = ".blobmeta.properties";
+    private static final String CONTENT_TYPE_KEY = "__contentType";
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+
+    private final Path root;
+    private final String publicBaseUrl;
+
+    public LocalBlobStore(
+            @Value("${storage.local.root:./local-storage}") String root,
+            @Value("${storage.local.public-base-url:http://localhost:8080/api/firebase/storage/download}") String publicBaseUrl)
+            throws IOException {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        this.publicBaseUrl = publicBaseUrl;
+        Files.createDirectories(this.root);
+        log.info("💾 BlobStore local inicializado en: {}", this.root);
+    }
+
+    @Override
+    public StoredBlob put(String path, String contentType, Map<String, String> metadata, byte[] content) throws IOException {
+        Path target = resolve(path);
+        Path tmp = tempFileFor(target);
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        }
+        return commit(path, tmp, target, contentType, metadata);
+    }
+
+    @Override
+    public StoredBlob put(String path, String contentType, Map<String, String> metadata, InputStream content) throws IOException {
+        Path target = resolve(path);
+        Path tmp = tempFileFor(target);
+        try (ReadableByteChannel in = Channels.newChannel(content);
+             FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            long transferred;
+            while ((transferred = out.transferFrom(in, position, TRANSFER_CHUNK)) > 0) {
+                position += transferred;
+            }
+        }
+        return commit(path, tmp, target, contentType, metadata);
+    }
+
+    @Override
+    public StoredBlob put(String path, String contentType, Map<String, String> metadata, Path source) throws IOException {
+        Path target = resolve(path);
+        Path tmp = tempFileFor(target);
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+        return commit(path, tmp, target, contentType, metadata);
+    }
+
+    @Override
+    public StoredBlob get(String path) {
+        try {
+            Path file = resolve(path);
+            if (!Files.isRegularFile(file)) {
+                return null;
+            }
+            return toStoredBlob(path, file);
+        } catch (IOException e) {
+            log.error("❌ Error leyendo metadatos locales de {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public boolean delete(String path) {
+        try {
+            Path file = resolve(path);
+            Files.deleteIfExists(metaFileFor(file));
+            return Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.error("❌ Error eliminando archivo local {}: {}", path, e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public List<StoredBlob> list(String prefix) {
+        // Recorrer solo desde el directorio más profundo que cubre el prefijo
+        String dirPrefix = prefix.contains("/") ? prefix.substring(0, prefix.lastIndexOf('/')) : "";
+        Path start = resolve(dirPrefix);
+        if (!Files.isDirectory(start)) {
+            return List.of();
+        }
+
+        List<StoredBlob> blobs = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(start)) {
+            Iterator<Path> it = files.filter(Files::isRegularFile).iterator();
+            while (it.hasNext()) {
+                Path file = it.next();
+                String name = toBlobPath(file);
+                if (name.endsWith(META_SUFFIX) || name.contains(".tmp-") || !name.startsWith(prefix)) {
+                    continue;
+                }
+                blobs.add(toStoredBlob(name, file));
+            }
+        } catch (IOException e) {
+            log.error("❌ Error listando archivos locales con prefijo {}: {}", prefix, e.getMessage());
+        }
+        blobs.sort(Comparator.comparing(StoredBlob::getPath));
+        return blobs;
+    }
+
+    @Override
+    public ByteBuffer read(String path) throws IOException {
+        Path file = resolve(path);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // El mapeo sigue siendo válido después de cerrar el canal
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    @Override
+    public String publicUrl(String path) {
+        return publicBaseUrl + "?filePath=" + URLEncoder.encode(path, StandardCharsets.UTF_8);
+    }
+
+    // Métodos privados de utilidad
+
+    private Path resolve(String path) {
+        Path resolved = root.resolve(path).normalize();
+        if (!resolved.startsWith(root)) {
+            throw new IllegalArgumentException("Ruta fuera del almacenamiento local: " + path);
+        }
+        return resolved;
+    }
+
+    private Path tempFileFor(Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        return Files.createTempFile(target.getParent(), target.getFileName() + ".tmp-", null);
+    }
+
+    private Path metaFileFor(Path file) {
+        return file.resolveSibling(file.getFileName() + META_SUFFIX);
+    }
+
+    private String toBlobPath(Path file) {
+        return root.relativize(file).toString().replace('\\', '/');
+    }
+
+    private StoredBlob commit(String path, Path tmp, Path target, String contentType,
+                              Map<String, String> metadata) throws IOException {
+        try {
+            Properties props = new Properties();
+            if (metadata != null) {
+                metadata.forEach((k, v) -> { if (v != null) props.setProperty(k, v); });
+            }
+            if (contentType != null) {
+                props.setProperty(CONTENT_TYPE_KEY, contentType);
+            }
+            try (OutputStream out = Files.newOutputStream(metaFileFor(target))) {
+                props.store(out, null);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return toStoredBlob(path, target);
+    }
+
+    private StoredBlob toStoredBlob(String path, Path file) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+
+        Map<String, String> metadata = new HashMap<>();
+        String contentType = null;
+        Path metaFile = metaFileFor(file);
+        if (Files.exists(metaFile)) {
+            Properties props = new Properties();
+            try (Reader reader = Files.newBufferedReader(metaFile, StandardCharsets.ISO_8859_1)) {
+                props.load(reader);
+            }
+            for (String key : props.stringPropertyNames()) {
+                if (CONTENT_TYPE_KEY.equals(key)) {
+                    contentType = props.getProperty(key);
+                } else {
+                    metadata.put(key, props.getProperty(key));
+                }
+            }
+        }
+
+        return StoredBlob.builder()
+                .path(path)
+                .mediaLink(publicUrl(path))
+                .size(attrs.size())
+                .contentType(contentType)
+                .createTime(attrs.creationTime().toMillis())
+                .updateTime(attrs.lastModifiedTime().toMillis())
+                .metadata(metadata)
+                .build();
+    }
+}
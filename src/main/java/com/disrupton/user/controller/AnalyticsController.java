@@ -1,12 +1,34 @@
 package com.disrupton.user.controller;
 
+import com.disrupton.analytics.model.DistinctCountEstimate;
+import com.disrupton.analytics.model.DurationQuantiles;
+import com.disrupton.analytics.model.HeavyHitter;
+import com.disrupton.analytics.model.RetentionMatrix;
+import com.disrupton.analytics.model.RollupBucket;
+import com.disrupton.analytics.model.RollupGranularity;
+import com.disrupton.analytics.model.RollupSummary;
+import com.disrupton.analytics.model.TrendForecast;
+import com.disrupton.analytics.service.DistinctCountService;
+import com.disrupton.analytics.service.HeavyHittersService;
+import com.disrupton.analytics.service.RetentionService;
+import com.disrupton.analytics.service.RollupService;
+import com.disrupton.analytics.service.SessionDurationService;
+import com.disrupton.analytics.service.TrendService;
+import com.disrupton.exception.IngestionRejectedException;
 import com.disrupton.service.FirebaseAnalyticsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -16,6 +38,12 @@ import java.util.Map;
 public class AnalyticsController {
 
     private final FirebaseAnalyticsService firebaseAnalyticsService;
+    private final RollupService rollupService;
+    private final DistinctCountService distinctCountService;
+    private final HeavyHittersService heavyHittersService;
+    private final SessionDurationService sessionDurationService;
+    private final RetentionService retentionService;
+    private final TrendService trendService;
 
     /**
      * Get analytics metrics
@@ -90,6 +118,16 @@ public class AnalyticsController {
             response.put("message", "Cultural object view tracked successfully");
             
             return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Datos de la vista inválidos");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        } catch (IngestionRejectedException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "El buffer de analytics está lleno, reintenta más tarde");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(error);
         } catch (Exception e) {
             log.error("Error tracking cultural object view: {}", e.getMessage(), e);
             Map<String, String> error = new HashMap<>();
@@ -119,6 +157,16 @@ public class AnalyticsController {
             response.put("message", "AR session tracked successfully");
             
             return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Datos de la sesión AR inválidos");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        } catch (IngestionRejectedException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "El buffer de analytics está lleno, reintenta más tarde");
+            error.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(error);
         } catch (Exception e) {
             log.error("Error tracking AR session: {}", e.getMessage(), e);
             Map<String, String> error = new HashMap<>();
@@ -128,6 +176,205 @@ public class AnalyticsController {
         }
     }
 
+    /**
+     * Get pre-aggregated totals of a metric for a time range [start, end)
+     */
+    @GetMapping("/rollups/{metric}")
+    public ResponseEntity<?> getRollupSummary(
+            @PathVariable String metric,
+            @RequestParam(defaultValue = RollupService.ALL_DIMENSION) String dimension,
+            @RequestParam(defaultValue = RollupService.ALL_DIMENSION) String value,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        try {
+            log.info("Getting rollup summary - Metric: {}, {}={}, from {} to {}", metric, dimension, value, start, end);
+            RollupSummary summary = rollupService.summarize(metric, dimension, value, toInstant(start), toInstant(end));
+            return ResponseEntity.ok(summary);
+        } catch (Exception e) {
+            log.error("Error getting rollup summary: {}", e.getMessage(), e);
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Error al obtener el resumen de la métrica");
+            error.put("message", e.getMessage());
+            return ResponseEntity.internalServerError().body(error);
+        }
+    }
+
+    /**
+     * Get a time series of a metric (one point per hour or day)
+     */
+    @GetMapping("/rollups/{metric}/series")
+    public ResponseEntity<?> getRollupSeries(
+            @PathVariable String metric,
+            @RequestParam(defaultValue = RollupService.ALL_DIMENSION) String dimension,
+            @RequestParam(defaultValue = RollupService.ALL_DIMENSION) String value,
+            @RequestParam(defaultValue = "HOUR") RollupGranularity granularity,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        try {
+            log.info("Getting rollup series - Metric: {}, {}={}, {} from {} to {}", metric, dimension, value, granularity, start, end);
+            List<RollupBucket> series = rollupService.series(metric, dimension, value, granularity,
+                    toInstant(start), toInstant(end));
+            return ResponseEntity.ok(series);
+        } catch (Exception e) {
+            log.error("Error getting rollup series: {}", e.getMessage(), e);
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Error al obtener la serie de la métrica");
+            error.put("message", e.getMessage());
+            return ResponseEntity.internalServerError().body(error);
+        }
+    }
+
+    /**
+     * Get counts of a metric grouped by the values of a dimension
+     */
+    @GetMapping("/rollups/{metric}/breakdown/{dimension}")
+    public ResponseEntity<?> getRollupBreakdown(
+            @PathVariable String metric,
+            @PathVariable String dimension,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        try {
+            log.info("Getting rollup breakdown - Metric: {} by {}, from {} to {}", metric, dimension, start, end);
+            Map<String, Long> breakdown = rollupService.breakdown(metric, dimension, toInstant(start), toInstant(end));
+            return ResponseEntity.ok(breakdown);
+        } catch (Exception e) {
+            log.error("Error getting rollup breakdown: {}", e.getMessage(), e);
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Error al obtener el desglose de la métrica");
+            error.put("message", e.getMessage());
+            return ResponseEntity.internalServerError().body(error);
+        }
+    }
+
+    /**
+     * Get an approximate distinct count (HyperLogLog) for the days touching [start, end)
+     * e.g. metric=visitors, dimension=all for active users, dimension=zoneId for zone visitors.
+     * The estimate has ~1.6% standard error; lowerBound/upperBound are a ~95% interval
+     */
+    @GetMapping("/distinct/{metric}")
+    public ResponseEntity<?> getDistinctCount(
+            @PathVariable String metric,
+            @RequestParam(defaultValue = RollupService.ALL_DIMENSION) String dimension,
+            @RequestParam(defaultValue = RollupService.ALL_DIMENSION) String value,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        try {
+            log.info("Getting distinct count - Metric: {}, {}={}, from {} to {}", metric, dimension, value, start, end);
+            DistinctCountEstimate estimate = distinctCountService.estimate(metric, dimension, value,
+                    toInstant(start), toInstant(end));
+            return ResponseEntity.ok(estimate);
+        } catch (Exception e) {
+            log.error("Error getting distinct count: {}", e.getMessage(), e);
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Error al obtener el conteo de distintos");
+            error.put("message", e.getMessage());
+            return ResponseEntity.internalServerError().body(error);
+        }
+    }
+
+    /**
+     * Get the most frequent items of a metric since a given time (e.g. cultural_object_views)
+     * Answered from the in-memory top-K; count is an upper bound and guaranteedCount a lower bound
+     */
+    @GetMapping("/top/{metric}")
+    public ResponseEntity<?> getTopItems(
+            @PathVariable String metric,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam(defaultValue = "10") int limit) {
+        try {
+            log.info("Getting top {} items - Metric: {}, since {}", limit, metric, since);
+            List<HeavyHitter> top = heavyHittersService.top(metric, toInstant(since), limit);
+            return ResponseEntity.ok(top);
+        } catch (Exception e) {
+            log.error("Error getting top items: {}", e.getMessage(), e);
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Error al obtener los elementos más frecuentes");
+            error.put("message", e.getMessage());
+            return ResponseEntity.internalServerError().body(error);
+        }
+    }
+
+    /**
+     * Get session duration mean and p50/p90/p99 (seconds) for the days touching [start, end)
+     * Merged from daily t-digests; dimension=all for every session, zoneId or sessionType otherwise
+     */
+    @GetMapping("/session-duration")
+    public ResponseEntity<?> getSessionDurationQuantiles(
+            @RequestParam(defaultValue = RollupService.ALL_DIMENSION) String dimension,
+            @RequestParam(defaultValue = RollupService.ALL_DIMENSION) String value,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        try {
+            log.info("Getting session duration quantiles - {}={}, from {} to {}", dimension, value, start, end);
+            DurationQuantiles quantiles = sessionDurationService.summarize(dimension, value,
+                    toInstant(start), toInstant(end));
+            return ResponseEntity.ok(quantiles);
+        } catch (Exception e) {
+            log.error("Error getting session duration quantiles: {}", e.getMessage(), e);
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Error al obtener los percentiles de duración de sesión");
+            error.put("message", e.getMessage());
+            return ResponseEntity.internalServerError().body(error);
+        }
+    }
+
+    /**
+     * Get the cohort retention matrix for the cohorts of [start, end] (days, inclusive)
+     * Defaults to the last 90 days with D1/D7/D30; computed from the daily active-user bitmaps
+     */
+    @GetMapping("/retention")
+    public ResponseEntity<?> getCohortRetention(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end,
+            @RequestParam(defaultValue = "1,7,30") List<Integer> offsets) {
+        if (!retentionService.isEnabled()) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Retención deshabilitada");
+            error.put("message", "analytics.retention.enabled es false");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
+        }
+        try {
+            LocalDate endDay = end != null ? end : LocalDate.now();
+            LocalDate startDay = start != null ? start : endDay.minusDays(89);
+            log.info("Getting cohort retention - from {} to {}, offsets {}", startDay, endDay, offsets);
+            RetentionMatrix matrix = retentionService.cohortRetention(startDay, endDay, offsets);
+            return ResponseEntity.ok(matrix);
+        } catch (Exception e) {
+            log.error("Error getting cohort retention: {}", e.getMessage(), e);
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Error al obtener la retención por cohortes");
+            error.put("message", e.getMessage());
+            return ResponseEntity.internalServerError().body(error);
+        }
+    }
+
+    /**
+     * Get precomputed Holt/EWMA forecasts (events per hour) for every series of a metric
+     * Optional dimension filter: all, zoneId or theme depending on the metric
+     */
+    @GetMapping("/trends/{metric}")
+    public ResponseEntity<?> getTrendForecasts(
+            @PathVariable String metric,
+            @RequestParam(required = false) String dimension) {
+        if (!trendService.getTrackedMetrics().contains(metric)) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", "Métrica sin tendencias");
+            error.put("message", "Métricas disponibles: " + trendService.getTrackedMetrics());
+            return ResponseEntity.badRequest().body(error);
+        }
+        try {
+            log.info("Getting trend forecasts - metric: {}, dimension: {}", metric, dimension);
+            List<TrendForecast> forecasts = trendService.forecasts(metric, dimension);
+            return ResponseEntity.ok(forecasts);
+        } catch (Exception e) {
+            log.error("Error getting trend forecasts: {}", e.getMessage(), e);
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Error al obtener las tendencias");
+            error.put("message", e.getMessage());
+            return ResponseEntity.internalServerError().body(error);
+        }
+    }
+
     /**
      * Get available metrics
      */
@@ -142,4 +389,8 @@ public class AnalyticsController {
         
         return ResponseEntity.ok(metrics);
     }
+
+    private Instant toInstant(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant();
+    }
 }
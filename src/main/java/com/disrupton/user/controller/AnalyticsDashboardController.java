@@ -2,14 +2,18 @@ package com.disrupton.user.controller;
 
 import com.disrupton.user.dto.*;
 import com.disrupton.service.DashboardAnalyticsService;
+import com.disrupton.service.DashboardSnapshotCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/analytics-dashboard")
@@ -18,6 +22,7 @@ import java.util.Map;
 public class AnalyticsDashboardController {
 
     private final DashboardAnalyticsService dashboardAnalyticsService;
+    private final DashboardSnapshotCache dashboardSnapshotCache;
 
     /**
      * Get comprehensive dashboard metrics
@@ -29,8 +34,8 @@ public class AnalyticsDashboardController {
         log.info("Dashboard metrics requested for time range: {}", timeRange);
         
         try {
-            DashboardMetricsDto metrics = dashboardAnalyticsService.getDashboardMetrics(timeRange);
-            return ResponseEntity.ok(metrics);
+            var snapshot = dashboardAnalyticsService.getDashboardMetricsSnapshot(timeRange);
+            return ResponseEntity.ok().headers(snapshot.toHeaders()).body(snapshot.getValue());
         } catch (Exception e) {
             log.error("Error getting dashboard metrics: {}", e.getMessage(), e);
             Map<String, String> error = new HashMap<>();
@@ -55,8 +60,8 @@ public class AnalyticsDashboardController {
                 limit = 50; // Limit to prevent performance issues
             }
             
-            var objects = dashboardAnalyticsService.getMostViewedObjects(timeRange, limit);
-            return ResponseEntity.ok(objects);
+            var objects = dashboardAnalyticsService.getMostViewedObjectsSnapshot(timeRange, limit);
+            return ResponseEntity.ok().headers(objects.toHeaders()).body(objects.getValue());
         } catch (Exception e) {
             log.error("Error getting most viewed objects: {}", e.getMessage(), e);
             Map<String, String> error = new HashMap<>();
@@ -81,8 +86,8 @@ public class AnalyticsDashboardController {
                 limit = 20; // Limit to prevent performance issues
             }
             
-            var zones = dashboardAnalyticsService.getCampusZoneActivity(timeRange, limit);
-            return ResponseEntity.ok(zones);
+            var zones = dashboardAnalyticsService.getCampusZoneActivitySnapshot(timeRange, limit);
+            return ResponseEntity.ok().headers(zones.toHeaders()).body(zones.getValue());
         } catch (Exception e) {
             log.error("Error getting campus zone activity: {}", e.getMessage(), e);
             Map<String, String> error = new HashMap<>();
@@ -107,8 +112,8 @@ public class AnalyticsDashboardController {
                 limit = 20; // Limit to prevent performance issues
             }
             
-            var themes = dashboardAnalyticsService.getThemeInteractions(timeRange, limit);
-            return ResponseEntity.ok(themes);
+            var themes = dashboardAnalyticsService.getThemeInteractionsSnapshot(timeRange, limit);
+            return ResponseEntity.ok().headers(themes.toHeaders()).body(themes.getValue());
         } catch (Exception e) {
             log.error("Error getting theme interactions: {}", e.getMessage(), e);
             Map<String, String> error = new HashMap<>();
@@ -128,8 +133,8 @@ public class AnalyticsDashboardController {
         log.info("Overall stats requested for time range: {}", timeRange);
         
         try {
-            var stats = dashboardAnalyticsService.getOverallStats(timeRange);
-            return ResponseEntity.ok(stats);
+            var stats = dashboardAnalyticsService.getOverallStatsSnapshot(timeRange);
+            return ResponseEntity.ok().headers(stats.toHeaders()).body(stats.getValue());
         } catch (Exception e) {
             log.error("Error getting overall stats: {}", e.getMessage(), e);
             Map<String, String> error = new HashMap<>();
@@ -154,8 +159,8 @@ public class AnalyticsDashboardController {
                 limit = 50; // Limit to prevent performance issues
             }
             
-            var users = dashboardAnalyticsService.getUserActivity(timeRange, limit);
-            return ResponseEntity.ok(users);
+            var users = dashboardAnalyticsService.getUserActivitySnapshot(timeRange, limit);
+            return ResponseEntity.ok().headers(users.toHeaders()).body(users.getValue());
         } catch (Exception e) {
             log.error("Error getting user activity: {}", e.getMessage(), e);
             Map<String, String> error = new HashMap<>();
@@ -222,19 +227,29 @@ public class AnalyticsDashboardController {
             Map<String, Object> summary = new HashMap<>();
             
             // Get key metrics for today
-            var todayStats = dashboardAnalyticsService.getOverallStats("today");
-            summary.put("activeUsersToday", todayStats.getActiveUsersToday());
-            summary.put("totalViewsToday", todayStats.getTotalViews());
+            var todayStats = dashboardAnalyticsService.getOverallStatsSnapshot("today");
+            summary.put("activeUsersToday", todayStats.getValue().getActiveUsersToday());
+            summary.put("totalViewsToday", todayStats.getValue().getTotalViews());
             
             // Get top 3 most viewed objects
-            var topObjects = dashboardAnalyticsService.getMostViewedObjects("today", 3);
-            summary.put("topObjectsToday", topObjects);
+            var topObjects = dashboardAnalyticsService.getMostViewedObjectsSnapshot("today", 3);
+            summary.put("topObjectsToday", topObjects.getValue());
             
             // Get top 3 active zones
-            var topZones = dashboardAnalyticsService.getCampusZoneActivity("today", 3);
-            summary.put("topZonesToday", topZones);
+            var topZones = dashboardAnalyticsService.getCampusZoneActivitySnapshot("today", 3);
+            summary.put("topZonesToday", topZones.getValue());
             
-            return ResponseEntity.ok(summary);
+            // The summary is as old as its oldest part
+            var oldest = Stream.<DashboardSnapshotCache.Snapshot<?>>of(todayStats, topObjects, topZones)
+                .min(Comparator.comparing(DashboardSnapshotCache.Snapshot::getGeneratedAt))
+                .orElseThrow();
+            boolean stale = todayStats.isStale() || topObjects.isStale() || topZones.isStale();
+            summary.put("generatedAt", oldest.getGeneratedAt());
+            summary.put("stale", stale);
+            
+            HttpHeaders headers = oldest.toHeaders();
+            headers.set(DashboardSnapshotCache.STALE_HEADER, String.valueOf(stale));
+            return ResponseEntity.ok().headers(headers).body(summary);
         } catch (Exception e) {
             log.error("Error getting dashboard summary: {}", e.getMessage(), e);
             Map<String, String> error = new HashMap<>();
@@ -244,6 +259,14 @@ public class AnalyticsDashboardController {
         }
     }
 
+    /**
+     * Get dashboard snapshot cache statistics
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<?> getCacheStats() {
+        return ResponseEntity.ok(dashboardSnapshotCache.getStats());
+    }
+
     /**
      * Health check for dashboard service
      */
@@ -18,6 +18,9 @@ public class CampusZoneActivityDto {
     private Long weeklyArSessions;
     private Long monthlyArSessions;
     private Double averageSessionDuration; // in minutes
+    private Double sessionDurationP50; // in minutes
+    private Double sessionDurationP90; // in minutes
+    private Double sessionDurationP99; // in minutes
     private Long uniqueVisitors;
     private String mostActiveTimeSlot; // e.g., "morning", "afternoon", "evening"
 }
@@ -17,4 +17,6 @@ public class DashboardMetricsDto {
     private List<ThemeInteractionDto> themeInteractions;
     private OverallStatsDto overallStats;
     private LocalDateTime generatedAt;
+    private boolean degraded; // true si alguna sección venció su timeout o falló
+    private List<String> degradedSections;
 }
@@ -19,6 +19,9 @@ public class OverallStatsDto {
     private Long totalShares;
     private Long totalPhotos;
     private Double averageSessionDuration; // in minutes
+    private Double sessionDurationP50; // in minutes
+    private Double sessionDurationP90; // in minutes
+    private Double sessionDurationP99; // in minutes
     private Double averageExplorationTimePerObject; // in minutes
     private Long socialFunctionUsage; // total social interactions
     private Double userRetentionRate; // percentage
@@ -1,22 +1,29 @@
 package com.disrupton.user.dto;
 
+import com.disrupton.analytics.model.RollupBucket;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class TimeRangeAnalyticsDto {
     private String timeRange; // "daily", "weekly", "monthly"
-    private LocalDateTime startDate;
-    private LocalDateTime endDate;
+    private LocalDateTime startDate; // inclusive
+    private LocalDateTime endDate; // exclusive
+    private String granularity; // "HOUR" hasta 48 horas, "DAY" para rangos más largos
     private List<CulturalObjectViewMetricDto> topViewedObjects;
     private List<CampusZoneActivityDto> topActiveZones;
     private List<ThemeInteractionDto> topThemes;
     private List<UserActivityDto> topActiveUsers;
     private OverallStatsDto stats;
+    private Long activeUsers; // usuarios distintos en el rango (estimado con HyperLogLog)
+    private Map<String, List<RollupBucket>> activity; // serie por métrica con la granularidad elegida
+    private boolean degraded; // true si alguna sección venció su timeout o falló
+    private List<String> degradedSections;
 }
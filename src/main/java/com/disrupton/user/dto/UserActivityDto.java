@@ -26,4 +26,7 @@ public class UserActivityDto {
     private String mostVisitedZone;
     private LocalDateTime firstVisit;
     private String userType; // e.g., "student", "teacher", "visitor"
+    private String engagementLevel;
+    private Double engagementScore; // weighted score from the engagement leaderboard
+    private Integer engagementRank; // 1 = most engaged; null if the user is not ranked yet
 }
@@ -2,6 +2,7 @@ package com.disrupton.userAccess.service;
 
 import com.disrupton.userAccess.dto.UserAccessDto;
 import com.disrupton.userAccess.dto.UserAccessRequest;
+import com.disrupton.service.FirestoreAggregationService;
 import com.google.api.core.ApiFuture;
 import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
@@ -24,6 +25,7 @@ import java.util.concurrent.ExecutionException;
 public class UserAccessService {
 
     private final Firestore firestore;
+    private final FirestoreAggregationService aggregationService;
     private static final String COLLECTION_NAME = "user_access";
 
     /**
@@ -276,33 +278,19 @@ public class UserAccessService {
         
         Map<String, Object> stats = new HashMap<>();
         
-        QuerySnapshot allAccess = firestore.collection(COLLECTION_NAME).get().get();
-        QuerySnapshot activeAccess = firestore.collection(COLLECTION_NAME)
-                .whereEqualTo("status", "active")
-                .get().get();
+        CollectionReference collection = firestore.collection(COLLECTION_NAME);
+        long totalAccess = aggregationService.count(collection);
+        long activeAccess = aggregationService.count(collection.whereEqualTo("status", "active"));
         
-        stats.put("totalAccess", allAccess.size());
-        stats.put("activeAccess", activeAccess.size());
-        stats.put("expiredAccess", allAccess.size() - activeAccess.size());
+        stats.put("totalAccess", totalAccess);
+        stats.put("activeAccess", activeAccess);
+        stats.put("expiredAccess", totalAccess - activeAccess);
         
-        // Contar por tipo de acceso
-        Map<String, Integer> typeCounts = new HashMap<>();
-        for (QueryDocumentSnapshot document : allAccess) {
-            UserAccessDto access = document.toObject(UserAccessDto.class);
-            String type = access.getAccessType();
-            typeCounts.put(type, typeCounts.getOrDefault(type, 0) + 1);
-        }
-        stats.put("accessByType", typeCounts);
+        // Contar por tipo de acceso (solo se descarga el campo accessType)
+        stats.put("accessByType", aggregationService.countBy(collection, "accessType"));
         
-        // Calcular ingresos totales
-        double totalRevenue = 0;
-        for (QueryDocumentSnapshot document : allAccess) {
-            UserAccessDto access = document.toObject(UserAccessDto.class);
-            if (access.getPrice() != null) {
-                totalRevenue += access.getPrice();
-            }
-        }
-        stats.put("totalRevenue", totalRevenue);
+        // Calcular ingresos totales en el servidor
+        stats.put("totalRevenue", aggregationService.sum(collection, "price"));
         
         log.info("✅ Estadísticas de accesos obtenidas");
         return stats;
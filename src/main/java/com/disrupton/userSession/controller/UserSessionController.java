@@ -62,6 +62,9 @@ public class UserSessionController {
             log.info("Creating new user session for user: {}", request.getUserId());
             UserSessionDto createdSession = userSessionService.createSession(request);
             return ResponseEntity.ok(createdSession);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid session: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error creating session: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
@@ -1,11 +1,13 @@
 package com.disrupton.userSession.dto;
 
 import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.annotation.IgnoreExtraProperties;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Data
+@IgnoreExtraProperties
 @NoArgsConstructor
 @AllArgsConstructor
 public class UserSessionDto {
@@ -15,7 +17,8 @@ public class UserSessionDto {
     private String status;
     private Timestamp startTime;
     private Timestamp endTime;
-    private Long duration;
+    private Long duration; // milliseconds
+    private Double durationSeconds; // same duration, the field analytics averages across all sessions
     private String location;
     private Double latitude;
     private Double longitude;
@@ -1,5 +1,10 @@
 package com.disrupton.userSession.service;
 
+import com.disrupton.analytics.model.AnalyticsRecord;
+import com.disrupton.analytics.model.TrackedEventType;
+import com.disrupton.analytics.service.AnalyticsEventPipeline;
+import com.disrupton.service.DashboardStreamService;
+import com.disrupton.service.FirestoreAggregationService;
 import com.disrupton.userSession.dto.UserSessionDto;
 import com.disrupton.userSession.dto.UserSessionRequest;
 import com.disrupton.userSession.model.UserSession;
@@ -14,7 +19,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 
 @Service
@@ -23,6 +27,9 @@ import java.util.concurrent.ExecutionException;
 public class UserSessionService {
 
     private final Firestore firestore;
+    private final FirestoreAggregationService aggregationService;
+    private final AnalyticsEventPipeline eventPipeline;
+    private final DashboardStreamService dashboardStreamService;
     private static final String COLLECTION_NAME = "user_sessions";
 
     /**
@@ -55,25 +62,42 @@ public class UserSessionService {
 
     /**
      * Create new user session
+     * Stored through the analytics pipeline, which validates it and feeds the rollups, retention and the leaderboard
      */
     public UserSessionDto createSession(UserSessionRequest request) throws ExecutionException, InterruptedException {
+        Timestamp now = Timestamp.now();
+        AnalyticsRecord record = AnalyticsRecord.builder()
+                .type(TrackedEventType.SESSION)
+                .name(request.getSessionType())
+                .userId(request.getUserId())
+                .latitude(request.getLatitude())
+                .longitude(request.getLongitude())
+                .occurredAt(now.toSqlTimestamp().toInstant())
+                .build();
+        Map<String, Object> attributes = record.getAttributes();
+        attributes.put("status", "active");
+        attributes.put("startTime", now);
+        attributes.put("location", request.getLocation());
+        attributes.put("deviceInfo", request.getDeviceInfo());
+        attributes.put("appVersion", request.getAppVersion());
+        attributes.put("updatedAt", now);
+        eventPipeline.ingestAndWait(record);
+        
         UserSessionDto session = new UserSessionDto();
-        session.setSessionId(UUID.randomUUID().toString());
-        session.setUserId(request.getUserId());
-        session.setSessionType(request.getSessionType());
+        session.setSessionId(record.getId());
+        session.setUserId(record.getUserId());
+        session.setSessionType(record.getName());
         session.setStatus("active");
-        session.setStartTime(Timestamp.now());
+        session.setStartTime(now);
         session.setLocation(request.getLocation());
-        session.setLatitude(request.getLatitude());
-        session.setLongitude(request.getLongitude());
+        session.setLatitude(record.getLatitude());
+        session.setLongitude(record.getLongitude());
         session.setDeviceInfo(request.getDeviceInfo());
         session.setAppVersion(request.getAppVersion());
-        session.setCreatedAt(Timestamp.now());
-        session.setUpdatedAt(Timestamp.now());
-        
-        DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(session.getSessionId());
-        docRef.set(session).get();
+        session.setCreatedAt(now);
+        session.setUpdatedAt(now);
         
+        dashboardStreamService.sessionStarted();
         log.info("User session created successfully: {}", session.getSessionId());
         return session;
     }
@@ -99,7 +123,7 @@ public class UserSessionService {
         session.setUpdatedAt(Timestamp.now());
         
         DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(sessionId);
-        docRef.set(session).get();
+        docRef.set(session, SetOptions.merge()).get();
         
         log.info("User session updated successfully: {}", sessionId);
         return session;
@@ -124,13 +148,27 @@ public class UserSessionService {
         if (session.getStartTime() != null && session.getEndTime() != null) {
             long duration = session.getEndTime().toDate().getTime() - session.getStartTime().toDate().getTime();
             session.setDuration(duration);
+            session.setDurationSeconds(duration / 1000.0);
         }
         
         session.setUpdatedAt(Timestamp.now());
         
         DocumentReference docRef = firestore.collection(COLLECTION_NAME).document(sessionId);
-        docRef.set(session).get();
+        docRef.set(session, SetOptions.merge()).get();
+        
+        if (session.getDuration() != null) {
+            // The session was counted when it started; only its duration is added here
+            eventPipeline.recordSessionEnd(AnalyticsRecord.builder()
+                    .type(TrackedEventType.SESSION)
+                    .id(sessionId)
+                    .name(session.getSessionType())
+                    .userId(session.getUserId())
+                    .durationSeconds(session.getDurationSeconds())
+                    .occurredAt(session.getEndTime().toSqlTimestamp().toInstant())
+                    .build());
+        }
         
+        dashboardStreamService.sessionEnded();
         log.info("User session ended successfully: {}", sessionId);
         return session;
     }
@@ -177,32 +215,17 @@ public class UserSessionService {
     public Map<String, Object> getSessionStats() throws ExecutionException, InterruptedException {
         Map<String, Object> stats = new HashMap<>();
         
-        QuerySnapshot allSessions = firestore.collection(COLLECTION_NAME).get().get();
-        QuerySnapshot activeSessions = firestore.collection(COLLECTION_NAME)
-                .whereEqualTo("status", "active")
-                .get().get();
-        
-        stats.put("totalSessions", allSessions.size());
-        stats.put("activeSessions", activeSessions.size());
-        stats.put("endedSessions", allSessions.size() - activeSessions.size());
+        CollectionReference collection = firestore.collection(COLLECTION_NAME);
+        long totalSessions = aggregationService.count(collection);
+        long activeSessions = aggregationService.count(collection.whereEqualTo("status", "active"));
         
-        // Calculate average session duration
-        long totalDuration = 0;
-        int sessionsWithDuration = 0;
+        stats.put("totalSessions", totalSessions);
+        stats.put("activeSessions", activeSessions);
+        stats.put("endedSessions", totalSessions - activeSessions);
         
-        for (QueryDocumentSnapshot document : allSessions) {
-            UserSessionDto session = document.toObject(UserSessionDto.class);
-            if (session.getDuration() != null && session.getDuration() > 0) {
-                totalDuration += session.getDuration();
-                sessionsWithDuration++;
-            }
-        }
-        
-        if (sessionsWithDuration > 0) {
-            stats.put("averageSessionDuration", totalDuration / sessionsWithDuration);
-        } else {
-            stats.put("averageSessionDuration", 0);
-        }
+        // Calculate average session duration (only sessions with a positive duration)
+        double averageDuration = aggregationService.average(collection.whereGreaterThan("duration", 0), "duration");
+        stats.put("averageSessionDuration", (long) averageDuration);
         
         return stats;
     }
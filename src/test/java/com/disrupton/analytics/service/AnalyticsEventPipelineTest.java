@@ -0,0 +1,87 @@
+package com.disrupton.analytics.service;
+
+import com.disrupton.analytics.model.AnalyticsRecord;
+import com.disrupton.analytics.model.TrackBatchResult;
+import com.disrupton.analytics.model.TrackedEvent;
+import com.disrupton.analytics.model.TrackedEventType;
+import com.disrupton.exception.PartialWriteException;
+import com.disrupton.service.DashboardStreamService;
+import com.google.cloud.firestore.Firestore;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class AnalyticsEventPipelineTest {
+
+    private final AnalyticsIngestionService ingestionService = mock(AnalyticsIngestionService.class);
+    private final LeaderboardService leaderboardService = mock(LeaderboardService.class);
+    private final EventDeduplicator deduplicator = new EventDeduplicator(true, 10, 1_000);
+
+    private final AnalyticsEventPipeline pipeline = new AnalyticsEventPipeline(
+            mock(Firestore.class), mock(AnalyticsRecordValidator.class), ingestionService, deduplicator,
+            mock(EventSampler.class), mock(RollupService.class), mock(DistinctCountService.class),
+            mock(HeavyHittersService.class), mock(SessionDurationService.class), mock(RetentionService.class),
+            mock(TrendService.class), leaderboardService, mock(HeatmapService.class),
+            mock(DashboardStreamService.class));
+
+    @Test
+    void batchAggregatesAcceptedAndReleasesRejected() {
+        when(ingestionService.submitAll(anyList())).thenReturn(2);
+
+        TrackBatchResult result = pipeline.ingestAll(sessions("a", "b", "c"));
+
+        assertEquals(2, result.getAccepted());
+        assertEquals(1, result.getOverflow());
+        verify(leaderboardService, times(2)).recordSession(any(), any(), anyLong());
+        assertFalse(deduplicator.firstSeen("session:a"));
+        assertTrue(deduplicator.firstSeen("session:c"), "el rechazado se puede reintentar");
+    }
+
+    @Test
+    void failedDirectWriteReleasesUnwrittenKeys() {
+        when(ingestionService.submitAll(anyList()))
+                .thenThrow(new PartialWriteException("Error escribiendo lote de analytics", 1, new RuntimeException()));
+
+        assertThrows(IllegalStateException.class, () -> pipeline.ingestAll(sessions("a", "b", "c")));
+
+        // El primero quedó escrito: se agrega y su reintento es un duplicado
+        verify(leaderboardService).recordSession(eq("user-a"), any(), anyLong());
+        verify(leaderboardService, times(1)).recordSession(any(), any(), anyLong());
+        assertFalse(deduplicator.firstSeen("session:a"));
+        // Los demás no se escribieron: el reintento del cliente debe aceptarse
+        assertTrue(deduplicator.firstSeen("session:b"));
+        assertTrue(deduplicator.firstSeen("session:c"));
+    }
+
+    @Test
+    void unexpectedFailureReleasesEveryKey() {
+        when(ingestionService.submitAll(anyList())).thenThrow(new IllegalStateException("shutdown"));
+
+        assertThrows(IllegalStateException.class, () -> pipeline.ingestAll(sessions("a", "b")));
+
+        verify(leaderboardService, never()).recordSession(any(), any(), anyLong());
+        assertTrue(deduplicator.firstSeen("session:a"));
+        assertTrue(deduplicator.firstSeen("session:b"));
+    }
+
+    private static List<TrackedEvent> sessions(String... keys) {
+        return Arrays.stream(keys)
+                .map(key -> new TrackedEvent(AnalyticsRecord.builder()
+                        .type(TrackedEventType.SESSION)
+                        .id(key)
+                        .name("AR_SESSION")
+                        .userId("user-" + key)
+                        .occurredAt(Instant.now())
+                        .build(), key))
+                .toList();
+    }
+}
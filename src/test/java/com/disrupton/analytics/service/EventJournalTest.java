@@ -0,0 +1,170 @@
+package com.disrupton.analytics.service;
+
+import com.disrupton.analytics.model.PendingWrite;
+import com.disrupton.analytics.util.JournalSegment;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void resumesFromCheckpointAfterRestart() throws IOException {
+        EventJournal journal = open(4096);
+        journal.append(write("a"));
+        journal.append(write("b"));
+        journal.append(write("c"));
+
+        EventJournal.Batch batch = journal.read(2);
+        assertEquals(List.of("a", "b"), ids(batch));
+        journal.commit(batch);
+        journal.close();
+
+        EventJournal restarted = open(4096);
+        EventJournal.Batch pending = restarted.read(10);
+        assertEquals(List.of("c"), ids(pending));
+        assertEquals(Map.of("n", 1), pending.getWrites().get(0).getData());
+        restarted.close();
+    }
+
+    @Test
+    void redeliversUncommittedRecordsAfterCrash() throws IOException {
+        EventJournal journal = open(4096);
+        journal.append(write("a"));
+        journal.append(write("b"));
+        // Leído y enviado pero sin commit: el proceso cae antes de confirmar
+        assertEquals(List.of("a", "b"), ids(journal.read(10)));
+        journal.close();
+
+        EventJournal restarted = open(4096);
+        assertEquals(List.of("a", "b"), ids(restarted.read(10)));
+        restarted.close();
+    }
+
+    @Test
+    void retiresShippedSegmentsAndResumesInLaterSegment() throws IOException {
+        // Segmentos chicos: cada uno guarda pocos registros y el journal rota varias veces
+        EventJournal journal = open(256);
+        for (int i = 0; i < 12; i++) {
+            journal.append(write("e" + i));
+        }
+        int segmentsBeforeCommit = segmentFiles().size();
+        assertTrue(segmentsBeforeCommit > 2);
+
+        EventJournal.Batch batch = journal.read(9);
+        assertEquals(9, batch.getWrites().size());
+        journal.commit(batch);
+        int segmentsAfterCommit = segmentFiles().size();
+        assertTrue(segmentsAfterCommit < segmentsBeforeCommit, "los segmentos enviados se eliminan");
+        journal.close();
+
+        EventJournal restarted = open(256);
+        assertEquals(List.of("e9", "e10", "e11"), ids(restarted.read(10)));
+        // Solo se suma el segmento activo nuevo; el del checkpoint se conserva
+        assertEquals(segmentsAfterCommit + 1, segmentFiles().size());
+        restarted.close();
+    }
+
+    @Test
+    void emptyCommitDoesNotWriteCheckpoint() throws IOException {
+        EventJournal journal = open(4096);
+        EventJournal.Batch empty = journal.read(10);
+        assertTrue(empty.isEmpty());
+        journal.commit(empty);
+        assertFalse(Files.exists(directory.resolve("checkpoint")));
+        assertFalse(journal.hasPending());
+        journal.close();
+    }
+
+    @Test
+    void dropOldestCountsUnshippedRecords() throws IOException {
+        EventJournal journal = open(256, 2);
+        for (int i = 0; i < 12; i++) {
+            journal.append(write("e" + i));
+        }
+        assertTrue(journal.getDroppedRecords() > 0);
+        // Lo que queda empieza justo después de lo descartado, sin huecos
+        List<String> remaining = ids(journal.read(100));
+        assertEquals(12 - journal.getDroppedRecords(), remaining.size());
+        assertEquals("e11", remaining.get(remaining.size() - 1));
+        journal.close();
+    }
+
+    @Test
+    void commitAfterDropOldestNeitherRewindsNorCountsShippedAsDropped() throws IOException {
+        EventJournal journal = open(256, 2);
+        journal.append(write("e0"));
+        journal.append(write("e1"));
+        EventJournal.Batch batch = journal.read(2);
+        assertEquals(List.of("e0", "e1"), ids(batch));
+
+        // Mientras el lote se envía, el journal se llena y descarta el segmento del que se leyó
+        for (int i = 2; i < 14; i++) {
+            journal.append(write("e" + i));
+        }
+        assertTrue(journal.getDroppedRecords() > 0);
+        journal.commit(batch);
+
+        List<String> remaining = ids(journal.read(100));
+        assertFalse(remaining.contains("e0"));
+        assertEquals("e13", remaining.get(remaining.size() - 1));
+        // Cada registro está enviado, descartado o pendiente, una sola vez
+        assertEquals(14, batch.getWrites().size() + journal.getDroppedRecords() + remaining.size());
+        journal.close();
+    }
+
+    @Test
+    void uncommittedBatchFromDroppedSegmentCountsAsDropped() throws IOException {
+        EventJournal journal = open(256, 2);
+        journal.append(write("e0"));
+        journal.append(write("e1"));
+        journal.read(2);
+        for (int i = 2; i < 14; i++) {
+            journal.append(write("e" + i));
+        }
+
+        // El envío falló: el reintento ya no encuentra e0 y e1
+        List<String> remaining = ids(journal.read(100));
+        assertFalse(remaining.contains("e0"));
+        assertEquals(14, journal.getDroppedRecords() + remaining.size());
+        journal.close();
+    }
+
+    private EventJournal open(int segmentBytes) throws IOException {
+        return open(segmentBytes, 64);
+    }
+
+    private EventJournal open(int segmentBytes, int maxSegments) throws IOException {
+        EventJournal journal = new EventJournal(new ObjectMapper(), true, directory.toString(), segmentBytes,
+                maxSegments, false, false, AnalyticsIngestionService.OverflowPolicy.DROP_OLDEST);
+        journal.recover();
+        return journal;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(JournalSegment::isSegmentFile).collect(Collectors.toList());
+        }
+    }
+
+    private static PendingWrite write(String id) {
+        return new PendingWrite("analytics_events", id, Map.of("n", 1), System.nanoTime());
+    }
+
+    private static List<String> ids(EventJournal.Batch batch) {
+        return batch.getWrites().stream().map(PendingWrite::getDocumentId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,104 @@
+package com.disrupton.analytics.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    private static final int PRECISION = 12;
+
+    @Test
+    void emptySketchEstimatesZero() {
+        HyperLogLog sketch = new HyperLogLog(PRECISION);
+        assertTrue(sketch.isEmpty());
+        assertEquals(0, sketch.estimate());
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(HyperLogLog.MIN_PRECISION - 1));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(HyperLogLog.MAX_PRECISION + 1));
+    }
+
+    @Test
+    void estimatesWithinThreeStandardErrors() {
+        // Hashes aleatorios con semilla fija: se prueba el estimador, no la función de hash
+        long[] hashes = hashes(200_000, 42);
+        double bound = 3 * HyperLogLog.relativeStandardError(PRECISION);
+        for (int cardinality : new int[]{100, 1_000, 10_000, 50_000, 200_000}) {
+            HyperLogLog sketch = new HyperLogLog(PRECISION);
+            for (int i = 0; i < cardinality; i++) {
+                sketch.offerHash(hashes[i]);
+            }
+            double error = Math.abs(sketch.estimate() - cardinality) / (double) cardinality;
+            assertTrue(error <= bound, "error " + error + " para " + cardinality + " elementos");
+        }
+    }
+
+    @Test
+    void repeatedItemsDoNotChangeTheSketch() {
+        HyperLogLog sketch = new HyperLogLog(PRECISION);
+        for (int i = 0; i < 5_000; i++) {
+            sketch.offer("user-" + i);
+        }
+        HyperLogLog before = sketch.copy();
+        for (int i = 0; i < 5_000; i++) {
+            assertFalse(sketch.offer("user-" + i));
+        }
+        assertEquals(before, sketch);
+    }
+
+    @Test
+    void mergeEqualsSketchOfTheUnion() {
+        long[] hashes = hashes(30_000, 7);
+        HyperLogLog monday = new HyperLogLog(PRECISION);
+        HyperLogLog tuesday = new HyperLogLog(PRECISION);
+        HyperLogLog week = new HyperLogLog(PRECISION);
+        // Usuarios que se repiten entre días: 10_000..19_999
+        for (int i = 0; i < 20_000; i++) {
+            monday.offerHash(hashes[i]);
+        }
+        for (int i = 10_000; i < 30_000; i++) {
+            tuesday.offerHash(hashes[i]);
+        }
+        for (long hash : hashes) {
+            week.offerHash(hash);
+        }
+
+        HyperLogLog tuesdayBefore = tuesday.copy();
+        HyperLogLog union = monday.copy();
+        union.merge(tuesday);
+        assertEquals(week, union);
+        double error = Math.abs(union.estimate() - 30_000) / 30_000.0;
+        assertTrue(error <= 3 * union.relativeStandardError(), "error " + error);
+        // merge no modifica el argumento
+        assertEquals(tuesdayBefore, tuesday);
+        assertThrows(IllegalArgumentException.class, () -> union.merge(new HyperLogLog(PRECISION - 1)));
+    }
+
+    @Test
+    void roundTripsThroughBytes() {
+        HyperLogLog sketch = new HyperLogLog(PRECISION);
+        for (int i = 0; i < 1_000; i++) {
+            sketch.offer("object-" + i);
+        }
+        byte[] bytes = sketch.toBytes();
+        assertEquals(1 << PRECISION, bytes.length);
+        HyperLogLog restored = HyperLogLog.fromBytes(PRECISION, bytes);
+        assertEquals(sketch, restored);
+        assertEquals(sketch.estimate(), restored.estimate());
+
+        // fromBytes copia el arreglo: modificar el original no altera el sketch
+        bytes[0] = 60;
+        assertEquals(sketch, restored);
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(PRECISION, new byte[16]));
+    }
+
+    private static long[] hashes(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] hashes = new long[count];
+        for (int i = 0; i < count; i++) {
+            hashes[i] = random.nextLong();
+        }
+        return hashes;
+    }
+}
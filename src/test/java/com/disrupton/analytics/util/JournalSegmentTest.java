@@ -0,0 +1,124 @@
+package com.disrupton.analytics.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalSegmentTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackAppendedRecordsAfterReopen() throws IOException {
+        Path file;
+        try (JournalSegment segment = JournalSegment.create(directory, 7, 4096)) {
+            assertTrue(segment.isEmpty());
+            assertTrue(segment.append(bytes("uno")));
+            assertTrue(segment.append(bytes("dos")));
+            segment.force();
+            file = segment.getFile();
+        }
+
+        try (JournalSegment reopened = JournalSegment.open(file)) {
+            assertEquals(7, reopened.getId());
+            assertEquals("uno", text(reopened.read(0)));
+            int second = JournalSegment.RECORD_HEADER + 3;
+            assertEquals("dos", text(reopened.read(second)));
+            assertNull(reopened.read(second + JournalSegment.RECORD_HEADER + 3));
+            assertEquals(2 * (JournalSegment.RECORD_HEADER + 3), reopened.getWritePosition());
+        }
+    }
+
+    @Test
+    void rejectsRecordThatDoesNotFit() throws IOException {
+        try (JournalSegment segment = JournalSegment.create(directory, 1, 32)) {
+            assertTrue(segment.append(new byte[16]));
+            assertFalse(segment.append(new byte[16]));
+            assertEquals(JournalSegment.RECORD_HEADER + 16, segment.getWritePosition());
+        }
+    }
+
+    @Test
+    void recoveryStopsAtTornRecord() throws IOException {
+        Path file = writeRecords("uno", "dos", "tres");
+        int third = 2 * JournalSegment.RECORD_HEADER + 6;
+
+        // Crash a mitad del tercer registro: payload escrito pero longitud aún en 0
+        patchInt(file, third, 0);
+
+        try (JournalSegment reopened = JournalSegment.open(file)) {
+            assertEquals(third, reopened.getWritePosition());
+            assertNull(reopened.read(third));
+            // El siguiente append reutiliza la posición del registro cortado
+            assertTrue(reopened.append(bytes("cuatro")));
+            assertEquals("cuatro", text(reopened.read(third)));
+        }
+    }
+
+    @Test
+    void recoveryStopsAtCrcMismatch() throws IOException {
+        Path file = writeRecords("uno", "dos", "tres");
+        int second = JournalSegment.RECORD_HEADER + 3;
+
+        // Payload del segundo registro corrompido: el CRC ya no coincide
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes("XYZ")), second + JournalSegment.RECORD_HEADER);
+        }
+
+        try (JournalSegment reopened = JournalSegment.open(file)) {
+            assertEquals("uno", text(reopened.read(0)));
+            assertEquals(second, reopened.getWritePosition());
+            assertNull(reopened.read(second));
+        }
+    }
+
+    @Test
+    void recoveryStopsAtLengthPastEndOfFile() throws IOException {
+        Path file = writeRecords("uno");
+        patchInt(file, 0, Integer.MAX_VALUE);
+
+        try (JournalSegment reopened = JournalSegment.open(file)) {
+            assertTrue(reopened.isEmpty());
+        }
+    }
+
+    @Test
+    void parsesIdFromFileName() {
+        String name = JournalSegment.fileName(42);
+        assertEquals("segment-00000000000000000042.wal", name);
+        assertEquals(42, JournalSegment.parseId(Path.of(name)));
+    }
+
+    private Path writeRecords(String... records) throws IOException {
+        try (JournalSegment segment = JournalSegment.create(directory, 1, 4096)) {
+            for (String record : records) {
+                assertTrue(segment.append(bytes(record)));
+            }
+            segment.force();
+            return segment.getFile();
+        }
+    }
+
+    private static void patchInt(Path file, int position, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, value), position);
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] payload) {
+        return payload != null ? new String(payload, StandardCharsets.UTF_8) : null;
+    }
+}
@@ -0,0 +1,139 @@
+package com.disrupton.analytics.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MpscRingBufferTest {
+
+    @Test
+    void roundsCapacityUpToPowerOfTwo() {
+        assertEquals(8, new MpscRingBuffer<Integer>(5).capacity());
+        assertEquals(8, new MpscRingBuffer<Integer>(8).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new MpscRingBuffer<Integer>(1));
+    }
+
+    @Test
+    void rejectsWhenFullAndKeepsFifoOrder() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+
+        assertEquals(Integer.valueOf(0), buffer.poll());
+        assertTrue(buffer.offer(4));
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(4, buffer.drain(drained::add, 10));
+        assertEquals(List.of(1, 2, 3, 4), drained);
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void deliversEveryElementOnceUnderContention() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 25_000;
+        MpscRingBuffer<Long> buffer = new MpscRingBuffer<>(1024);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            Thread thread = new Thread(() -> {
+                awaitQuietly(start);
+                for (long i = 0; i < perProducer; i++) {
+                    // El valor codifica productor y secuencia para comprobar orden por productor
+                    long value = producer * perProducer + i;
+                    while (!buffer.offer(value)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        long[] lastSeen = new long[producers];
+        java.util.Arrays.fill(lastSeen, -1);
+        boolean[] seen = new boolean[producers * perProducer];
+        int received = 0;
+        start.countDown();
+        while (received < producers * perProducer) {
+            Long value = buffer.poll();
+            if (value == null) {
+                Thread.yield();
+                continue;
+            }
+            int producer = (int) (value / perProducer);
+            long sequence = value % perProducer;
+            assertFalse(seen[value.intValue()], "duplicado: " + value);
+            assertTrue(sequence > lastSeen[producer], "fuera de orden para el productor " + producer);
+            seen[value.intValue()] = true;
+            lastSeen[producer] = sequence;
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    void producersCanDropOldestConcurrently() throws InterruptedException {
+        // Con DROP_OLDEST los productores también llaman a poll(): ningún elemento sale dos veces
+        int producers = 4;
+        int perProducer = 20_000;
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(64);
+        boolean[] taken = new boolean[producers * perProducer];
+        AtomicBoolean duplicate = new AtomicBoolean();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    int value = producer * perProducer + i;
+                    while (!buffer.offer(value)) {
+                        Integer dropped = buffer.poll();
+                        if (dropped != null) {
+                            synchronized (taken) {
+                                duplicate.compareAndSet(false, taken[dropped]);
+                                taken[dropped] = true;
+                            }
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Integer value;
+        while ((value = buffer.poll()) != null) {
+            assertFalse(taken[value], "duplicado: " + value);
+            taken[value] = true;
+        }
+
+        assertFalse(duplicate.get());
+        for (int i = 0; i < taken.length; i++) {
+            assertTrue(taken[i], "perdido: " + i);
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.disrupton.analytics.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RankedSkipListTest {
+
+    @Test
+    void ranksByScoreDescendingThenMember() {
+        RankedSkipList list = new RankedSkipList();
+        list.put("textiles", 10);
+        list.put("ceramica", 30);
+        list.put("musica", 20);
+        list.put("danza", 20);
+
+        assertEquals(0, list.rank("ceramica"));
+        assertEquals(1, list.rank("danza"));
+        assertEquals(2, list.rank("musica"));
+        assertEquals(3, list.rank("textiles"));
+        assertEquals(-1, list.rank("pintura"));
+        assertEquals(List.of("ceramica", "danza", "musica", "textiles"), members(list.range(0, 10)));
+        assertThrows(IllegalArgumentException.class, () -> list.put("pintura", Double.NaN));
+    }
+
+    @Test
+    void updatingScoreMovesMember() {
+        RankedSkipList list = new RankedSkipList();
+        list.put("a", 1);
+        list.put("b", 2);
+        list.put("c", 3);
+
+        list.put("a", 5);
+        assertEquals(3, list.size());
+        assertEquals(Double.valueOf(5), list.score("a"));
+        assertEquals(List.of("a", "c", "b"), members(list.range(0, 3)));
+
+        list.put("a", 0);
+        assertEquals(2, list.rank("a"));
+        // Mismo puntaje: no cambia nada
+        list.put("b", 2);
+        assertEquals(1, list.rank("b"));
+
+        assertTrue(list.remove("c"));
+        assertFalse(list.remove("c"));
+        assertNull(list.score("c"));
+        assertEquals(-1, list.rank("c"));
+        assertEquals(List.of("b", "a"), members(list.range(0, 3)));
+    }
+
+    @Test
+    void rangeReportsRanksAndClampsToSize() {
+        RankedSkipList list = new RankedSkipList();
+        for (int i = 0; i < 10; i++) {
+            list.put("m" + i, i);
+        }
+        List<RankedSkipList.Entry> page = list.range(3, 4);
+        assertEquals(List.of("m6", "m5", "m4", "m3"), members(page));
+        for (int i = 0; i < page.size(); i++) {
+            assertEquals(3 + i, page.get(i).getRank());
+            assertEquals(9.0 - 3 - i, page.get(i).getScore(), 0.0);
+        }
+        assertEquals(List.of("m1", "m0"), members(list.range(8, 5)));
+        assertTrue(list.range(10, 5).isEmpty());
+        assertTrue(list.range(-1, 5).isEmpty());
+        assertTrue(list.range(0, 0).isEmpty());
+        assertTrue(new RankedSkipList().range(0, 5).isEmpty());
+    }
+
+    @Test
+    void matchesSortedReferenceUnderRandomUpdates() {
+        SplittableRandom random = new SplittableRandom(11);
+        RankedSkipList list = new RankedSkipList();
+        Map<String, Double> reference = new HashMap<>();
+
+        for (int step = 1; step <= 20_000; step++) {
+            String member = "obj-" + random.nextInt(500);
+            if (random.nextInt(10) == 0) {
+                assertEquals(reference.remove(member) != null, list.remove(member));
+            } else {
+                // Puntajes enteros chicos para que haya muchos empates
+                double score = random.nextInt(50);
+                list.put(member, score);
+                reference.put(member, score);
+            }
+            if (step % 1_000 == 0) {
+                assertMatches(reference, list);
+            }
+        }
+    }
+
+    private static void assertMatches(Map<String, Double> reference, RankedSkipList list) {
+        List<String> expected = reference.entrySet().stream()
+                .sorted(Comparator.<Map.Entry<String, Double>>comparingDouble(Map.Entry::getValue).reversed()
+                        .thenComparing(Map.Entry::getKey))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+
+        assertEquals(expected.size(), list.size());
+        assertEquals(expected, members(list.range(0, expected.size())));
+        for (int rank = 0; rank < expected.size(); rank++) {
+            assertEquals(rank, list.rank(expected.get(rank)));
+        }
+        // Páginas intermedias: byRank debe ubicar cualquier offset
+        for (int offset = 0; offset < expected.size(); offset += 37) {
+            List<RankedSkipList.Entry> page = list.range(offset, 10);
+            assertEquals(expected.subList(offset, Math.min(offset + 10, expected.size())), members(page));
+            assertEquals(offset, page.get(0).getRank());
+        }
+    }
+
+    private static List<String> members(List<RankedSkipList.Entry> entries) {
+        List<String> members = new ArrayList<>(entries.size());
+        for (RankedSkipList.Entry entry : entries) {
+            members.add(entry.getMember());
+        }
+        return members;
+    }
+}
@@ -0,0 +1,145 @@
+package com.disrupton.analytics.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TDigestTest {
+
+    private static final double COMPRESSION = 100;
+    private static final double[] QUANTILES = {0.001, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999};
+
+    @Test
+    void emptyDigestHasNoQuantiles() {
+        TDigest digest = new TDigest(COMPRESSION);
+        assertTrue(digest.isEmpty());
+        assertTrue(Double.isNaN(digest.quantile(0.5)));
+        assertTrue(Double.isNaN(digest.getMin()));
+        assertEquals(0, digest.size());
+
+        digest.add(Double.NaN);
+        digest.add(1.0, 0);
+        assertTrue(digest.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new TDigest(5));
+    }
+
+    @Test
+    void uniformQuantilesMatchExactRanks() {
+        SplittableRandom random = new SplittableRandom(1);
+        double[] values = new double[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextDouble() * 1_000;
+        }
+        assertAccurate(digestOf(values), values);
+    }
+
+    @Test
+    void skewedQuantilesMatchExactRanks() {
+        // Duraciones de sesión: log-normal, con una cola larga donde importa p99
+        SplittableRandom random = new SplittableRandom(2);
+        double[] values = new double[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.exp(3 + random.nextGaussian());
+        }
+        TDigest digest = digestOf(values);
+        assertAccurate(digest, values);
+
+        Arrays.sort(values);
+        assertEquals(values[0], digest.getMin(), 0.0);
+        assertEquals(values[values.length - 1], digest.getMax(), 0.0);
+        assertEquals(values[0], digest.quantile(0), 0.0);
+        assertEquals(values[values.length - 1], digest.quantile(1), 0.0);
+        assertEquals(values.length, digest.size());
+        assertTrue(digest.centroidCount() <= 2 * COMPRESSION, "centroides: " + digest.centroidCount());
+    }
+
+    @Test
+    void mergedDigestsKeepAccuracy() {
+        SplittableRandom random = new SplittableRandom(3);
+        double[] values = new double[100_000];
+        TDigest merged = new TDigest(COMPRESSION);
+        // Un digest por hora, combinados como en el rollup diario
+        for (int part = 0; part < 10; part++) {
+            TDigest hour = new TDigest(COMPRESSION);
+            for (int i = part * 10_000; i < (part + 1) * 10_000; i++) {
+                values[i] = Math.exp(3 + random.nextGaussian());
+                hour.add(values[i]);
+            }
+            merged.merge(hour);
+        }
+        assertEquals(values.length, merged.size());
+        assertAccurate(merged, values);
+    }
+
+    @Test
+    void weightedValuesCountAsRepeatedValues() {
+        TDigest weighted = new TDigest(COMPRESSION);
+        TDigest repeated = new TDigest(COMPRESSION);
+        for (int i = 1; i <= 1_000; i++) {
+            weighted.add(i, 4);
+            for (int j = 0; j < 4; j++) {
+                repeated.add(i);
+            }
+        }
+        assertEquals(repeated.size(), weighted.size());
+        for (double q : QUANTILES) {
+            assertEquals(repeated.quantile(q), weighted.quantile(q), 10.0);
+        }
+    }
+
+    @Test
+    void roundTripsThroughBytes() {
+        SplittableRandom random = new SplittableRandom(4);
+        TDigest digest = new TDigest(COMPRESSION);
+        for (int i = 0; i < 10_000; i++) {
+            digest.add(random.nextDouble() * 60);
+        }
+        TDigest restored = TDigest.fromBytes(digest.toBytes());
+        assertEquals(digest.size(), restored.size());
+        assertEquals(digest.centroidCount(), restored.centroidCount());
+        assertEquals(digest.getMin(), restored.getMin(), 0.0);
+        assertEquals(digest.getMax(), restored.getMax(), 0.0);
+        for (double q : QUANTILES) {
+            assertEquals(digest.quantile(q), restored.quantile(q), 1e-9);
+        }
+    }
+
+    private static TDigest digestOf(double[] values) {
+        TDigest digest = new TDigest(COMPRESSION);
+        for (double value : values) {
+            digest.add(value);
+        }
+        return digest;
+    }
+
+    /**
+     * El error se mide en rango: qué fracción de los datos reales queda por debajo del estimado
+     * Las colas tienen centroides más chicos, así que la tolerancia crece con sqrt(q(1 - q))
+     */
+    private static void assertAccurate(TDigest digest, double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double q : QUANTILES) {
+            double estimate = digest.quantile(q);
+            int below = lowerBound(sorted, estimate);
+            double rank = (double) below / sorted.length;
+            double tolerance = Math.max(0.0005, 0.01 * Math.sqrt(q * (1 - q)));
+            assertTrue(Math.abs(rank - q) <= tolerance,
+                    "q=" + q + ": rango " + rank + ", tolerancia " + tolerance);
+        }
+    }
+
+    private static int lowerBound(double[] sorted, double value) {
+        int index = Arrays.binarySearch(sorted, value);
+        if (index < 0) {
+            return -index - 1;
+        }
+        while (index > 0 && sorted[index - 1] == value) {
+            index--;
+        }
+        return index;
+    }
+}
@@ -0,0 +1,108 @@
+package com.disrupton.service;
+
+import com.disrupton.analytics.util.ScoreColumns;
+import com.disrupton.config.ScoringConfig;
+import com.disrupton.user.dto.CulturalObjectViewMetricDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puntaje de engagement de todo el catálogo: camino por DTO contra camino por columnas
+ *
+ * columnsFromDtos incluye el costo de armar las columnas desde DTOs ya cargados;
+ * columnar y columnarParallel parten de columnas primitivas (rollups, acumuladores)
+ * Ejecutar con: mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * y luego java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main AnalyticsScoringBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyticsScoringBenchmark {
+
+    private static final int TOP = 50;
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    private AnalyticsCalculationService sequential;
+    private AnalyticsCalculationService parallel;
+    private List<CulturalObjectViewMetricDto> metrics;
+    private ScoreColumns columns;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sequential = service(Integer.MAX_VALUE);
+        parallel = service(0);
+
+        SplittableRandom random = new SplittableRandom(1);
+        metrics = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            CulturalObjectViewMetricDto metric = new CulturalObjectViewMetricDto();
+            metric.setObjectId("obj-" + i);
+            metric.setTotalViews((long) random.nextInt(100_000));
+            metric.setTotalComments((long) random.nextInt(1_000));
+            metric.setTotalReactions((long) random.nextInt(5_000));
+            metric.setTotalShares((long) random.nextInt(500));
+            metric.setAverageExplorationTime(random.nextDouble() * 300);
+            metrics.add(metric);
+        }
+        columns = AnalyticsCalculationService.engagementColumns(metrics);
+    }
+
+    @Benchmark
+    public double[] perDto() {
+        double[] scores = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            scores[i] = sequential.calculateEngagementScore(metrics.get(i));
+        }
+        return scores;
+    }
+
+    @Benchmark
+    public double[] columnsFromDtos() {
+        return sequential.engagementScores(AnalyticsCalculationService.engagementColumns(metrics));
+    }
+
+    @Benchmark
+    public double[] columnar() {
+        return sequential.engagementScores(columns);
+    }
+
+    @Benchmark
+    public double[] columnarParallel() {
+        return parallel.engagementScores(columns);
+    }
+
+    @Benchmark
+    public Integer[] perDtoSortTop() {
+        double[] scores = perDto();
+        Integer[] order = new Integer[rows];
+        for (int i = 0; i < rows; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble((Integer i) -> scores[i]).reversed());
+        return Arrays.copyOf(order, TOP);
+    }
+
+    @Benchmark
+    public int[] columnarTop() {
+        return sequential.rank(sequential.engagementScores(columns), TOP);
+    }
+
+    private static AnalyticsCalculationService service(int parallelThreshold) {
+        ScoringConfig config = new ScoringConfig();
+        config.setParallelThreshold(parallelThreshold);
+        AnalyticsCalculationService service = new AnalyticsCalculationService(config);
+        service.init();
+        return service;
+    }
+}
@@ -0,0 +1,180 @@
+package com.disrupton.storage.service;
+
+import com.disrupton.exception.InvalidModelException;
+import com.disrupton.storage.model.GlbStats;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GlbInspectorTest {
+
+    private static final int MAGIC = 0x46546C67;
+    private static final int JSON = 0x4E4F534A;
+    private static final int BIN = 0x004E4942;
+
+    // Un triángulo indexado: 3 posiciones (36 bytes) en el chunk BIN
+    private static final String TRIANGLE = "{\"asset\":{\"version\":\"2.0\"},"
+            + "\"buffers\":[{\"byteLength\":36}],"
+            + "\"bufferViews\":[{\"buffer\":0,\"byteLength\":36}],"
+            + "\"accessors\":[{\"bufferView\":0,\"count\":3},{\"count\":3}],"
+            + "\"meshes\":[{\"primitives\":[{\"attributes\":{\"POSITION\":0},\"indices\":1}]}],"
+            + "\"textures\":[{}]}";
+
+    private final GlbInspector inspector = new GlbInspector(new ObjectMapper());
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void inspectsValidGlb() throws IOException {
+        byte[] glb = glb(chunk(JSON, json(TRIANGLE)), chunk(BIN, new byte[36]));
+        GlbStats stats = inspector.inspect(ByteBuffer.wrap(glb));
+
+        assertEquals(Integer.valueOf(2), stats.getGltfVersion());
+        assertEquals(Long.valueOf(glb.length), stats.getTotalBytes());
+        assertEquals(Long.valueOf(36), stats.getBinBytes());
+        assertEquals(Integer.valueOf(1), stats.getMeshCount());
+        assertEquals(Integer.valueOf(1), stats.getPrimitiveCount());
+        assertEquals(Long.valueOf(3), stats.getVertexCount());
+        assertEquals(Long.valueOf(1), stats.getTriangleCount());
+        assertEquals(Integer.valueOf(1), stats.getTextureCount());
+    }
+
+    @Test
+    void countsStripTrianglesAndIgnoresUnknownChunks() throws IOException {
+        String strip = "{\"asset\":{\"version\":\"2.0\"},"
+                + "\"accessors\":[{\"count\":6}],"
+                + "\"meshes\":[{\"primitives\":[{\"attributes\":{\"POSITION\":0},\"mode\":5}]}]}";
+        // Chunk de extensión desconocida después del JSON: se ignora
+        byte[] glb = glb(chunk(JSON, json(strip)), chunk(0x12345678, new byte[8]));
+        GlbStats stats = inspector.inspect(ByteBuffer.wrap(glb));
+
+        assertEquals(Long.valueOf(4), stats.getTriangleCount());
+        assertEquals(Long.valueOf(0), stats.getBinBytes());
+    }
+
+    @Test
+    void rejectsBadHeader() {
+        byte[] valid = glb(chunk(JSON, json(TRIANGLE)), chunk(BIN, new byte[36]));
+
+        assertInvalid(new byte[8], "magic");
+        assertInvalid(withInt(valid, 0, 0x12345678), "magic");
+        assertInvalid(withInt(valid, 4, 1), "Versión");
+        assertInvalid(withInt(valid, 8, valid.length + 4), "longitud declarada");
+    }
+
+    @Test
+    void rejectsMalformedChunkTable() {
+        byte[] json = json(TRIANGLE);
+
+        // Cabecera de chunk incompleta al final del archivo
+        byte[] truncated = glb(chunk(JSON, json), new byte[4]);
+        assertInvalid(truncated, "truncada");
+
+        // El chunk declara más bytes de los que tiene el archivo
+        byte[] overflowing = glb(chunk(JSON, json), chunk(BIN, new byte[36]));
+        assertInvalid(withInt(overflowing, 12 + 8 + json.length, 40), "excede los límites del archivo");
+
+        // Longitud no múltiplo de 4
+        byte[] unaligned = glb(chunk(JSON, json), chunk(BIN, new byte[40]));
+        assertInvalid(withInt(unaligned, 12 + 8 + json.length, 38), "alineado");
+
+        assertInvalid(glb(chunk(BIN, new byte[36]), chunk(JSON, json)), "primer chunk");
+        assertInvalid(glb(chunk(JSON, new byte[0])), "primer chunk");
+        assertInvalid(glb(chunk(JSON, json), chunk(JSON, json)), "más de un chunk JSON");
+        assertInvalid(glb(chunk(JSON, json), chunk(0x12345678, new byte[4]), chunk(BIN, new byte[36])),
+                "segundo chunk");
+    }
+
+    @Test
+    void rejectsBuffersOutsideBinChunk() {
+        // buffers[0] declara 36 bytes pero el BIN solo trae 32
+        assertInvalid(glb(chunk(JSON, json(TRIANGLE)), chunk(BIN, new byte[32])), "buffers[0]");
+
+        String viewOverflow = TRIANGLE.replace("{\"buffer\":0,\"byteLength\":36}",
+                "{\"buffer\":0,\"byteOffset\":4,\"byteLength\":36}");
+        assertInvalid(glb(chunk(JSON, json(viewOverflow)), chunk(BIN, new byte[36])), "bufferViews[0]");
+
+        String missingBuffer = TRIANGLE.replace("{\"buffer\":0,", "{\"buffer\":3,");
+        assertInvalid(glb(chunk(JSON, json(missingBuffer)), chunk(BIN, new byte[36])), "buffer inexistente");
+
+        String missingAccessor = TRIANGLE.replace("\"indices\":1", "\"indices\":7");
+        assertInvalid(glb(chunk(JSON, json(missingAccessor)), chunk(BIN, new byte[36])), "accessor inexistente");
+
+        String gltf1 = TRIANGLE.replace("\"version\":\"2.0\"", "\"version\":\"1.0\"");
+        assertInvalid(glb(chunk(JSON, json(gltf1)), chunk(BIN, new byte[36])), "asset.version");
+    }
+
+    @Test
+    void enforcesBudgetsWhenInspectingFiles() throws IOException {
+        ReflectionTestUtils.setField(inspector, "maxBytes", 1024L);
+        ReflectionTestUtils.setField(inspector, "maxVertices", 1000L);
+        ReflectionTestUtils.setField(inspector, "maxTriangles", 1000L);
+        ReflectionTestUtils.setField(inspector, "maxMeshes", 8);
+        ReflectionTestUtils.setField(inspector, "maxTextures", 8);
+
+        Path model = Files.write(directory.resolve("model.glb"),
+                glb(chunk(JSON, json(TRIANGLE)), chunk(BIN, new byte[36])));
+        assertEquals(Long.valueOf(1), inspector.inspect(model).getTriangleCount());
+
+        ReflectionTestUtils.setField(inspector, "maxTextures", 0);
+        InvalidModelException textures = assertThrows(InvalidModelException.class, () -> inspector.inspect(model));
+        assertTrue(textures.getMessage().contains("texturas"), textures.getMessage());
+
+        ReflectionTestUtils.setField(inspector, "maxBytes", 64L);
+        InvalidModelException size = assertThrows(InvalidModelException.class, () -> inspector.inspect(model));
+        assertTrue(size.getMessage().contains("tamaño máximo"), size.getMessage());
+
+        ReflectionTestUtils.setField(inspector, "maxBytes", 1024L);
+        Path tiny = Files.write(directory.resolve("tiny.glb"), new byte[4]);
+        assertThrows(InvalidModelException.class, () -> inspector.inspect(tiny));
+    }
+
+    private void assertInvalid(byte[] glb, String expectedMessage) {
+        InvalidModelException e = assertThrows(InvalidModelException.class,
+                () -> inspector.inspect(ByteBuffer.wrap(glb)));
+        assertTrue(e.getMessage().contains(expectedMessage), e.getMessage());
+    }
+
+    /**
+     * JSON con relleno de espacios hasta múltiplo de 4, como exige la especificación
+     */
+    private static byte[] json(String text) {
+        StringBuilder padded = new StringBuilder(text);
+        while (padded.length() % 4 != 0) {
+            padded.append(' ');
+        }
+        return padded.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] chunk(int type, byte[] data) {
+        return ByteBuffer.allocate(8 + data.length).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(data.length).putInt(type).put(data).array();
+    }
+
+    private static byte[] glb(byte[]... chunks) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (byte[] chunk : chunks) {
+            body.writeBytes(chunk);
+        }
+        return ByteBuffer.allocate(12 + body.size()).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIC).putInt(2).putInt(12 + body.size()).put(body.toByteArray()).array();
+    }
+
+    private static byte[] withInt(byte[] bytes, int offset, int value) {
+        byte[] copy = bytes.clone();
+        ByteBuffer.wrap(copy).order(ByteOrder.LITTLE_ENDIAN).putInt(offset, value);
+        return copy;
+    }
+}
@@ -0,0 +1,99 @@
+package com.disrupton.storage.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Throughput de subida y lectura del BlobStore local, sin bucket
+ *
+ * uploadFromBytes reproduce el camino anterior (getBytes() y luego escribir el arreglo);
+ * los demás son los caminos por stream y por archivo que usan las subidas de modelos y avatares.
+ * Ejecutar con: mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * y luego java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main LocalBlobStoreBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalBlobStoreBenchmark {
+
+    private static final String CONTENT_TYPE = "model/gltf-binary";
+
+    @Param({"1", "16", "64"})
+    public int megabytes;
+
+    private Path directory;
+    private Path source;
+    private LocalBlobStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("blobstore-bench");
+        store = new LocalBlobStore(directory.resolve("store").toString(), "http://localhost/download");
+
+        byte[] content = new byte[megabytes << 20];
+        new SplittableRandom(megabytes).nextBytes(content);
+        source = Files.write(directory.resolve("source.glb"), content);
+        store.put("avatars/glb/read.glb", CONTENT_TYPE, Map.of(), content);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Object uploadFromBytes() throws IOException {
+        return store.put("avatars/glb/bytes.glb", CONTENT_TYPE, Map.of(), Files.readAllBytes(source));
+    }
+
+    @Benchmark
+    public Object uploadFromStream() throws IOException {
+        try (InputStream in = Files.newInputStream(source)) {
+            return store.put("avatars/glb/stream.glb", CONTENT_TYPE, Map.of(), in);
+        }
+    }
+
+    @Benchmark
+    public Object uploadFromPath() throws IOException {
+        return store.put("avatars/glb/path.glb", CONTENT_TYPE, Map.of(), source);
+    }
+
+    @Benchmark
+    public void readMapped(Blackhole blackhole) throws IOException {
+        scan(store.read("avatars/glb/read.glb"), blackhole);
+    }
+
+    @Benchmark
+    public void readAllBytes(Blackhole blackhole) throws IOException {
+        scan(ByteBuffer.wrap(Files.readAllBytes(directory.resolve("store/avatars/glb/read.glb"))), blackhole);
+    }
+
+    /**
+     * Recorre todo el contenido para que la lectura mapeada no quede sin tocar las páginas
+     */
+    private static void scan(ByteBuffer buffer, Blackhole blackhole) {
+        ByteBuffer view = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        long sum = 0;
+        while (view.remaining() >= Long.BYTES) {
+            sum += view.getLong();
+        }
+        blackhole.consume(sum);
+    }
+}